@@ -0,0 +1,71 @@
+package demo.util;
+
+import org.jpropeller.util.CompactListeners;
+import org.jpropeller.util.ListenerSnapshot;
+import org.jpropeller.util.WeakReferenceCounter;
+
+/**
+ * Compare the time taken to iterate weak listeners using a
+ * {@link WeakReferenceCounter} iterator, as used for propagation 
+ * previously, and a {@link ListenerSnapshot} from {@link CompactListeners},
+ * for different numbers of listeners
+ */
+public class ListenerIterationBenchmark {
+
+	private final static int[] FAN_OUTS = new int[] {1, 2, 10, 100, 1000, 10000};
+	
+	//Total listener visits per measurement
+	private final static int VISITS = 20000000;
+	
+	/**
+	 * Run benchmark
+	 * @param args	Ignored
+	 */
+	public static void main(String[] args) {
+		//Run twice, ignoring first run as warmup
+		for (int run = 0; run < 2; run++) {
+			if (run == 1) {
+				System.out.println("Listeners\tCounter ns/visit\tSnapshot ns/visit");
+			}
+			for (int fanOut : FAN_OUTS) {
+				Object[] listeners = new Object[fanOut];
+				WeakReferenceCounter<Object> counter = new WeakReferenceCounter<Object>();
+				CompactListeners<Object> compact = new CompactListeners<Object>(true);
+				for (int i = 0; i < fanOut; i++) {
+					listeners[i] = new Object();
+					counter.add(listeners[i]);
+					compact.add(listeners[i]);
+				}
+				
+				int passes = Math.max(1, VISITS / fanOut);
+				
+				long start = System.nanoTime();
+				int counted = 0;
+				for (int p = 0; p < passes; p++) {
+					for (Object listener : counter) {
+						if (listener != null) counted++;
+					}
+				}
+				double counterTime = (System.nanoTime() - start) / (double) counted;
+				
+				start = System.nanoTime();
+				counted = 0;
+				for (int p = 0; p < passes; p++) {
+					ListenerSnapshot<Object> snapshot = compact.snapshot();
+					int size = snapshot.size();
+					for (int i = 0; i < size; i++) {
+						if (snapshot.get(i) != null) counted++;
+					}
+				}
+				double snapshotTime = (System.nanoTime() - start) / (double) counted;
+
+				if (run == 1) {
+					System.out.println(fanOut + "\t\t" + String.format("%.2f", counterTime) + "\t\t\t" + String.format("%.2f", snapshotTime));
+				}
+				
+				//Keep listeners reachable until we are done
+				if (listeners.length == 0) System.out.println(listeners);
+			}
+		}
+	}
+}
@@ -45,6 +45,25 @@ public interface BeanFeatures extends ChangeableFeatures, Iterable<Prop<?>> {
 	 */
 	public <S> Prop<S> getUnsafe(PropName<S> name);
 
+	/**
+	 * Get the {@link BeanSchema} giving the slot of each {@link Prop}
+	 * in the {@link Bean}. This is shared by all {@link Bean}s of the same class.
+	 * @return			The {@link BeanSchema}
+	 */
+	public BeanSchema getSchema();
+	
+	/**
+	 * Get the {@link Prop} in the {@link Bean} with the specified 
+	 * slot in the {@link #getSchema()}. This is equivalent to 
+	 * {@link #getUnsafe(PropName)} with the {@link PropName} of the slot,
+	 * but avoids looking up the name, so is useful where the slot can
+	 * be found once and used for many {@link Bean}s with the same {@link BeanSchema}.
+	 * @param slot		The slot
+	 * @return			The {@link Prop} in that slot, or null if this {@link Bean}
+	 * 					has no {@link Prop} for the slot
+	 */
+	public Prop<?> getSlot(int slot);
+
 	/**
 	 * A list of {@link Prop}s in the {@link Bean}, in the order they were added to the {@link Bean}
 	 * @return			Ordered list of {@link Prop}s in the {@link Bean}
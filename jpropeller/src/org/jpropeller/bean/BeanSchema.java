@@ -0,0 +1,44 @@
+package org.jpropeller.bean;
+
+import org.jpropeller.name.PropName;
+import org.jpropeller.properties.Prop;
+
+/**
+ * The layout of the {@link Prop}s of a class of {@link Bean}, shared
+ * by all instances of the class. Each {@link PropName} used by the
+ * class has a fixed slot index, so that {@link Prop}s can be looked up
+ * by slot using {@link BeanFeatures#getSlot(int)}.
+ * <p/>
+ * A schema only grows - once a {@link PropName} has a slot, the slot
+ * never changes, so slots can be cached, as long as the {@link #size()}
+ * is checked to see if new slots have been added.
+ */
+public interface BeanSchema {
+
+	/**
+	 * Get the slot for a {@link PropName}
+	 * @param name		The {@link PropName}
+	 * @return			The slot, or -1 if no instance has a {@link Prop} with
+	 * 					the name
+	 */
+	public int slot(PropName<?> name);
+	
+	/**
+	 * Get the {@link PropName} for a slot
+	 * @param slot		The slot
+	 * @return			The {@link PropName}
+	 * @throws IndexOutOfBoundsException	If the slot is not in the schema
+	 */
+	public PropName<?> name(int slot);
+	
+	/**
+	 * @return	The number of slots - slots are numbered from 0 to size-1
+	 */
+	public int size();
+	
+	/**
+	 * @return	The class of {@link Bean} using the schema
+	 */
+	public Class<?> getBeanClass();
+	
+}
@@ -1,6 +1,7 @@
 package org.jpropeller.bean;
 
 import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.change.LazyChangeable;
 
 /**
  * A {@link BeanFeatures} providing methods that should only
@@ -24,4 +25,17 @@ public interface MutableBeanFeatures extends BeanFeatures {
 	 */
 	public <P extends Prop<S>, S> P add(P prop);
 	
+	/**
+	 * Set whether {@link Prop}s added from now on are lazy. Where a 
+	 * {@link Prop} is a {@link LazyChangeable}, the {@link Bean} 
+	 * will only start listening to it when it is first observed or 
+	 * changed, so that {@link Prop}s which are never used stay as 
+	 * little more than their values. 
+	 * Note that a lazy {@link Prop} retains a strong reference to the 
+	 * {@link Bean} until then.
+	 * @param lazyProps
+	 * 		True to add {@link Prop}s lazily, false to add them normally
+	 */
+	public void setLazyProps(boolean lazyProps);
+	
 }
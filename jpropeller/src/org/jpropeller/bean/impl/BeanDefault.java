@@ -8,6 +8,7 @@ import org.jpropeller.bean.BeanFeatures;
 import org.jpropeller.bean.BuildAndAddCalculatedListProp;
 import org.jpropeller.bean.BuildAndAddCalculatedProp;
 import org.jpropeller.bean.ExtendedBeanFeatures;
+import org.jpropeller.bean.MutableBeanFeatures;
 import org.jpropeller.calculation.Calculation;
 import org.jpropeller.collection.CList;
 import org.jpropeller.collection.CMap;
@@ -39,12 +40,35 @@ import org.jpropeller.util.Source;
 /**
  * A default {@link Bean} with no properties, designed to be
  * subclassed as a (very slightly) easier way to implement {@link Bean}
+ * <p/>
+ * Subclasses may use {@link #BeanDefault(boolean)} to make their
+ * props lazy - see {@link MutableBeanFeatures#setLazyProps(boolean)}.
+ * This is useful where there are very many instances, most of which
+ * will never be observed.
  */
 public abstract class BeanDefault implements Bean {
 	
 	//Standard code block for a bean
 	ExtendedBeanFeatures features = Props.getPropSystem().createExtendedBeanFeatures(this);
 	
+	/**
+	 * Create a {@link BeanDefault}, with normal (not lazy) props
+	 */
+	public BeanDefault() {
+		this(false);
+	}
+	
+	/**
+	 * Create a {@link BeanDefault}
+	 * @param lazyProps		True to add props lazily, so that the
+	 * 						bean only listens to each prop once it is used
+	 */
+	protected BeanDefault(boolean lazyProps) {
+		if (lazyProps) {
+			features.setLazyProps(true);
+		}
+	}
+	
 	@Override
 	public BeanFeatures features() {
 		return features;
@@ -1,33 +1,48 @@
 package org.jpropeller.bean.impl;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
 import org.jpropeller.bean.Bean;
 import org.jpropeller.bean.BeanFeatures;
+import org.jpropeller.bean.BeanSchema;
 import org.jpropeller.bean.MutableBeanFeatures;
 import org.jpropeller.name.PropName;
 import org.jpropeller.properties.Prop;
 import org.jpropeller.properties.change.Change;
 import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.properties.change.LazyChangeable;
 import org.jpropeller.properties.change.impl.ChangeDefault;
 import org.jpropeller.properties.change.impl.ChangeableFeaturesDefault;
 import org.jpropeller.properties.change.impl.InternalChangeImplementation;
 
 /**
  * Default implementation of {@link BeanFeatures}
+ * <p/>
+ * {@link Prop}s are stored in an array, by their slot in the
+ * {@link BeanSchema} shared by all {@link Bean}s of the same class,
+ * so there is no per-instance map of names to {@link Prop}s.
  */
 public class BeanFeaturesDefault extends ChangeableFeaturesDefault implements MutableBeanFeatures {
 
-	private final Map<PropName<?>, Prop<?>> map;
-	private final List<Prop<?>> list;
-	private final List<Prop<?>> umList;
+	private final BeanSchemaDefault schema;
 	private final Bean bean;
 	
+	//Props by slot, and number of props
+	private Prop<?>[] slots;
+	private int count = 0;
+	
+	//Props in the order they were added. While props are added in
+	//slot order, this is just a view of the slots, otherwise 
+	//we need to keep a separate list 
+	private List<Prop<?>> list = null;
+	private final List<Prop<?>> umList;
+	
+	private boolean lazyProps = false;
+	
 	/**
 	 * Create a new {@link BeanFeaturesDefault}
 	 * @param bean
@@ -38,10 +53,25 @@ public class BeanFeaturesDefault extends ChangeableFeaturesDefault implements Mu
 	 */
 	public BeanFeaturesDefault(Bean bean, InternalChangeImplementation implementation) {
 		super(implementation, bean);
-		map = new HashMap<PropName<?>, Prop<?>>(10);
-		list = new LinkedList<Prop<?>>();
-		umList = Collections.unmodifiableList(list);
 		this.bean = bean;
+		schema = BeanSchemaDefault.forClass(bean.getClass());
+		slots = new Prop<?>[schema.size()];
+		umList = new AbstractList<Prop<?>>() {
+			@Override
+			public Prop<?> get(int index) {
+				if (list != null) {
+					return list.get(index);
+				}
+				if (index < 0 || index >= count) {
+					throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+				}
+				return slots[index];
+			}
+			@Override
+			public int size() {
+				return count;
+			}
+		};
 	}
 
 	/**
@@ -71,7 +101,7 @@ public class BeanFeaturesDefault extends ChangeableFeaturesDefault implements Mu
 	
 	@Override
 	public Iterator<Prop<?>> iterator() {
-		return list.iterator();
+		return umList.iterator();
 	}
 	
 	/**
@@ -98,11 +128,40 @@ public class BeanFeaturesDefault extends ChangeableFeaturesDefault implements Mu
 				//parametric type of the Prop value always matches the
 				//parametric type of the PropName key - this makes the
 				//cast we perform in getProp(name) safe
-				map.put(prop.getName(), prop);
-				list.add(prop);
+				//Props are normally added in the same order for each instance,
+				//so the next prop usually takes the next slot
+				PropName<?> name = prop.getName();
+				int slot = count;
+				if (slot >= schema.size() || !schema.name(slot).equals(name)) {
+					slot = schema.add(name);
+				}
+				if (slot >= slots.length) {
+					Prop<?>[] newSlots = new Prop<?>[Math.max(slot + 1, schema.size())];
+					System.arraycopy(slots, 0, newSlots, 0, slots.length);
+					slots = newSlots;
+				}
+				
+				//If we are not in slot order, we need to keep the order separately
+				if (list == null && slot != count) {
+					list = new ArrayList<Prop<?>>(count + 1);
+					for (int i = 0; i < count; i++) {
+						list.add(slots[i]);
+					}
+				}
+				if (list != null) {
+					list.add(prop);
+				}
 				
-				//make bean listen internally to the prop
-				prop.features().addChangeableListener(bean);
+				slots[slot] = prop;
+				count++;
+				
+				//make bean listen internally to the prop - lazy props only
+				//need to be listened to when they are first used
+				if (lazyProps && prop instanceof LazyChangeable) {
+					((LazyChangeable) prop).addDeferredChangeableListener(bean);
+				} else {
+					prop.features().addChangeableListener(bean);
+				}
 				
 				return prop;
 			}
@@ -122,7 +181,7 @@ public class BeanFeaturesDefault extends ChangeableFeaturesDefault implements Mu
 				"be guaranteed. Use getUnsafe(PropName) instead. " +
 				"PropName used is " + name);
 		}
-		return (Prop<S>) map.get(name);
+		return (Prop<S>) lookup(name);
 	}
 	
 	//Note that suppressed warning is NOT entirely safe. We know that we have 
@@ -134,7 +193,34 @@ public class BeanFeaturesDefault extends ChangeableFeaturesDefault implements Mu
 	@SuppressWarnings("unchecked")
 	@Override
 	public <S> Prop<S> getUnsafe(PropName<S> name) {
-		return (Prop<S>) map.get(name);
+		return (Prop<S>) lookup(name);
+	}
+	
+	private Prop<?> lookup(PropName<?> name) {
+		int slot = schema.slot(name);
+		if (slot < 0) {
+			return null;
+		}
+		return getSlot(slot);
+	}
+	
+	@Override
+	public synchronized void setLazyProps(boolean lazyProps) {
+		this.lazyProps = lazyProps;
+	}
+	
+	@Override
+	public BeanSchema getSchema() {
+		return schema;
+	}
+	
+	@Override
+	public Prop<?> getSlot(int slot) {
+		Prop<?>[] current = slots;
+		if (slot < 0 || slot >= current.length) {
+			return null;
+		}
+		return current[slot];
 	}
 
 	
@@ -0,0 +1,111 @@
+package org.jpropeller.bean.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jpropeller.bean.Bean;
+import org.jpropeller.bean.BeanSchema;
+import org.jpropeller.name.PropName;
+
+/**
+ * Default implementation of {@link BeanSchema}. There is one 
+ * instance for each {@link Bean} class, built as {@link PropName}s
+ * are first added to instances of the class. 
+ * <p/>
+ * Lookups do not lock - slots are held in an immutable map which is
+ * replaced when a new slot is added.
+ */
+public class BeanSchemaDefault implements BeanSchema {
+
+	private final static ConcurrentMap<Class<?>, BeanSchemaDefault> schemas = new ConcurrentHashMap<Class<?>, BeanSchemaDefault>();
+	
+	private final Class<?> beanClass;
+	
+	//Replaced whenever a slot is added, guarded by this for writes
+	private volatile Map<PropName<?>, Integer> slots = Collections.emptyMap();
+	private volatile PropName<?>[] names = new PropName<?>[0];
+	
+	private BeanSchemaDefault(Class<?> beanClass) {
+		this.beanClass = beanClass;
+	}
+	
+	/**
+	 * Get the schema for a class of {@link Bean}
+	 * @param beanClass		The class
+	 * @return				The {@link BeanSchemaDefault}
+	 */
+	public static BeanSchemaDefault forClass(Class<?> beanClass) {
+		BeanSchemaDefault schema = schemas.get(beanClass);
+		if (schema == null) {
+			schema = new BeanSchemaDefault(beanClass);
+			BeanSchemaDefault existing = schemas.putIfAbsent(beanClass, schema);
+			if (existing != null) {
+				schema = existing;
+			}
+		}
+		return schema;
+	}
+	
+	/**
+	 * Get the slot for a {@link PropName}, adding a new slot
+	 * if the name has none yet
+	 * @param name		The {@link PropName}
+	 * @return			The slot
+	 */
+	public int add(PropName<?> name) {
+		int slot = slot(name);
+		if (slot >= 0) {
+			return slot;
+		}
+		synchronized (this) {
+			//Check again now we hold the lock
+			slot = slot(name);
+			if (slot >= 0) {
+				return slot;
+			}
+			
+			slot = names.length;
+			
+			Map<PropName<?>, Integer> newSlots = new HashMap<PropName<?>, Integer>(slots);
+			newSlots.put(name, slot);
+			PropName<?>[] newNames = new PropName<?>[slot + 1];
+			System.arraycopy(names, 0, newNames, 0, slot);
+			newNames[slot] = name;
+			
+			//Publish names first, so that any slot found by a lookup has a name
+			names = newNames;
+			slots = newSlots;
+			
+			return slot;
+		}
+	}
+	
+	@Override
+	public int slot(PropName<?> name) {
+		Integer slot = slots.get(name);
+		return slot == null ? -1 : slot;
+	}
+	
+	@Override
+	public PropName<?> name(int slot) {
+		return names[slot];
+	}
+	
+	@Override
+	public int size() {
+		return names.length;
+	}
+	
+	@Override
+	public Class<?> getBeanClass() {
+		return beanClass;
+	}
+	
+	@Override
+	public String toString() {
+		return "Schema for " + beanClass.getName() + ", " + size() + " slots";
+	}
+}
@@ -7,6 +7,7 @@ import java.util.Map;
 
 import org.joda.time.DateTime;
 import org.jpropeller.bean.Bean;
+import org.jpropeller.bean.BeanSchema;
 import org.jpropeller.bean.BuildAndAddCalculatedListProp;
 import org.jpropeller.bean.BuildAndAddCalculatedProp;
 import org.jpropeller.bean.ExtendedBeanFeatures;
@@ -286,6 +287,10 @@ public class ExtendedBeanFeaturesDefault implements ExtendedBeanFeatures {
 		return delegate.add(prop);
 	}
 
+	public void setLazyProps(boolean lazyProps) {
+		delegate.setLazyProps(lazyProps);
+	}
+
 	public void addChangeableListener(Changeable listener) {
 		delegate.addChangeableListener(listener);
 	}
@@ -310,6 +315,14 @@ public class ExtendedBeanFeaturesDefault implements ExtendedBeanFeatures {
 		return delegate.getList();
 	}
 
+	public BeanSchema getSchema() {
+		return delegate.getSchema();
+	}
+
+	public Prop<?> getSlot(int slot) {
+		return delegate.getSlot(slot);
+	}
+
 	public <S> Prop<S> getUnsafe(PropName<S> name) {
 		return delegate.getUnsafe(name);
 	}
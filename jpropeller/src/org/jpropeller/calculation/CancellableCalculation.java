@@ -0,0 +1,27 @@
+package org.jpropeller.calculation;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link Calculation} that can stop early when its result
+ * is no longer needed, for example when a background calculation
+ * is superseded by a change to its sources.
+ * 
+ * @param <T>
+ * 		The type of value calculated
+ */
+public interface CancellableCalculation<T> extends Calculation<T> {
+
+	/**
+	 * Perform the calculation, stopping as soon as reasonably
+	 * possible if shouldCancel becomes true. In this case any
+	 * value may be returned, and it will be discarded.
+	 * @param shouldCancel
+	 * 		Becomes true when the result is no longer needed. May
+	 * be a different instance for each calculation.
+	 * @return
+	 * 		The calculation result
+	 */
+	public T calculate(AtomicBoolean shouldCancel);
+	
+}
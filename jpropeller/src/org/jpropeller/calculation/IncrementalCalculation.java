@@ -0,0 +1,55 @@
+package org.jpropeller.calculation;
+
+import java.util.Map;
+
+import org.jpropeller.collection.impl.CListCalculated;
+import org.jpropeller.collection.impl.CMapCalculated;
+import org.jpropeller.properties.calculated.impl.CalculatedProp;
+import org.jpropeller.properties.change.Change;
+import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.properties.change.ListChange;
+
+/**
+ * A {@link Calculation} that can update a previous result using
+ * the {@link Change}s made to its sources since that result was
+ * produced, instead of always starting from scratch. For example,
+ * a total of a large list can be updated using the {@link ListChange}
+ * of the list, when elements have only been appended.
+ * <p/>
+ * {@link CalculatedProp}, {@link CListCalculated} and {@link CMapCalculated}
+ * will use {@link #update(Object, Map)} when given an {@link IncrementalCalculation}.
+ * {@link #calculate()} is still used for the first result, and whenever
+ * {@link #update(Object, Map)} cannot produce a result.
+ * <p/>
+ * Note that sources can only be read in their current state - where there
+ * are several changes, indices in earlier deltas refer to earlier states
+ * of a list. Returning null is always safe where changes are not simple
+ * to follow.
+ * <p/>
+ * All notes on {@link Calculation} apply - in particular, the previous
+ * result must NOT be modified, since it may still be in use. 
+ *
+ * @param <T>
+ * 		The type of value calculated
+ */
+public interface IncrementalCalculation<T> extends Calculation<T> {
+
+	/**
+	 * Update a previous result, based on the changes to the sources
+	 * since it was produced
+	 * @param previous
+	 * 		The previous result, from {@link #calculate()} or this method.
+	 * This must not be modified.
+	 * @param changes
+	 * 		The {@link Change} to each source that has changed since the 
+	 * previous result was produced, compared by identity. Where a source has
+	 * changed several times, these {@link Change}s are coalesced using
+	 * {@link Change#extend(Change)}, so for example a {@link ListChange} contains
+	 * the deltas of each change in order.
+	 * @return
+	 * 		The updated result, or null if the result cannot be updated
+	 * from these changes - in this case {@link #calculate()} is used instead.
+	 */
+	public T update(T previous, Map<Changeable, Change> changes);
+	
+}
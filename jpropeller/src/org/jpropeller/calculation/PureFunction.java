@@ -0,0 +1,30 @@
+package org.jpropeller.calculation;
+
+import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.calculated.impl.MemoCache;
+
+/**
+ * A function producing a result only from the values of
+ * a fixed list of input {@link Prop}s, with no other
+ * dependencies and no side effects. Since the same input values
+ * always give an equal result, results can be shared between
+ * all uses of the function, using a {@link MemoCache}.
+ * <p/>
+ * For results to be shared, the same instance of the function
+ * must be used for each calculation, and input values must
+ * be immutable, with equals and hashCode based on their state.
+ * 
+ * @param <T>
+ * 		The type of result
+ */
+public interface PureFunction<T> {
+
+	/**
+	 * Produce the result for given input values
+	 * @param values	The value of each input, in order.
+	 * 					This must not be modified.
+	 * @return			The result
+	 */
+	public T apply(Object[] values);
+	
+}
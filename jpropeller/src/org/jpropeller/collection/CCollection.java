@@ -3,9 +3,12 @@ package org.jpropeller.collection;
 import java.util.Collection;
 import java.util.Set;
 
+import org.jpropeller.properties.calculated.background.impl.BackgroundCalculatedProp;
 import org.jpropeller.properties.change.Change;
+import org.jpropeller.properties.change.ChangeSystem;
 import org.jpropeller.properties.change.Changeable;
 import org.jpropeller.properties.change.ListChange;
+import org.jpropeller.task.Task;
 
 /**
  * A {@link CCollection} is a {@link Collection} that also implements
@@ -44,4 +47,22 @@ public interface CCollection<E> extends Changeable, Collection<E> {
 	 * 		The new contents
 	 */
 	public void replace(Iterable<E> newContents);
+	
+	/**
+	 * Get an immutable snapshot of the current contents.
+	 * <p/>
+	 * The snapshot is a plain (non-{@link Changeable}) {@link Collection} 
+	 * that will never change, and can be read from any thread without 
+	 * acquiring the {@link ChangeSystem} lock, and without blocking 
+	 * any changes to this {@link CCollection}. This makes it suitable 
+	 * for long-running background reads, for example by a {@link Task} 
+	 * or {@link BackgroundCalculatedProp}.
+	 * <p/>
+	 * Snapshots are shared - calling this method repeatedly without any
+	 * intervening changes to the contents will return the same instance,
+	 * so the cost of producing a snapshot is paid at most once per 
+	 * change, however many readers take snapshots. 
+	 * @return		Immutable snapshot of contents
+	 */
+	public Collection<E> snapshot();
 }
@@ -1,5 +1,7 @@
 package org.jpropeller.collection;
 
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.List;
 
 import org.jpropeller.properties.change.Change;
@@ -40,4 +42,73 @@ import org.jpropeller.properties.change.ListChange;
  */
 public interface CList<E> extends Changeable, List<E>, CCollection<E> {
 
+	/**
+	 * Get an immutable snapshot of the current contents, 
+	 * see {@link CCollection#snapshot()}
+	 * @return		Immutable snapshot of contents
+	 */
+	public List<E> snapshot();
+	
+	/**
+	 * Move an element from one index to another, shifting the
+	 * elements in between. This is done as a single change, with
+	 * a PERMUTATION {@link ListDelta}. 
+	 * @param from		The index of the element to move
+	 * @param to		The index the element will have after moving
+	 * @throws IndexOutOfBoundsException	If either index is not in the list
+	 */
+	public void move(int from, int to);
+	
+	/**
+	 * Move the elements at the specified indices to form a contiguous
+	 * block in the list, in their existing order, starting at a given index. 
+	 * Other elements keep their existing order. This is done as a single change, 
+	 * with a PERMUTATION {@link ListDelta}.
+	 * @param indices	The indices of the elements to move, in any order
+	 * @param to		The index the first moved element will have after moving.
+	 * 					Must be from 0 to size() - indices.length
+	 * @throws IndexOutOfBoundsException	If any index is not in the list, or
+	 * 										the block would not fit at the target
+	 * @throws IllegalArgumentException		If indices contains duplicates
+	 */
+	public void moveAll(int[] indices, int to);
+	
+	/**
+	 * Sort the list. The sort is stable, and is done as a single change, 
+	 * with a PERMUTATION {@link ListDelta}.
+	 * @param comparator	The {@link Comparator} to sort by, or null 
+	 * 						to use the natural ordering of elements
+	 */
+	public void sort(Comparator<? super E> comparator);
+	
+	/**
+	 * Reorder the list according to a permutation, as a single change, 
+	 * with a PERMUTATION {@link ListDelta}. 
+	 * @param permutation	For each index i, permutation[i] is the new index 
+	 * 						of the element now at index i
+	 * @throws IllegalArgumentException		If permutation is not a permutation
+	 * 										of the indices of the list
+	 */
+	public void permute(int[] permutation);
+	
+	/**
+	 * Remove the elements at the specified indices, as a single change. 
+	 * Each run of consecutive indices is given as one DELETION 
+	 * {@link ListDelta}, and the deltas are in descending order of index,
+	 * so that each delta's indices are unaffected by earlier deltas.
+	 * @param indices	The indices to remove, in any order. Duplicates are ignored.
+	 * @return			The removed elements, in the order they were in the list
+	 * @throws IndexOutOfBoundsException	If any index is not in the list
+	 */
+	public List<E> removeIndices(int[] indices);
+	
+	/**
+	 * Remove the elements at the indices set in a {@link BitSet}, as 
+	 * a single change, see {@link #removeIndices(int[])}
+	 * @param indices	The indices to remove
+	 * @return			The removed elements, in the order they were in the list
+	 * @throws IndexOutOfBoundsException	If any index is not in the list
+	 */
+	public List<E> removeIndices(BitSet indices);
+	
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package org.jpropeller.collection;
+
+import java.util.List;
+
+import org.jpropeller.bean.Bean;
+import org.jpropeller.name.PropName;
+import org.jpropeller.properties.change.Changeable;
+
+/**
+ * A {@link CListIndex} is a secondary index on the {@link Bean}s
+ * contained in a {@link CList}, mapping the value of one named
+ * {@link org.jpropeller.properties.Prop} of each {@link Bean}
+ * to the {@link Bean}s having that value.
+ * <p/>
+ * The index is kept up to date as the {@link CList} changes,
+ * and as the indexed {@link org.jpropeller.properties.Prop}
+ * of each element changes, so that lookups do not need to scan
+ * the list.
+ * <p/>
+ * The {@link CListIndex} is itself {@link Changeable}, and will
+ * propagate a {@link org.jpropeller.properties.change.Change}
+ * whenever the results of lookups may have changed.
+ *
+ * @param <K>		The type of key - the value of the indexed {@link org.jpropeller.properties.Prop}
+ * @param <E>		The type of element in the {@link CList}
+ */
+public interface CListIndex<K, E extends Bean> extends Changeable {
+
+	/**
+	 * Find all elements of the {@link CList} whose indexed
+	 * {@link org.jpropeller.properties.Prop} has a value
+	 * equal to the given key.
+	 * Each element appears at most once in the result, even if it
+	 * appears more than once in the {@link CList}, and elements
+	 * are not guaranteed to be in {@link CList} order.
+	 * @param key		The key value to look up
+	 * @return			Immutable list of elements with the key
+	 * 					value, empty if there are none.
+	 */
+	public List<E> lookup(K key);
+
+	/**
+	 * Find an element of the {@link CList} whose indexed
+	 * {@link org.jpropeller.properties.Prop} has a value
+	 * equal to the given key. This is useful where the
+	 * key is expected to be unique.
+	 * @param key		The key value to look up
+	 * @return			An element with the key value, or
+	 * 					null if there is none
+	 */
+	public E lookupFirst(K key);
+
+	/**
+	 * Check whether an element is contained in the {@link CList},
+	 * compared by identity. This does not need to scan the list.
+	 * @param element	The element to check for
+	 * @return			True if the element is in the {@link CList}
+	 */
+	public boolean containsInstance(Object element);
+
+	/**
+	 * @return		The {@link CList} that is indexed
+	 */
+	public CList<E> getList();
+
+	/**
+	 * @return		The name of the {@link org.jpropeller.properties.Prop} of each
+	 * 				element that provides the key
+	 */
+	public PropName<K> getName();
+
+}
@@ -3,6 +3,7 @@ package org.jpropeller.collection;
 import java.util.Map;
 
 import org.jpropeller.properties.change.Change;
+import org.jpropeller.properties.change.ChangeSystem;
 import org.jpropeller.properties.change.Changeable;
 import org.jpropeller.properties.change.MapChange;
 
@@ -61,4 +62,20 @@ public interface CMap<K, V> extends Changeable, Map<K, V> {
 	 * 		The new contents
 	 */
 	public void replace(Map<? extends K, ? extends V> newContents);
+	
+	/**
+	 * Get an immutable snapshot of the current mappings.
+	 * <p/>
+	 * The snapshot is a plain (non-{@link Changeable}) {@link Map} 
+	 * that will never change, and can be read from any thread without 
+	 * acquiring the {@link ChangeSystem} lock, and without blocking 
+	 * any changes to this {@link CMap}.
+	 * <p/>
+	 * Snapshots are shared - calling this method repeatedly without any
+	 * intervening changes to the mappings will return the same instance,
+	 * so the cost of producing a snapshot is paid at most once per 
+	 * change, however many readers take snapshots. 
+	 * @return		Immutable snapshot of mappings
+	 */
+	public Map<K, V> snapshot();
 }
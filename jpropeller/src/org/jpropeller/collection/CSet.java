@@ -36,4 +36,11 @@ import org.jpropeller.properties.change.SetChange;
  */
 public interface CSet<E> extends Changeable, Set<E>, CCollection<E> {
 	
+	/**
+	 * Get an immutable snapshot of the current contents, 
+	 * see {@link CCollection#snapshot()}
+	 * @return		Immutable snapshot of contents
+	 */
+	public Set<E> snapshot();
+	
 }
\ No newline at end of file
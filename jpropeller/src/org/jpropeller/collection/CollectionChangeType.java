@@ -45,5 +45,28 @@ public enum CollectionChangeType {
 	 * and indices are set sensibly, but the CLEAR type alone gives all required 
 	 * information
 	 */
-	CLEAR
+	CLEAR,
+	
+	/**
+	 * Type constant for a change where zero or more elements are deleted
+	 * from the start of the list, and zero or more elements are appended
+	 * to the end of the list, as for a fixed capacity buffer. The number 
+	 * of elements deleted and appended are given by 
+	 * {@link ListDelta#getHeadDeletionSize()} and 
+	 * {@link ListDelta#getTailInsertionSize()}. Since all remaining
+	 * elements may have moved, the firstChangedIndex is 0 and the 
+	 * lastChangedIndex is the last index of the larger of the old and 
+	 * new lists.
+	 */
+	ROLL,
+	
+	/**
+	 * Type constant for a change where the elements from firstChangedIndex
+	 * to lastChangedIndex inclusive are reordered, for example by moving 
+	 * or sorting elements. No elements are inserted, deleted or replaced,
+	 * so the list remains the same length and contains the same instances.
+	 * The new index of each element is given by 
+	 * {@link ListDelta#getPermutedIndex(int)}.
+	 */
+	PERMUTATION
 }
\ No newline at end of file
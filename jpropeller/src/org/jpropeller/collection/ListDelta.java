@@ -97,4 +97,38 @@ public interface ListDelta {
 	 */
 	public int getChangeSize();
 	
+	/**
+	 * @return For a ROLL change, the number of elements deleted 
+	 * from the start of the list. For all other types, 0. 
+	 */
+	public int getHeadDeletionSize();
+
+	/**
+	 * @return For a ROLL change, the number of elements appended
+	 * to the end of the list. For all other types, 0. 
+	 */
+	public int getTailInsertionSize();
+	
+	/**
+	 * For a PERMUTATION change, find where an element has moved to.
+	 * @param oldIndex	The index of an element before the change
+	 * @return For a PERMUTATION change, the index of the element after 
+	 * the change. For all other types, and for indices outside the 
+	 * changed range, oldIndex is returned.
+	 */
+	public int getPermutedIndex(int oldIndex);
+	
+	/**
+	 * Get the elements removed or replaced by the change, where
+	 * the list has recorded them. This allows the change to be 
+	 * reversed without keeping a copy of the whole list.
+	 * @return For a DELETION, the deleted elements. For an ALTERATION, 
+	 * the elements that were replaced, from the first to last changed index. 
+	 * For a CLEAR or COMPLETE change, the entire contents of the list 
+	 * before the change. For an INSERTION or PERMUTATION, an empty list.
+	 * In each case elements are in the order they were in the list.
+	 * May be null for any type, indicating that the elements are not known.
+	 */
+	public List<?> getOldElements();
+	
 }
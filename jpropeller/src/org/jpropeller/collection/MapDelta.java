@@ -56,4 +56,16 @@ public interface MapDelta {
 	 * mappings are affected, or if the single key for the change is not known
 	 */
 	public Object getKey();
+	
+	/**
+	 * Get the mappings removed or replaced by the change, where
+	 * the map has recorded them. This allows the change to be 
+	 * reversed without keeping a copy of the whole map.
+	 * @return For a DELETION or ALTERATION of a single key, a map
+	 * containing just the old mapping of that key. For an INSERTION,
+	 * an empty map. For a CLEAR or COMPLETE change, all mappings
+	 * before the change.
+	 * May be null for any type, indicating that the mappings are not known.
+	 */
+	public Map<?, ?> getOldMappings();
 }
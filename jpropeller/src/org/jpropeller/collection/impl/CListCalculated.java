@@ -22,16 +22,22 @@
  */
 package org.jpropeller.collection.impl;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.Set;
 
 import org.jpropeller.calculation.Calculation;
+import org.jpropeller.calculation.IncrementalCalculation;
 import org.jpropeller.collection.CList;
 import org.jpropeller.properties.calculated.impl.CalculatedProp;
+import org.jpropeller.properties.calculated.impl.CalculationProfiler;
+import org.jpropeller.properties.calculated.impl.IncrementalCalculator;
 import org.jpropeller.properties.change.Change;
 import org.jpropeller.properties.change.ChangeSystem;
 import org.jpropeller.properties.change.Changeable;
@@ -51,6 +57,8 @@ import org.jpropeller.system.Props;
  * is required due to the sources of the calculation changing, 
  * and that calculation is performed lazily, and cached - this
  * behaviour is similar to that for {@link CalculatedProp}.
+ * If the {@link Calculation} is an {@link IncrementalCalculation}, the 
+ * list is updated from the previous result where possible.
  * 
  * Note that the {@link CListCalculated} will NOT propagate changes
  * to the contents of previously calculated lists - it is assumed
@@ -67,11 +75,14 @@ public class CListCalculated<E> implements CList<E> {
 	private ChangeableFeatures features;
 
 	private Calculation<List<E>> calculation;
+	private IncrementalCalculator<List<E>> calculator;
 
 	//The current calculation list result we delegate 
 	//to for actual storage, etc., or null if no value
 	private List<E> core;	
 	private boolean cacheValid = false;
+	
+	private final CalculationProfiler.Probe probe = CalculationProfiler.probe(this);
 
 	@Override
 	public ChangeableFeatures features() {
@@ -88,12 +99,19 @@ public class CListCalculated<E> implements CList<E> {
 		super();
 		
 		this.calculation = calculation;
+		calculator = new IncrementalCalculator<List<E>>(calculation);
 		
 		features = new ChangeableFeaturesDefault(new InternalChangeImplementation() {
 			@Override
 			public Change internalChange(Changeable changed, Change change,
 					List<Changeable> initial, Map<Changeable, Change> changes) {
 				
+				calculator.sourceChanged(changed, change);
+				
+				if (cacheValid) {
+					probe.invalidated(initial);
+				}
+				
 				//Mark the cache as invalid - it will need to be recalculated
 				cacheValid = false;
 
@@ -134,7 +152,9 @@ public class CListCalculated<E> implements CList<E> {
 		
 		if (!cacheValid) {
 
-			List<E> newCore = calculation.calculate();
+			long start = probe.start();
+			List<E> newCore = calculator.calculate();
+			probe.calculated(start);
 			
 			//Null values are not acceptable - throw exception sooner rather than later
 			if (newCore == null) {
@@ -285,6 +305,28 @@ public class CListCalculated<E> implements CList<E> {
 		}
 	}
 	
+	@Override
+	public List<E> snapshot() {
+		try {
+			start();
+			//Calculation results are never modified, and a new result
+			//replaces core rather than altering it, so core is already 
+			//a valid snapshot
+			return core;
+		} finally {
+			end();
+		}
+	}
+	
+	/**
+	 * Get the {@link Changeable}s this list is calculated from
+	 * @return		The sources
+	 */
+	public Set<? extends Changeable> getSources() {
+		//Sources of the calculation never change, so no need to lock
+		return calculation.getSources();
+	}
+	
 	//Unsupported operations
 	private void throwUnsupported(String operation) {
 		throw new UnsupportedOperationException("Can't " + operation + " " + CListCalculated.class.getName());		
@@ -314,5 +356,17 @@ public class CListCalculated<E> implements CList<E> {
 	public boolean retainAll(Collection<?> c) {throwUnsupported("alter (by retainAll)");return false;}
 	@Override
 	public E set(int index, E element) {throwUnsupported("set elements of");return null;}
+	@Override
+	public void move(int from, int to) {throwUnsupported("move elements of");}
+	@Override
+	public void moveAll(int[] indices, int to) {throwUnsupported("move elements of");}
+	@Override
+	public void sort(Comparator<? super E> comparator) {throwUnsupported("sort");}
+	@Override
+	public void permute(int[] permutation) {throwUnsupported("permute");}
+	@Override
+	public List<E> removeIndices(int[] indices) {throwUnsupported("remove from");return null;}
+	@Override
+	public List<E> removeIndices(BitSet indices) {throwUnsupported("remove from");return null;}
 	
 }
@@ -23,12 +23,15 @@
 package org.jpropeller.collection.impl;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.RandomAccess;
 import java.util.concurrent.Callable;
 
 import org.jpropeller.collection.CList;
@@ -65,6 +68,10 @@ public class CListDefault<E> implements CList<E> {
 	//The List we delegate to for actual storage, etc.
 	private final List<E> core;	
 	
+	//Immutable copy of core, shared by all callers of snapshot() until
+	//the next change to core, or null if not yet made for current contents
+	private List<E> snapshot = null;
+	
 	/**
 	 * Create a new {@link CListDefault} based on a new {@link ArrayList}
 	 */
@@ -207,6 +214,7 @@ public class CListDefault<E> implements CList<E> {
 	 */
 	private boolean trackAroundListChange(Callable<Boolean> action) {
 		int oldSize = -1;
+		List<E> oldContents = null;
 		
 		//First prepare for change
 		Props.getPropSystem().getChangeSystem().prepareChange(this);
@@ -218,6 +226,9 @@ public class CListDefault<E> implements CList<E> {
 			
 			oldSize = size();
 			
+			//Record old contents, so that the change can be reversed
+			oldContents = new ArrayList<E>(core);
+			
 			//To start with, clear all references, and stop listening to all contents.
 			//The list action is assumed to be a major enough operation that we don't 
 			//try to track it in detail
@@ -234,9 +245,15 @@ public class CListDefault<E> implements CList<E> {
 			//Reinstate tracking on all elements
 			retrackAll();
 			
+			//Any snapshot no longer reflects our contents
+			snapshot = null;
+
 			//Start a list change
 			//showing we changed everything
-			ListDelta listChange = ListDeltaDefault.newCompleteChange(this, oldSize);
+			ListDeltaDefault listChange = ListDeltaDefault.newCompleteChange(this, oldSize);
+			if (oldContents != null) {
+				listChange = listChange.withOldElements(oldContents);
+			}
 			Props.getPropSystem().getChangeSystem().propagateChange(this, new ListChangeDefault(
 					true,	//Initial change 
 					false, 	//Different instances
@@ -273,6 +290,9 @@ public class CListDefault<E> implements CList<E> {
 	
 			tracking.startTrackingElement(e);
 			
+			//Any snapshot no longer reflects our contents
+			snapshot = null;
+
 			//Start a list change
 			//showing we added an element to the end of the list
 			ListDelta listChange = ListDeltaDefault.newAddChange(this);
@@ -301,6 +321,9 @@ public class CListDefault<E> implements CList<E> {
 			
 			tracking.startTrackingElement(e);
 			
+			//Any snapshot no longer reflects our contents
+			snapshot = null;
+
 			//Start a list change
 			//showing we inserted an element
 			ListDelta listChange = ListDeltaDefault.newAddChange(this, index);
@@ -315,40 +338,76 @@ public class CListDefault<E> implements CList<E> {
 		}
 	}
 
-	public boolean addAll(final Collection<? extends E> c) {
+	public boolean addAll(Collection<? extends E> c) {
 
-		//TODO we could fire a more succinct change, since we know
-		//that the change is just adding however many new elements
-		//appear at the end of the list
-		//Make a callable that will do the addAll
-		Callable<Boolean> action = new Callable<Boolean>() {
-			@Override
-			public Boolean call() throws Exception {
-				return core.addAll(c);
-			}
-		};
-		
-		//Perform the action with tracking
-		return trackAroundListChange(action);
+		Props.getPropSystem().getChangeSystem().prepareChange(this);
 		
+		try {
+			//Copy the elements first, so we add exactly what we track,
+			//even if c is this list
+			List<E> added = new ArrayList<E>(c);
+			
+			//Try to add to core - if we get a runtime exception the 
+			//elements are not added, so nothing to do
+			if (!core.addAll(added)) return false;
+			
+			for (E e : added) {
+				tracking.startTrackingElement(e);
+			}
+			
+			//Any snapshot no longer reflects our contents
+			snapshot = null;
+
+			//Start a list change
+			//showing we added elements to the end of the list
+			ListDelta listChange = ListDeltaDefault.newAddChange(this, added);
+			Props.getPropSystem().getChangeSystem().propagateChange(this, new ListChangeDefault(
+					true,	//Initial change 
+					false, 	//Different instances
+					listChange));
+			
+			return true;
+			
+		//Always conclude
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeChange(this);
+		}
 	}
 	
-	public boolean addAll(final int index, final Collection<? extends E> c) {
+	public boolean addAll(int index, Collection<? extends E> c) {
 
-		//TODO we could fire a more succinct change, since we know
-		//that the change is just adding however many new elements
-		//appear to the insertion point
-		//Make a callable that will do the addAll
-		Callable<Boolean> action = new Callable<Boolean>() {
-			@Override
-			public Boolean call() throws Exception {
-				return core.addAll(index, c);
-			}
-		};
-		
-		//Perform the action with tracking
-		return trackAroundListChange(action);
+		Props.getPropSystem().getChangeSystem().prepareChange(this);
 		
+		try {
+			//Copy the elements first, so we add exactly what we track,
+			//even if c is this list
+			List<E> added = new ArrayList<E>(c);
+			
+			//Try to add to core - if we get a runtime exception the 
+			//elements are not added, so nothing to do
+			if (!core.addAll(index, added)) return false;
+			
+			for (E e : added) {
+				tracking.startTrackingElement(e);
+			}
+			
+			//Any snapshot no longer reflects our contents
+			snapshot = null;
+
+			//Start a list change
+			//showing we inserted elements
+			ListDelta listChange = ListDeltaDefault.newAddChange(this, index, added);
+			Props.getPropSystem().getChangeSystem().propagateChange(this, new ListChangeDefault(
+					true,	//Initial change 
+					false, 	//Different instances
+					listChange));
+			
+			return true;
+			
+		//Always conclude
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeChange(this);
+		}
 	}
 	
 	public void clear() {
@@ -388,6 +447,20 @@ public class CListDefault<E> implements CList<E> {
 		trackAroundListChange(action);
 	}
 
+	@Override
+	public List<E> snapshot() {
+		Props.getPropSystem().getChangeSystem().prepareRead(this);
+		try {
+			//Copy on first snapshot after a change, then share the copy
+			//until the next change. 
+			if (snapshot == null) {
+				snapshot = Collections.unmodifiableList(new ArrayList<E>(core));
+			}
+			return snapshot;
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeRead(this);
+		}
+	}
 	
 	public E remove(int index) {
 
@@ -400,9 +473,13 @@ public class CListDefault<E> implements CList<E> {
 			
 			tracking.stopTrackingElement(removed);
 			
+			//Any snapshot no longer reflects our contents
+			snapshot = null;
+
 			//Start a list change
 			//showing the removal
-			ListDelta listChange = ListDeltaDefault.newRemoveChange(this, index);
+			ListDelta listChange = ListDeltaDefault.newRemoveChange(this, index)
+					.withOldElements(Collections.singletonList(removed));
 			Props.getPropSystem().getChangeSystem().propagateChange(this, new ListChangeDefault(
 					true,	//Initial change 
 					false, 	//Different instances
@@ -417,25 +494,27 @@ public class CListDefault<E> implements CList<E> {
 	}
 
 	public boolean remove(Object o) {
-		int oldSize = -1;
 		
 		Props.getPropSystem().getChangeSystem().prepareChange(this);
 		try {
 			
-			oldSize = core.size();
+			//Find the first matching element - if there is none, nothing to do
+			int index = core.indexOf(o);
+			if (index < 0) return false;
 			
 			//Try to remove from core - if we get a runtime exception the 
 			//element is not removed, so nothing to do
-			boolean success = core.remove(o);
-			
-			//If we didn't actually remove the element, nothing to do
-			if (!success) return false;
+			E removed = core.remove(index);
 	
-			tracking.stopTrackingElement(o);
+			tracking.stopTrackingElement(removed);
 			
+			//Any snapshot no longer reflects our contents
+			snapshot = null;
+
 			//Start a list change
-			//showing a complete list change
-			ListDelta listChange = ListDeltaDefault.newCompleteChange(this, oldSize);
+			//showing the removal
+			ListDelta listChange = ListDeltaDefault.newRemoveChange(this, index)
+					.withOldElements(Collections.singletonList(removed));
 			Props.getPropSystem().getChangeSystem().propagateChange(this, new ListChangeDefault(
 					true,	//Initial change 
 					false, 	//Different instances
@@ -489,9 +568,13 @@ public class CListDefault<E> implements CList<E> {
 	
 			tracking.startTrackingElement(element);
 	
+			//Any snapshot no longer reflects our contents
+			snapshot = null;
+
 			//Start a list change
 			//showing the set
-			ListDelta listChange = ListDeltaDefault.newSingleElementAlteration(this, index);
+			ListDelta listChange = ListDeltaDefault.newSingleElementAlteration(this, index)
+					.withOldElements(Collections.singletonList(oldValue));
 			Props.getPropSystem().getChangeSystem().propagateChange(this, new ListChangeDefault(
 					true,	//Initial change 
 					false, 	//Different instances
@@ -506,6 +589,173 @@ public class CListDefault<E> implements CList<E> {
 		
 	}
 
+	public void move(int from, int to) {
+		
+		Props.getPropSystem().getChangeSystem().prepareChange(this);
+		
+		try {
+			if (from < 0 || from >= core.size()) throw new IndexOutOfBoundsException("Index: " + from + ", Size: " + core.size());
+			if (to < 0 || to >= core.size()) throw new IndexOutOfBoundsException("Index: " + to + ", Size: " + core.size());
+			
+			//Nothing to do
+			if (from == to) return;
+			
+			//Rotate the range between from and to by one place. Note
+			//that contents are the same, so tracking is unaffected.
+			if (from < to) {
+				Collections.rotate(core.subList(from, to + 1), -1);
+			} else {
+				Collections.rotate(core.subList(to, from + 1), 1);
+			}
+			
+			//Any snapshot no longer reflects our contents
+			snapshot = null;
+
+			//Start a list change
+			//showing the move
+			ListDelta listChange = ListDeltaDefault.newMoveChange(this, from, to);
+			Props.getPropSystem().getChangeSystem().propagateChange(this, new ListChangeDefault(
+					true,	//Initial change 
+					false, 	//Different instances
+					listChange));
+			
+		//Always conclude change
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeChange(this);
+		}
+	}
+	
+	public void moveAll(int[] indices, int to) {
+		Props.getPropSystem().getChangeSystem().prepareChange(this);
+		try {
+			applyPermutation(ListPermutations.moveAll(core.size(), indices, to));
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeChange(this);
+		}
+	}
+	
+	public void sort(Comparator<? super E> comparator) {
+		Props.getPropSystem().getChangeSystem().prepareChange(this);
+		try {
+			applyPermutation(ListPermutations.sort(core, comparator));
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeChange(this);
+		}
+	}
+
+	public void permute(int[] permutation) {
+		Props.getPropSystem().getChangeSystem().prepareChange(this);
+		try {
+			ListPermutations.check(permutation, core.size());
+			applyPermutation(permutation);
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeChange(this);
+		}
+	}
+
+	/**
+	 * Reorder the list according to a permutation, and propagate
+	 * the change. Must be called with change prepared.
+	 * @param permutation	The permutation, see {@link ListPermutations}
+	 */
+	private void applyPermutation(int[] permutation) {
+
+		//Nothing to do if nothing moves
+		int first = ListPermutations.firstMoved(permutation);
+		if (first < 0) return;
+		int last = ListPermutations.lastMoved(permutation);
+
+		//Reorder the moved range. Note that contents are the
+		//same, so tracking is unaffected.
+		List<E> range = core.subList(first, last + 1);
+		Object[] permuted = ListPermutations.apply(range.toArray(), first, permutation);
+		ListIterator<E> it = range.listIterator();
+		for (Object e : permuted) {
+			it.next();
+			@SuppressWarnings("unchecked")
+			E element = (E) e;
+			it.set(element);
+		}
+
+		//Any snapshot no longer reflects our contents
+		snapshot = null;
+
+		//Start a list change
+		//showing the permutation
+		ListDelta listChange = ListDeltaDefault.newPermutationChange(this, permutation);
+		Props.getPropSystem().getChangeSystem().propagateChange(this, new ListChangeDefault(
+				true,	//Initial change 
+				false, 	//Different instances
+				listChange));
+	}
+	
+	public List<E> removeIndices(int[] indices) {
+		return removeIndices(ListIndices.toBitSet(indices));
+	}
+	
+	public List<E> removeIndices(BitSet indices) {
+		
+		Props.getPropSystem().getChangeSystem().prepareChange(this);
+		
+		try {
+			int oldSize = core.size();
+			ListIndices.check(indices, oldSize);
+			
+			//Nothing to do
+			if (indices.isEmpty()) return new ArrayList<E>();
+			
+			List<E> removed = new ArrayList<E>(indices.cardinality());
+			
+			//For random access lists, compact the list in one pass by moving
+			//retained elements back over removed ones, then remove the tail
+			if (core instanceof RandomAccess) {
+				int write = indices.nextSetBit(0);
+				for (int read = write; read < oldSize; read++) {
+					E e = core.get(read);
+					if (indices.get(read)) {
+						removed.add(e);
+					} else {
+						core.set(write, e);
+						write++;
+					}
+				}
+				core.subList(write, oldSize).clear();
+				
+			//For other lists, removal through an iterator is efficient
+			} else {
+				ListIterator<E> it = core.listIterator(indices.nextSetBit(0));
+				while (it.hasNext()) {
+					int index = it.nextIndex() + removed.size();
+					E e = it.next();
+					if (indices.get(index)) {
+						removed.add(e);
+						it.remove();
+					}
+				}
+			}
+			
+			for (E e : removed) {
+				tracking.stopTrackingElement(e);
+			}
+			
+			//Any snapshot no longer reflects our contents
+			snapshot = null;
+
+			//Start a list change
+			//showing the removal of each run of indices
+			Props.getPropSystem().getChangeSystem().propagateChange(this, new ListChangeDefault(
+					true,	//Initial change 
+					false, 	//Different instances
+					ListDeltaDefault.newRemoveChanges(indices, oldSize, new ArrayList<E>(removed))));
+			
+			return removed;
+			
+		//Always conclude change
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeChange(this);
+		}
+	}
+	
 	//#####################################################################
 	//
 	//	The following methods are complex. They need to be delegated to
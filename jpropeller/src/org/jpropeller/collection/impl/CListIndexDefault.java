@@ -0,0 +1,426 @@
+/*
+ *  Copyright (c) 2008 shingoki
+ *
+ *  This file is part of jpropeller, see http://jpropeller.sourceforge.net
+ *
+ *    jpropeller is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    jpropeller is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with jpropeller; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package org.jpropeller.collection.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jpropeller.bean.Bean;
+import org.jpropeller.collection.CList;
+import org.jpropeller.collection.CListIndex;
+import org.jpropeller.collection.ListDelta;
+import org.jpropeller.name.PropName;
+import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.change.Change;
+import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.properties.change.ChangeableFeatures;
+import org.jpropeller.properties.change.ListChange;
+import org.jpropeller.properties.change.impl.ChangeDefault;
+import org.jpropeller.properties.change.impl.ChangeableFeaturesDefault;
+import org.jpropeller.properties.change.impl.InternalChangeImplementation;
+import org.jpropeller.system.Props;
+
+/**
+ * Default implementation of {@link CListIndex}.
+ * <p/>
+ * Structural changes to the {@link CList} are applied
+ * to the index as they are propagated, using the {@link ListDelta}s
+ * of each {@link ListChange}, so that only inserted, deleted or
+ * altered elements are visited. A COMPLETE change (or any
+ * change that cannot be followed) causes the index to be rebuilt
+ * when next read.
+ * <p/>
+ * Key values are only read lazily, when the index is next read -
+ * elements that have been added, or whose indexed {@link Prop} has
+ * changed, are just noted as needing to be (re)indexed. This avoids
+ * reading {@link Prop}s during change propagation, and means that
+ * many changes between reads cost only one read per changed element.
+ *
+ * @param <K>		The type of key - the value of the indexed {@link Prop}
+ * @param <E>		The type of element in the {@link CList}
+ */
+public class CListIndexDefault<K, E extends Bean> implements CListIndex<K, E> {
+
+	private final ChangeableFeatures features;
+
+	private final CList<E> list;
+	private final PropName<K> name;
+
+	//Mirror of the list contents, as at the last change we processed
+	private final List<E> shadow = new ArrayList<E>();
+
+	//State of each distinct element of the list
+	private final Map<E, Entry<K>> entries = new IdentityHashMap<E, Entry<K>>();
+
+	//The element owning each indexed prop we are listening to
+	private final Map<Changeable, E> propOwners = new IdentityHashMap<Changeable, E>();
+
+	//Elements needing to be (re)indexed when next read
+	private final IdentityHashSet<E> dirty = new IdentityHashSet<E>();
+
+	//The index itself - each element list is immutable, and replaced when altered
+	private final Map<K, List<E>> index = new HashMap<K, List<E>>();
+
+	//True if we need to rebuild from scratch when next read
+	private boolean rebuild = true;
+
+	/**
+	 * Create a {@link CListIndexDefault}
+	 * @param list		The {@link CList} to index
+	 * @param name		The name of the {@link Prop} of each element
+	 * 					that will give the key to index by
+	 */
+	public CListIndexDefault(CList<E> list, PropName<K> name) {
+		this.list = list;
+		this.name = name;
+
+		features = new ChangeableFeaturesDefault(new InternalChangeImplementation() {
+			@Override
+			public Change internalChange(Changeable changed, Change change,
+					List<Changeable> initial, Map<Changeable, Change> changes) {
+				return handleInternalChange(changed, change);
+			}
+		}, this);
+
+		list.features().addChangeableListener(this);
+	}
+
+	/**
+	 * Create a {@link CListIndexDefault}
+	 * @param <K>		The type of key - the value of the indexed {@link Prop}
+	 * @param <E>		The type of element in the {@link CList}
+	 * @param list		The {@link CList} to index
+	 * @param name		The name of the {@link Prop} of each element
+	 * 					that will give the key to index by
+	 * @return			A new {@link CListIndexDefault}
+	 */
+	public static <K, E extends Bean> CListIndexDefault<K, E> create(CList<E> list, PropName<K> name) {
+		return new CListIndexDefault<K, E>(list, name);
+	}
+
+	private Change handleInternalChange(Changeable changed, Change change) {
+
+		//Change from list
+		if (changed == list) {
+
+			//Deep changes to elements are handled by listening directly
+			//to indexed props, so we can ignore them here
+			if (change.sameInstances()) {
+				return null;
+			}
+
+			//If we are already rebuilding, nothing to do. Otherwise
+			//try to follow the change, and rebuild if we can't
+			if (!rebuild) {
+				if (change instanceof ListChange) {
+					for (ListDelta delta : ((ListChange) change).getListDeltas()) {
+						if (!applyDelta(delta)) {
+							rebuild = true;
+							break;
+						}
+					}
+				} else {
+					rebuild = true;
+				}
+			}
+			return ChangeDefault.instance(false, false);
+
+		//Change from an indexed prop - the owning element needs reindexing
+		} else {
+			E owner = propOwners.get(changed);
+			if (owner == null) {
+				return null;
+			}
+			dirty.add(owner);
+			return ChangeDefault.instance(false, false);
+		}
+	}
+
+	/**
+	 * Apply a delta to the shadow and entries
+	 * @param delta		The delta
+	 * @return			True if delta was applied, false if it
+	 * 					could not be followed, and a rebuild is needed
+	 */
+	private boolean applyDelta(ListDelta delta) {
+
+		//We can only follow changes from the state we know
+		if (delta.getOldSize() != shadow.size()) {
+			return false;
+		}
+
+		int first = delta.getFirstChangedIndex();
+
+		switch (delta.getType()) {
+		case INSERTION:
+			int inserted = delta.getChangeSize();
+			for (int i = first; i < first + inserted; i++) {
+				E e = list.get(i);
+				shadow.add(i, e);
+				addElement(e);
+			}
+			return true;
+
+		case DELETION:
+			List<E> deleted = shadow.subList(first, first - delta.getChangeSize());
+			for (E e : deleted) {
+				removeElement(e);
+			}
+			deleted.clear();
+			return true;
+
+		case ALTERATION:
+			for (int i = first; i <= delta.getLastChangedIndex(); i++) {
+				E oldE = shadow.get(i);
+				E newE = list.get(i);
+				if (oldE != newE) {
+					removeElement(oldE);
+					addElement(newE);
+					shadow.set(i, newE);
+				}
+			}
+			return true;
+
+		case CLEAR:
+			clear();
+			return true;
+
+		case ROLL:
+			List<E> head = shadow.subList(0, delta.getHeadDeletionSize());
+			for (E e : head) {
+				removeElement(e);
+			}
+			head.clear();
+			for (int i = shadow.size(); i < delta.getNewSize(); i++) {
+				E e = list.get(i);
+				shadow.add(e);
+				addElement(e);
+			}
+			return true;
+
+		case PERMUTATION:
+			//Same elements, so we just need to reorder the shadow
+			List<E> range = shadow.subList(first, delta.getLastChangedIndex() + 1);
+			List<E> permuted = new ArrayList<E>(range);
+			for (int i = 0; i < range.size(); i++) {
+				permuted.set(delta.getPermutedIndex(first + i) - first, range.get(i));
+			}
+			for (int i = 0; i < range.size(); i++) {
+				range.set(i, permuted.get(i));
+			}
+			return true;
+
+		default:
+			return false;
+		}
+	}
+
+	private void addElement(E e) {
+		if (e == null) return;
+
+		Entry<K> entry = entries.get(e);
+		if (entry == null) {
+			entry = new Entry<K>();
+			entries.put(e, entry);
+			dirty.add(e);
+		}
+		entry.count++;
+	}
+
+	private void removeElement(E e) {
+		if (e == null) return;
+
+		Entry<K> entry = entries.get(e);
+		if (entry == null) return;
+
+		//When last reference is gone, remove entirely
+		entry.count--;
+		if (entry.count == 0) {
+			entries.remove(e);
+			dirty.remove(e);
+			if (entry.prop != null) {
+				unindex(e, entry.key);
+				propOwners.remove(entry.prop);
+				entry.prop.features().removeChangeableListener(this);
+			}
+		}
+	}
+
+	private void clear() {
+		for (Entry<K> entry : entries.values()) {
+			if (entry.prop != null) {
+				entry.prop.features().removeChangeableListener(this);
+			}
+		}
+		entries.clear();
+		propOwners.clear();
+		dirty.clear();
+		index.clear();
+		shadow.clear();
+	}
+
+	private void unindex(E e, K key) {
+		List<E> elements = index.get(key);
+		if (elements == null) return;
+
+		if (elements.size() == 1) {
+			index.remove(key);
+		} else {
+			List<E> newElements = new ArrayList<E>(elements.size() - 1);
+			for (E existing : elements) {
+				if (existing != e) {
+					newElements.add(existing);
+				}
+			}
+			index.put(key, Collections.unmodifiableList(newElements));
+		}
+	}
+
+	private void index(E e, K key) {
+		List<E> elements = index.get(key);
+		if (elements == null) {
+			index.put(key, Collections.singletonList(e));
+		} else {
+			List<E> newElements = new ArrayList<E>(elements.size() + 1);
+			newElements.addAll(elements);
+			newElements.add(e);
+			index.put(key, Collections.unmodifiableList(newElements));
+		}
+	}
+
+	/**
+	 * Bring the index up to date - must be called
+	 * while the read lock is held.
+	 */
+	private void update() {
+
+		//Rebuild from scratch if needed
+		if (rebuild) {
+			clear();
+			shadow.addAll(list);
+			for (E e : shadow) {
+				addElement(e);
+			}
+			rebuild = false;
+		}
+
+		//(Re)index any dirty elements
+		for (E e : dirty) {
+			Entry<K> entry = entries.get(e);
+
+			//Remove from old key, or start listening to
+			//prop if this is the first time we index it
+			if (entry.prop != null) {
+				unindex(e, entry.key);
+			} else {
+				entry.prop = e.features().get(name);
+				if (entry.prop == null) {
+					throw new IllegalArgumentException("Element '" + e + "' has no prop named '" + name + "'");
+				}
+				propOwners.put(entry.prop, e);
+				entry.prop.features().addChangeableListener(this);
+			}
+
+			entry.key = entry.prop.get();
+			index(e, entry.key);
+		}
+		dirty.clear();
+	}
+
+	@Override
+	public List<E> lookup(K key) {
+		Props.getPropSystem().getChangeSystem().prepareRead(this);
+		try {
+			update();
+			List<E> elements = index.get(key);
+			if (elements == null) {
+				return Collections.emptyList();
+			}
+			return elements;
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeRead(this);
+		}
+	}
+
+	@Override
+	public E lookupFirst(K key) {
+		Props.getPropSystem().getChangeSystem().prepareRead(this);
+		try {
+			update();
+			List<E> elements = index.get(key);
+			if (elements == null) {
+				return null;
+			}
+			return elements.get(0);
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeRead(this);
+		}
+	}
+
+	@Override
+	public boolean containsInstance(Object element) {
+		Props.getPropSystem().getChangeSystem().prepareRead(this);
+		try {
+			//Entries are always current unless we need a rebuild,
+			//so we don't need a full update
+			if (rebuild) {
+				update();
+			}
+			return entries.containsKey(element);
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeRead(this);
+		}
+	}
+
+	@Override
+	public CList<E> getList() {
+		return list;
+	}
+
+	@Override
+	public PropName<K> getName() {
+		return name;
+	}
+
+	@Override
+	public ChangeableFeatures features() {
+		return features;
+	}
+
+	@Override
+	public String toString() {
+		return "Index on '" + name.getString() + "' of " + list;
+	}
+
+	//Details of a distinct element in the list
+	private static class Entry<K> {
+		//Number of times element appears in list
+		int count = 0;
+		//The indexed prop, or null if not yet indexed
+		Prop<K> prop = null;
+		//The key element is indexed under
+		K key = null;
+	}
+}
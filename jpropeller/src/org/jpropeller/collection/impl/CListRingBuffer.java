@@ -0,0 +1,767 @@
+/*
+ *  Copyright (c) 2008 shingoki
+ *
+ *  This file is part of jpropeller, see http://jpropeller.sourceforge.net
+ *
+ *    jpropeller is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    jpropeller is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with jpropeller; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package org.jpropeller.collection.impl;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.jpropeller.collection.CList;
+import org.jpropeller.collection.CollectionChangeType;
+import org.jpropeller.collection.ListDelta;
+import org.jpropeller.properties.change.Change;
+import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.properties.change.ChangeableFeatures;
+import org.jpropeller.properties.change.impl.ChangeableFeaturesDefault;
+import org.jpropeller.properties.change.impl.InternalChangeImplementation;
+import org.jpropeller.properties.change.impl.ListChangeDefault;
+import org.jpropeller.system.Props;
+
+/**
+ * A {@link CList} with a fixed capacity, storing elements in a
+ * ring buffer. When elements are added to the end of a full list,
+ * the oldest elements at the start of the list are deleted to make
+ * room, in constant time per element.
+ * <p/>
+ * Adding to the end of the list propagates a single
+ * {@link CollectionChangeType#ROLL} {@link ListDelta} giving the number
+ * of elements deleted from the start and appended to the end, and
+ * consecutive ROLL deltas in one change are merged, so a list that is
+ * appended to many times still gives one compact delta.
+ * Removing from the start of the list is also constant time.
+ * <p/>
+ * Other changes are supported, but insertions and deletions away from
+ * the start/end of the list require elements to be shifted, as for
+ * an {@link ArrayList}.
+ *
+ * @param <E>		The type of element in the list
+ */
+public class CListRingBuffer<E> extends AbstractList<E> implements CList<E> {
+
+	//Reference counter for elements in list
+	private final ContentsTracking<E> tracking;
+
+	//Standard code block for a bean
+	private final ChangeableFeatures features;
+
+	@Override
+	public ChangeableFeatures features() {
+		return features;
+	}
+
+	//Ring buffer storage - element i of the list is at buffer[(head + i) % capacity]
+	private final Object[] buffer;
+	private int head = 0;
+	private int size = 0;
+
+	//Immutable copy of contents, shared by all callers of snapshot() until
+	//the next change, or null if not yet made for current contents
+	private List<E> snapshot = null;
+
+	/**
+	 * Create a new, empty {@link CListRingBuffer}
+	 * @param capacity		The maximum number of elements in the list -
+	 * 						must be at least 1
+	 */
+	public CListRingBuffer(int capacity) {
+		super();
+
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be at least 1");
+		}
+
+		buffer = new Object[capacity];
+
+		features = new ChangeableFeaturesDefault(new InternalChangeImplementation() {
+			@Override
+			public Change internalChange(Changeable changed, Change change,
+					List<Changeable> initial, Map<Changeable, Change> changes) {
+				return handleInternalChange(changed, change, initial, changes);
+			}
+		}, this);
+
+		//This will help ensure we are always listening to our own contents
+		tracking = new ContentsTracking<E>(this);
+	}
+
+	/**
+	 * Make a new, empty {@link CListRingBuffer}
+	 * @param <T>			The type of list data
+	 * @param capacity		The maximum number of elements in the list -
+	 * 						must be at least 1
+	 * @return				A new {@link CListRingBuffer}
+	 */
+	public static <T> CListRingBuffer<T> create(int capacity) {
+		return new CListRingBuffer<T>(capacity);
+	}
+
+	private Change handleInternalChange(Changeable changed, Change change,
+			List<Changeable> initial, Map<Changeable, Change> changes) {
+
+		//Any element in list may have changed, but size of list has not changed
+		ListDelta listChange = ListDeltaDefault.newEntireListAlteration(this);
+
+		//Any propChange we receive is due to list contents changing
+		//in a deep way, so return a deep list change
+		return new ListChangeDefault(
+				false,	//Never an initial change - the change is caused by one of the beans we contain changing
+				true, 	//Always the same instances - the instances this list contains can only be changed
+						//by the methods of the List itself.
+				listChange);
+	}
+
+	/**
+	 * @return	The maximum number of elements in this list
+	 */
+	public int getCapacity() {
+		return buffer.length;
+	}
+
+	//#####################################################################
+	//
+	//	Ring buffer storage. These methods perform no locking, tracking
+	//	or change propagation.
+	//
+	//#####################################################################
+
+	@SuppressWarnings("unchecked")
+	private E element(int index) {
+		return (E) buffer[(head + index) % buffer.length];
+	}
+
+	private void setElement(int index, E e) {
+		buffer[(head + index) % buffer.length] = e;
+	}
+
+	private void checkIndex(int index, int limit) {
+		if (index < 0 || index >= limit) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	/**
+	 * Delete the head element, and stop tracking it
+	 */
+	private void deleteHead() {
+		tracking.stopTrackingElement(element(0));
+		buffer[head] = null;
+		head = (head + 1) % buffer.length;
+		size--;
+	}
+
+	/**
+	 * Append an element to the tail, and start tracking it.
+	 * There must be space in the buffer.
+	 */
+	private void appendTail(E e) {
+		size++;
+		setElement(size - 1, e);
+		tracking.startTrackingElement(e);
+	}
+
+	/**
+	 * Clear all contents, and stop tracking them
+	 */
+	private void clearContents() {
+		tracking.clearAllTracking();
+		for (int i = 0; i < size; i++) {
+			setElement(i, null);
+		}
+		head = 0;
+		size = 0;
+	}
+
+	/**
+	 * Prepare for a new change - must be called just before
+	 * propagating any change to the list
+	 */
+	private void contentsChanged() {
+		//Any snapshot no longer reflects our contents
+		snapshot = null;
+
+		//Fail-fast iterators from AbstractList
+		modCount++;
+	}
+
+	//#####################################################################
+	//
+	//	Changes
+	//
+	//#####################################################################
+
+	@Override
+	public boolean add(E e) {
+
+		Props.getPropSystem().getChangeSystem().prepareChange(this);
+
+		try {
+
+			//Make room if needed
+			int deleted = 0;
+			if (size == buffer.length) {
+				deleteHead();
+				deleted = 1;
+			}
+
+			appendTail(e);
+
+			contentsChanged();
+
+			//Start a list change
+			//showing we rolled the list
+			ListDelta listChange = ListDeltaDefault.newRollChange(this, deleted, 1);
+			Props.getPropSystem().getChangeSystem().propagateChange(this, new ListChangeDefault(
+					true,	//Initial change
+					false, 	//Different instances
+					listChange));
+
+			//Success
+			return true;
+
+		//Always conclude
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeChange(this);
+		}
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends E> c) {
+
+		if (c.isEmpty()) return false;
+
+		Props.getPropSystem().getChangeSystem().prepareChange(this);
+
+		try {
+			//Only the last capacity elements of c will remain, so skip any others
+			int skip = Math.max(0, c.size() - buffer.length);
+			int appended = c.size() - skip;
+
+			//Make room - note this never deletes more than the existing contents
+			int deleted = Math.max(0, size + appended - buffer.length);
+			for (int i = 0; i < deleted; i++) {
+				deleteHead();
+			}
+
+			for (E e : c) {
+				if (skip > 0) {
+					skip--;
+				} else {
+					appendTail(e);
+				}
+			}
+
+			contentsChanged();
+
+			//Start a list change
+			//showing we rolled the list
+			ListDelta listChange = ListDeltaDefault.newRollChange(this, deleted, appended);
+			Props.getPropSystem().getChangeSystem().propagateChange(this, new ListChangeDefault(
+					true,	//Initial change
+					false, 	//Different instances
+					listChange));
+
+			return true;
+
+		//Always conclude
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeChange(this);
+		}
+	}
+
+	@Override
+	public void add(int index, E e) {
+
+		Props.getPropSystem().getChangeSystem().prepareChange(this);
+
+		try {
+			checkIndex(index, size + 1);
+
+			//Adding at end is just a roll
+			if (index == size) {
+				add(e);
+				return;
+			}
+
+			List<ListDelta> deltas = new LinkedList<ListDelta>();
+
+			//If we are full, we need to delete the head element first. If we
+			//are inserting at the head, this leaves the list unaltered.
+			if (size == buffer.length) {
+				if (index == 0) {
+					return;
+				}
+				deleteHead();
+				index--;
+				deltas.add(ListDeltaDefault.newRemoveChange(this, 0));
+			}
+
+			//Shift later elements up to make room
+			size++;
+			for (int i = size - 1; i > index; i--) {
+				setElement(i, element(i - 1));
+			}
+			setElement(index, e);
+			tracking.startTrackingElement(e);
+
+			contentsChanged();
+
+			//Start a list change
+			//showing we inserted an element
+			deltas.add(ListDeltaDefault.newAddChange(this, index));
+			Props.getPropSystem().getChangeSystem().propagateChange(this, new ListChangeDefault(
+					true,	//Initial change
+					false, 	//Different instances
+					deltas));
+
+		//Make sure we always conclude change
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeChange(this);
+		}
+	}
+
+	@Override
+	public E remove(int index) {
+
+		Props.getPropSystem().getChangeSystem().prepareChange(this);
+
+		try {
+			checkIndex(index, size);
+
+			E removed = element(index);
+
+			//Removing from start is just a move of the head,
+			//otherwise shift later elements down
+			if (index == 0) {
+				deleteHead();
+			} else {
+				tracking.stopTrackingElement(removed);
+				for (int i = index; i < size - 1; i++) {
+					setElement(i, element(i + 1));
+				}
+				setElement(size - 1, null);
+				size--;
+			}
+
+			contentsChanged();
+
+			//Start a list change
+			//showing the removal
+			ListDelta listChange = ListDeltaDefault.newRemoveChange(this, index);
+			Props.getPropSystem().getChangeSystem().propagateChange(this, new ListChangeDefault(
+					true,	//Initial change
+					false, 	//Different instances
+					listChange));
+
+			return removed;
+
+		//Always conclude the change
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeChange(this);
+		}
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		Props.getPropSystem().getChangeSystem().prepareChange(this);
+		try {
+			int index = indexOf(o);
+			if (index < 0) return false;
+			remove(index);
+			return true;
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeChange(this);
+		}
+	}
+
+	@Override
+	public E set(int index, E element) {
+
+		Props.getPropSystem().getChangeSystem().prepareChange(this);
+
+		try {
+			checkIndex(index, size);
+
+			E oldValue = element(index);
+			setElement(index, element);
+
+			tracking.stopTrackingElement(oldValue);
+			tracking.startTrackingElement(element);
+
+			contentsChanged();
+
+			//Start a list change
+			//showing the set
+			ListDelta listChange = ListDeltaDefault.newSingleElementAlteration(this, index);
+			Props.getPropSystem().getChangeSystem().propagateChange(this, new ListChangeDefault(
+					true,	//Initial change
+					false, 	//Different instances
+					listChange));
+
+			return oldValue;
+
+		//Always conclude change
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeChange(this);
+		}
+	}
+
+	@Override
+	public void move(int from, int to) {
+		Props.getPropSystem().getChangeSystem().prepareChange(this);
+		try {
+			checkIndex(from, size);
+			checkIndex(to, size);
+			
+			//Nothing to do
+			if (from == to) return;
+
+			//Shift elements between from and to, then place moved 
+			//element. Contents are the same, so tracking is unaffected.
+			E moved = element(from);
+			if (from < to) {
+				for (int i = from; i < to; i++) {
+					setElement(i, element(i + 1));
+				}
+			} else {
+				for (int i = from; i > to; i--) {
+					setElement(i, element(i - 1));
+				}
+			}
+			setElement(to, moved);
+
+			contentsChanged();
+
+			//Start a list change
+			//showing the move
+			ListDelta listChange = ListDeltaDefault.newMoveChange(this, from, to);
+			Props.getPropSystem().getChangeSystem().propagateChange(this, new ListChangeDefault(
+					true,	//Initial change
+					false, 	//Different instances
+					listChange));
+
+		//Always conclude change
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeChange(this);
+		}
+	}
+
+	@Override
+	public void moveAll(int[] indices, int to) {
+		Props.getPropSystem().getChangeSystem().prepareChange(this);
+		try {
+			applyPermutation(ListPermutations.moveAll(size, indices, to));
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeChange(this);
+		}
+	}
+
+	@Override
+	public void sort(Comparator<? super E> comparator) {
+		Props.getPropSystem().getChangeSystem().prepareChange(this);
+		try {
+			applyPermutation(ListPermutations.sort(this, comparator));
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeChange(this);
+		}
+	}
+
+	@Override
+	public void permute(int[] permutation) {
+		Props.getPropSystem().getChangeSystem().prepareChange(this);
+		try {
+			ListPermutations.check(permutation, size);
+			applyPermutation(permutation);
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeChange(this);
+		}
+	}
+
+	/**
+	 * Reorder the list according to a permutation, and propagate
+	 * the change. Must be called with change prepared.
+	 * @param permutation	The permutation, see {@link ListPermutations}
+	 */
+	@SuppressWarnings("unchecked")
+	private void applyPermutation(int[] permutation) {
+
+		//Nothing to do if nothing moves
+		int first = ListPermutations.firstMoved(permutation);
+		if (first < 0) return;
+		int last = ListPermutations.lastMoved(permutation);
+
+		//Reorder the moved range. Contents are the same, 
+		//so tracking is unaffected.
+		Object[] range = new Object[last - first + 1];
+		for (int i = 0; i < range.length; i++) {
+			range[i] = element(first + i);
+		}
+		Object[] permuted = ListPermutations.apply(range, first, permutation);
+		for (int i = 0; i < permuted.length; i++) {
+			setElement(first + i, (E) permuted[i]);
+		}
+
+		contentsChanged();
+
+		//Start a list change
+		//showing the permutation
+		ListDelta listChange = ListDeltaDefault.newPermutationChange(this, permutation);
+		Props.getPropSystem().getChangeSystem().propagateChange(this, new ListChangeDefault(
+				true,	//Initial change
+				false, 	//Different instances
+				listChange));
+	}
+
+	@Override
+	public List<E> removeIndices(int[] indices) {
+		return removeIndices(ListIndices.toBitSet(indices));
+	}
+
+	@Override
+	public List<E> removeIndices(BitSet indices) {
+
+		Props.getPropSystem().getChangeSystem().prepareChange(this);
+
+		try {
+			int oldSize = size;
+			ListIndices.check(indices, oldSize);
+
+			//Nothing to do
+			if (indices.isEmpty()) return new ArrayList<E>();
+
+			List<E> removed = new ArrayList<E>(indices.cardinality());
+
+			//Compact the list in one pass by moving retained elements
+			//back over removed ones, then clear the tail
+			int write = indices.nextSetBit(0);
+			for (int read = write; read < oldSize; read++) {
+				E e = element(read);
+				if (indices.get(read)) {
+					removed.add(e);
+					tracking.stopTrackingElement(e);
+				} else {
+					setElement(write, e);
+					write++;
+				}
+			}
+			for (int i = write; i < oldSize; i++) {
+				setElement(i, null);
+			}
+			size = write;
+
+			contentsChanged();
+
+			//Start a list change
+			//showing the removal of each run of indices
+			Props.getPropSystem().getChangeSystem().propagateChange(this, new ListChangeDefault(
+					true,	//Initial change
+					false, 	//Different instances
+					ListDeltaDefault.newRemoveChanges(indices, oldSize)));
+
+			return removed;
+
+		//Always conclude change
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeChange(this);
+		}
+	}
+
+	@Override
+	public void clear() {
+
+		Props.getPropSystem().getChangeSystem().prepareChange(this);
+
+		try {
+			int oldSize = size;
+
+			clearContents();
+
+			contentsChanged();
+
+			//Start a list change
+			//showing the clear
+			ListDelta listChange = ListDeltaDefault.newClearChange(oldSize);
+			Props.getPropSystem().getChangeSystem().propagateChange(this, new ListChangeDefault(
+					true,	//Initial change
+					false, 	//Different instances
+					listChange));
+
+		//Always conclude change
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeChange(this);
+		}
+	}
+
+	/**
+	 * Replace all contents with new contents, as a single change.
+	 * If there are more new contents than the capacity of the list,
+	 * only the last elements are retained.
+	 * @param newContents	The new contents
+	 */
+	private void rewrite(Iterable<? extends E> newContents) {
+
+		Props.getPropSystem().getChangeSystem().prepareChange(this);
+
+		try {
+			int oldSize = size;
+
+			//Copy new contents first, in case they are
+			//from this list
+			List<E> copy = new ArrayList<E>();
+			for (E e : newContents) {
+				copy.add(e);
+			}
+
+			clearContents();
+
+			for (E e : copy.subList(Math.max(0, copy.size() - buffer.length), copy.size())) {
+				appendTail(e);
+			}
+
+			contentsChanged();
+
+			//Start a list change
+			//showing we changed everything
+			ListDelta listChange = ListDeltaDefault.newCompleteChange(this, oldSize);
+			Props.getPropSystem().getChangeSystem().propagateChange(this, new ListChangeDefault(
+					true,	//Initial change
+					false, 	//Different instances
+					listChange));
+
+		//Always conclude change
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeChange(this);
+		}
+	}
+
+	@Override
+	public void replace(Iterable<E> newContents) {
+		rewrite(newContents);
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		return retain(c, false);
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		return retain(c, true);
+	}
+
+	private boolean retain(Collection<?> c, boolean retainContained) {
+		Props.getPropSystem().getChangeSystem().prepareChange(this);
+		try {
+			List<E> retained = new ArrayList<E>(size);
+			for (int i = 0; i < size; i++) {
+				E e = element(i);
+				if (c.contains(e) == retainContained) {
+					retained.add(e);
+				}
+			}
+
+			//If we are not removing anything, no change
+			if (retained.size() == size) return false;
+
+			rewrite(retained);
+			return true;
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeChange(this);
+		}
+	}
+
+	//#####################################################################
+	//
+	//	Reads
+	//
+	//#####################################################################
+
+	@Override
+	public E get(int index) {
+		Props.getPropSystem().getChangeSystem().prepareRead(this);
+		try {
+			checkIndex(index, size);
+			return element(index);
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeRead(this);
+		}
+	}
+
+	@Override
+	public int size() {
+		Props.getPropSystem().getChangeSystem().prepareRead(this);
+		try {
+			return size;
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeRead(this);
+		}
+	}
+
+	@Override
+	public List<E> snapshot() {
+		Props.getPropSystem().getChangeSystem().prepareRead(this);
+		try {
+			//Copy on first snapshot after a change, then share the copy
+			//until the next change.
+			if (snapshot == null) {
+				List<E> copy = new ArrayList<E>(size);
+				for (int i = 0; i < size; i++) {
+					copy.add(element(i));
+				}
+				snapshot = Collections.unmodifiableList(copy);
+			}
+			return snapshot;
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeRead(this);
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		Props.getPropSystem().getChangeSystem().prepareRead(this);
+		try {
+			return super.equals(o);
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeRead(this);
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		Props.getPropSystem().getChangeSystem().prepareRead(this);
+		try {
+			return super.hashCode();
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeRead(this);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Ring Buffer List of " + size() + " items, capacity " + getCapacity();
+	}
+
+}
@@ -30,8 +30,10 @@ import java.util.Map;
 import java.util.Set;
 
 import org.jpropeller.calculation.Calculation;
+import org.jpropeller.calculation.IncrementalCalculation;
 import org.jpropeller.collection.CMap;
 import org.jpropeller.properties.calculated.impl.CalculatedProp;
+import org.jpropeller.properties.calculated.impl.IncrementalCalculator;
 import org.jpropeller.properties.change.Change;
 import org.jpropeller.properties.change.ChangeSystem;
 import org.jpropeller.properties.change.Changeable;
@@ -51,6 +53,8 @@ import org.jpropeller.system.Props;
  * is required due to the sources of the calculation changing, 
  * and that calculation is performed lazily, and cached - this
  * behaviour is similar to that for {@link CalculatedProp}.
+ * If the {@link Calculation} is an {@link IncrementalCalculation}, the 
+ * map is updated from the previous result where possible.
  * 
  * Note that the {@link CMapCalculated} will NOT propagate changes
  * to the contents of previously calculated {@link Map}s - it is assumed
@@ -71,6 +75,7 @@ public class CMapCalculated<K, V> implements CMap<K, V> {
 	private ChangeableFeatures features;
 
 	private Calculation<Map<K, V>> calculation;
+	private IncrementalCalculator<Map<K, V>> calculator;
 
 	//The current calculation map result we delegate 
 	//to for actual storage, etc., or null if no value
@@ -91,12 +96,15 @@ public class CMapCalculated<K, V> implements CMap<K, V> {
 		super();
 		
 		this.calculation = calculation;
+		calculator = new IncrementalCalculator<Map<K, V>>(calculation);
 		
 		features = new ChangeableFeaturesDefault(new InternalChangeImplementation() {
 			@Override
 			public Change internalChange(Changeable changed, Change change,
 					List<Changeable> initial, Map<Changeable, Change> changes) {
 				
+				calculator.sourceChanged(changed, change);
+				
 				//Mark the cache as invalid - it will need to be recalculated
 				cacheValid = false;
 
@@ -137,7 +145,7 @@ public class CMapCalculated<K, V> implements CMap<K, V> {
 		
 		if (!cacheValid) {
 
-			Map<K, V> newCore = calculation.calculate();
+			Map<K, V> newCore = calculator.calculate();
 			
 			//Null values are not acceptable - throw exception sooner rather than later
 			if (newCore == null) {
@@ -239,6 +247,19 @@ public class CMapCalculated<K, V> implements CMap<K, V> {
 		}
 	}
 	
+	@Override
+	public Map<K, V> snapshot() {
+		try {
+			start();
+			//Calculation results are never modified, and a new result
+			//replaces core rather than altering it, so core is already 
+			//a valid snapshot
+			return core;
+		} finally {
+			end();
+		}
+	}
+	
 	//Unsupported operations
 	private void throwUnsupported(String operation) {
 		throw new UnsupportedOperationException("Can't " + operation + " " + CMapCalculated.class.getName());		
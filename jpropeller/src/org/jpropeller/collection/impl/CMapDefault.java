@@ -26,9 +26,12 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
 
 import org.jpropeller.collection.CList;
@@ -75,6 +78,10 @@ public class CMapDefault<K, V> implements CMap<K, V> {
 	//The Map we delegate to for actual storage, etc.
 	private final Map<K, V> core;
 	
+	//Immutable copy of core, shared by all callers of snapshot() until
+	//the next change to core, or null if not yet made for current contents
+	private Map<K, V> snapshot = null;
+	
 	/**
 	 * Create a new {@link CMapDefault} based on a new {@link HashMap}
 	 */
@@ -247,10 +254,14 @@ public class CMapDefault<K, V> implements CMap<K, V> {
 	private boolean trackAroundMapChange(Callable<Boolean> action) {
 		
 		int oldSize = -1;
+		Map<K, V> oldContents = null;
 		Props.getPropSystem().getChangeSystem().prepareChange(this);
 		try {
 
 			 oldSize = size();
+			 
+			//Record old contents, so that the change can be reversed
+			oldContents = new HashMap<K, V>(core);
 
 			//To start with, clear all references, and stop listening to all contents.
 			//The action is assumed to be a major enough operation that we don't 
@@ -271,9 +282,15 @@ public class CMapDefault<K, V> implements CMap<K, V> {
 			//Reinstate tracking on all elements
 			retrackAll();
 			
+			//Any snapshot no longer reflects our contents
+			snapshot = null;
+
 			//Start a list change
 			//showing we changed everything
-			MapDelta mapChange = MapDeltaDefault.newCompleteChange(size(), oldSize);
+			MapDeltaDefault mapChange = MapDeltaDefault.newCompleteChange(size(), oldSize);
+			if (oldContents != null) {
+				mapChange = mapChange.withOldMappings(oldContents);
+			}
 			Props.getPropSystem().getChangeSystem().propagateChange(this, new MapChangeDefault(
 					true,	//Initial change 
 					false, 	//Different instances
@@ -344,11 +361,14 @@ public class CMapDefault<K, V> implements CMap<K, V> {
 				}
 			}
 			
+			//Any snapshot no longer reflects our contents
+			snapshot = null;
+
 			//Start a map change
 			//showing the put
 			MapDelta change;
 			if (existingValue) {
-				change = MapDeltaDefault.newSingleKeyAlteration(this, key);
+				change = MapDeltaDefault.newSingleKeyAlteration(this, key).withOldValue(oldValue);
 			} else {
 				change = MapDeltaDefault.newInsertionChange(this, key);			
 			}
@@ -444,9 +464,12 @@ public class CMapDefault<K, V> implements CMap<K, V> {
 				keyTracking.stopTrackingElement(k);
 			}
 			
+			//Any snapshot no longer reflects our contents
+			snapshot = null;
+
 			//Start a map change
 			//showing the removal
-			MapDelta change = MapDeltaDefault.newRemoveChange(this, k);
+			MapDelta change = MapDeltaDefault.newRemoveChange(this, k).withOldValue(oldValue);
 			Props.getPropSystem().getChangeSystem().propagateChange(this, new MapChangeDefault(
 					true,	//Initial change 
 					false, 	//Different instances
@@ -462,6 +485,28 @@ public class CMapDefault<K, V> implements CMap<K, V> {
 
 	//FIXME continue key alterations here
 	
+	@Override
+	public Map<K, V> snapshot() {
+		Props.getPropSystem().getChangeSystem().prepareRead(this);
+		try {
+			//Copy on first snapshot after a change, then share the copy
+			//until the next change. Sorted maps are copied with the same 
+			//ordering, other maps preserve iteration order of core
+			if (snapshot == null) {
+				Map<K, V> copy;
+				if (core instanceof SortedMap<?, ?>) {
+					copy = new TreeMap<K, V>((SortedMap<K, V>)core);
+				} else {
+					copy = new LinkedHashMap<K, V>(core);
+				}
+				snapshot = Collections.unmodifiableMap(copy);
+			}
+			return snapshot;
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeRead(this);
+		}
+	}
+	
 	//#####################################################################
 	//
 	//	The following methods require wrappers to prevent
@@ -23,12 +23,15 @@
 package org.jpropeller.collection.impl;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.concurrent.Callable;
 
 import org.jpropeller.collection.CSet;
@@ -72,6 +75,10 @@ public class CSetDefault<E> implements CSet<E> {
 
 	//The Set we delegate to for actual storage, etc.
 	private Set<E> core;	
+
+	//Immutable copy of core, shared by all callers of snapshot() until
+	//the next change to core, or null if not yet made for current contents
+	private Set<E> snapshot = null;
 	
 	/**
 	 * Create a new {@link CSetDefault} based on a new {@link HashSet}
@@ -236,6 +243,9 @@ public class CSetDefault<E> implements CSet<E> {
 			//Reinstate tracking on all elements
 			trackAll();
 			
+			//Any snapshot no longer reflects our contents
+			snapshot = null;
+
 			//Start a set change
 			//showing we changed everything
 			SetDelta delta = SetDeltaDefault.newCompleteChange(this, oldSize);
@@ -275,6 +285,9 @@ public class CSetDefault<E> implements CSet<E> {
 	
 			track(e);
 			
+			//Any snapshot no longer reflects our contents
+			snapshot = null;
+
 			//Start a set change
 			//showing we added an element
 			SetDelta delta = SetDeltaDefault.newAdd(this, 1);
@@ -362,6 +375,9 @@ public class CSetDefault<E> implements CSet<E> {
 	
 			untrack(o);
 			
+			//Any snapshot no longer reflects our contents
+			snapshot = null;
+
 			//Start a list change
 			//showing a single removal
 			SetDelta delta = SetDeltaDefault.newRemoveChange(this, 1);
@@ -573,6 +589,28 @@ public class CSetDefault<E> implements CSet<E> {
 		}
 	}	
 	
+	@Override
+	public Set<E> snapshot() {
+		Props.getPropSystem().getChangeSystem().prepareRead(this);
+		try {
+			//Copy on first snapshot after a change, then share the copy
+			//until the next change. Sorted sets are copied with the same 
+			//ordering, other sets preserve iteration order of core
+			if (snapshot == null) {
+				Set<E> copy;
+				if (core instanceof SortedSet<?>) {
+					copy = new TreeSet<E>((SortedSet<E>)core);
+				} else {
+					copy = new LinkedHashSet<E>(core);
+				}
+				snapshot = Collections.unmodifiableSet(copy);
+			}
+			return snapshot;
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeRead(this);
+		}
+	}
+	
 	@Override
 	public String toString() {
 		Props.getPropSystem().getChangeSystem().prepareRead(this);
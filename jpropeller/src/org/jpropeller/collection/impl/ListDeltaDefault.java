@@ -22,7 +22,11 @@
  */
 package org.jpropeller.collection.impl;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
 
 import org.jpropeller.collection.CollectionChangeType;
@@ -40,6 +44,10 @@ public class ListDeltaDefault implements ListDelta {
 	int newSize;
 	CollectionChangeType type;
 	int changeSize;
+	int headDeletionSize;
+	int tailInsertionSize;
+	int[] permutation;
+	List<?> oldElements;
 	
 	/**
 	 * Make a {@link ListDelta} for adding to the end of a 
@@ -126,6 +134,74 @@ public class ListDeltaDefault implements ListDelta {
 				l.size());				//size now is size now ;)
 	}	
 	
+	/**
+	 * Make a {@link ListDelta} for removing a range of consecutive elements 
+	 * from a list. This is used where a change consists of several deltas, 
+	 * so that the list size at the time of the delta is not the current size.
+	 * @param index 	The first index removed
+	 * @param count		The number of elements removed
+	 * @param oldSize	The size of the list before the removal
+	 * @return The corresponding list change
+	 */
+	public static ListDeltaDefault newRangeRemoveChange(int index, int count, int oldSize){
+		return new ListDeltaDefault(
+				CollectionChangeType.DELETION,
+				index,					//index of deletion is first changed index					
+				oldSize - count - 1,	//all indices after deletion change - so last changed is last index
+				oldSize,				//size before deletion
+				oldSize - count);		//size after deletion
+	}	
+
+	/**
+	 * Make {@link ListDelta}s for removing the elements at some indices
+	 * from a list. Each run of consecutive indices gives one delta, 
+	 * and the deltas are in descending order of index, so that each
+	 * delta's indices are not affected by preceding deltas.
+	 * @param indices 	The indices removed
+	 * @param oldSize	The size of the list before the removal
+	 * @return The corresponding list deltas
+	 */
+	public static List<ListDelta> newRemoveChanges(BitSet indices, int oldSize){
+		return newRemoveChanges(indices, oldSize, null);
+	}	
+
+	/**
+	 * Make {@link ListDelta}s for removing the elements at some indices
+	 * from a list, as for {@link #newRemoveChanges(BitSet, int)}, where
+	 * each delta records the elements it removed.
+	 * @param indices 	The indices removed
+	 * @param oldSize	The size of the list before the removal
+	 * @param removed	The removed elements, in the order they were in the
+	 * 					list, or null if not known
+	 * @return The corresponding list deltas
+	 */
+	public static List<ListDelta> newRemoveChanges(BitSet indices, int oldSize, List<?> removed){
+		//Find the size of the list after removing all runs
+		//before each run, working from the start of the list
+		int size = oldSize - indices.cardinality();
+		
+		//Add deltas for each run to the start of the list of deltas, 
+		//so they end up in descending order
+		LinkedList<ListDelta> deltas = new LinkedList<ListDelta>();
+		int start = indices.nextSetBit(0);
+		int offset = 0;
+		while (start >= 0) {
+			int end = indices.nextClearBit(start);
+			size += end - start;
+			ListDeltaDefault delta = newRangeRemoveChange(start, end - start, size);
+			
+			//Each run's elements follow those of earlier runs
+			if (removed != null) {
+				delta = delta.withOldElements(removed.subList(offset, offset + end - start));
+			}
+			offset += end - start;
+			
+			deltas.addFirst(delta);
+			start = indices.nextSetBit(end);
+		}
+		return deltas;
+	}	
+
 	/**
 	 * Make a {@link ListDelta} for adding a collection at an index into a list. The list must have
 	 * had the collection added already when this is called.
@@ -193,6 +269,115 @@ public class ListDeltaDefault implements ListDelta {
 				l.size());				//size now
 	}
 
+	/**
+	 * Make a {@link ListDelta} for deleting elements from the start of 
+	 * a list, and appending elements to the end of the list, as for
+	 * a fixed capacity buffer. The list must have had the elements
+	 * deleted and appended already when this is called.
+	 * @param l 		The list that has changed
+	 * @param deleted	The number of elements deleted from start of list
+	 * @param appended	The number of elements appended to end of list
+	 * @return The corresponding list change
+	 */
+	public static ListDeltaDefault newRollChange(List<?> l, int deleted, int appended){
+		int newSize = l.size();
+		int oldSize = newSize + deleted - appended;
+		return new ListDeltaDefault(
+				CollectionChangeType.ROLL,
+				0,								//all remaining elements may have moved, so first changed index is 0
+				Math.max(oldSize, newSize) - 1,	//and last changed index is last index in longer of old and new list
+				oldSize,						//size before change
+				newSize,						//size now
+				deleted,
+				appended,
+				null);
+	}
+
+	/**
+	 * Make a {@link ListDelta} for moving a single element of a list
+	 * from one index to another, shifting the elements between. The 
+	 * list must have had the element moved already when this is called.
+	 * @param l 		The list that has changed
+	 * @param from		The index of the element before moving
+	 * @param to		The index of the element after moving
+	 * @return The corresponding list change
+	 */
+	public static ListDeltaDefault newMoveChange(List<?> l, int from, int to){
+		int first = Math.min(from, to);
+		int last = Math.max(from, to);
+		int[] permutation = new int[last - first + 1];
+		for (int i = first; i <= last; i++) {
+			int newIndex;
+			if (i == from) {
+				newIndex = to;
+			} else if (from < to) {
+				newIndex = i - 1;	//Elements after from shift back
+			} else {
+				newIndex = i + 1;	//Elements before from shift forward
+			}
+			permutation[i - first] = newIndex;
+		}
+		return new ListDeltaDefault(CollectionChangeType.PERMUTATION, first, last, l.size(), l.size(), 0, 0, permutation);
+	}
+	
+	/**
+	 * Make a {@link ListDelta} for reordering the elements of a list. The 
+	 * list must have been reordered already when this is called.
+	 * @param l 			The list that has changed
+	 * @param permutation	For each index i, permutation[i] is the new index 
+	 * 						of the element that was at index i, see {@link ListPermutations}.
+	 * 						Must move at least one element. 
+	 * @return The corresponding list change
+	 */
+	public static ListDeltaDefault newPermutationChange(List<?> l, int[] permutation){
+		//Only the range actually moved is changed
+		int first = ListPermutations.firstMoved(permutation);
+		int last = ListPermutations.lastMoved(permutation);
+		return new ListDeltaDefault(
+				CollectionChangeType.PERMUTATION,
+				first,
+				last,
+				l.size(),
+				l.size(),
+				0,
+				0,
+				Arrays.copyOfRange(permutation, first, last + 1));
+	}
+	
+	/**
+	 * Combine two consecutive ROLL deltas into a single ROLL delta
+	 * having the same effect
+	 * @param first		The first ROLL delta
+	 * @param second	The second ROLL delta, applied to the list
+	 * 					after the first delta
+	 * @return 			A single ROLL delta equivalent to first followed by second
+	 */
+	public static ListDeltaDefault mergeRollChanges(ListDelta first, ListDelta second){
+		if (first.getType() != CollectionChangeType.ROLL || second.getType() != CollectionChangeType.ROLL) {
+			throw new IllegalArgumentException("Can only merge ROLL deltas");
+		}
+		
+		int oldSize = first.getOldSize();
+		int newSize = second.getNewSize();
+		
+		//Deletions from the head first remove elements present before both
+		//changes, then any elements appended by the first change
+		int deleted = Math.min(oldSize, first.getHeadDeletionSize() + second.getHeadDeletionSize());
+		
+		//Everything that is left of the old list is followed by new elements
+		int appended = newSize - (oldSize - deleted);
+		
+		return new ListDeltaDefault(
+				CollectionChangeType.ROLL,
+				0,
+				Math.max(oldSize, newSize) - 1,
+				oldSize,
+				newSize,
+				deleted,
+				appended,
+				null);
+	}
+	
 	/**
 	 * Make a {@link ListDelta} for completely changing a list, where old size is not known
 	 * @param l The list that has changed 
@@ -207,6 +392,24 @@ public class ListDeltaDefault implements ListDelta {
 				l.size());		//size now
 	}
 	
+	/**
+	 * Make a copy of this delta, recording the elements removed or replaced
+	 * by the change, see {@link ListDelta#getOldElements()}
+	 * @param oldElements	The old elements, which must not be modified after
+	 * 						this call
+	 * @return A new {@link ListDeltaDefault}, the same as this one but
+	 * with old elements
+	 */
+	public ListDeltaDefault withOldElements(List<?> oldElements){
+		ListDeltaDefault delta = new ListDeltaDefault(type, 
+				firstChangedIndex, lastChangedIndex, 
+				oldSize, newSize, 
+				headDeletionSize, tailInsertionSize, 
+				permutation);
+		delta.oldElements = Collections.unmodifiableList(oldElements);
+		return delta;
+	}
+	
 	/**
 	 * Create a {@link ListDelta}. Use factory methods to get instances
 	 */
@@ -214,7 +417,22 @@ public class ListDeltaDefault implements ListDelta {
 			CollectionChangeType type, 
 			int firstChangedIndex, int lastChangedIndex,
 			int oldSize, int newSize) {
+		this(type, firstChangedIndex, lastChangedIndex, oldSize, newSize, 0, 0, null);
+	}
+
+	/**
+	 * Create a {@link ListDelta}. Use factory methods to get instances
+	 */
+	private ListDeltaDefault(
+			CollectionChangeType type, 
+			int firstChangedIndex, int lastChangedIndex,
+			int oldSize, int newSize,
+			int headDeletionSize, int tailInsertionSize,
+			int[] permutation) {
 		super();
+		this.permutation = permutation;
+		this.headDeletionSize = headDeletionSize;
+		this.tailInsertionSize = tailInsertionSize;
 		this.firstChangedIndex = firstChangedIndex;
 		this.lastChangedIndex = lastChangedIndex;
 		this.oldSize = oldSize;
@@ -229,6 +447,13 @@ public class ListDeltaDefault implements ListDelta {
 		} else {
 			changeSize = newSize - oldSize;
 		}
+		
+		//Insertions and permutations never remove or replace elements
+		if (type == CollectionChangeType.INSERTION || type == CollectionChangeType.PERMUTATION) {
+			oldElements = Collections.emptyList();
+		} else {
+			oldElements = null;
+		}
 	}
 
 	@Override
@@ -261,6 +486,29 @@ public class ListDeltaDefault implements ListDelta {
 		return changeSize;
 	}
 
+	@Override
+	public int getHeadDeletionSize() {
+		return headDeletionSize;
+	}
+
+	@Override
+	public int getTailInsertionSize() {
+		return tailInsertionSize;
+	}
+
+	@Override
+	public int getPermutedIndex(int oldIndex) {
+		if (permutation == null || oldIndex < firstChangedIndex || oldIndex > lastChangedIndex) {
+			return oldIndex;
+		}
+		return permutation[oldIndex - firstChangedIndex];
+	}
+
+	@Override
+	public List<?> getOldElements() {
+		return oldElements;
+	}
+
 	@Override
 	public String toString() {
 		return "List Delta, type " + getType() + 
@@ -268,7 +516,10 @@ public class ListDeltaDefault implements ListDelta {
 			" to " + getLastChangedIndex() + 
 			" inclusive, change size " + getChangeSize() + 
 			", old size " + getOldSize() + 
-			" to new size " + getNewSize();		
+			" to new size " + getNewSize() +
+			((getType() == CollectionChangeType.ROLL) ? 
+					(", deleted " + getHeadDeletionSize() + " from head, appended " + getTailInsertionSize() + " to tail") 
+					: "");		
 	}
 	
 	/**
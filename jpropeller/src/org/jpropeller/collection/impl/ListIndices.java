@@ -0,0 +1,62 @@
+/*
+ *  Copyright (c) 2008 shingoki
+ *
+ *  This file is part of jpropeller, see http://jpropeller.sourceforge.net
+ *
+ *    jpropeller is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    jpropeller is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with jpropeller; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package org.jpropeller.collection.impl;
+
+import java.util.BitSet;
+
+import org.jpropeller.collection.CList;
+
+/**
+ * Static methods for working with sets of indices into {@link CList}s
+ */
+public final class ListIndices {
+
+	private ListIndices() {}
+
+	/**
+	 * Make a {@link BitSet} with the specified indices set
+	 * @param indices	The indices, in any order. Duplicates are ignored.
+	 * @return			A new {@link BitSet} with the indices set
+	 * @throws IndexOutOfBoundsException	If any index is negative
+	 */
+	public static BitSet toBitSet(int[] indices) {
+		BitSet bits = new BitSet();
+		for (int index : indices) {
+			if (index < 0) {
+				throw new IndexOutOfBoundsException("Index: " + index);
+			}
+			bits.set(index);
+		}
+		return bits;
+	}
+
+	/**
+	 * Check that all indices are within a list
+	 * @param indices	The indices
+	 * @param size		The size of the list
+	 * @throws IndexOutOfBoundsException	If any index is not in the list
+	 */
+	public static void check(BitSet indices, int size) {
+		if (indices.length() > size) {
+			throw new IndexOutOfBoundsException("Index: " + (indices.length() - 1) + ", Size: " + size);
+		}
+	}
+}
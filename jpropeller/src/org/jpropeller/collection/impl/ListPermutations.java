@@ -0,0 +1,209 @@
+/*
+ *  Copyright (c) 2008 shingoki
+ *
+ *  This file is part of jpropeller, see http://jpropeller.sourceforge.net
+ *
+ *    jpropeller is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    jpropeller is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with jpropeller; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package org.jpropeller.collection.impl;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.jpropeller.collection.CList;
+
+/**
+ * Static methods for calculating the permutations used to
+ * reorder {@link CList}s. A permutation of a list of size n is
+ * given as an int array p of length n, where p[i] is the new
+ * index of the element at index i before reordering.
+ */
+public final class ListPermutations {
+
+	private ListPermutations() {}
+
+	/**
+	 * Find the permutation that moves elements from the given indices
+	 * to form a contiguous block, in their existing order, starting
+	 * at a target index in the reordered list. Other elements keep
+	 * their existing order.
+	 * @param size		The size of the list
+	 * @param indices	The indices of the elements to move, in any order.
+	 * @param to		The index of the first moved element, after
+	 * 					reordering. Must be from 0 to size - (number of indices)
+	 * @return			The permutation
+	 * @throws IndexOutOfBoundsException	If any index is not in the list, or
+	 * 										the block would not fit at the target
+	 * @throws IllegalArgumentException		If indices contains duplicates
+	 */
+	public static int[] moveAll(int size, int[] indices, int to) {
+		int[] sorted = indices.clone();
+		Arrays.sort(sorted);
+
+		//Check indices
+		for (int i = 0; i < sorted.length; i++) {
+			if (sorted[i] < 0 || sorted[i] >= size) {
+				throw new IndexOutOfBoundsException("Index: " + sorted[i] + ", Size: " + size);
+			}
+			if (i > 0 && sorted[i] == sorted[i - 1]) {
+				throw new IllegalArgumentException("Duplicate index " + sorted[i]);
+			}
+		}
+		if (to < 0 || to + sorted.length > size) {
+			throw new IndexOutOfBoundsException("Cannot move " + sorted.length + " elements to index " + to + ", Size: " + size);
+		}
+
+		int[] permutation = new int[size];
+
+		//Moved elements go into the block, in order
+		boolean[] moved = new boolean[size];
+		for (int i = 0; i < sorted.length; i++) {
+			moved[sorted[i]] = true;
+			permutation[sorted[i]] = to + i;
+		}
+
+		//Other elements fill the remaining indices, in order, skipping the block
+		int next = 0;
+		for (int i = 0; i < size; i++) {
+			if (!moved[i]) {
+				if (next == to) {
+					next += sorted.length;
+				}
+				permutation[i] = next;
+				next++;
+			}
+		}
+
+		return permutation;
+	}
+
+	/**
+	 * Find the permutation that sorts a list. The sort is stable.
+	 * @param <E>			The type of list element
+	 * @param list			The list to sort
+	 * @param comparator	The comparator to sort by, or null to use
+	 * 						the natural ordering of elements
+	 * @return				The permutation
+	 */
+	public static <E> int[] sort(List<E> list, final Comparator<? super E> comparator) {
+		final Object[] elements = list.toArray();
+
+		//Sort the indices of the elements - Arrays.sort on objects is stable
+		Integer[] order = new Integer[elements.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@SuppressWarnings("unchecked")
+			@Override
+			public int compare(Integer a, Integer b) {
+				E ea = (E) elements[a];
+				E eb = (E) elements[b];
+				if (comparator == null) {
+					return ((Comparable<Object>) ea).compareTo(eb);
+				}
+				return comparator.compare(ea, eb);
+			}
+		});
+
+		//The element at order[i] ends up at i
+		int[] permutation = new int[order.length];
+		for (int i = 0; i < order.length; i++) {
+			permutation[order[i]] = i;
+		}
+		return permutation;
+	}
+
+	/**
+	 * Check that an array is a permutation of a list
+	 * @param permutation	The array to check
+	 * @param size			The size of the list
+	 * @throws IllegalArgumentException		If the array is not a permutation
+	 * 										of the indices 0 to size - 1
+	 */
+	public static void check(int[] permutation, int size) {
+		if (permutation.length != size) {
+			throw new IllegalArgumentException("Permutation has length " + permutation.length + ", Size: " + size);
+		}
+		boolean[] seen = new boolean[size];
+		for (int i : permutation) {
+			if (i < 0 || i >= size || seen[i]) {
+				throw new IllegalArgumentException("Not a permutation, index " + i + " is out of range or repeated");
+			}
+			seen[i] = true;
+		}
+	}
+
+	/**
+	 * Find the inverse of a permutation, which restores the
+	 * original order
+	 * @param permutation	A permutation
+	 * @return				The inverse permutation
+	 */
+	public static int[] invert(int[] permutation) {
+		int[] inverse = new int[permutation.length];
+		for (int i = 0; i < permutation.length; i++) {
+			inverse[permutation[i]] = i;
+		}
+		return inverse;
+	}
+
+	/**
+	 * @param permutation	A permutation
+	 * @return				The first index moved by the permutation,
+	 * 						or -1 if no indices are moved
+	 */
+	public static int firstMoved(int[] permutation) {
+		for (int i = 0; i < permutation.length; i++) {
+			if (permutation[i] != i) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param permutation	A permutation
+	 * @return				The last index moved by the permutation,
+	 * 						or -1 if no indices are moved
+	 */
+	public static int lastMoved(int[] permutation) {
+		for (int i = permutation.length - 1; i >= 0; i--) {
+			if (permutation[i] != i) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Apply part of a permutation to elements
+	 * @param elements		The elements from index first to last inclusive
+	 * 						of a list
+	 * @param first			The index in the list of the first element
+	 * @param permutation	The permutation for the list, which must
+	 * 						only move elements from first to last
+	 * @return				The reordered elements from first to last inclusive
+	 */
+	public static Object[] apply(Object[] elements, int first, int[] permutation) {
+		Object[] permuted = new Object[elements.length];
+		for (int i = 0; i < elements.length; i++) {
+			permuted[permutation[first + i] - first] = elements[i];
+		}
+		return permuted;
+	}
+}
@@ -22,6 +22,7 @@
  */
 package org.jpropeller.collection.impl;
 
+import java.util.Collections;
 import java.util.Map;
 
 import org.jpropeller.collection.CollectionChangeType;
@@ -38,6 +39,7 @@ public class MapDeltaDefault implements MapDelta {
 	int oldSize;
 	int newSize;
 	CollectionChangeType type;
+	Map<?, ?> oldMappings;
 	
 	/**
 	 * Make a {@link MapDelta} for inserting a single mapping. The map must have
@@ -130,6 +132,35 @@ public class MapDeltaDefault implements MapDelta {
 				size);
 	}
 
+	/**
+	 * Make a copy of this delta, recording the mappings removed or replaced
+	 * by the change, see {@link MapDelta#getOldMappings()}
+	 * @param oldMappings	The old mappings, which must not be modified after
+	 * 						this call
+	 * @return A new {@link MapDeltaDefault}, the same as this one but
+	 * with old mappings
+	 */
+	public MapDeltaDefault withOldMappings(Map<?, ?> oldMappings){
+		MapDeltaDefault delta = new MapDeltaDefault(key, type, oldSize, newSize);
+		delta.oldMappings = Collections.unmodifiableMap(oldMappings);
+		return delta;
+	}
+
+	/**
+	 * Make a copy of this delta for a single key, recording the value 
+	 * that key mapped to before the change, see {@link MapDelta#getOldMappings()}
+	 * @param oldValue	The value the key of this delta mapped to
+	 * @return A new {@link MapDeltaDefault}, the same as this one but
+	 * with old mappings. If this delta is not for a single key (see 
+	 * {@link MapDelta#isKeyValid()}), it is returned unaltered.
+	 */
+	public MapDeltaDefault withOldValue(Object oldValue){
+		if (!keyValid) {
+			return this;
+		}
+		return withOldMappings(Collections.singletonMap(key, oldValue));
+	}
+
 	/**
 	 * Create a {@link MapDelta}. Use factory methods to get instances
 	 */
@@ -142,6 +173,13 @@ public class MapDeltaDefault implements MapDelta {
 		this.oldSize = oldSize;
 		this.newSize = newSize;
 		this.type = type;
+		
+		//Insertions never remove or replace mappings
+		if (type == CollectionChangeType.INSERTION) {
+			oldMappings = Collections.emptyMap();
+		} else {
+			oldMappings = null;
+		}
 	}
 
 	@Override
@@ -169,6 +207,11 @@ public class MapDeltaDefault implements MapDelta {
 		return keyValid;
 	}
 
+	@Override
+	public Map<?, ?> getOldMappings() {
+		return oldMappings;
+	}
+
 	@Override
 	public String toString() {
 		String s = "Map Delta, type " + getType() +  
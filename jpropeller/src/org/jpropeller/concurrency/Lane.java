@@ -0,0 +1,22 @@
+package org.jpropeller.concurrency;
+
+/**
+ * The lanes in which a {@link Scheduler} runs background work.
+ * Each lane has its own threads, so that long running work in
+ * one lane cannot delay work in another.
+ */
+public enum Lane {
+
+	/**
+	 * Work that the user is waiting for, for example recalculating
+	 * values that are displayed
+	 */
+	INTERACTIVE,
+	
+	/**
+	 * Work that may take a long time, and can wait for
+	 * {@link #INTERACTIVE} work, for example user tasks
+	 */
+	BATCH;
+	
+}
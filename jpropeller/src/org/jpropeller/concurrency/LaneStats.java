@@ -0,0 +1,112 @@
+package org.jpropeller.concurrency;
+
+/**
+ * Immutable snapshot of the statistics for a {@link Lane}
+ * of a {@link Scheduler}
+ */
+public class LaneStats {
+
+	private final int threads;
+	private final int active;
+	private final int queued;
+	private final long completed;
+	private final long totalWaitNanos;
+	private final long maxWaitNanos;
+	private final long totalRunNanos;
+
+	/**
+	 * Create a {@link LaneStats}
+	 * @param threads			The maximum number of threads in the lane
+	 * @param active			The number of threads currently running work
+	 * @param queued			The number of items of work waiting to run
+	 * @param completed			The number of items of work that have run
+	 * @param totalWaitNanos	The total time completed work spent waiting 
+	 * 							to run, in nanoseconds
+	 * @param maxWaitNanos		The longest time any completed work spent 
+	 * 							waiting to run, in nanoseconds
+	 * @param totalRunNanos		The total time spent running completed work,
+	 * 							in nanoseconds
+	 */
+	public LaneStats(int threads, int active, int queued, long completed,
+			long totalWaitNanos, long maxWaitNanos, long totalRunNanos) {
+		this.threads = threads;
+		this.active = active;
+		this.queued = queued;
+		this.completed = completed;
+		this.totalWaitNanos = totalWaitNanos;
+		this.maxWaitNanos = maxWaitNanos;
+		this.totalRunNanos = totalRunNanos;
+	}
+
+	/**
+	 * @return	The maximum number of threads in the lane
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @return	The number of threads currently running work
+	 */
+	public int getActive() {
+		return active;
+	}
+
+	/**
+	 * @return	The number of items of work waiting to run
+	 */
+	public int getQueued() {
+		return queued;
+	}
+
+	/**
+	 * @return	The number of items of work that have run
+	 */
+	public long getCompleted() {
+		return completed;
+	}
+
+	/**
+	 * @return	The total time completed work spent waiting to run, in nanoseconds
+	 */
+	public long getTotalWaitNanos() {
+		return totalWaitNanos;
+	}
+
+	/**
+	 * @return	The longest time any completed work spent waiting to run, in nanoseconds
+	 */
+	public long getMaxWaitNanos() {
+		return maxWaitNanos;
+	}
+
+	/**
+	 * @return	The mean time completed work spent waiting to run, in 
+	 * 			nanoseconds, or 0 if no work has completed
+	 */
+	public long getMeanWaitNanos() {
+		return completed == 0 ? 0 : totalWaitNanos / completed;
+	}
+
+	/**
+	 * @return	The total time spent running completed work, in nanoseconds
+	 */
+	public long getTotalRunNanos() {
+		return totalRunNanos;
+	}
+
+	/**
+	 * @return	The mean time spent running each completed item of work,
+	 * 			in nanoseconds, or 0 if no work has completed
+	 */
+	public long getMeanRunNanos() {
+		return completed == 0 ? 0 : totalRunNanos / completed;
+	}
+
+	@Override
+	public String toString() {
+		return "threads " + threads + ", active " + active + ", queued " + queued 
+				+ ", completed " + completed + ", mean wait " + getMeanWaitNanos() / 1000 
+				+ "us, max wait " + maxWaitNanos / 1000 + "us, mean run " + getMeanRunNanos() / 1000 + "us";
+	}
+}
@@ -0,0 +1,26 @@
+package org.jpropeller.concurrency;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Provides the {@link ExecutorService}s used to run background
+ * work, with one per {@link Lane}
+ */
+public interface Scheduler {
+
+	/**
+	 * Get the {@link ExecutorService} for a {@link Lane}, this must
+	 * not change after it is first called.
+	 * @param lane		The lane
+	 * @return			The {@link ExecutorService} running work in that lane
+	 */
+	public ExecutorService getExecutorService(Lane lane);
+	
+	/**
+	 * Get statistics for a {@link Lane}
+	 * @param lane		The lane
+	 * @return			A snapshot of the current statistics for the lane
+	 */
+	public LaneStats getStats(Lane lane);
+	
+}
@@ -23,6 +23,8 @@
 package org.jpropeller.concurrency.impl;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -59,21 +61,50 @@ public class CancellingBackgroundResponder implements Responder {
 	
 	private final AtomicBoolean shouldCancel = new AtomicBoolean(false);
 
+	//Quiet period, and state used to wait for it
+	private final long quietPeriod;
+	private final ScheduledExecutorService scheduler;
+	private long lastRequestTime = 0;
+	private boolean waiting = false;
+	
 	/**
 	 * Create a new {@link CancellingBackgroundResponder}
 	 * @param response 	The response
 	 * @param executor 	The {@link Executor} to use to actually run the responseRunnable
 	 */
 	public CancellingBackgroundResponder(CancellableResponse response, Executor executor) {
+		this(response, executor, 0, null);
+	}
+
+	/**
+	 * Create a new {@link CancellingBackgroundResponder} that waits until
+	 * there have been no requests for a quiet period before starting
+	 * a response, so that a burst of requests only causes one response.
+	 * A running response is still cancelled immediately by a new request.
+	 * @param response 		The response
+	 * @param executor 		The {@link Executor} to use to actually run the responseRunnable
+	 * @param quietPeriod	The quiet period in milliseconds, or 0 to respond
+	 * 						without waiting
+	 * @param scheduler		Used to wait for the quiet period, may be null if
+	 * 						quietPeriod is 0
+	 */
+	public CancellingBackgroundResponder(CancellableResponse response, Executor executor, long quietPeriod, ScheduledExecutorService scheduler) {
 		super();
+		if (quietPeriod > 0 && scheduler == null) {
+			throw new IllegalArgumentException("A scheduler is required for a quiet period");
+		}
 		this.executor = executor;
 		this.response = response;
+		this.quietPeriod = quietPeriod;
+		this.scheduler = scheduler;
 	}
 
 	@Override
 	public void request() {
 		synchronized (responseLock) {
 			
+			lastRequestTime = System.currentTimeMillis();
+			
 			//If we are running a current thread, then register that we need a response (again) 
 			//when it finishes, and cancel it
 			if (currentlyRunning) {
@@ -93,10 +124,23 @@ public class CancellingBackgroundResponder implements Responder {
 	}
 	
 	/**
-	 * Start a new response
+	 * Start a new response, once we have had a quiet period
 	 */
 	private final void launchNewResponse() {
 		synchronized (responseLock) {
+			
+			//If we are already waiting, we will launch when the wait ends
+			if (waiting) {
+				return;
+			}
+			
+			long wait = lastRequestTime + quietPeriod - System.currentTimeMillis(); 
+			if (quietPeriod > 0 && wait > 0) {
+				waiting = true;
+				scheduler.schedule(waitRunnable, wait, TimeUnit.MILLISECONDS);
+				return;
+			}
+			
 			//Request is dealt with for now
 			responseRequired = false;
 			
@@ -140,4 +184,19 @@ public class CancellingBackgroundResponder implements Responder {
 		}
 	};
 
+	//Runnable to launch a response at the end of a wait for a quiet period
+	private final Runnable waitRunnable = new Runnable() {
+		@Override
+		public void run() {
+			synchronized (responseLock) {
+				waiting = false;
+				if (!currentlyRunning) {
+					launchNewResponse();
+				} else {
+					responseRequired = true;
+				}
+			}
+		}
+	};
+	
 }
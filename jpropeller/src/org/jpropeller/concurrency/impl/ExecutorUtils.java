@@ -3,8 +3,13 @@ package org.jpropeller.concurrency.impl;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
+import org.jpropeller.concurrency.Lane;
+import org.jpropeller.concurrency.Scheduler;
 import org.jpropeller.properties.calculated.background.impl.BackgroundCalculatedProp;
+import org.jpropeller.system.PropSystem;
+import org.jpropeller.system.Props;
 import org.jpropeller.task.impl.TaskExecutor;
 
 /**
@@ -19,16 +24,50 @@ public class ExecutorUtils {
 	 */
 	private ExecutorUtils(){}
 
-	//TODO work out optimal number of threads
-	private final static ExecutorService DEFAULT_EXECUTOR_SERVICE = 
-		Executors.newFixedThreadPool(4, new DaemonThreadFactory(Executors.defaultThreadFactory(), Thread.NORM_PRIORITY-1));
+	private final static ExecutorService PREFETCH_EXECUTOR_SERVICE = 
+		Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new DaemonThreadFactory(Executors.defaultThreadFactory(), Thread.NORM_PRIORITY));
 
 	/**
-	 * Get the shared default {@link ExecutorService}
+	 * Get the shared {@link ExecutorService} used to prefetch calculations,
+	 * with a thread per processor. This must only be used for tasks that 
+	 * never wait for the change system lock.
+	 * @return	{@link ExecutorService}
+	 */
+	public final static ExecutorService getPrefetchExecutorService() {
+		return PREFETCH_EXECUTOR_SERVICE;
+	}
+	
+	private final static ScheduledExecutorService SCHEDULED_EXECUTOR_SERVICE = 
+		Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory());
+
+	/**
+	 * Get the shared {@link ScheduledExecutorService}, used for timing
+	 * delays. Scheduled tasks must be short, for example passing work on
+	 * to another {@link ExecutorService}.
+	 * @return	{@link ScheduledExecutorService}
+	 */
+	public final static ScheduledExecutorService getScheduledExecutorService() {
+		return SCHEDULED_EXECUTOR_SERVICE;
+	}
+	
+	/**
+	 * Get the shared default {@link ExecutorService}, for the
+	 * {@link Lane#INTERACTIVE} lane of the {@link Scheduler}
+	 * of the {@link PropSystem}
 	 * @return	{@link ExecutorService}
 	 */
 	public final static ExecutorService getExecutorService() {
-		return DEFAULT_EXECUTOR_SERVICE;
+		return Props.getPropSystem().getScheduler().getExecutorService(Lane.INTERACTIVE);
+	}
+	
+	/**
+	 * Get the shared {@link ExecutorService} for long running work, 
+	 * for the {@link Lane#BATCH} lane of the {@link Scheduler}
+	 * of the {@link PropSystem}
+	 * @return	{@link ExecutorService}
+	 */
+	public final static ExecutorService getBatchExecutorService() {
+		return Props.getPropSystem().getScheduler().getExecutorService(Lane.BATCH);
 	}
 	
 }
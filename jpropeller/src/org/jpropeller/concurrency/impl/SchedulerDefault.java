@@ -0,0 +1,168 @@
+package org.jpropeller.concurrency.impl;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.jpropeller.concurrency.Lane;
+import org.jpropeller.concurrency.LaneStats;
+import org.jpropeller.concurrency.Scheduler;
+
+/**
+ * Default implementation of {@link Scheduler}
+ * <p/>
+ * Each {@link Lane} has its own pool of daemon threads, so that slow 
+ * {@link Lane#BATCH} work cannot starve {@link Lane#INTERACTIVE} work.
+ * By default the {@link Lane#INTERACTIVE} lane has a thread per processor,
+ * and the {@link Lane#BATCH} lane has a thread for every two processors,
+ * at a lower priority. These defaults can be overridden with the system
+ * properties "jpropeller.scheduler.interactiveThreads" and
+ * "jpropeller.scheduler.batchThreads".
+ * <p/>
+ * Threads are created as needed, and stop after being idle for a while.
+ * A {@link ThreadFactory} can be given for each lane, for example to use
+ * lightweight threads where the platform provides them.
+ */
+public class SchedulerDefault implements Scheduler {
+
+	private final static long KEEP_ALIVE_SECONDS = 30;
+
+	private final Map<Lane, LaneExecutor> executors = new EnumMap<Lane, LaneExecutor>(Lane.class);
+
+	/**
+	 * Create a {@link SchedulerDefault} with the default number of threads
+	 * in each {@link Lane}
+	 */
+	public SchedulerDefault() {
+		this(Integer.getInteger("jpropeller.scheduler.interactiveThreads", defaultThreads(Lane.INTERACTIVE)),
+				Integer.getInteger("jpropeller.scheduler.batchThreads", defaultThreads(Lane.BATCH)));
+	}
+
+	/**
+	 * Create a {@link SchedulerDefault} using daemon threads
+	 * @param interactiveThreads	The maximum number of threads in the {@link Lane#INTERACTIVE} lane
+	 * @param batchThreads			The maximum number of threads in the {@link Lane#BATCH} lane
+	 */
+	public SchedulerDefault(int interactiveThreads, int batchThreads) {
+		this(interactiveThreads, new DaemonThreadFactory(new NamedThreadFactory("jpropeller-interactive-"), Thread.NORM_PRIORITY - 1),
+				batchThreads, new DaemonThreadFactory(new NamedThreadFactory("jpropeller-batch-"), Thread.MIN_PRIORITY));
+	}
+
+	/**
+	 * Create a {@link SchedulerDefault}
+	 * @param interactiveThreads	The maximum number of threads in the {@link Lane#INTERACTIVE} lane
+	 * @param interactiveFactory	The {@link ThreadFactory} for the {@link Lane#INTERACTIVE} lane
+	 * @param batchThreads			The maximum number of threads in the {@link Lane#BATCH} lane
+	 * @param batchFactory			The {@link ThreadFactory} for the {@link Lane#BATCH} lane
+	 */
+	public SchedulerDefault(int interactiveThreads, ThreadFactory interactiveFactory, 
+			int batchThreads, ThreadFactory batchFactory) {
+		executors.put(Lane.INTERACTIVE, new LaneExecutor(interactiveThreads, interactiveFactory));
+		executors.put(Lane.BATCH, new LaneExecutor(batchThreads, batchFactory));
+	}
+
+	/**
+	 * Get the default number of threads for a {@link Lane}, based
+	 * on the number of available processors
+	 * @param lane		The lane
+	 * @return			The default number of threads
+	 */
+	public static int defaultThreads(Lane lane) {
+		int processors = Runtime.getRuntime().availableProcessors();
+		if (lane == Lane.BATCH) {
+			return Math.max(1, processors / 2);
+		}
+		return Math.max(2, processors);
+	}
+
+	@Override
+	public ExecutorService getExecutorService(Lane lane) {
+		return executors.get(lane);
+	}
+
+	@Override
+	public LaneStats getStats(Lane lane) {
+		return executors.get(lane).stats();
+	}
+
+	@Override
+	public String toString() {
+		return "Scheduler, interactive (" + getStats(Lane.INTERACTIVE) + "), batch (" + getStats(Lane.BATCH) + ")";
+	}
+
+	/**
+	 * Pool for a single lane, recording how long work waits and runs
+	 */
+	private static class LaneExecutor extends ThreadPoolExecutor {
+
+		private long completed = 0;
+		private long totalWaitNanos = 0;
+		private long maxWaitNanos = 0;
+		private long totalRunNanos = 0;
+
+		private LaneExecutor(int threads, ThreadFactory factory) {
+			super(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, 
+					new LinkedBlockingQueue<Runnable>(), factory);
+			allowCoreThreadTimeOut(true);
+		}
+
+		@Override
+		public void execute(final Runnable command) {
+			if (command == null) {
+				throw new NullPointerException();
+			}
+			final long queuedAt = System.nanoTime();
+			super.execute(new Runnable() {
+				@Override
+				public void run() {
+					long startedAt = System.nanoTime();
+					try {
+						command.run();
+					} finally {
+						record(startedAt - queuedAt, System.nanoTime() - startedAt);
+					}
+				}
+			});
+		}
+
+		private synchronized void record(long waitNanos, long runNanos) {
+			completed++;
+			totalWaitNanos += waitNanos;
+			totalRunNanos += runNanos;
+			if (waitNanos > maxWaitNanos) {
+				maxWaitNanos = waitNanos;
+			}
+		}
+
+		private synchronized LaneStats stats() {
+			return new LaneStats(getMaximumPoolSize(), getActiveCount(), getQueue().size(), 
+					completed, totalWaitNanos, maxWaitNanos, totalRunNanos);
+		}
+	}
+
+	/**
+	 * Delegates to {@link Executors#defaultThreadFactory()}, 
+	 * naming threads so that each lane can be identified
+	 */
+	private static class NamedThreadFactory implements ThreadFactory {
+		private final ThreadFactory delegate = Executors.defaultThreadFactory();
+		private final String prefix;
+		private int count = 0;
+
+		private NamedThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public synchronized Thread newThread(Runnable r) {
+			Thread thread = delegate.newThread(r);
+			thread.setName(prefix + (++count));
+			return thread;
+		}
+	}
+}
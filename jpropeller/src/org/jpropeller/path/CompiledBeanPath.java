@@ -0,0 +1,55 @@
+/*
+ *  Copyright (c) 2008 shingoki
+ *
+ *  This file is part of jpropeller, see http://code.google.com/p/jpropeller/
+ *
+ *    jpropeller is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    jpropeller is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with jpropeller. If not, see <http://www.gnu.org/licenses/>.
+ *    
+ */
+package org.jpropeller.path;
+
+import java.util.List;
+
+import org.jpropeller.bean.Bean;
+import org.jpropeller.properties.Prop;
+import org.jpropeller.transformer.Transformer;
+
+/**
+ * A {@link BeanPath} that exposes the {@link Transformer}s
+ * making up each stage of the path. This allows paths with common
+ * prefixes to share the work of following those prefixes.
+ * <p/>
+ * The {@link Transformer}s are compared using equals, so 
+ * {@link Transformer}s that always give the same result for the
+ * same input should be equal, so that they can be shared.
+ *
+ * @param <R>	The type of root bean
+ * @param <D>	The type of data in the final {@link Prop}
+ */
+public interface CompiledBeanPath<R, D> extends BeanPath<R, D> {
+
+	/**
+	 * Get the {@link Transformer}s followed before the last, in order.
+	 * Each transforms a {@link Bean} into a {@link Prop} whose value
+	 * is the {@link Bean} used by the next stage.
+	 * @return	Immutable list of {@link Transformer}s
+	 */
+	public List<Transformer<?, ?>> getTransforms();
+	
+	/**
+	 * @return	The last {@link Transformer}, giving the final {@link Prop}
+	 */
+	public Transformer<?, ? extends Prop<D>> getLastTransform();
+	
+}
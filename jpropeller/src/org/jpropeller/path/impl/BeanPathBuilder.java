@@ -1,6 +1,7 @@
 package org.jpropeller.path.impl;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -11,6 +12,7 @@ import org.jpropeller.bean.Bean;
 import org.jpropeller.name.PropName;
 import org.jpropeller.path.BeanPath;
 import org.jpropeller.path.BeanPathIterator;
+import org.jpropeller.path.CompiledBeanPath;
 import org.jpropeller.properties.Prop;
 import org.jpropeller.transformer.Transformer;
 import org.jpropeller.transformer.impl.BeanToPropTransformer;
@@ -150,13 +152,16 @@ public class BeanPathBuilder<R extends Bean, D extends Bean> {
 	 * @param <P>		The type of {@link Prop} at the end of the path
 	 * @param <D>		The type of value in the {@link Prop} at the end of the path
 	 */
-	private static class BeanPathDefault<R extends Bean, D> implements BeanPath<R, D> {
+	private static class BeanPathDefault<R extends Bean, D> implements CompiledBeanPath<R, D> {
 
 		Transformer<?, ? extends Prop<D>> lastTransform;
 		
-		//We rely on valid Transformer types when created
+		//We rely on valid Transformer types when created. The
+		//path is fixed, so we compile it to an array
 		@SuppressWarnings("rawtypes")
-		List<Transformer> transforms;
+		Transformer[] transforms;
+		
+		List<Transformer<?, ?>> transformList;
 		
 		/**
 		 * Create a new {@link BeanPath}
@@ -170,14 +175,17 @@ public class BeanPathBuilder<R extends Bean, D extends Bean> {
 		private BeanPathDefault(List<Transformer> transforms,
 				Transformer<?, ? extends Prop<D>> lastTransform) {
 			super();
-			this.transforms = transforms;
+			this.transforms = transforms.toArray(new Transformer[transforms.size()]);
 			this.lastTransform = lastTransform;
 			
+			List<Transformer<?, ?>> list = new ArrayList<Transformer<?, ?>>(transforms.size());
 			for (Transformer t : transforms) {
 				if (t == null) {
 					logger.log(Level.SEVERE, "Null transform in bean path", new RuntimeException("Exception to show stack trace"));
 				}
+				list.add(t);
 			}
+			transformList = Collections.unmodifiableList(list);
 		}
 
 		@Override
@@ -185,6 +193,16 @@ public class BeanPathBuilder<R extends Bean, D extends Bean> {
 			return new BeanPathIteratorDefault<D>(root, transforms, lastTransform);
 		}
 		
+		@Override
+		public List<Transformer<?, ?>> getTransforms() {
+			return transformList;
+		}
+		
+		@Override
+		public Transformer<?, ? extends Prop<D>> getLastTransform() {
+			return lastTransform;
+		}
+		
 	}
 
 	
@@ -207,7 +225,8 @@ public class BeanPathBuilder<R extends Bean, D extends Bean> {
 		
 		//See first suppression
 		@SuppressWarnings("rawtypes")
-		private Iterator<Transformer> iterator;
+		private final Transformer[] transforms;
+		private int index = 0;
 		Prop<D> finalProp;
 
 		/**
@@ -222,12 +241,12 @@ public class BeanPathBuilder<R extends Bean, D extends Bean> {
 		//We use raw transformers to avoid warnings - we know the transformers follow through correctly
 		//since BeanPathBuilder enforces this as it is built
 		@SuppressWarnings("rawtypes")
-		private BeanPathIteratorDefault(Bean root, List<Transformer> transforms,
+		private BeanPathIteratorDefault(Bean root, Transformer[] transforms,
 				Transformer lastTransform) {
 			super();
 			this.lastTransform = lastTransform;
 			current = root;
-			iterator = transforms.iterator(); 
+			this.transforms = transforms; 
 		}
 
 		//Again relying on correct construction
@@ -255,7 +274,7 @@ public class BeanPathBuilder<R extends Bean, D extends Bean> {
 
 		@Override
 		public boolean hasNext() {
-			return iterator.hasNext();
+			return index < transforms.length;
 		}
 
 		//We know that we are constructed with valid Transformers to give the correct types at each step
@@ -267,7 +286,10 @@ public class BeanPathBuilder<R extends Bean, D extends Bean> {
 			if (current == null) return null;
 			
 			//Use the next transform to get from our current bean, to the desired prop
-			Prop<?> nextProp = (Prop<?>)iterator.next().transform(current);
+			if (index >= transforms.length) {
+				throw new NoSuchElementException();
+			}
+			Prop<?> nextProp = (Prop<?>)transforms[index++].transform(current);
 			
 			//If the next prop is null, then null current bean and return null
 			if (nextProp == null) {
@@ -0,0 +1,40 @@
+package org.jpropeller.properties.calculated.background;
+
+import org.jpropeller.concurrency.Responder;
+import org.jpropeller.properties.change.Changeable;
+
+/**
+ * A {@link Changeable} whose state is calculated in the background,
+ * from the state of other {@link Changeable}s.
+ * <br/>
+ * <br/>
+ * This allows background calculations that depend on other background
+ * calculations to wait for them to complete before calculating, rather 
+ * than calculating from an out of date value, and then again when the 
+ * up to date value is ready.
+ * <br/>
+ * <br/>
+ * Both methods must be called while holding the lock, for example
+ * via {@link org.jpropeller.properties.change.ChangeSystem#acquire()}
+ */
+public interface BackgroundCalculated extends Changeable {
+
+	/**
+	 * @return	True if a calculation is needed or running, because
+	 * 			sources have changed since the last calculation finished.
+	 * 			A calculation that failed still counts as finished, 
+	 * 			although it leaves the current state stale. A cancelled
+	 * 			calculation does not, since another will follow it.
+	 */
+	public boolean isPending();
+	
+	/**
+	 * Request a response from a {@link Responder} when the next
+	 * calculation finishes, whether or not it succeeds.
+	 * The {@link Responder} is only requested once, and is
+	 * only added once if added multiple times before this.
+	 * @param responder		The {@link Responder}
+	 */
+	public void addCompletionResponder(Responder responder);
+	
+}
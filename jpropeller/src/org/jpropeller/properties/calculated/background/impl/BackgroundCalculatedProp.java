@@ -34,12 +34,15 @@ import org.jpropeller.info.PropAccessType;
 import org.jpropeller.info.PropEditability;
 import org.jpropeller.name.PropName;
 import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.calculated.background.BackgroundCalculated;
+import org.jpropeller.properties.calculated.impl.CalculationProfiler;
 import org.jpropeller.properties.change.Change;
 import org.jpropeller.properties.change.Changeable;
 import org.jpropeller.properties.change.ChangeableFeatures;
 import org.jpropeller.properties.change.impl.ChangeDefault;
 import org.jpropeller.properties.change.impl.ChangeableFeaturesDefault;
 import org.jpropeller.properties.change.impl.InternalChangeImplementation;
+import org.jpropeller.properties.change.impl.Versions;
 import org.jpropeller.properties.exception.ReadOnlyException;
 import org.jpropeller.system.Props;
 
@@ -51,39 +54,88 @@ import org.jpropeller.system.Props;
  * recent calculation result - might not be up to date
  * at any given time, but will eventually become correct
  * if the input values remain constant.
+ * <br/>
+ * <br/>
+ * Where the calculation depends on other {@link BackgroundCalculated}s,
+ * it waits for them to complete before calculating - see 
+ * {@link BackgroundCalculations#waitForUpstream(Calculation, Responder)}.
+ * <br/>
+ * <br/>
+ * If all sources are versioned (see {@link Versions#isVersioned(Iterable)}), 
+ * the calculation reads them as at a pinned version, without locking, and so
+ * sees a consistent view even while other threads make changes. Otherwise, 
+ * for example when a source is a collection, each read sees the latest state,
+ * so the calculation may see changes made while it runs - it will be
+ * requested again after those changes, so the value still becomes correct.
  * 
  * @param <T> The type of the {@link Prop} value
  */
-public class BackgroundCalculatedProp<T> implements Prop<T> {
+public class BackgroundCalculatedProp<T> implements Prop<T>, BackgroundCalculated {
 
 	private T cachedValue;
 	private PropName<T> name;
 	private final Calculation<T> calculation;
 	private ChangeableFeaturesDefault features;
 	
+	//True if we can read sources at a pinned version
+	private final boolean versioned;
+	
+	//Requested and finished versions of sources, and completion responders
+	private final BackgroundCalculationTracker tracker = new BackgroundCalculationTracker();
+
+	private final CalculationProfiler.Probe probe = CalculationProfiler.probe(this);
+	
 	//Handles updating in the background - just calculates a new value and then
 	//sets it in this prop
 	private final Runnable updateRunnable = new Runnable() {
 		
 		@Override
 		public void run() {
-			T newValue = calculation.calculate();
-
-			Props.getPropSystem().getChangeSystem().prepareChange(BackgroundCalculatedProp.this);		
-			try {
-				cachedValue = newValue;
-				
-				//Propagate the change we just made
-				Props.getPropSystem().getChangeSystem().propagateChange(BackgroundCalculatedProp.this, ChangeDefault.instance(
-						true,	//Change IS initial 
-						false	//Instance is NOT the same - we must assume new value is produced by calculation
-						));
-			} finally {
-				Props.getPropSystem().getChangeSystem().concludeChange(BackgroundCalculatedProp.this);
-			}
+			tracker.run(calculation, backgroundUpdater, versionCalculation);
+		}
+	};
+	
+	private final BackgroundCalculationTracker.VersionCalculation versionCalculation = new BackgroundCalculationTracker.VersionCalculation() {
+		@Override
+		public boolean calculate(long version) {
+			BackgroundCalculatedProp.this.calculate();
+			return true;
 		}
 	};
 	
+	/**
+	 * Calculate and set a new value
+	 */
+	private void calculate() {
+		//Read a consistent snapshot of sources if we can, without holding 
+		//the lock. We have already acquired the lock since our request, so 
+		//the pinned version includes the change that requested us.
+		T newValue;
+		Versions.Pin pin = versioned ? Versions.pin() : null;
+		long start = probe.start();
+		try {
+			newValue = calculation.calculate();
+		} finally {
+			if (pin != null) {
+				pin.release();
+			}
+		}
+		probe.calculated(start);
+
+		Props.getPropSystem().getChangeSystem().prepareChange(BackgroundCalculatedProp.this);		
+		try {
+			cachedValue = newValue;
+			
+			//Propagate the change we just made
+			Props.getPropSystem().getChangeSystem().propagateChange(BackgroundCalculatedProp.this, ChangeDefault.instance(
+					true,	//Change IS initial 
+					false	//Instance is NOT the same - we must assume new value is produced by calculation
+					));
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeChange(BackgroundCalculatedProp.this);
+		}
+	}
+	
 	/**
 	 * Handles updating in the background - just calculates a new value and then
 	 * sets it in this prop
@@ -117,6 +169,7 @@ public class BackgroundCalculatedProp<T> implements Prop<T> {
 		this.name = name;
 		this.calculation = propCalculation;
 		this.cachedValue = initialValue;
+		this.versioned = Versions.isVersioned(propCalculation.getSources());
 
 		features = new ChangeableFeaturesDefault(new InternalChangeImplementation() {
 			@Override
@@ -126,6 +179,8 @@ public class BackgroundCalculatedProp<T> implements Prop<T> {
 				//We don't actually change in response to seeing source properties change - 
 				//we still retain our old value, we just set off a background update that
 				//will set the newly calculated value in the future
+				probe.invalidated(initial);
+				tracker.invalidate();
 				backgroundUpdater.request();
 				return null;
 			}
@@ -151,6 +206,16 @@ public class BackgroundCalculatedProp<T> implements Prop<T> {
 		}
 	}
 
+	@Override
+	public boolean isPending() {
+		return tracker.isPending();
+	}
+	
+	@Override
+	public void addCompletionResponder(Responder responder) {
+		tracker.addCompletionResponder(responder);
+	}
+	
 	//Normal prop methods
 	
 	@Override
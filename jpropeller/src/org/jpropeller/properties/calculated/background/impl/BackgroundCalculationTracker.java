@@ -0,0 +1,131 @@
+/*
+ *  Copyright (c) 2008 shingoki
+ *
+ *  This file is part of jpropeller, see http://jpropeller.sourceforge.net
+ *
+ *    jpropeller is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    jpropeller is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with jpropeller; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package org.jpropeller.properties.calculated.background.impl;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jpropeller.calculation.Calculation;
+import org.jpropeller.collection.impl.IdentityHashSet;
+import org.jpropeller.concurrency.Responder;
+import org.jpropeller.properties.calculated.background.BackgroundCalculated;
+
+/**
+ * Tracks the state shared by {@link BackgroundCalculated} implementations -
+ * which version of sources has been requested, which has finished 
+ * calculating, and which {@link Responder}s are waiting for the next
+ * calculation to finish - and runs calculations in the right order.
+ */
+class BackgroundCalculationTracker {
+
+	/**
+	 * A calculation of a particular version of sources
+	 */
+	interface VersionCalculation {
+		/**
+		 * Calculate, and set the result if still wanted
+		 * @param version	The requested version being calculated
+		 * @return			False if the calculation was cancelled, in which case
+		 * 					another calculation must already have been requested.
+		 * 					True otherwise, including when the result is discarded.
+		 */
+		boolean calculate(long version);
+	}
+	
+	//Version of sources requested (incremented on each source change), and 
+	//version of sources for which the last calculation ended, even if it failed
+	private final AtomicLong requestedVersion = new AtomicLong(1);
+	private volatile long finishedVersion = 0;
+	
+	//Responders to request when we complete a calculation
+	private final Set<Responder> completionResponders = new IdentityHashSet<Responder>();
+
+	/**
+	 * Note that sources have changed, so a new calculation is needed.
+	 * The caller must then request the calculation.
+	 * @return	The new requested version
+	 */
+	long invalidate() {
+		return requestedVersion.incrementAndGet();
+	}
+	
+	/**
+	 * Run a calculation if it is needed and not waiting for upstream
+	 * {@link BackgroundCalculated}s, then request any completion
+	 * {@link Responder}s.
+	 * @param calculation	The {@link Calculation}, used to find upstream 
+	 * 						{@link BackgroundCalculated}s
+	 * @param responder		The {@link Responder} to request when upstream
+	 * 						{@link BackgroundCalculated}s complete
+	 * @param task			Performs the calculation
+	 */
+	void run(Calculation<?> calculation, Responder responder, VersionCalculation task) {
+		//If we depend on a pending background calculation, we will be requested
+		//again when it completes
+		if (BackgroundCalculations.waitForUpstream(calculation, responder)) {
+			return;
+		}
+		
+		//We may be requested both by a change and by completion of 
+		//a calculation we depend on - no need to calculate twice
+		if (!isPending()) {
+			return;
+		}
+		
+		//A failed calculation still finishes, so that calculations waiting 
+		//for us can go ahead rather than waiting forever. A cancelled one 
+		//does not, since the request that cancelled it may not have changed 
+		//the version - the calculation that follows will finish instead.
+		long version = requestedVersion.get();
+		boolean finished = true;
+		try {
+			finished = task.calculate(version);
+		} finally {
+			if (finished) {
+				finishedVersion = version;
+				BackgroundCalculations.complete(completionResponders);
+			}
+		}
+	}
+	
+	/**
+	 * @return	The latest requested version
+	 */
+	long requestedVersion() {
+		return requestedVersion.get();
+	}
+	
+	/**
+	 * See {@link BackgroundCalculated#isPending()}
+	 * @return	True if a calculation is needed or running
+	 */
+	boolean isPending() {
+		return requestedVersion.get() != finishedVersion;
+	}
+	
+	/**
+	 * See {@link BackgroundCalculated#addCompletionResponder(Responder)}
+	 * @param responder		The {@link Responder}
+	 */
+	void addCompletionResponder(Responder responder) {
+		completionResponders.add(responder);
+	}
+}
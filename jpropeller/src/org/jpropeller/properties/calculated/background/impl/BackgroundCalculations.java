@@ -0,0 +1,126 @@
+/*
+ *  Copyright (c) 2008 shingoki
+ *
+ *  This file is part of jpropeller, see http://jpropeller.sourceforge.net
+ *
+ *    jpropeller is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    jpropeller is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with jpropeller; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package org.jpropeller.properties.calculated.background.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.jpropeller.calculation.Calculation;
+import org.jpropeller.collection.impl.CListCalculated;
+import org.jpropeller.collection.impl.IdentityHashSet;
+import org.jpropeller.concurrency.Responder;
+import org.jpropeller.properties.calculated.background.BackgroundCalculated;
+import org.jpropeller.properties.calculated.impl.CalculatedProp;
+import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.system.Props;
+
+/**
+ * Static methods for scheduling {@link BackgroundCalculated}s
+ * that depend on each other.
+ */
+public class BackgroundCalculations {
+
+	/**
+	 * Private, static methods only
+	 */
+	private BackgroundCalculations(){}
+	
+	/**
+	 * Check whether a {@link Calculation} should wait for any 
+	 * {@link BackgroundCalculated}s it depends on, either directly
+	 * or via {@link CalculatedProp}s and {@link CListCalculated}s. If so, 
+	 * a {@link Responder} is added to each of them, to be requested when 
+	 * they complete.
+	 * <br/>
+	 * <br/>
+	 * Other {@link Changeable}s are not looked through, so for example a
+	 * {@link BackgroundCalculated} reached via a 
+	 * {@link org.jpropeller.properties.path.impl.PathProp} is not waited 
+	 * for - the calculation then runs from its current value, and is 
+	 * requested again when it changes.
+	 * <br/>
+	 * <br/>
+	 * Background calculations should call this before starting, and
+	 * if it returns true, skip calculation, expecting the {@link Responder}
+	 * to be requested again later. Independent calculations still run
+	 * concurrently, but a calculation does not start until those it 
+	 * depends on are complete.
+	 * @param calculation	The {@link Calculation}
+	 * @param responder		The {@link Responder} to request when
+	 * 						any pending {@link BackgroundCalculated}s
+	 * 						complete
+	 * @return				True if the calculation should wait
+	 */
+	public static boolean waitForUpstream(Calculation<?> calculation, Responder responder) {
+		Props.acquire();
+		try {
+			boolean wait = false;
+			Set<Changeable> visited = new IdentityHashSet<Changeable>();
+			List<Changeable> toVisit = new ArrayList<Changeable>(calculation.getSources());
+			while (!toVisit.isEmpty()) {
+				Changeable source = toVisit.remove(toVisit.size() - 1);
+				if (!visited.add(source)) {
+					continue;
+				}
+				
+				//Wait for pending background calculations
+				if (source instanceof BackgroundCalculated) {
+					BackgroundCalculated background = (BackgroundCalculated) source;
+					if (background.isPending()) {
+						background.addCompletionResponder(responder);
+						wait = true;
+					}
+					
+				//Look through calculated props to their sources
+				} else if (source instanceof CalculatedProp<?>) {
+					for (Changeable calculatedSource : ((CalculatedProp<?>) source).getSources()) {
+						toVisit.add(calculatedSource);
+					}
+				} else if (source instanceof CListCalculated<?>) {
+					toVisit.addAll(((CListCalculated<?>) source).getSources());
+				}
+			}
+			return wait;
+		} finally {
+			Props.release();
+		}
+	}
+	
+	/**
+	 * Request each of a set of {@link Responder}s, and clear
+	 * the set. Acquires the lock while doing this.
+	 * @param responders	The {@link Responder}s
+	 */
+	static void complete(Set<Responder> responders) {
+		List<Responder> toRequest;
+		Props.acquire();
+		try {
+			toRequest = new ArrayList<Responder>(responders);
+			responders.clear();
+		} finally {
+			Props.release();
+		}
+		for (Responder responder : toRequest) {
+			responder.request();
+		}
+	}
+}
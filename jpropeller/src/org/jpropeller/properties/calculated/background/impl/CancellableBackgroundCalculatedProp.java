@@ -0,0 +1,440 @@
+/*
+ *  Copyright (c) 2008 shingoki
+ *
+ *  This file is part of jpropeller, see http://jpropeller.sourceforge.net
+ *
+ *    jpropeller is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    jpropeller is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with jpropeller; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package org.jpropeller.properties.calculated.background.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jpropeller.calculation.CancellableCalculation;
+import org.jpropeller.calculation.Calculation;
+import org.jpropeller.concurrency.CancellableResponse;
+import org.jpropeller.concurrency.Responder;
+import org.jpropeller.concurrency.impl.CancellingBackgroundResponder;
+import org.jpropeller.concurrency.impl.ExecutorUtils;
+import org.jpropeller.info.PropAccessType;
+import org.jpropeller.info.PropEditability;
+import org.jpropeller.name.PropName;
+import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.calculated.background.BackgroundCalculated;
+import org.jpropeller.properties.calculated.impl.CalculationProfiler;
+import org.jpropeller.properties.change.Change;
+import org.jpropeller.properties.change.ChangeSystem;
+import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.properties.change.ChangeableFeatures;
+import org.jpropeller.properties.change.impl.ChangeDefault;
+import org.jpropeller.properties.change.impl.ChangeableFeaturesDefault;
+import org.jpropeller.properties.change.impl.InternalChangeImplementation;
+import org.jpropeller.properties.change.impl.Versions;
+import org.jpropeller.properties.exception.ReadOnlyException;
+import org.jpropeller.system.Props;
+import org.jpropeller.util.GeneralUtils;
+
+/**
+ * A {@link Prop} which calculates its value in the background, like
+ * {@link BackgroundCalculatedProp}, but which:
+ * <ul>
+ * <li>Cancels a running calculation when sources change, since its result 
+ * would be discarded. A {@link CancellableCalculation} is passed a flag so
+ * it can stop early, other {@link Calculation}s run to completion but their
+ * result is still discarded.</li>
+ * <li>Optionally waits for a quiet period with no changes to sources before
+ * calculating, so that a burst of changes only causes one calculation.</li>
+ * <li>Provides {@link #stale()} and {@link #computing()} {@link Prop}s, so
+ * that readers can tell whether the value is up to date, and whether a
+ * calculation is running.</li>
+ * <li>Records the number and duration of calculations.</li>
+ * <li>Waits for any {@link BackgroundCalculated}s it depends on to complete
+ * before calculating - see {@link BackgroundCalculations#waitForUpstream(Calculation, Responder)}.</li>
+ * <li>Reads sources at a pinned version, as {@link BackgroundCalculatedProp} 
+ * does, only if they are all versioned.</li>
+ * </ul>
+ * 
+ * @param <T> The type of the {@link Prop} value
+ */
+public class CancellableBackgroundCalculatedProp<T> implements Prop<T>, BackgroundCalculated {
+
+	private final static Logger logger = GeneralUtils.logger(CancellableBackgroundCalculatedProp.class);
+	
+	private T cachedValue;
+	private final PropName<T> name;
+	private final Calculation<T> calculation;
+	
+	//True if we can read sources at a pinned version
+	private final boolean versioned;
+	private final ChangeableFeaturesDefault features;
+	
+	//Requested and finished versions of sources, and completion responders
+	private final BackgroundCalculationTracker tracker = new BackgroundCalculationTracker();
+	
+	//Version of sources used for the current value
+	private volatile long completedVersion = 0;
+	private volatile boolean computing = false;
+
+	private final CalculationProfiler.Probe probe = CalculationProfiler.probe(this);
+	
+	private final StatusProp staleProp;
+	private final StatusProp computingProp;
+	
+	//Statistics
+	private final AtomicLong calculationCount = new AtomicLong(0);
+	private final AtomicLong cancelledCount = new AtomicLong(0);
+	private final AtomicLong totalCalculationNanos = new AtomicLong(0);
+	private volatile long lastCalculationNanos = 0;
+	private volatile long maxCalculationNanos = 0;
+	
+	//Calculates a new value and then sets it in this prop, unless cancelled
+	private final CancellableResponse response = new CancellableResponse() {
+		@Override
+		public void respond(final AtomicBoolean shouldCancel) {
+			//A cancelled calculation is always followed by another, 
+			//since only a new request cancels it
+			tracker.run(calculation, backgroundUpdater, new BackgroundCalculationTracker.VersionCalculation() {
+				@Override
+				public boolean calculate(long version) {
+					return CancellableBackgroundCalculatedProp.this.calculate(version, shouldCancel);
+				}
+			});
+		}
+	};
+	
+	private final Responder backgroundUpdater;
+
+	/**
+	 * Create a prop using default {@link ExecutorService} from {@link ExecutorUtils}
+	 * @param name 				The name of the prop
+	 * @param calculation 		The calculation used for the prop value
+	 * @param initialValue 		The initial value for the prop, used until the first
+	 * 							calculation result is ready
+	 * @param quietPeriod		Calculation starts only when sources have not changed
+	 * 							for this time in milliseconds. May be 0 to start immediately.
+	 */
+	public CancellableBackgroundCalculatedProp(PropName<T> name, Calculation<T> calculation, T initialValue, long quietPeriod) {
+		this(name, calculation, initialValue, quietPeriod, ExecutorUtils.getExecutorService());
+	}
+	
+	/**
+	 * Create a prop
+	 * @param name 				The name of the prop
+	 * @param calculation 		The calculation used for the prop value
+	 * @param initialValue 		The initial value for the prop, used until the first
+	 * 							calculation result is ready
+	 * @param quietPeriod		Calculation starts only when sources have not changed
+	 * 							for this time in milliseconds. May be 0 to start immediately.
+	 * @param executor			The {@link ExecutorService} actually used to 
+	 * 							run background calculation
+	 */
+	public CancellableBackgroundCalculatedProp(PropName<T> name, Calculation<T> calculation, T initialValue, long quietPeriod, ExecutorService executor) {
+
+		this.backgroundUpdater = new CancellingBackgroundResponder(response, executor, quietPeriod, ExecutorUtils.getScheduledExecutorService());
+		
+		this.name = name;
+		this.calculation = calculation;
+		this.cachedValue = initialValue;
+		this.versioned = Versions.isVersioned(calculation.getSources());
+
+		features = new ChangeableFeaturesDefault(new InternalChangeImplementation() {
+			@Override
+			public Change internalChange(Changeable changed, Change change,
+					List<Changeable> initial, Map<Changeable, Change> changes) {
+				
+				//We retain our old value, but it is now stale, and 
+				//we need a new background calculation
+				probe.invalidated(initial);
+				tracker.invalidate();
+				backgroundUpdater.request();
+				return null;
+			}
+		}, this); 
+
+		staleProp = new StatusProp(PropName.create(Boolean.class, name.getString() + "Stale"), true);
+		computingProp = new StatusProp(PropName.create(Boolean.class, name.getString() + "Computing"), false);
+		
+		//Listen to each source changeable - the stale prop 
+		//becomes stale immediately when a source changes
+		for (Changeable changeable : calculation.getSources()) {
+			changeable.features().addChangeableListener(this);
+			changeable.features().addChangeableListener(staleProp);
+		}
+		
+		//Start initial calculation
+		backgroundUpdater.request();
+	}
+	
+	/**
+	 * Calculate and set a new value, unless cancelled
+	 * @param version		The requested version being calculated
+	 * @param shouldCancel	Set when the calculation should be cancelled
+	 * @return				False if cancelled
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean calculate(long version, AtomicBoolean shouldCancel) {
+		setComputing(true);
+		boolean published = false;
+		try {
+			long start = System.nanoTime();
+			
+			//Read a consistent snapshot of sources if we can, without holding 
+			//the lock. We have already acquired the lock since our request, so 
+			//the pinned version includes the change that requested us.
+			T newValue;
+			Versions.Pin pin = versioned ? Versions.pin() : null;
+			long profileStart = probe.start();
+			try {
+				if (calculation instanceof CancellableCalculation<?>) {
+					newValue = ((CancellableCalculation<T>) calculation).calculate(shouldCancel);
+				} else {
+					newValue = calculation.calculate();
+				}
+			} finally {
+				if (pin != null) {
+					pin.release();
+				}
+			}
+			probe.calculated(profileStart);
+			long duration = System.nanoTime() - start;
+			
+			//Superseded results are discarded
+			if (shouldCancel.get()) {
+				cancelledCount.incrementAndGet();
+				logger.log(Level.FINEST, "Cancelled calculation of {0} after {1}ns", new Object[]{name, duration});
+				return false;
+			}
+			
+			calculationCount.incrementAndGet();
+			totalCalculationNanos.addAndGet(duration);
+			lastCalculationNanos = duration;
+			if (duration > maxCalculationNanos) {
+				maxCalculationNanos = duration;
+			}
+			logger.log(Level.FINEST, "Calculated {0} in {1}ns", new Object[]{name, duration});
+			
+			ChangeSystem changeSystem = Props.getPropSystem().getChangeSystem(); 
+			changeSystem.prepareChange(this);		
+			try {
+				cachedValue = newValue;
+				completedVersion = version;
+				computing = false;
+				published = true;
+				
+				//Propagate the changes we just made
+				changeSystem.propagateChange(this, ChangeDefault.instance(true, false));
+				changeSystem.propagateChange(staleProp, ChangeDefault.instance(true, false));
+				changeSystem.propagateChange(computingProp, ChangeDefault.instance(true, false));
+			} finally {
+				changeSystem.concludeChange(this);
+			}
+			return true;
+		} finally {
+			if (!published) {
+				setComputing(false);
+			}
+		}
+	}
+	
+	private void setComputing(boolean newComputing) {
+		ChangeSystem changeSystem = Props.getPropSystem().getChangeSystem(); 
+		changeSystem.prepareChange(computingProp);		
+		try {
+			if (computing != newComputing) {
+				computing = newComputing;
+				changeSystem.propagateChange(computingProp, ChangeDefault.instance(true, false));
+			}
+		} finally {
+			changeSystem.concludeChange(computingProp);
+		}
+	}
+
+	@Override
+	public T get() {
+		Props.getPropSystem().getChangeSystem().prepareRead(this);
+		try {
+			//Always just return the cached value
+			return cachedValue;
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeRead(this);
+		}
+	}
+	
+	@Override
+	public boolean isPending() {
+		return tracker.isPending();
+	}
+	
+	@Override
+	public void addCompletionResponder(Responder responder) {
+		tracker.addCompletionResponder(responder);
+	}
+	
+	/**
+	 * @return	A {@link Prop} that is true when sources have changed 
+	 * 			since the current value was calculated - that is, when 
+	 * 			the value is not up to date.
+	 */
+	public Prop<Boolean> stale() {
+		return staleProp;
+	}
+
+	/**
+	 * @return	A {@link Prop} that is true while a calculation is running
+	 */
+	public Prop<Boolean> computing() {
+		return computingProp;
+	}
+	
+	/**
+	 * @return	The number of calculations completed and used
+	 */
+	public long getCalculationCount() {
+		return calculationCount.get();
+	}
+
+	/**
+	 * @return	The number of calculations cancelled, or discarded 
+	 * 			because they were superseded
+	 */
+	public long getCancelledCount() {
+		return cancelledCount.get();
+	}
+	
+	/**
+	 * @return	The total duration of calculations completed and used, in nanoseconds
+	 */
+	public long getTotalCalculationNanos() {
+		return totalCalculationNanos.get();
+	}
+
+	/**
+	 * @return	The duration of the last calculation completed and used, in nanoseconds
+	 */
+	public long getLastCalculationNanos() {
+		return lastCalculationNanos;
+	}
+	
+	/**
+	 * @return	The longest duration of a calculation completed and used, in nanoseconds
+	 */
+	public long getMaxCalculationNanos() {
+		return maxCalculationNanos;
+	}
+
+	//Normal prop methods
+	
+	@Override
+	public ChangeableFeatures features() {
+		return features;
+	}
+	
+	@Override
+	public String toString() {
+		return "Cancellable Background Calculated Prop '" + getName().getString() + "' = '" + get() + "'";
+	}
+	
+	@Override
+	public PropName<T> getName() {
+		return name;
+	}
+
+	@Override
+	public PropEditability getEditability() {
+		return PropEditability.READ_ONLY;
+	}
+
+	@Override
+	public PropAccessType getAccessType() {
+		return PropAccessType.SINGLE;
+	}
+	
+	@Override
+	public void set(T value) throws UnsupportedOperationException {
+		throw new ReadOnlyException("Calculated property cannot be set");
+	}
+	
+	/**
+	 * Read-only {@link Prop} giving the stale or computing state
+	 */
+	private class StatusProp implements Prop<Boolean> {
+		private final PropName<Boolean> statusName;
+		private final boolean stale;
+		private final ChangeableFeaturesDefault statusFeatures;
+		
+		private StatusProp(PropName<Boolean> statusName, boolean stale) {
+			this.statusName = statusName;
+			this.stale = stale;
+			statusFeatures = new ChangeableFeaturesDefault(new InternalChangeImplementation() {
+				@Override
+				public Change internalChange(Changeable changed, Change change,
+						List<Changeable> initial, Map<Changeable, Change> changes) {
+					//Only the stale prop listens to sources, and any change makes it stale
+					return ChangeDefault.instance(false, false);
+				}
+			}, this);
+		}
+
+		@Override
+		public Boolean get() {
+			Props.getPropSystem().getChangeSystem().prepareRead(this);
+			try {
+				if (stale) {
+					return tracker.requestedVersion() != completedVersion;
+				} else {
+					return computing;
+				}
+			} finally {
+				Props.getPropSystem().getChangeSystem().concludeRead(this);
+			}
+		}
+
+		@Override
+		public ChangeableFeatures features() {
+			return statusFeatures;
+		}
+
+		@Override
+		public PropName<Boolean> getName() {
+			return statusName;
+		}
+
+		@Override
+		public PropEditability getEditability() {
+			return PropEditability.READ_ONLY;
+		}
+
+		@Override
+		public PropAccessType getAccessType() {
+			return PropAccessType.SINGLE;
+		}
+
+		@Override
+		public void set(Boolean value) {
+			throw new ReadOnlyException("Status property cannot be set");
+		}
+		
+		@Override
+		public String toString() {
+			return "Status Prop '" + getName().getString() + "' = '" + get() + "'";
+		}
+	}
+}
@@ -24,36 +24,84 @@ package org.jpropeller.properties.calculated.impl;
 
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.jpropeller.calculation.Calculation;
+import org.jpropeller.calculation.IncrementalCalculation;
 import org.jpropeller.info.PropAccessType;
 import org.jpropeller.info.PropEditability;
 import org.jpropeller.name.PropName;
 import org.jpropeller.properties.Prop;
 import org.jpropeller.properties.change.Change;
+import org.jpropeller.properties.change.ChangeSystem;
 import org.jpropeller.properties.change.Changeable;
 import org.jpropeller.properties.change.ChangeableFeatures;
+import org.jpropeller.properties.change.DeferredChange;
+import org.jpropeller.properties.change.VersionedChangeable;
 import org.jpropeller.properties.change.impl.ChangeDefault;
 import org.jpropeller.properties.change.impl.ChangeableFeaturesDefault;
 import org.jpropeller.properties.change.impl.InternalChangeImplementation;
+import org.jpropeller.properties.change.impl.Versions;
 import org.jpropeller.properties.exception.ReadOnlyException;
 import org.jpropeller.system.Props;
+import org.jpropeller.util.Equivalence;
+import org.jpropeller.util.GeneralUtils;
 
 /**
  * A {@link Prop} which calculates its value as needed
  * based on the values of other properties
+ * <br/>
+ * <br/>
+ * If the {@link Calculation} is an {@link IncrementalCalculation}, the
+ * value is updated from the previous value where possible.
+ * <br/>
+ * <br/>
+ * Optionally, a {@link CalculatedProp} can use "early cutoff" - when
+ * a source changes, the value is recalculated as part of the propagation
+ * of the change, and if the new value is equivalent to the old one, propagation
+ * stops at this {@link Prop}, so that nothing calculated from it, and no
+ * listeners to it, see a change. This costs an eager recalculation on each
+ * change, so is best used for values that change much less often than
+ * their sources, for example a rounded total or a boolean flag.
+ * Recalculation is deferred using {@link ChangeSystem#deferChange(Changeable, DeferredChange)},
+ * so that it does not see sources not yet reached by the propagation.
+ * <br/>
+ * <br/>
+ * A thread that has pinned a version using {@link Versions#pin()} reads
+ * the cached value without locking if it is still valid at that version,
+ * and otherwise calculates a value from the sources as at that version,
+ * without caching it. This is only consistent if all sources are 
+ * {@link VersionedChangeable}s, see {@link #isVersioned()}.
  * 
  * @param <T>
  * 		The type of the {@link Prop} value
  */
-public class CalculatedProp<T> implements Prop<T> {
+public class CalculatedProp<T> implements Prop<T>, VersionedChangeable {
+
+	private final static Logger logger = GeneralUtils.logger(CalculatedProp.class);
 
 	T cachedValue;
 	boolean cacheValid = false;
 	PropName<T> name;
 	Calculation<T> calculation;
+	IncrementalCalculator<T> calculator;
 	ChangeableFeaturesDefault features;
 	
+	//Early cutoff state - cutoff is null if not used
+	Equivalence<? super T> cutoff;
+	boolean checkPending = false;
+	T checkedValue;
+	long checkCount = 0;
+	long cutoffCount = 0;
+	Snapshot<T> checkedSnapshot;
+	
+	final CalculationProfiler.Probe probe = CalculationProfiler.probe(this);
+	
+	//The last calculated value, and the versions it is valid for,
+	//for reads by threads with a pinned version
+	volatile Snapshot<T> snapshot = null;
+	
 	/**
 	 * Create a prop
 	 * @param name
@@ -62,16 +110,69 @@ public class CalculatedProp<T> implements Prop<T> {
 	 * 		The calculation used for the prop value
 	 */
 	public CalculatedProp(PropName<T> name, Calculation<T> calculation) {
+		this(name, calculation, null);
+	}
+	
+	/**
+	 * Create a prop
+	 * @param name
+	 * 		The name of the prop
+	 * @param calculation
+	 * 		The calculation used for the prop value
+	 * @param cutoff
+	 * 		If non-null, the prop uses early cutoff, and will not 
+	 * propagate a change when a recalculated value is equivalent
+	 * to the previous value under this {@link Equivalence}.
+	 * If null, the prop does not use early cutoff.
+	 */
+	public CalculatedProp(PropName<T> name, Calculation<T> calculation, Equivalence<? super T> cutoff) {
 		this.name = name;
 		this.calculation = calculation;
+		this.calculator = new IncrementalCalculator<T>(calculation);
+		this.cutoff = cutoff;
+		
+		final DeferredChange check = new DeferredChange() {
+			@Override
+			public Change resolve() {
+				return check();
+			}
+		};
 		
 		features = new ChangeableFeaturesDefault(new InternalChangeImplementation() {
 			@Override
 			public Change internalChange(Changeable changed, Change change,
 					List<Changeable> initial, Map<Changeable, Change> changes) {
 				
+				calculator.sourceChanged(changed, change);
+				
+				if (cacheValid) {
+					probe.invalidated(initial);
+				}
+				
+				//With early cutoff, if we have a value we have not yet told
+				//anyone is out of date, check it once propagation has
+				//reached everything else, instead of changing now.
+				if (CalculatedProp.this.cutoff != null) {
+					
+					//Already checking
+					if (checkPending) {
+						return null;
+					}
+					
+					if (cacheValid) {
+						checkedValue = cachedValue;
+						checkedSnapshot = snapshot;
+						invalidateSnapshot();
+						cacheValid = false;
+						checkPending = true;
+						Props.getPropSystem().getChangeSystem().deferChange(CalculatedProp.this, check);
+						return null;
+					}
+				}
+				
 				//Mark the cache as invalid - it will need to be recalculated
 				cacheValid = false;
+				invalidateSnapshot();
 				
 				//Since we only listen to the actual props we are calculated
 				//from, we don't need to filter here, we always have a
@@ -90,6 +191,124 @@ public class CalculatedProp<T> implements Prop<T> {
 		}
 	}
 	
+	/**
+	 * Create a prop using early cutoff, so that it does not propagate
+	 * a change when a recalculated value equals the previous value
+	 * @param <T>			The type of the {@link Prop} value
+	 * @param name			The name of the prop
+	 * @param calculation	The calculation used for the prop value
+	 * @return				A new {@link CalculatedProp}
+	 */
+	public static <T> CalculatedProp<T> withCutoff(PropName<T> name, Calculation<T> calculation) {
+		return new CalculatedProp<T>(name, calculation, new Equivalence<T>() {
+			@Override
+			public boolean equivalent(T a, T b) {
+				return GeneralUtils.equalIncludingNull(a, b);
+			}
+		});
+	}
+	
+	/**
+	 * Create a prop using early cutoff, so that it does not propagate
+	 * a change when a recalculated value is equivalent to the previous value
+	 * @param <T>			The type of the {@link Prop} value
+	 * @param name			The name of the prop
+	 * @param calculation	The calculation used for the prop value
+	 * @param equivalence	Used to check whether values are equivalent
+	 * @return				A new {@link CalculatedProp}
+	 */
+	public static <T> CalculatedProp<T> withCutoff(PropName<T> name, Calculation<T> calculation, Equivalence<? super T> equivalence) {
+		return new CalculatedProp<T>(name, calculation, equivalence);
+	}
+	
+	/**
+	 * Recalculate after a propagation has reached all sources,
+	 * and see whether we have changed
+	 * @return	The change, or null if there is none
+	 */
+	private Change check() {
+		checkPending = false;
+		checkCount++;
+		
+		//Recalculate, unless we have already been read since the propagation
+		T value;
+		try {
+			value = get();
+		} catch (RuntimeException e) {
+			//Leave the error to be seen by whoever next reads us, and
+			//assume we have changed
+			logger.log(Level.FINE, "Calculation failed while checking for early cutoff", e);
+			cacheValid = false;
+			checkedValue = null;
+			checkedSnapshot = null;
+			return ChangeDefault.instance(false, false);
+		}
+		
+		//If value is equivalent, keep the previous value, so that anything
+		//reading it sees the same value as before, and don't change
+		if (cutoff.equivalent(checkedValue, value)) {
+			cachedValue = checkedValue;
+			if (checkedSnapshot != null) {
+				snapshot = new Snapshot<T>(checkedValue, checkedSnapshot.from, Long.MAX_VALUE);
+			}
+			checkedValue = null;
+			checkedSnapshot = null;
+			cutoffCount++;
+			return null;
+		}
+		
+		checkedValue = null;
+		checkedSnapshot = null;
+		return ChangeDefault.instance(false, false);
+	}
+	
+	/**
+	 * Mark the snapshot as no longer valid from the version
+	 * currently being written
+	 */
+	private void invalidateSnapshot() {
+		Snapshot<T> s = snapshot;
+		if (s != null && s.until == Long.MAX_VALUE) {
+			snapshot = new Snapshot<T>(s.value, s.from, Versions.latest());
+		}
+	}
+	
+	/**
+	 * @return	True if this prop uses early cutoff
+	 */
+	public boolean usesCutoff() {
+		return cutoff != null;
+	}
+	
+	/**
+	 * Get the number of times this prop has recalculated to
+	 * check for early cutoff, during propagation of changes 
+	 * @return	Number of checks
+	 */
+	public long getCheckCount() {
+		Props.getPropSystem().getChangeSystem().prepareRead(this);
+		try {
+			return checkCount;
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeRead(this);
+		}
+	}
+	
+	/**
+	 * Get the number of times this prop has stopped propagation
+	 * of a change, because its recalculated value was equivalent
+	 * to the previous value 
+	 * @return	Number of changes cut off
+	 */
+	public long getCutoffCount() {
+		Props.getPropSystem().getChangeSystem().prepareRead(this);
+		try {
+			return cutoffCount;
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeRead(this);
+		}
+	}
+	
 	@Override
 	public ChangeableFeatures features() {
 		return features;
@@ -97,11 +316,26 @@ public class CalculatedProp<T> implements Prop<T> {
 
 	@Override
 	public T get() {
+		//A thread with a pinned version uses the snapshot if it is
+		//valid for that version, otherwise calculates without caching,
+		//reading sources as at that version
+		if (Versions.isPinned()) {
+			long version = Versions.pinnedVersion();
+			Snapshot<T> s = snapshot;
+			if (s != null && s.from <= version && version < s.until) {
+				return s.value;
+			}
+			return calculation.calculate();
+		}
+		
 		Props.getPropSystem().getChangeSystem().prepareRead(this);
 		try {
 			if (!cacheValid) {
-				cachedValue = calculation.calculate();
+				long start = probe.start();
+				cachedValue = calculateIsolated();
+				probe.calculated(start);
 				cacheValid = true;
+				snapshot = new Snapshot<T>(cachedValue, Versions.latest(), Long.MAX_VALUE);
 			}
 			return cachedValue;
 		} finally {
@@ -109,6 +343,82 @@ public class CalculatedProp<T> implements Prop<T> {
 		}
 	}
 
+	/**
+	 * Get the {@link Changeable}s this prop is currently calculated from
+	 * @return		The sources
+	 */
+	public Iterable<? extends Changeable> getSources() {
+		Props.getPropSystem().getChangeSystem().prepareRead(this);
+		try {
+			return sources();
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeRead(this);
+		}
+	}
+	
+	/**
+	 * @return	True if all sources are versioned, so that a pinned 
+	 * 			read sees the value as at the pinned version
+	 */
+	@Override
+	public boolean isVersioned() {
+		return Versions.isVersioned(calculation.getSources());
+	}
+	
+	/**
+	 * @return	True if the cached value is valid, so that reading
+	 * 			will not cause a calculation. Called while the lock is held.
+	 */
+	boolean isCacheValid() {
+		return cacheValid;
+	}
+	
+	/**
+	 * @return	The {@link Changeable}s this prop is currently calculated
+	 * 			from. Called while the lock is held.
+	 */
+	Iterable<? extends Changeable> sources() {
+		return calculation.getSources();
+	}
+	
+	/**
+	 * Calculate the current value, called while the lock is held
+	 * @return	The value
+	 */
+	T calculate() {
+		return calculator.calculate();
+	}
+	
+	/**
+	 * Calculate the current value, called while the lock is held.
+	 * Reads made by the calculation are kept out of any recording
+	 * of reads in progress, so that a {@link RecordingCalculatedProp} 
+	 * reading this prop records only this prop, and not our sources,
+	 * whether or not we needed to recalculate.
+	 * @return	The value
+	 */
+	private T calculateIsolated() {
+		ChangeSystem changeSystem = Props.getPropSystem().getChangeSystem();
+		changeSystem.startRecordingReads();
+		try {
+			return calculate();
+		} finally {
+			changeSystem.stopRecordingReads();
+		}
+	}
+
+	//A calculated value, valid from one version up to but not including another
+	static class Snapshot<T> {
+		final T value;
+		final long from;
+		final long until;
+		Snapshot(T value, long from, long until) {
+			this.value = value;
+			this.from = from;
+			this.until = until;
+		}
+	}
+	
 	@Override
 	public String toString() {
 		return "Calculated Prop '" + getName().getString() + "' = '" + get() + "'";
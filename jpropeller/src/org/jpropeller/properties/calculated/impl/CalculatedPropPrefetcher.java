@@ -0,0 +1,175 @@
+/*
+ *  Copyright (c) 2008 shingoki
+ *
+ *  This file is part of jpropeller, see http://jpropeller.sourceforge.net
+ *
+ *    jpropeller is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    jpropeller is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with jpropeller; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package org.jpropeller.properties.calculated.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jpropeller.properties.change.ChangeListener;
+import org.jpropeller.properties.change.ChangeSystem;
+import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.properties.change.impl.ChangeSystemDefault;
+import org.jpropeller.system.Props;
+import org.jpropeller.util.GeneralUtils;
+
+/**
+ * Recalculates invalid {@link CalculatedProp}s in parallel, before 
+ * {@link ChangeListener}s read them.
+ * <br/>
+ * <br/>
+ * After a change, each {@link CalculatedProp} that has changed and has 
+ * {@link ChangeListener}s is likely to be read when the listeners are
+ * notified, and each such read calculates with the lock held, one after
+ * another. Instead, we find these {@link CalculatedProp}s, along with 
+ * any invalid {@link CalculatedProp}s they are calculated from, and 
+ * group them by level - a {@link CalculatedProp} is one level above the
+ * highest level of the invalid {@link CalculatedProp}s it is calculated from.
+ * Each level is then calculated in parallel, using
+ * {@link ChangeSystemDefault#runParallelReads(List, ExecutorService)}, so 
+ * that the time taken is close to that of the longest chain of calculations,
+ * rather than the sum of all calculations.
+ * <br/>
+ * <br/>
+ * Enable for the default {@link ChangeSystem} using 
+ * {@link ChangeSystemDefault#setPrefetchCalculations(boolean)}.
+ */
+public class CalculatedPropPrefetcher {
+
+	private final static Logger logger = GeneralUtils.logger(CalculatedPropPrefetcher.class);
+	
+	/**
+	 * Private, static methods only
+	 */
+	private CalculatedPropPrefetcher(){}
+	
+	/**
+	 * Prefetch the invalid {@link CalculatedProp}s needed by {@link ChangeListener}s
+	 * of the given changed {@link Changeable}s. This must be called while the lock
+	 * is held, and the {@link ChangeSystem} must be a {@link ChangeSystemDefault}.
+	 * @param changed		The changed {@link Changeable}s
+	 * @param executor		{@link ExecutorService} used for calculations
+	 */
+	public static void prefetch(Collection<Changeable> changed, ExecutorService executor) {
+		ChangeSystem system = Props.getPropSystem().getChangeSystem();
+		if (!(system instanceof ChangeSystemDefault)) {
+			return;
+		}
+		
+		//Find the level of each invalid prop needed by listeners
+		Map<CalculatedProp<?>, Integer> levels = new IdentityHashMap<CalculatedProp<?>, Integer>();
+		for (Changeable changeable : changed) {
+			if (changeable instanceof CalculatedProp<?> && changeable.features().listenerList().iterator().hasNext()) {
+				level((CalculatedProp<?>) changeable, levels);
+			}
+		}
+		
+		//Nothing to do
+		if (levels.isEmpty()) {
+			return;
+		}
+		
+		//Group by level
+		List<List<CalculatedProp<?>>> byLevel = new ArrayList<List<CalculatedProp<?>>>();
+		for (Map.Entry<CalculatedProp<?>, Integer> entry : levels.entrySet()) {
+			int level = entry.getValue();
+			if (level < 0) {
+				continue;
+			}
+			while (byLevel.size() <= level) {
+				byLevel.add(new ArrayList<CalculatedProp<?>>());
+			}
+			byLevel.get(level).add(entry.getKey());
+		}
+		
+		//Calculate each level in turn - a single prop is 
+		//quicker to calculate directly
+		for (List<CalculatedProp<?>> props : byLevel) {
+			if (props.size() == 1) {
+				calculate(props.get(0));
+			} else {
+				List<Runnable> tasks = new ArrayList<Runnable>(props.size());
+				for (final CalculatedProp<?> prop : props) {
+					tasks.add(new Runnable() {
+						@Override
+						public void run() {
+							calculate(prop);
+						}
+					});
+				}
+				((ChangeSystemDefault) system).runParallelReads(tasks, executor);
+			}
+		}
+	}
+	
+	private static void calculate(CalculatedProp<?> prop) {
+		//Errors will be seen again by the reader, so don't
+		//need any more than a note here
+		try {
+			prop.get();
+		} catch (RuntimeException e) {
+			logger.log(Level.FINE, "Exception prefetching " + prop.getName(), e);
+		}
+	}
+	
+	/**
+	 * Find the level of an invalid {@link CalculatedProp}, adding it, and
+	 * any invalid {@link CalculatedProp}s it is calculated from, to the
+	 * levels map.
+	 * <p/>
+	 * Only sources that are themselves {@link CalculatedProp}s are followed. 
+	 * An invalid prop reached through any other {@link Changeable} (for
+	 * example a {@link org.jpropeller.collection.impl.CListCalculated} or
+	 * {@link org.jpropeller.properties.path.impl.PathProp}) is not levelled,
+	 * so it is calculated by whichever task first reads it, contending for
+	 * its lock with any other task that reads it at the same time.
+	 * @param prop		The prop
+	 * @param levels	The map of levels 
+	 * @return			The level, or -1 if prop is valid
+	 */
+	private static int level(CalculatedProp<?> prop, Map<CalculatedProp<?>, Integer> levels) {
+		Integer existing = levels.get(prop);
+		if (existing != null) {
+			return existing;
+		}
+		if (prop.isCacheValid()) {
+			return -1;
+		}
+		
+		//Mark as valid while we work out the level, to
+		//avoid looping if there is a cycle 
+		levels.put(prop, -1);
+		
+		int level = 0;
+		for (Changeable source : prop.sources()) {
+			if (source instanceof CalculatedProp<?>) {
+				level = Math.max(level, level((CalculatedProp<?>) source, levels) + 1);
+			}
+		}
+		levels.put(prop, level);
+		return level;
+	}
+}
@@ -0,0 +1,444 @@
+/*
+ *  Copyright (c) 2008 shingoki
+ *
+ *  This file is part of jpropeller, see http://jpropeller.sourceforge.net
+ *
+ *    jpropeller is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    jpropeller is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with jpropeller; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package org.jpropeller.properties.calculated.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jpropeller.bean.Bean;
+import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.change.ChangeSystem;
+import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.properties.change.ChangeableFeatures;
+import org.jpropeller.properties.change.LazyChangeable;
+import org.jpropeller.system.Props;
+import org.jpropeller.util.FileUtils;
+import org.jpropeller.util.WeakIdentityDictionary;
+
+/**
+ * Optional profiling of calculated {@link Changeable}s, recording
+ * for each one the number of invalidations and recalculations,
+ * the time spent calculating, and the initial {@link Changeable}s
+ * that caused invalidations.
+ * <p/>
+ * Statistics are grouped by the class of the owning {@link Bean}
+ * and the name of the {@link Prop}, so all instances of a 
+ * calculated {@link Prop} in a {@link Bean} class are combined.
+ * <p/>
+ * Profiling is disabled by default, when it costs one volatile
+ * read per event. When enabled, only one in every
+ * {@link #setSamplingInterval(int)} events is recorded, so
+ * profiling can be left enabled in production with a suitable interval.
+ * Counts reported are of sampled events only.
+ */
+public final class CalculationProfiler {
+
+	private CalculationProfiler() {}
+
+	//Maximum number of distinct causes recorded for each entry
+	private final static int MAX_CAUSES = 32;
+	private final static String OTHER_CAUSES = "(other)";
+	
+	private final static long NOT_SAMPLED = Long.MIN_VALUE;
+	
+	private static volatile boolean enabled = false;
+	private static volatile int samplingInterval = 1;
+	
+	//Not thread safe, but only used to choose events to sample. Each
+	//kind of event has its own tick, so that regularly alternating events
+	//are sampled evenly.
+	private static int invalidationTick = 0;
+	private static int calculationTick = 0;
+	
+	private final static ConcurrentMap<String, Stats> stats = new ConcurrentHashMap<String, Stats>();
+	
+	//Descriptions of changeables, so that describing a cause does
+	//not need to read its listeners each time
+	private final static WeakIdentityDictionary<Changeable, String> descriptions = new WeakIdentityDictionary<Changeable, String>();
+	
+	//Incremented on reset, so probes know to find new statistics
+	private static volatile int generation = 0;
+	
+	/**
+	 * Enable or disable profiling
+	 * @param enabled	True to record events
+	 */
+	public static void setEnabled(boolean enabled) {
+		CalculationProfiler.enabled = enabled;
+	}
+	
+	/**
+	 * @return	True if profiling is enabled
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * Set how often events are recorded
+	 * @param interval	One in every interval events is recorded, 
+	 * 					1 to record all events
+	 */
+	public static void setSamplingInterval(int interval) {
+		if (interval < 1) {
+			throw new IllegalArgumentException("Sampling interval must be at least 1");
+		}
+		samplingInterval = interval;
+	}
+	
+	/**
+	 * @return	One in this many events is recorded
+	 */
+	public static int getSamplingInterval() {
+		return samplingInterval;
+	}
+	
+	/**
+	 * Discard all recorded statistics
+	 */
+	public static void reset() {
+		generation++;
+		stats.clear();
+	}
+	
+	/**
+	 * Create a {@link Probe} for a calculated {@link Changeable},
+	 * which it uses to report events
+	 * @param changeable	The calculated {@link Changeable}
+	 * @return				A new {@link Probe}
+	 */
+	public static Probe probe(Changeable changeable) {
+		return new Probe(changeable);
+	}
+	
+	/**
+	 * Get the statistics with the most time spent calculating
+	 * @param n		The maximum number of statistics to return
+	 * @return		Statistics, in descending order of time spent calculating
+	 */
+	public static List<Stats> top(int n) {
+		List<Stats> list = new ArrayList<Stats>(stats.values());
+		Collections.sort(list, new Comparator<Stats>() {
+			@Override
+			public int compare(Stats a, Stats b) {
+				long ta = a.getCalculationNanos();
+				long tb = b.getCalculationNanos();
+				if (ta != tb) {
+					return ta > tb ? -1 : 1;
+				}
+				long ca = a.getCalculationCount();
+				long cb = b.getCalculationCount();
+				return ca > cb ? -1 : (ca == cb ? 0 : 1);
+			}
+		});
+		if (list.size() > n) {
+			return new ArrayList<Stats>(list.subList(0, n));
+		}
+		return list;
+	}
+	
+	/**
+	 * Produce a report of the statistics with the most time spent calculating
+	 * @param n		The maximum number of statistics to report
+	 * @return		The report, one line per statistic
+	 */
+	public static String report(int n) {
+		StringBuilder s = new StringBuilder();
+		s.append("Calculation profile, sampling 1 in " + samplingInterval + ", " + stats.size() + " calculated props\n");
+		s.append(String.format("%12s %10s %10s %10s %10s  %s%n", "total ms", "calcs", "mean us", "max us", "invalid", "name (main cause)"));
+		for (Stats stat : top(n)) {
+			long count = stat.getCalculationCount();
+			s.append(String.format("%12.3f %10d %10.1f %10.1f %10d  %s (%s)%n", 
+					stat.getCalculationNanos() / 1e6, 
+					count, 
+					count == 0 ? 0d : stat.getCalculationNanos() / 1e3 / count, 
+					stat.getMaxCalculationNanos() / 1e3,
+					stat.getInvalidationCount(),
+					stat.getName(),
+					stat.getMainCause()));
+		}
+		return s.toString();
+	}
+	
+	/**
+	 * Write a report of the statistics with the most time spent 
+	 * calculating to a file - see {@link #report(int)}
+	 * @param n			The maximum number of statistics to report
+	 * @param file		The file to write to, replacing any contents
+	 * @throws IOException	If the file cannot be written
+	 */
+	public static void dump(int n, File file) throws IOException {
+		FileUtils.writeStringToFile(report(n), file);
+	}
+	
+	private static boolean sampleInvalidation() {
+		int interval = samplingInterval;
+		return interval == 1 || (++invalidationTick % interval) == 0;
+	}
+	
+	private static boolean sampleCalculation() {
+		int interval = samplingInterval;
+		return interval == 1 || (++calculationTick % interval) == 0;
+	}
+	
+	/**
+	 * Describe a {@link Changeable} by the name of its owning {@link Bean}
+	 * class and its {@link Prop} name, where these can be found. 
+	 * Descriptions are cached, and a {@link LazyChangeable} that is not
+	 * yet materialised is described by name only, rather than creating
+	 * its {@link ChangeableFeatures} to look for an owner.
+	 * @param changeable	The {@link Changeable}
+	 * @return				Description
+	 */
+	static String describe(Changeable changeable) {
+		String description = descriptions.get(changeable);
+		if (description != null) {
+			return description;
+		}
+		if (changeable instanceof LazyChangeable && !((LazyChangeable) changeable).isMaterialised()) {
+			return name(changeable);
+		}
+		description = describeFromListeners(changeable);
+		descriptions.put(changeable, description);
+		return description;
+	}
+	
+	private static String name(Changeable changeable) {
+		if (changeable instanceof Prop<?>) {
+			return ((Prop<?>) changeable).getName().getString();
+		} else {
+			return changeable.getClass().getSimpleName();
+		}
+	}
+	
+	/**
+	 * Describe a {@link Changeable} as for {@link #describe(Changeable)}, 
+	 * without caching. Uses {@link ChangeSystem#prepareRead(Changeable)}, 
+	 * since listeners are read.
+	 * @param changeable	The {@link Changeable}
+	 * @return				Description
+	 */
+	private static String describeFromListeners(Changeable changeable) {
+		Props.getPropSystem().getChangeSystem().prepareRead(changeable);
+		try {
+			String name = name(changeable);
+			
+			//A bean listens to its own props. Other changeables
+			//are described by a prop containing them, if any
+			Prop<?> container = null;
+			for (Changeable listener : changeable.features().changeableListenerList()) {
+				if (listener instanceof Bean) {
+					return listener.getClass().getSimpleName() + "." + name;
+				} else if (container == null && listener instanceof Prop<?>) {
+					container = (Prop<?>) listener;
+				}
+			}
+			if (container != null && !(changeable instanceof Prop<?>)) {
+				return describe(container) + " " + name;
+			}
+			return name;
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeRead(changeable);
+		}
+	}
+	
+	private static Stats stats(String name) {
+		Stats stat = stats.get(name);
+		if (stat == null) {
+			stat = new Stats(name);
+			Stats existing = stats.putIfAbsent(name, stat);
+			if (existing != null) {
+				stat = existing;
+			}
+		}
+		return stat;
+	}
+	
+	/**
+	 * Used by a calculated {@link Changeable} to report events to
+	 * the {@link CalculationProfiler}
+	 */
+	public final static class Probe {
+		private final Changeable changeable;
+		private volatile Stats stats = null;
+		private volatile int statsGeneration = -1;
+		
+		private Probe(Changeable changeable) {
+			this.changeable = changeable;
+		}
+		
+		private Stats stats() {
+			Stats s = stats;
+			int current = generation;
+			if (s == null || statsGeneration != current) {
+				s = CalculationProfiler.stats(describe(changeable));
+				stats = s;
+				statsGeneration = current;
+			}
+			return s;
+		}
+		
+		/**
+		 * Report that the calculated value is invalid
+		 * @param initial	The initial {@link Changeable}s of the propagation 
+		 * 					causing the invalidation
+		 */
+		public void invalidated(List<Changeable> initial) {
+			if (!enabled || !sampleInvalidation()) {
+				return;
+			}
+			stats().invalidated(initial.isEmpty() ? "(none)" : describe(initial.get(0)));
+		}
+		
+		/**
+		 * Report the start of a calculation
+		 * @return	A value to pass to {@link #calculated(long)} when
+		 * 			the calculation is complete
+		 */
+		public long start() {
+			if (!enabled || !sampleCalculation()) {
+				return NOT_SAMPLED;
+			}
+			return System.nanoTime();
+		}
+		
+		/**
+		 * Report the end of a calculation
+		 * @param start	The value returned by {@link #start()}
+		 */
+		public void calculated(long start) {
+			if (start == NOT_SAMPLED) {
+				return;
+			}
+			stats().calculated(System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * Statistics for calculated {@link Changeable}s with the same name
+	 */
+	public final static class Stats {
+		private final String name;
+		private final AtomicLong invalidationCount = new AtomicLong(0);
+		private final AtomicLong calculationCount = new AtomicLong(0);
+		private final AtomicLong calculationNanos = new AtomicLong(0);
+		private final AtomicLong maxCalculationNanos = new AtomicLong(0);
+		
+		//Guarded by causes
+		private final Map<String, Long> causes = new HashMap<String, Long>();
+		
+		private Stats(String name) {
+			this.name = name;
+		}
+		
+		private void invalidated(String cause) {
+			invalidationCount.incrementAndGet();
+			synchronized (causes) {
+				if (!causes.containsKey(cause) && causes.size() >= MAX_CAUSES) {
+					cause = OTHER_CAUSES;
+				}
+				Long count = causes.get(cause);
+				causes.put(cause, count == null ? 1 : count + 1);
+			}
+		}
+		
+		private void calculated(long nanos) {
+			calculationCount.incrementAndGet();
+			calculationNanos.addAndGet(nanos);
+			long max = maxCalculationNanos.get();
+			while (nanos > max && !maxCalculationNanos.compareAndSet(max, nanos)) {
+				max = maxCalculationNanos.get();
+			}
+		}
+		
+		/**
+		 * @return	The owning bean class and name of the calculated {@link Changeable}s
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * @return	Number of sampled invalidations
+		 */
+		public long getInvalidationCount() {
+			return invalidationCount.get();
+		}
+		
+		/**
+		 * @return	Number of sampled calculations
+		 */
+		public long getCalculationCount() {
+			return calculationCount.get();
+		}
+		
+		/**
+		 * @return	Total time of sampled calculations, in nanoseconds
+		 */
+		public long getCalculationNanos() {
+			return calculationNanos.get();
+		}
+		
+		/**
+		 * @return	Longest sampled calculation, in nanoseconds
+		 */
+		public long getMaxCalculationNanos() {
+			return maxCalculationNanos.get();
+		}
+		
+		/**
+		 * @return	The number of sampled invalidations caused by each
+		 * 			initial {@link Changeable}, by description
+		 */
+		public Map<String, Long> getCauses() {
+			synchronized (causes) {
+				return new HashMap<String, Long>(causes);
+			}
+		}
+		
+		/**
+		 * @return	The description of the initial {@link Changeable} causing
+		 * 			most sampled invalidations, or "(none)" if there are none
+		 */
+		public String getMainCause() {
+			String main = "(none)";
+			long mainCount = 0;
+			synchronized (causes) {
+				for (Map.Entry<String, Long> entry : causes.entrySet()) {
+					if (entry.getValue() > mainCount) {
+						main = entry.getKey();
+						mainCount = entry.getValue();
+					}
+				}
+			}
+			return main;
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ *  Copyright (c) 2008 shingoki
+ *
+ *  This file is part of jpropeller, see http://jpropeller.sourceforge.net
+ *
+ *    jpropeller is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    jpropeller is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with jpropeller; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package org.jpropeller.properties.calculated.impl;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.jpropeller.calculation.Calculation;
+import org.jpropeller.calculation.IncrementalCalculation;
+import org.jpropeller.properties.change.Change;
+import org.jpropeller.properties.change.Changeable;
+
+/**
+ * Performs a {@link Calculation} for a calculated {@link Changeable}, 
+ * using {@link IncrementalCalculation#update(Object, Map)} where possible
+ * if the {@link Calculation} is an {@link IncrementalCalculation}.
+ * The owner must pass each change to a source to {@link #sourceChanged(Changeable, Change)}, 
+ * and use {@link #calculate()} to get new results. Both must be called
+ * with the lock held.
+ * 
+ * @param <T>
+ * 		The type of value calculated
+ */
+public class IncrementalCalculator<T> {
+
+	/**
+	 * If more than this number of changes arrive before the next
+	 * calculation, we stop storing them and just recalculate from scratch,
+	 * so that an unread result does not store changes indefinitely.
+	 */
+	public final static int MAX_PENDING_CHANGES = 1000;
+	
+	private final Calculation<T> calculation;
+	private final IncrementalCalculation<T> incremental;
+
+	//The last result, and the changes since it was produced, if we can update it
+	private boolean havePrevious = false;
+	private T previous = null;
+	private final Map<Changeable, Change> changes = new IdentityHashMap<Changeable, Change>();
+	private int changeCount = 0;
+	
+	/**
+	 * Create an {@link IncrementalCalculator}
+	 * @param calculation
+	 * 		The calculation to perform - this is only updated 
+	 * incrementally if it is an {@link IncrementalCalculation}
+	 */
+	@SuppressWarnings("unchecked")
+	public IncrementalCalculator(Calculation<T> calculation) {
+		this.calculation = calculation;
+		if (calculation instanceof IncrementalCalculation<?>) {
+			this.incremental = (IncrementalCalculation<T>) calculation;
+		} else {
+			this.incremental = null;
+		}
+	}
+	
+	/**
+	 * Record a change to a source of the calculation
+	 * @param source	The source
+	 * @param change	The change
+	 */
+	public void sourceChanged(Changeable source, Change change) {
+		if (!havePrevious) {
+			return;
+		}
+		
+		//Give up on updating if we have too many changes
+		changeCount++;
+		if (changeCount > MAX_PENDING_CHANGES) {
+			clear();
+			return;
+		}
+		
+		Change existing = changes.get(source);
+		if (existing == null) {
+			changes.put(source, change);
+		} else {
+			Change extended = change.extend(existing);
+			if (extended != null) {
+				changes.put(source, extended);
+			}
+		}
+	}
+	
+	/**
+	 * Get a new result of the calculation, updated from the
+	 * previous result if possible
+	 * @return	The result
+	 */
+	public T calculate() {
+		T result = null;
+		
+		if (havePrevious) {
+			//If there are no changes, then the previous result
+			//is still correct
+			if (changes.isEmpty()) {
+				result = previous;
+			} else {
+				result = incremental.update(previous, Collections.unmodifiableMap(changes));
+			}
+		}
+
+		//Clear state before calculating, in case of failure
+		clear();
+		
+		if (result == null) {
+			result = calculation.calculate();
+		}
+		
+		//Store the result to update next time, if we can
+		if (incremental != null) {
+			previous = result;
+			havePrevious = true;
+		}
+		
+		return result;
+	}
+	
+	private void clear() {
+		havePrevious = false;
+		previous = null;
+		changes.clear();
+		changeCount = 0;
+	}
+	
+}
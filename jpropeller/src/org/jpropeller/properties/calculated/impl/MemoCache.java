@@ -0,0 +1,238 @@
+/*
+ *  Copyright (c) 2008 shingoki
+ *
+ *  This file is part of jpropeller, see http://jpropeller.sourceforge.net
+ *
+ *    jpropeller is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    jpropeller is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with jpropeller; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package org.jpropeller.properties.calculated.impl;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.jpropeller.calculation.PureFunction;
+
+/**
+ * A bounded cache of results of {@link PureFunction}s, shared
+ * between any number of {@link MemoCalculation}s. 
+ * <p/>
+ * Results are keyed by the function and the values of its inputs, so
+ * that structurally identical calculations on different beans share
+ * results whenever their inputs are equal. When the total weight of
+ * cached results exceeds the maximum weight, the least recently
+ * used results are evicted.
+ * <p/>
+ * All methods are thread safe. Results are calculated without holding
+ * the cache lock, so the same result may occasionally be calculated
+ * by more than one thread at once.
+ */
+public class MemoCache {
+
+	/**
+	 * Gives the weight of a result, for bounding a {@link MemoCache}
+	 */
+	public interface Weigher {
+		/**
+		 * @param result	A result 
+		 * @return			The weight of the result, at least 1
+		 */
+		public long weigh(Object result);
+	}
+	
+	private final static Weigher UNIT = new Weigher() {
+		@Override
+		public long weigh(Object result) {
+			return 1;
+		}
+	};
+	
+	private final static MemoCache shared = new MemoCache(10000);
+	
+	private final long maxWeight;
+	private final Weigher weigher;
+	
+	//Entries in access order, guarded by this
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+	private long weight = 0;
+	
+	private long hitCount = 0;
+	private long missCount = 0;
+	private long evictionCount = 0;
+	
+	/**
+	 * Create a {@link MemoCache} holding up to a maximum number of results
+	 * @param maxSize	The maximum number of results
+	 */
+	public MemoCache(int maxSize) {
+		this(maxSize, UNIT);
+	}
+	
+	/**
+	 * Create a {@link MemoCache} holding results up to a maximum total weight
+	 * @param maxWeight	The maximum total weight of results
+	 * @param weigher	Gives the weight of each result
+	 */
+	public MemoCache(long maxWeight, Weigher weigher) {
+		if (maxWeight < 1) {
+			throw new IllegalArgumentException("Maximum weight must be at least 1");
+		}
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+	}
+	
+	/**
+	 * @return	The shared {@link MemoCache}, used by default, holding
+	 * 			up to 10000 results
+	 */
+	public static MemoCache getShared() {
+		return shared;
+	}
+	
+	/**
+	 * Get the result of a function for given input values, from the
+	 * cache if present, otherwise by applying the function and caching
+	 * the result
+	 * @param <T>		The type of result
+	 * @param function	The function
+	 * @param values	The input values. These must not be modified 
+	 * 					after being passed to this method.
+	 * @return			The result
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(PureFunction<T> function, Object[] values) {
+		Key key = new Key(function, values);
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				hitCount++;
+				return (T) entry.result;
+			}
+			missCount++;
+		}
+		
+		T result = function.apply(values);
+		long resultWeight = Math.max(1, weigher.weigh(result));
+		
+		synchronized (this) {
+			Entry old = entries.put(key, new Entry(result, resultWeight));
+			if (old != null) {
+				weight -= old.weight;
+			}
+			weight += resultWeight;
+			
+			//Evict least recently used, keeping at least the new result
+			Iterator<Entry> it = entries.values().iterator();
+			while (weight > maxWeight && entries.size() > 1) {
+				Entry eldest = it.next();
+				it.remove();
+				weight -= eldest.weight;
+				evictionCount++;
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Remove all results
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		weight = 0;
+	}
+	
+	/**
+	 * @return	The number of cached results
+	 */
+	public synchronized int getSize() {
+		return entries.size();
+	}
+	
+	/**
+	 * @return	The total weight of cached results
+	 */
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	/**
+	 * @return	The maximum total weight of cached results
+	 */
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+	
+	/**
+	 * @return	The number of results found in the cache
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+	
+	/**
+	 * @return	The number of results not found in the cache, 
+	 * 			and so calculated
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+	
+	/**
+	 * @return	The number of results evicted to stay within
+	 * 			the maximum weight
+	 */
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return "MemoCache size " + entries.size() + ", weight " + weight + "/" + maxWeight 
+			+ ", hits " + hitCount + ", misses " + missCount + ", evictions " + evictionCount;
+	}
+	
+	private final static class Entry {
+		private final Object result;
+		private final long weight;
+		private Entry(Object result, long weight) {
+			this.result = result;
+			this.weight = weight;
+		}
+	}
+	
+	//Function compared by identity, values by equality
+	private final static class Key {
+		private final PureFunction<?> function;
+		private final Object[] values;
+		private final int hash;
+		private Key(PureFunction<?> function, Object[] values) {
+			this.function = function;
+			this.values = values;
+			this.hash = 31 * System.identityHashCode(function) + Arrays.hashCode(values);
+		}
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) return false;
+			Key other = (Key) obj;
+			return function == other.function && Arrays.equals(values, other.values);
+		}
+	}
+}
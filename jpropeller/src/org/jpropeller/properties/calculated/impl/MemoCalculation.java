@@ -0,0 +1,70 @@
+package org.jpropeller.properties.calculated.impl;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.jpropeller.calculation.Calculation;
+import org.jpropeller.calculation.PureFunction;
+import org.jpropeller.collection.impl.IdentityHashSet;
+import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.change.Changeable;
+
+/**
+ * A {@link Calculation} applying a {@link PureFunction} to the 
+ * values of a list of input {@link Prop}s, using a {@link MemoCache}
+ * so that results are shared with any other {@link MemoCalculation}
+ * using the same function on equal input values.
+ * 
+ * @param <T> The type of result produced
+ */
+public class MemoCalculation<T> implements Calculation<T> {
+
+	private final PureFunction<T> function;
+	private final Prop<?>[] inputs;
+	private final Set<Changeable> sources;
+	private final MemoCache cache;
+	
+	/**
+	 * Create a {@link MemoCalculation}
+	 * @param cache		The cache for results
+	 * @param function	The function giving results
+	 * @param inputs	The inputs of the function, in order
+	 */
+	public MemoCalculation(MemoCache cache, PureFunction<T> function, Prop<?>... inputs) {
+		this.cache = cache;
+		this.function = function;
+		this.inputs = inputs.clone();
+		
+		Set<Changeable> sourcesM = new IdentityHashSet<Changeable>(inputs.length);
+		for (Prop<?> input : inputs) {
+			sourcesM.add(input);
+		}
+		sources = Collections.unmodifiableSet(sourcesM);
+	}
+
+	/**
+	 * Create a {@link MemoCalculation} using the shared {@link MemoCache}
+	 * @param <T> 		The type of result produced
+	 * @param function	The function giving results
+	 * @param inputs	The inputs of the function, in order
+	 * @return			A new {@link MemoCalculation}
+	 */
+	public static <T> MemoCalculation<T> create(PureFunction<T> function, Prop<?>... inputs) {
+		return new MemoCalculation<T>(MemoCache.getShared(), function, inputs);
+	}
+	
+	@Override
+	public T calculate() {
+		Object[] values = new Object[inputs.length];
+		for (int i = 0; i < inputs.length; i++) {
+			values[i] = inputs[i].get();
+		}
+		return cache.get(function, values);
+	}
+
+	@Override
+	public Set<? extends Changeable> getSources() {
+		return sources;
+	}
+
+}
@@ -0,0 +1,177 @@
+/*
+ *  Copyright (c) 2008 shingoki
+ *
+ *  This file is part of jpropeller, see http://jpropeller.sourceforge.net
+ *
+ *    jpropeller is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    jpropeller is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with jpropeller; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package org.jpropeller.properties.calculated.impl;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.jpropeller.calculation.Calculation;
+import org.jpropeller.collection.impl.IdentityHashSet;
+import org.jpropeller.name.PropName;
+import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.change.ChangeSystem;
+import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.system.Props;
+import org.jpropeller.util.Equivalence;
+import org.jpropeller.util.Source;
+
+/**
+ * A {@link CalculatedProp} that does not need its sources to be
+ * declared - instead, each time it calculates its value, it records
+ * the {@link Changeable}s that are read, and listens to exactly
+ * those {@link Changeable}s until it next calculates.
+ * <br/>
+ * <br/>
+ * This means that conditional dependencies are tracked precisely,
+ * for example where B is only read when A is true, changes to B
+ * do not affect this {@link Prop} while A is false.
+ * <br/>
+ * <br/>
+ * Note that the {@link Source} must read all state it uses via
+ * {@link Changeable}s, which call {@link ChangeSystem#prepareRead(Changeable)}
+ * as usual - it must not use any other state that can change.
+ * 
+ * @param <T>
+ * 		The type of the {@link Prop} value
+ */
+public class RecordingCalculatedProp<T> extends CalculatedProp<T> {
+
+	private final Source<T> source;
+	
+	//The Changeables read during the last calculation
+	private Set<Changeable> sources = new IdentityHashSet<Changeable>();
+	
+	/**
+	 * Create a {@link RecordingCalculatedProp}
+	 * @param name
+	 * 		The name of the prop
+	 * @param source
+	 * 		The {@link Source} of values of the prop
+	 * @param cutoff
+	 * 		If non-null, the prop uses early cutoff - see
+	 * {@link CalculatedProp#CalculatedProp(PropName, Calculation, Equivalence)}
+	 */
+	public RecordingCalculatedProp(PropName<T> name, final Source<T> source, Equivalence<? super T> cutoff) {
+		//We have no fixed sources, we start listening when we first calculate
+		super(name, new Calculation<T>() {
+			@Override
+			public T calculate() {
+				return source.get();
+			}
+			@Override
+			public Set<? extends Changeable> getSources() {
+				return Collections.emptySet();
+			}
+		}, cutoff);
+		this.source = source;
+	}
+
+	/**
+	 * Create a {@link RecordingCalculatedProp}
+	 * @param <T>
+	 * 		The type of the {@link Prop} value
+	 * @param name
+	 * 		The name of the prop
+	 * @param source
+	 * 		The {@link Source} of values of the prop
+	 * @return
+	 * 		A new {@link RecordingCalculatedProp}
+	 */
+	public static <T> RecordingCalculatedProp<T> create(PropName<T> name, Source<T> source) {
+		return new RecordingCalculatedProp<T>(name, source, null);
+	}
+	
+	@Override
+	T calculate() {
+		ChangeSystem changeSystem = Props.getPropSystem().getChangeSystem();
+		
+		Set<Changeable> read;
+		T value;
+		changeSystem.startRecordingReads();
+		try {
+			value = source.get();
+		} catch (RuntimeException e) {
+			//We can't know everything we would have read, so just
+			//listen to anything new as well, and wait for the next read
+			read = changeSystem.stopRecordingReads();
+			read.addAll(sources);
+			listenTo(read);
+			throw e;
+		}
+		read = changeSystem.stopRecordingReads();
+		listenTo(read);
+		
+		return value;
+	}
+	
+	/**
+	 * @return	False, since sources are only known after calculating
+	 */
+	@Override
+	public boolean isVersioned() {
+		return false;
+	}
+	
+	@Override
+	Iterable<? extends Changeable> sources() {
+		return sources;
+	}
+	
+	/**
+	 * Change the set of {@link Changeable}s we listen to
+	 * @param read		The new set
+	 */
+	private void listenTo(Set<Changeable> read) {
+		
+		//Never listen to ourself
+		read.remove(this);
+		
+		//Stop listening to sources no longer read 
+		for (Changeable old : sources) {
+			if (!read.contains(old)) {
+				old.features().removeChangeableListener(this);
+			}
+		}
+		
+		//Start listening to newly read sources
+		for (Changeable changeable : read) {
+			if (!sources.contains(changeable)) {
+				changeable.features().addChangeableListener(this);
+			}
+		}
+		
+		sources = read;
+	}
+	
+	/**
+	 * Get the {@link Changeable}s read during the most recent
+	 * calculation, which this {@link Prop} is currently listening to
+	 * @return		The sources
+	 */
+	public Set<Changeable> getSources() {
+		Props.getPropSystem().getChangeSystem().prepareRead(this);
+		try {
+			return Collections.unmodifiableSet(new IdentityHashSet<Changeable>(sources));
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeRead(this);
+		}
+	}
+}
@@ -1,7 +1,11 @@
 package org.jpropeller.properties.change;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.locks.Lock;
 
+import org.jpropeller.task.OrderedTask;
 import org.jpropeller.task.Task;
 
 /**
@@ -24,6 +28,28 @@ public interface ChangeSystem {
 	 */
 	public void propagateChange(Changeable changed, Change change);
 
+	/**
+	 * Defer working out the {@link Change} made by a {@link Changeable}
+	 * in response to a propagating change, until that propagation has
+	 * reached every other {@link Changeable} it will reach. This may only
+	 * be called from {@link ChangeableFeatures#internalChange(Changeable, Change, List, Map)},
+	 * which should then return null.
+	 * <br/>
+	 * <br/>
+	 * This is useful where a {@link Changeable} needs to read other
+	 * {@link Changeable}s to know whether it has changed - reading during
+	 * propagation could see a {@link Changeable} that has not yet been reached
+	 * by the propagation, and so is out of date. When the {@link DeferredChange}
+	 * is resolved, all {@link Changeable}s affected by the propagation will have
+	 * been reached, except those that have deferred their changes. Any change
+	 * returned by {@link DeferredChange#resolve()} is then propagated as normal.
+	 * @param changeable
+	 * 		The {@link Changeable} deferring its change
+	 * @param deferred
+	 * 		The {@link DeferredChange} to resolve
+	 */
+	public void deferChange(Changeable changeable, DeferredChange deferred);
+
 	/**
 	 * Conclude a change that was prepared for using {@link #prepareChange(Changeable)},
 	 * and possibly propagated via {@link #propagateChange(Changeable, Change)}
@@ -68,6 +94,30 @@ public interface ChangeSystem {
 	 */
 	public void concludeRead(Changeable changeable);
 
+	/**
+	 * Start recording the {@link Changeable}s that are read, that is
+	 * those passed to {@link #prepareRead(Changeable)}. This must be called
+	 * while holding the lock, for example from within a "get" method of a 
+	 * {@link Changeable}, and must be followed, before the lock is released,
+	 * by a call to {@link #stopRecordingReads()}, in a "finally" clause.
+	 * <br/>
+	 * <br/>
+	 * Recordings may be nested - each read is only recorded in the most
+	 * recently started recording. For example if a calculation records its
+	 * reads, and reads a calculated {@link Changeable} which then records
+	 * its own reads while recalculating, the first calculation sees only
+	 * the read of the calculated {@link Changeable}.
+	 */
+	public void startRecordingReads();
+	
+	/**
+	 * Stop the most recently started recording of reads - see {@link #startRecordingReads()}
+	 * @return
+	 * 		The {@link Changeable}s read since the recording started, compared
+	 * by identity.
+	 */
+	public Set<Changeable> stopRecordingReads();
+	
 	/**
 	 * Must be called by a {@link Changeable} before it changes its list
 	 * of {@link Changeable} listeners OR {@link ChangeListener}s.
@@ -168,7 +218,8 @@ public interface ChangeSystem {
 	/**
 	 * Add a task to be run before next dispatch to {@link ChangeListener}s
 	 * Note that any given task will be run only once per dispatch, even if
-	 * added multiple times before that dispatch
+	 * added multiple times before that dispatch. Where several tasks are
+	 * waiting, they run in the order given by {@link OrderedTask}.
 	 * @param task		The {@link Task} to execute
 	 */
 	public void addTask(Task task);
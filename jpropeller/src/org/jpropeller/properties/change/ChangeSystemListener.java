@@ -19,17 +19,17 @@ package org.jpropeller.properties.change;
  */
 public interface ChangeSystemListener {
 
-//	/**
-//	 * Called when {@link ChangeSystem#propagateChange(Changeable, Change)} has been
-//	 * invoked, but before it performs propagation. All relevant locks are already held.
-//	 * @param system
-//	 * 		The {@link ChangeSystem} on which method was called
-//	 * @param changed
-//	 * 		See {@link ChangeSystem}
-//	 * @param change
-//	 * 		See {@link ChangeSystem}
-//	 */
-//	public void propagateChange(ChangeSystem system, Changeable changed, Change change);
+	/**
+	 * Called when {@link ChangeSystem#propagateChange(Changeable, Change)} has been
+	 * invoked, but before it performs propagation. All relevant locks are already held.
+	 * @param system
+	 * 		The {@link ChangeSystem} on which method was called
+	 * @param changed
+	 * 		See {@link ChangeSystem}
+	 * @param change
+	 * 		See {@link ChangeSystem}
+	 */
+	public void propagateChange(ChangeSystem system, Changeable changed, Change change);
 
 	/**
 	 * Called when {@link ChangeSystem#concludeChange(Changeable)} has been
@@ -0,0 +1,24 @@
+package org.jpropeller.properties.change;
+
+/**
+ * A {@link DeferredChange} allows a {@link Changeable} to work
+ * out its {@link Change} only once a propagation has reached
+ * everything else it will reach - see
+ * {@link ChangeSystem#deferChange(Changeable, DeferredChange)}
+ */
+public interface DeferredChange {
+
+	/**
+	 * Work out the actual change made by the {@link Changeable}
+	 * that deferred its change.
+	 * This is called while the {@link ChangeSystem} is locked,
+	 * and may read the state of any {@link Changeable}, but
+	 * must not change any state visible via normal means other
+	 * than that of the {@link Changeable} that deferred the change.
+	 * @return
+	 * 		The change made, which must not be initial, or null
+	 * if there is no change.
+	 */
+	public Change resolve();
+	
+}
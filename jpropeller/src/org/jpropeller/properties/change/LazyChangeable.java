@@ -0,0 +1,32 @@
+package org.jpropeller.properties.change;
+
+/**
+ * A {@link Changeable} that may create its {@link ChangeableFeatures}
+ * lazily, when they are first needed, rather than on construction.
+ * <p/>
+ * This allows an owner (for example a {@link org.jpropeller.bean.Bean})
+ * to register as a {@link Changeable} listener without forcing the
+ * {@link ChangeableFeatures} to be created - the listener is added
+ * when the {@link ChangeableFeatures} are created. Since nothing else 
+ * can listen to the {@link Changeable} before then, the owner will
+ * still see every change.
+ */
+public interface LazyChangeable extends Changeable {
+
+	/**
+	 * Add a {@link Changeable} listener, deferring the addition
+	 * until the {@link ChangeableFeatures} are created, if they
+	 * have not been already. 
+	 * Note that this {@link LazyChangeable} may retain a strong 
+	 * reference to the listener until then, so this is normally
+	 * only used by an owner that already retains this {@link LazyChangeable}.
+	 * @param listener		The listener
+	 */
+	public void addDeferredChangeableListener(Changeable listener);
+
+	/**
+	 * @return	True if the {@link ChangeableFeatures} have been created
+	 */
+	public boolean isMaterialised();
+	
+}
@@ -0,0 +1,23 @@
+package org.jpropeller.properties.change;
+
+import org.jpropeller.properties.change.impl.Versions;
+
+/**
+ * A {@link Changeable} that may be read by a thread with a pinned
+ * version (see {@link Versions#pin()}), seeing its state as at that
+ * version.
+ * <p/>
+ * {@link Changeable}s that do not implement this interface (for example
+ * collections) are always read at their latest state, so a thread reading 
+ * them with a pinned version may see a mixture of versions.
+ */
+public interface VersionedChangeable extends Changeable {
+
+	/**
+	 * @return	True if reads by a thread with a pinned version see the
+	 * 			state as at that version, including any state read via
+	 * 			other {@link Changeable}s. Must not change.
+	 */
+	public boolean isVersioned();
+	
+}
@@ -1,11 +1,15 @@
 package org.jpropeller.properties.change.impl;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.IdentityHashMap;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
@@ -14,6 +18,9 @@ import java.util.logging.Logger;
 import org.jpropeller.collection.impl.IdentityHashSet;
 import org.jpropeller.concurrency.Responder;
 import org.jpropeller.concurrency.impl.CoalescingResponder;
+import org.jpropeller.concurrency.impl.ExecutorUtils;
+import org.jpropeller.properties.calculated.impl.CalculatedProp;
+import org.jpropeller.properties.calculated.impl.CalculatedPropPrefetcher;
 import org.jpropeller.properties.change.Change;
 import org.jpropeller.properties.change.ChangeDispatchSource;
 import org.jpropeller.properties.change.ChangeDispatcher;
@@ -21,9 +28,11 @@ import org.jpropeller.properties.change.ChangeListener;
 import org.jpropeller.properties.change.ChangeSystem;
 import org.jpropeller.properties.change.ChangeSystemListener;
 import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.properties.change.DeferredChange;
 import org.jpropeller.task.Task;
 import org.jpropeller.util.GeneralUtils;
 import org.jpropeller.util.Listeners;
+import org.jpropeller.util.ListenerSnapshot;
 
 /**
  * Default implementation of {@link ChangeSystem}
@@ -106,7 +115,43 @@ public class ChangeSystemDefault implements ChangeSystem, ChangeDispatchSource {
 	private List<Changeable> umInitial;
 	private Map<Changeable, Change> umAllChanges;
 
-	private IdentityHashSet<Task> pendingTasks = new IdentityHashSet<Task>();
+	private final TaskQueue pendingTasks = new TaskQueue();
+
+	/**
+	 * {@link DeferredChange}s waiting to be resolved at the end of the
+	 * current propagation, in the order they were deferred
+	 */
+	private LinkedList<Deferred> deferred = new LinkedList<Deferred>();
+	
+	/**
+	 * Stack of the sets of {@link Changeable}s read since each 
+	 * active recording of reads started - only the last set records reads
+	 */
+	private LinkedList<Set<Changeable>> readRecordings = new LinkedList<Set<Changeable>>();
+	
+	/**
+	 * True while {@link #runParallelReads(List, ExecutorService)} is running tasks.
+	 * Threads running those tasks are marked by sharedReader, and while they
+	 * run, the thread holding the mainLock is just waiting for them. 
+	 * Shared readers lock each {@link Changeable} they read in sharedLocks
+	 * instead of taking the mainLock, record reads in sharedReadRecordings,
+	 * and make any listener changes while holding sharedListenerLock.
+	 */
+	private volatile boolean sharedReads = false;
+	private final ThreadLocal<Boolean> sharedReader = new ThreadLocal<Boolean>();
+	private final Map<Changeable, ReentrantLock> sharedLocks = new IdentityHashMap<Changeable, ReentrantLock>();
+	private final ReentrantLock sharedListenerLock = new ReentrantLock();
+	private final ThreadLocal<LinkedList<Set<Changeable>>> sharedReadRecordings = new ThreadLocal<LinkedList<Set<Changeable>>>() {
+		@Override
+		protected LinkedList<Set<Changeable>> initialValue() {
+			return new LinkedList<Set<Changeable>>();
+		}
+	};
+	
+	/**
+	 * True to prefetch invalid {@link CalculatedProp}s before each dispatch
+	 */
+	private volatile boolean prefetchCalculations = false;
 	
 	/**
 	 * User to actually call change method on {@link ChangeListener}s
@@ -167,42 +212,55 @@ public class ChangeSystemDefault implements ChangeSystem, ChangeDispatchSource {
 			if (mainLock.getHoldCount() == 1)
 				runPendingTasks();
 		} finally {
+			//Pinned readers can now see all changes made
+			//while we held the lock
+			if (mainLock.getHoldCount() == 1)
+				Versions.publish();
 			mainLock.unlock();
 		}
 	}
 
 	private void runPendingTasks() {
-		boolean tasksClear = false;
-		while(!tasksClear) {
-			Task task = null;
-
-			synchronized (pendingTasks) {
-				if (pendingTasks.isEmpty()) {
-					tasksClear = true;
-				} else {
-					Iterator<Task> iterator = pendingTasks.iterator();
-					task = iterator.next();
-					iterator.remove();
-				}
-			}
-			
-			if (task!=null) {
-				//We cannot reasonably deal with task exceptions,
-				//so we will print and log them, but then just carry
-				//on to the next task
-				try {
-					task.respond(new AtomicBoolean(false));
-				} catch (Exception e) {
-					e.printStackTrace();
-					logger.log(Level.SEVERE, "Exception executing synchronous task", e);
-				}
+		pendingTasks.startRun();
+		
+		//Run tasks in order until there are none left, or the 
+		//queue's iteration limit is reached
+		Task task = pendingTasks.next();
+		while (task != null) {
+			//We cannot reasonably deal with task exceptions,
+			//so we will print and log them, but then just carry
+			//on to the next task
+			long start = System.nanoTime();
+			try {
+				task.respond(new AtomicBoolean(false));
+			} catch (Exception e) {
+				e.printStackTrace();
+				logger.log(Level.SEVERE, "Exception executing synchronous task", e);
+			} finally {
+				pendingTasks.finished(task, System.nanoTime() - start);
 			}
+			task = pendingTasks.next();
 		}
 	}
+	
+	/**
+	 * Get the queue of synchronous {@link Task}s added with {@link #addTask(Task)},
+	 * for example to configure its iteration limit or read task timings.
+	 * @return	The {@link TaskQueue}
+	 */
+	public TaskQueue getTaskQueue() {
+		return pendingTasks;
+	}
 
 	@Override
 	public void prepareDispatch() {
 		
+		//A parallel read task would wait forever for the lock, since 
+		//the thread holding it is waiting for the task
+		if (isSharedReader()) {
+			throw new IllegalStateException("Must not dispatch from a parallel read task.");
+		}
+		
 		//Get main lock
 		mainLock.lock();
 		
@@ -224,18 +282,12 @@ public class ChangeSystemDefault implements ChangeSystem, ChangeDispatchSource {
 			//hold the lock in this thread
 			boolean canHold = mainLock.tryLock(); 
 			if (canHold) {
-				try {
-					//We got the lock - if we hold it once only then
-					//it wasn't held before, and we need to run the tasks
-					//immediately.
-					//Otherwise, the lock was already held by this thread, and
-					//the task will be run when we release it again
-					if (mainLock.getHoldCount() == 1) {
-						runPendingTasks();
-					}
-				} finally {
-					mainLock.unlock();
-				}
+				//We got the lock - if we hold it once only then
+				//it wasn't held before, and leaving it will run the tasks
+				//immediately, and publish any changes they make.
+				//Otherwise, the lock was already held by this thread, and
+				//the task will be run when we release it again
+				leaveMainLock();
 			} else {
 				//If some other thread has the lock, then we don't need to do anything,
 				//since when the lock is released the task will be run
@@ -271,6 +323,12 @@ public class ChangeSystemDefault implements ChangeSystem, ChangeDispatchSource {
 		if (dispatchingLock.isHeldByCurrentThread()) {
 			throw new IllegalArgumentException("Must not attempt to change a Changeable in response to a change - this can cause cycles and is prohibited.");
 		}
+		
+		//Parallel read tasks can't change anything, since the thread
+		//holding the lock is waiting for them
+		if (isSharedReader()) {
+			throw new IllegalArgumentException("Must not attempt to change a Changeable from a parallel read task.");
+		}
 
 		//Acquire necessary lock
 		mainLock.lock();
@@ -303,8 +361,14 @@ public class ChangeSystemDefault implements ChangeSystem, ChangeDispatchSource {
 			throw new IllegalArgumentException("Non-empty current changes when propagation started - invalid state.");
 		}
 		
+		firePropagateChange(changed, change);
+		
 		initial.add(changed);
 
+		//Each propagation is a new version of versioned values, published
+		//when the lock is released
+		Versions.advance();
+
 		//Extend change to initial, using current changes map
 		Change extendedInitialChange = extendChange(changed, change, currentChanges);
 
@@ -313,6 +377,13 @@ public class ChangeSystemDefault implements ChangeSystem, ChangeDispatchSource {
 			processListeners(changed, change);
 		}
 		
+		//Resolve changes deferred until everything else was reached. These
+		//may lead to more deferred changes, so continue until there are none.
+		while (!deferred.isEmpty()) {
+			Deferred next = deferred.removeFirst();
+			processChange(next.changeable, next.change.resolve());
+		}
+		
 		//Propagation is complete - we need to coalesce the currentChanges into allChanges
 		currentChangesToAllChanges();
 	}
@@ -358,6 +429,17 @@ public class ChangeSystemDefault implements ChangeSystem, ChangeDispatchSource {
 		try {
 			//Dispatch changes to listener, if we have any
 			if (!initial.isEmpty()) {
+				
+				//Recalculate what listeners are likely to read, so
+				//that they do not have to do it one by one
+				if (prefetchCalculations) {
+					try {
+						CalculatedPropPrefetcher.prefetch(allChanges.keySet(), ExecutorUtils.getPrefetchExecutorService());
+					} catch (RuntimeException e) {
+						logger.log(Level.WARNING, "Exception prefetching calculations", e);
+					}
+				}
+				
 				dispatcher.dispatch();
 			}
 		} finally {
@@ -365,40 +447,78 @@ public class ChangeSystemDefault implements ChangeSystem, ChangeDispatchSource {
 		}
 	}
 	
+	//Cast is safe since snapshot is from the changeable listener list
+	@SuppressWarnings("unchecked")
 	private void processListeners(Changeable changed, Change change) {
 		
-		//Process each listener
-		for (Changeable listener : changed.features().changeableListenerList()) {
-			
-			//Tell listener about the change to something it was listening to, 
-			//and get any change it itself makes in response
-			Change newChange = listener.features().internalChange(changed, change, initial, currentChanges);
-
-			//If the listener has actually changed, deal with the change
-			if (newChange != null) {
-
-				//Note that we reject initial changes, by definition
-				if (newChange.initial()) {
-					//FIXME should probably be a specific runtime exception for this - should we throw an
-					//exception instead of just logging and ignoring?
-					//throw new IllegalArgumentException("Cannot accept an initial change as a result of change propagation");
-					logger.severe("CONTRACT: Changeable has returned an initial change in response to an internalChange call - this is against the contract for Changeable");
-					
-				//Deal with valid changes
-				} else {
-
-					//Extend the change for the listener to cover the new change as well, using current changes map
-					Change extendedChange = extendChange(listener, newChange, currentChanges);
-					
-					//If we have extended the change then notify listeners of the listener
-					if (extendedChange != null) {
-						processListeners(listener, newChange);
-					}
+		Iterable<Changeable> listeners = changed.features().changeableListenerList();
+		
+		//Snapshots can be iterated directly, with no iterator 
+		if (listeners instanceof ListenerSnapshot<?>) {
+			ListenerSnapshot<Changeable> snapshot = (ListenerSnapshot<Changeable>) listeners;
+			int size = snapshot.size();
+			for (int i = 0; i < size; i++) {
+				Changeable listener = snapshot.get(i);
+				if (listener != null) {
+					processListener(changed, change, listener);
 				}
-				
+			}
+		} else {
+			for (Changeable listener : listeners) {
+				processListener(changed, change, listener);
 			}
 		}
+	}
+
+	private void processListener(Changeable changed, Change change, Changeable listener) {
+		//Tell listener about the change to something it was listening to, 
+		//and get any change it itself makes in response
+		Change newChange = listener.features().internalChange(changed, change, initial, currentChanges);
+
+		processChange(listener, newChange);
+	}
+
+	/**
+	 * Deal with a change made by a {@link Changeable} in response to propagation 
+	 * @param listener
+	 * 		The {@link Changeable} that has changed
+	 * @param newChange
+	 * 		The change it made, or null if it has not changed
+	 */
+	private void processChange(Changeable listener, Change newChange) {
 		
+		//If the listener has actually changed, deal with the change
+		if (newChange != null) {
+
+			//Note that we reject initial changes, by definition
+			if (newChange.initial()) {
+				//FIXME should probably be a specific runtime exception for this - should we throw an
+				//exception instead of just logging and ignoring?
+				//throw new IllegalArgumentException("Cannot accept an initial change as a result of change propagation");
+				logger.severe("CONTRACT: Changeable has returned an initial change in response to an internalChange call - this is against the contract for Changeable");
+				
+			//Deal with valid changes
+			} else {
+
+				//Extend the change for the listener to cover the new change as well, using current changes map
+				Change extendedChange = extendChange(listener, newChange, currentChanges);
+				
+				//If we have extended the change then notify listeners of the listener
+				if (extendedChange != null) {
+					processListeners(listener, newChange);
+				}
+			}
+			
+		}
+	}
+	
+	@Override
+	public void deferChange(Changeable changeable, DeferredChange change) {
+		//We must be propagating, which requires the lock
+		if (!mainLock.isHeldByCurrentThread()) {
+			throw new IllegalMonitorStateException("Cannot deferChange except during propagation (i.e. lock is not held when calling deferChange)");
+		}
+		deferred.add(new Deferred(changeable, change));
 	}
 	
 	/**
@@ -449,23 +569,178 @@ public class ChangeSystemDefault implements ChangeSystem, ChangeDispatchSource {
 	
 	@Override
 	public void prepareListenerChange(Changeable changeable) {
+		if (isSharedReader()) {
+			sharedListenerLock.lock();
+			return;
+		}
 		mainLock.lock();
 	}
 
 	@Override
 	public void concludeListenerChange(Changeable changeable) {
+		if (isSharedReader()) {
+			sharedListenerLock.unlock();
+			return;
+		}
 		leaveMainLock();
 	}
 
 	@Override
 	public void prepareRead(Changeable changeable) {
+		if (isSharedReader()) {
+			sharedLock(changeable).lock();
+			LinkedList<Set<Changeable>> recordings = sharedReadRecordings.get();
+			if (!recordings.isEmpty()) {
+				recordings.getLast().add(changeable);
+			}
+			return;
+		}
+		
 		mainLock.lock();
+		
+		//Only the thread holding the lock can be recording,
+		//so any read we see now is a read by that thread
+		if (!readRecordings.isEmpty()) {
+			readRecordings.getLast().add(changeable);
+		}
+	}
+	
+	@Override
+	public void startRecordingReads() {
+		recordings().add(new IdentityHashSet<Changeable>());
+	}
+
+	@Override
+	public Set<Changeable> stopRecordingReads() {
+		LinkedList<Set<Changeable>> recordings = recordings();
+		if (recordings.isEmpty()) {
+			throw new IllegalStateException("Cannot stopRecordingReads when not recording");
+		}
+		return recordings.removeLast();
+	}
+	
+	private LinkedList<Set<Changeable>> recordings() {
+		if (isSharedReader()) {
+			return sharedReadRecordings.get();
+		}
+		if (!mainLock.isHeldByCurrentThread()) {
+			throw new IllegalMonitorStateException("Cannot record reads without holding lock");
+		}
+		return readRecordings;
 	}
 	
 	@Override
 	public void concludeRead(Changeable changeable) {
+		if (isSharedReader()) {
+			sharedLock(changeable).unlock();
+			return;
+		}
 		leaveMainLock();
 	}
+	
+	private boolean isSharedReader() {
+		return sharedReads && sharedReader.get() == Boolean.TRUE;
+	}
+	
+	private ReentrantLock sharedLock(Changeable changeable) {
+		synchronized (sharedLocks) {
+			ReentrantLock lock = sharedLocks.get(changeable);
+			if (lock == null) {
+				lock = new ReentrantLock();
+				sharedLocks.put(changeable, lock);
+			}
+			return lock;
+		}
+	}
+	
+	/**
+	 * Run tasks that only read {@link Changeable}s, in parallel, using
+	 * an {@link ExecutorService}. This must be called while holding the
+	 * lock (e.g. after {@link #acquire()}), and returns once all tasks have
+	 * completed. While the tasks run, they can read any {@link Changeable}s
+	 * without needing the lock, and will see the state as it is when this
+	 * method is called, since no other thread can make changes.
+	 * Reads of the same {@link Changeable} by different tasks are still
+	 * performed one at a time, so that any caching by the
+	 * {@link Changeable} is safe.
+	 * <br/>
+	 * <br/>
+	 * Tasks must not make changes, and must not wait for anything that
+	 * this thread may be doing. The {@link ExecutorService} must not be
+	 * used for any tasks that may wait for the lock, since they would
+	 * prevent our tasks from running.
+	 * Exceptions thrown by tasks are logged.
+	 * @param tasks		The tasks to run
+	 * @param executor	The {@link ExecutorService} to run tasks
+	 */
+	public void runParallelReads(List<? extends Runnable> tasks, ExecutorService executor) {
+		if (!mainLock.isHeldByCurrentThread()) {
+			throw new IllegalMonitorStateException("Cannot runParallelReads without holding lock");
+		}
+		if (isSharedReader()) {
+			throw new IllegalStateException("Cannot runParallelReads from a task run by runParallelReads");
+		}
+		
+		sharedReads = true;
+		boolean interrupted = false;
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>(tasks.size());
+			for (final Runnable task : tasks) {
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						sharedReader.set(Boolean.TRUE);
+						try {
+							task.run();
+						} finally {
+							sharedReader.remove();
+						}
+					}
+				}));
+			}
+			
+			//We must wait for every task, even if interrupted, since
+			//tasks must not be left running when sharing ends
+			for (Future<?> future : futures) {
+				boolean done = false;
+				while (!done) {
+					try {
+						future.get();
+						done = true;
+					} catch (InterruptedException e) {
+						interrupted = true;
+					} catch (ExecutionException e) {
+						logger.log(Level.WARNING, "Exception in parallel read task", e.getCause());
+						done = true;
+					}
+				}
+			}
+		} finally {
+			sharedReads = false;
+			synchronized (sharedLocks) {
+				sharedLocks.clear();
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * Set whether to prefetch invalid {@link CalculatedProp}s
+	 * before each dispatch - see {@link CalculatedPropPrefetcher}
+	 * @param prefetchCalculations		True to prefetch
+	 */
+	public void setPrefetchCalculations(boolean prefetchCalculations) {
+		this.prefetchCalculations = prefetchCalculations;
+	}
+
+	/**
+	 * @return	True if we prefetch invalid {@link CalculatedProp}s before each dispatch
+	 */
+	public boolean isPrefetchCalculations() {
+		return prefetchCalculations;
+	}
 
 	@Override
 	public Map<Changeable, Change> changes() {
@@ -479,6 +754,11 @@ public class ChangeSystemDefault implements ChangeSystem, ChangeDispatchSource {
 
 	@Override
 	public void acquire() {
+		//A parallel read task would wait forever for the lock, since 
+		//the thread holding it is waiting for the task
+		if (isSharedReader()) {
+			throw new IllegalStateException("Must not acquire the lock from a parallel read task.");
+		}
 		mainLock.lock();
 	}
 
@@ -492,6 +772,24 @@ public class ChangeSystemDefault implements ChangeSystem, ChangeDispatchSource {
 			dispatchUpdater.request();
 		}
 	}
+	
+	/**
+	 * Dispatch any pending changes now, rather than when the next
+	 * coalesced dispatch is due. Changes made before and after this
+	 * call are then never dispatched together. The {@link ChangeDispatcher}
+	 * may still deliver the changes later, for example 
+	 * {@link ChangeDispatcherSwing} delivers them in the Swing thread.
+	 * <br/>
+	 * <br/>
+	 * Must not be called while holding the lock, since we cannot dispatch
+	 * part way through a change.
+	 */
+	public void flush() {
+		if (mainLock.isHeldByCurrentThread()) {
+			throw new IllegalStateException("Cannot flush while holding lock");
+		}
+		dispatch();
+	}
 
 	@Override
 	public void addChangeSystemListener(ChangeSystemListener listener) {
@@ -511,10 +809,26 @@ public class ChangeSystemDefault implements ChangeSystem, ChangeDispatchSource {
 		}
 	}
 
+	private void firePropagateChange(Changeable changed, Change change) {
+		for (ChangeSystemListener listener : changeSystemListeners) {
+			listener.propagateChange(this, changed, change);
+		}
+	}
+
 	private void fireConcludeChange(Changeable changed) {
 		for (ChangeSystemListener listener : changeSystemListeners) {
 			listener.concludeChange(this, changed);
 		}
 	}
 
+	//A deferred change, with the Changeable that deferred it
+	private static class Deferred {
+		private final Changeable changeable;
+		private final DeferredChange change;
+		private Deferred(Changeable changeable, DeferredChange change) {
+			this.changeable = changeable;
+			this.change = change;
+		}
+	}
+
 }
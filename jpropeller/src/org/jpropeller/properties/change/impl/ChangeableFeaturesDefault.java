@@ -11,9 +11,9 @@ import org.jpropeller.properties.change.ChangeListener;
 import org.jpropeller.properties.change.Changeable;
 import org.jpropeller.properties.change.ChangeableFeatures;
 import org.jpropeller.system.Props;
+import org.jpropeller.util.CompactListeners;
 import org.jpropeller.util.GeneralUtils;
-import org.jpropeller.util.Listeners;
-import org.jpropeller.util.WeakListeners;
+import org.jpropeller.util.ListenerSnapshot;
 
 /**
  *	Default implementation of {@link ChangeableFeatures}, which handles
@@ -25,11 +25,13 @@ public class ChangeableFeaturesDefault implements ChangeableFeatures {
 	
 	private final InternalChangeImplementation internalChangeImplementation;
 
-	private final Listeners<ChangeListener> listeners = new Listeners<ChangeListener>();
+	//Listeners are only created when first added, since most Changeables
+	//have few or no listeners of each kind
+	private CompactListeners<ChangeListener> listeners = null;
 
 	//Changeables allow for weak listeners, so this is safe to use. It avoids some possible memory leaks
-	//where changeables are retained only from changeableListeners.
-	private final WeakListeners<Changeable> changeableListeners = new WeakListeners<Changeable>();
+	//where changeables are retained only from changeableListeners. See WeakListeners.
+	private CompactListeners<Changeable> changeableListeners = null;
 	
 	private Map<String, String> annotations = null;
 	
@@ -55,6 +57,9 @@ public class ChangeableFeaturesDefault implements ChangeableFeatures {
 	public void addChangeableListener(Changeable listener) {
 		Props.getPropSystem().getChangeSystem().prepareListenerChange(owner);
 		try {
+			if (changeableListeners == null) {
+				changeableListeners = new CompactListeners<Changeable>(true);
+			}
 			changeableListeners.add(listener);
 		} finally {
 			Props.getPropSystem().getChangeSystem().concludeListenerChange(owner);
@@ -65,6 +70,9 @@ public class ChangeableFeaturesDefault implements ChangeableFeatures {
 	public void addListener(ChangeListener listener) {
 		Props.getPropSystem().getChangeSystem().prepareListenerChange(owner);
 		try {
+			if (listeners == null) {
+				listeners = new CompactListeners<ChangeListener>(false);
+			}
 			listeners.add(listener);
 		} finally {
 			Props.getPropSystem().getChangeSystem().concludeListenerChange(owner);
@@ -75,7 +83,7 @@ public class ChangeableFeaturesDefault implements ChangeableFeatures {
 	public void removeChangeableListener(Changeable listener) {
 		Props.getPropSystem().getChangeSystem().prepareListenerChange(owner);
 		try {
-			if (!changeableListeners.remove(listener)) {
+			if (changeableListeners == null || changeableListeners.remove(listener) < 0) {
 				logger.log(Level.FINE, "Removed Changeable listener which was not registered.", new Exception("Stack Trace"));
 			}
 		} finally {
@@ -87,7 +95,7 @@ public class ChangeableFeaturesDefault implements ChangeableFeatures {
 	public void removeListener(ChangeListener listener) {
 		Props.getPropSystem().getChangeSystem().prepareListenerChange(owner);
 		try {
-			if (!listeners.remove(listener)) {
+			if (listeners == null || listeners.remove(listener) < 0) {
 				logger.log(Level.FINE, "Removed ChangeListener which was not registered.", new Exception("Stack Trace"));
 			}
 		} finally {
@@ -97,12 +105,18 @@ public class ChangeableFeaturesDefault implements ChangeableFeatures {
 
 	@Override
 	public Iterable<Changeable> changeableListenerList() {
-		return changeableListeners;
+		if (changeableListeners == null) {
+			return ListenerSnapshot.empty();
+		}
+		return changeableListeners.snapshot();
 	}
 
 	@Override
 	public Iterable<ChangeListener> listenerList() {
-		return listeners;
+		if (listeners == null) {
+			return ListenerSnapshot.empty();
+		}
+		return listeners.snapshot();
 	}
 
 	@Override
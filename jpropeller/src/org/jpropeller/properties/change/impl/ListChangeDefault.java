@@ -4,7 +4,9 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.jpropeller.collection.CollectionChangeType;
 import org.jpropeller.collection.ListDelta;
+import org.jpropeller.collection.impl.ListDeltaDefault;
 import org.jpropeller.properties.change.Change;
 import org.jpropeller.properties.change.ChangeType;
 import org.jpropeller.properties.change.ListChange;
@@ -69,7 +71,17 @@ public class ListChangeDefault implements ListChange {
 		
 		//Extend the delta list by adding our own deltas to the end
 		LinkedList<ListDelta> extendsDeltas = new LinkedList<ListDelta>(listExisting.getListDeltas());
-		extendsDeltas.addAll(getListDeltas());
+		for (ListDelta delta : getListDeltas()) {
+			//Consecutive ROLL deltas are merged, so that a buffer
+			//rolling repeatedly still produces a single delta
+			if (	!extendsDeltas.isEmpty() && 
+					extendsDeltas.getLast().getType() == CollectionChangeType.ROLL &&
+					delta.getType() == CollectionChangeType.ROLL) {
+				extendsDeltas.add(ListDeltaDefault.mergeRollChanges(extendsDeltas.removeLast(), delta));
+			} else {
+				extendsDeltas.add(delta);
+			}
+		}
 		
 		return new ListChangeDefault(extendsInitial, extendsSameInstances, extendsDeltas);
 	}
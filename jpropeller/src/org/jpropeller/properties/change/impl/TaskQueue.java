@@ -0,0 +1,321 @@
+package org.jpropeller.properties.change.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.WeakHashMap;
+import java.util.logging.Logger;
+
+import org.jpropeller.task.OrderedTask;
+import org.jpropeller.task.Task;
+import org.jpropeller.util.GeneralUtils;
+
+/**
+ * The queue of {@link Task}s waiting to be run synchronously by
+ * a {@link ChangeSystemDefault}.
+ * <p/>
+ * Each task is queued at most once. Tasks are taken in order of 
+ * priority, then in the order they were added, except that a 
+ * task is not taken while any of its dependencies is queued (see 
+ * {@link OrderedTask}). If dependencies form a cycle, the cycle
+ * is logged, and the first task in it is taken anyway.
+ * <p/>
+ * The number of tasks taken in each run of the queue is limited,
+ * so that tasks that keep triggering each other (or themselves) 
+ * cannot run forever while the change system lock is held. When the
+ * limit is reached, the tasks run most often are logged, and any
+ * remaining tasks are left until the next run.
+ * <p/>
+ * The time spent running each task is recorded, see {@link #getTiming(Task)}.
+ * <p/>
+ * Thread safe.
+ */
+public class TaskQueue {
+
+	private final static Logger logger = GeneralUtils.logger(TaskQueue.class);
+	
+	/**
+	 * Default limit on tasks taken in each run
+	 */
+	public final static int DEFAULT_ITERATION_LIMIT = 10000;
+	
+	private final static Comparator<Entry> ORDER = new Comparator<Entry>() {
+		@Override
+		public int compare(Entry a, Entry b) {
+			if (a.priority != b.priority) {
+				return a.priority > b.priority ? -1 : 1;
+			}
+			return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+		}
+	};
+	
+	private final PriorityQueue<Entry> queue = new PriorityQueue<Entry>(16, ORDER);
+	private final Map<Task, Entry> queued = new IdentityHashMap<Task, Entry>();
+	private long sequence = 0;
+	
+	private int iterationLimit = DEFAULT_ITERATION_LIMIT;
+	
+	//Tasks taken in the current run, and how many times each was taken
+	private int iterations = 0;
+	private final Map<Task, int[]> runCounts = new IdentityHashMap<Task, int[]>();
+	
+	private final Map<Task, Timing> timings = new WeakHashMap<Task, Timing>();
+	
+	/**
+	 * Add a task, if it is not already queued
+	 * @param task	The task
+	 * @return		True if the task was added, false if it was already queued
+	 */
+	synchronized boolean add(Task task) {
+		if (queued.containsKey(task)) {
+			return false;
+		}
+		Entry entry = new Entry(task, sequence++);
+		queued.put(task, entry);
+		queue.add(entry);
+		return true;
+	}
+	
+	/**
+	 * Start a new run of the queue, resetting the iteration count
+	 */
+	synchronized void startRun() {
+		iterations = 0;
+		runCounts.clear();
+	}
+	
+	/**
+	 * Take the next task to run, removing it from the queue
+	 * @return	The next task, or null if there are no tasks, or
+	 * 			the iteration limit for this run has been reached
+	 */
+	synchronized Task next() {
+		if (queue.isEmpty()) {
+			return null;
+		}
+		
+		if (iterations >= iterationLimit) {
+			logger.severe("Ran " + iterations + " synchronous tasks without the queue emptying, " +
+					"possibly due to tasks triggering each other in a cycle. " + 
+					queue.size() + " tasks will wait until the next release. Most frequent tasks: " + mostFrequent());
+			return null;
+		}
+		
+		//Take the first entry with no queued dependencies,
+		//putting aside any that are blocked
+		List<Entry> blocked = null;
+		Entry entry = null;
+		while (!queue.isEmpty()) {
+			Entry candidate = queue.poll();
+			if (hasQueuedDependency(candidate.task)) {
+				if (blocked == null) {
+					blocked = new ArrayList<Entry>();
+				}
+				blocked.add(candidate);
+			} else {
+				entry = candidate;
+				break;
+			}
+		}
+		
+		//Every entry is blocked - there must be a cycle, so log it, and
+		//take the first task in the cycle anyway
+		if (entry == null) {
+			List<Task> cycle = cycleFrom(blocked.get(0).task);
+			entry = queued.get(cycle.get(0));
+			blocked.remove(entry);
+			logger.warning("Dependency cycle between synchronous tasks " + cycle + ", running " + entry.task + " first");
+		}
+		if (blocked != null) {
+			queue.addAll(blocked);
+		}
+		
+		queued.remove(entry.task);
+		
+		iterations++;
+		int[] count = runCounts.get(entry.task);
+		if (count == null) {
+			runCounts.put(entry.task, new int[]{1});
+		} else {
+			count[0]++;
+		}
+		
+		return entry.task;
+	}
+	
+	/**
+	 * Record the time spent running a task
+	 * @param task		The task
+	 * @param nanos		The time taken, in nanoseconds
+	 */
+	synchronized void finished(Task task, long nanos) {
+		Timing timing = timings.get(task);
+		if (timing == null) {
+			timing = new Timing();
+			timings.put(task, timing);
+		}
+		timing.record(nanos);
+	}
+	
+	private boolean hasQueuedDependency(Task task) {
+		for (Task dependency : dependencies(task)) {
+			if (queued.containsKey(dependency)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static Collection<? extends Task> dependencies(Task task) {
+		if (task instanceof OrderedTask) {
+			Collection<? extends Task> dependencies = ((OrderedTask) task).getDependencies();
+			if (dependencies != null) {
+				return dependencies;
+			}
+		}
+		return Collections.emptyList();
+	}
+	
+	/**
+	 * Follow queued dependencies from a task until one repeats
+	 * @param task		The task, which must be blocked
+	 * @return			The tasks in the cycle
+	 */
+	private List<Task> cycleFrom(Task task) {
+		List<Task> path = new ArrayList<Task>();
+		Map<Task, Integer> indices = new IdentityHashMap<Task, Integer>();
+		Task current = task;
+		while (current != null && !indices.containsKey(current)) {
+			indices.put(current, path.size());
+			path.add(current);
+			Task next = null;
+			for (Task dependency : dependencies(current)) {
+				if (queued.containsKey(dependency)) {
+					next = dependency;
+					break;
+				}
+			}
+			current = next;
+		}
+		if (current == null) {
+			return path;
+		}
+		return path.subList(indices.get(current), path.size());
+	}
+	
+	private String mostFrequent() {
+		List<Map.Entry<Task, int[]>> counts = new ArrayList<Map.Entry<Task, int[]>>(runCounts.entrySet());
+		Collections.sort(counts, new Comparator<Map.Entry<Task, int[]>>() {
+			@Override
+			public int compare(Map.Entry<Task, int[]> a, Map.Entry<Task, int[]> b) {
+				return b.getValue()[0] - a.getValue()[0];
+			}
+		});
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < Math.min(5, counts.size()); i++) {
+			if (i > 0) s.append(", ");
+			s.append(counts.get(i).getKey()).append(" x").append(counts.get(i).getValue()[0]);
+		}
+		return s.toString();
+	}
+	
+	/**
+	 * @return	The number of queued tasks
+	 */
+	public synchronized int size() {
+		return queued.size();
+	}
+	
+	/**
+	 * @return	The maximum number of tasks taken in each run of the queue
+	 */
+	public synchronized int getIterationLimit() {
+		return iterationLimit;
+	}
+	
+	/**
+	 * @param iterationLimit	The maximum number of tasks taken in each 
+	 * 							run of the queue, at least 1
+	 */
+	public synchronized void setIterationLimit(int iterationLimit) {
+		if (iterationLimit < 1) throw new IllegalArgumentException("Iteration limit must be at least 1");
+		this.iterationLimit = iterationLimit;
+	}
+	
+	/**
+	 * Get the timing of a task
+	 * @param task		The task
+	 * @return			A copy of the timing of all runs of the task, 
+	 * 					or null if it has not run
+	 */
+	public synchronized Timing getTiming(Task task) {
+		Timing timing = timings.get(task);
+		return timing == null ? null : timing.copy();
+	}
+	
+	/**
+	 * Timing of the runs of a {@link Task}
+	 */
+	public static class Timing {
+		private long count = 0;
+		private long totalNanos = 0;
+		private long maxNanos = 0;
+		
+		private void record(long nanos) {
+			count++;
+			totalNanos += nanos;
+			maxNanos = Math.max(maxNanos, nanos);
+		}
+		
+		private Timing copy() {
+			Timing copy = new Timing();
+			copy.count = count;
+			copy.totalNanos = totalNanos;
+			copy.maxNanos = maxNanos;
+			return copy;
+		}
+		
+		/**
+		 * @return	The number of runs
+		 */
+		public long getCount() {
+			return count;
+		}
+		
+		/**
+		 * @return	The total time of all runs, in nanoseconds
+		 */
+		public long getTotalNanos() {
+			return totalNanos;
+		}
+		
+		/**
+		 * @return	The time of the longest run, in nanoseconds
+		 */
+		public long getMaxNanos() {
+			return maxNanos;
+		}
+		
+		@Override
+		public String toString() {
+			return count + " runs, total " + totalNanos + "ns, max " + maxNanos + "ns";
+		}
+	}
+	
+	//A queued task, with its order
+	private static class Entry {
+		private final Task task;
+		private final int priority;
+		private final long sequence;
+		private Entry(Task task, long sequence) {
+			this.task = task;
+			this.priority = (task instanceof OrderedTask) ? ((OrderedTask) task).getPriority() : 0;
+			this.sequence = sequence;
+		}
+	}
+}
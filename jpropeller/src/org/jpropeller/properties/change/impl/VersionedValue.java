@@ -0,0 +1,116 @@
+package org.jpropeller.properties.change.impl;
+
+/**
+ * Holds a value along with a short history of earlier values,
+ * each tagged with the {@link Versions} version it was written in,
+ * so that a thread with a pinned version can read the value as at
+ * that version, without locking.
+ * <p/>
+ * Writes must be made by one thread at a time - normally while
+ * holding the change system lock. Reads may be made from any thread.
+ * History is reclaimed on each write, keeping only values that
+ * may still be visible to a pinned version.
+ *
+ * @param <T>	The type of value
+ */
+public class VersionedValue<T> {
+
+	private volatile Entry<T> head;
+
+	/**
+	 * Create a {@link VersionedValue}
+	 * @param value		The initial value, visible at all versions
+	 */
+	public VersionedValue(T value) {
+		head = new Entry<T>(value, Long.MIN_VALUE, null);
+	}
+	
+	/**
+	 * Get the latest value
+	 * @return	The value
+	 */
+	public T get() {
+		return head.value;
+	}
+	
+	/**
+	 * Get the value as at a version
+	 * @param version	The version
+	 * @return			The value at that version. If history of that
+	 * 					version has been reclaimed (because it was
+	 * 					not pinned), the oldest remaining value.
+	 */
+	public T get(long version) {
+		Entry<T> entry = head;
+		while (entry.version > version) {
+			Entry<T> older = entry.older;
+			if (older == null) {
+				break;
+			}
+			entry = older;
+		}
+		return entry.value;
+	}
+	
+	/**
+	 * Get the value as at the version pinned by the current
+	 * thread, or the latest value if none is pinned
+	 * @return	The value
+	 */
+	public T getPinned() {
+		long version = Versions.pinnedVersion();
+		if (version < 0) {
+			return get();
+		}
+		return get(version);
+	}
+	
+	/**
+	 * Set a new value, visible from the current
+	 * {@link Versions#writeVersion()}
+	 * @param value		The new value
+	 */
+	public void set(T value) {
+		long version = Versions.writeVersion();
+		
+		//Replace any value already written in this version
+		Entry<T> older = head;
+		if (older.version == version) {
+			older = older.older;
+		}
+		head = new Entry<T>(value, version, older);
+		
+		//Keep only the newest value visible at the oldest visible 
+		//version, and newer values
+		long oldest = Versions.oldestVisible();
+		Entry<T> entry = head;
+		while (entry != null && entry.version > oldest) {
+			entry = entry.older;
+		}
+		if (entry != null) {
+			entry.older = null;
+		}
+	}
+	
+	/**
+	 * @return	The number of values currently retained, including the latest
+	 */
+	public int getHistorySize() {
+		int size = 0;
+		for (Entry<T> entry = head; entry != null; entry = entry.older) {
+			size++;
+		}
+		return size;
+	}
+	
+	private final static class Entry<T> {
+		private final T value;
+		private final long version;
+		private volatile Entry<T> older;
+		private Entry(T value, long version, Entry<T> older) {
+			this.value = value;
+			this.version = version;
+			this.older = older;
+		}
+	}
+}
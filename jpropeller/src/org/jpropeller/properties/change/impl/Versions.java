@@ -0,0 +1,228 @@
+package org.jpropeller.properties.change.impl;
+
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jpropeller.properties.change.ChangeSystem;
+import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.properties.change.VersionedChangeable;
+
+/**
+ * Global versions of the state of all versioned values.
+ * <p/>
+ * Each propagation by the {@link ChangeSystem} starts a new
+ * version, and values written for that propagation are tagged 
+ * with it. When the lock is released, the latest version is
+ * published, and becomes the stable version.
+ * <p/>
+ * A thread may {@link #pin()} the latest stable version, and
+ * while it holds the {@link Pin}, reads of versioned values
+ * see that version without needing to lock, even while other
+ * threads carry on making changes. History of values is only
+ * retained for versions that are still pinned, so pins
+ * should be released promptly, in a finally block.
+ * <p/>
+ * Only {@link VersionedChangeable}s are read at the pinned version.
+ * Other {@link Changeable}s, notably the collections and 
+ * {@link org.jpropeller.properties.changeable.impl.ChangeablePropDefault},
+ * are read at their latest state, taking the lock as usual, so reading
+ * them with a pinned version does NOT give a consistent view. Use 
+ * {@link #isVersioned(Iterable)} to check before relying on a pin.
+ */
+public final class Versions {
+
+	private Versions() {}
+
+	//The version being written, and the latest complete version
+	private final static AtomicLong current = new AtomicLong(0);
+	private static volatile long stable = 0;
+	
+	//Number of pins on each pinned version, guarded by pinLock
+	private final static Object pinLock = new Object();
+	private final static TreeMap<Long, Integer> pins = new TreeMap<Long, Integer>();
+	
+	//Total number of pins, so that reads can skip the thread local
+	//lookup when nothing is pinned
+	private static volatile int pinCount = 0;
+	
+	private final static ThreadLocal<Pin> threadPin = new ThreadLocal<Pin>();
+	
+	/**
+	 * Start a new version, called by the {@link ChangeSystem} at the start
+	 * of each propagation, while the lock is held. Values written
+	 * just before the propagation are already tagged with this version.
+	 */
+	public static void advance() {
+		current.incrementAndGet();
+	}
+	
+	/**
+	 * Publish the version started by the last call to {@link #advance()},
+	 * called by the {@link ChangeSystem} just before the lock is released,
+	 * so that all changes made while it was held are published together
+	 */
+	public static void publish() {
+		if (stable == current.get()) {
+			return;
+		}
+		synchronized (pinLock) {
+			stable = current.get();
+		}
+	}
+	
+	/**
+	 * @return	The version currently being written - values written
+	 * 			now will be visible to pins of this version or later.
+	 */
+	public static long writeVersion() {
+		//Writes happen before the propagation that advances the version
+		return current.get() + 1;
+	}
+	
+	/**
+	 * @return	The latest version, including any not yet published - this
+	 * 			is the version seen by a thread holding the lock
+	 */
+	public static long latest() {
+		return current.get();
+	}
+	
+	/**
+	 * @return	The latest published version
+	 */
+	public static long stable() {
+		return stable;
+	}
+	
+	/**
+	 * Check whether {@link Changeable}s can all be read consistently
+	 * with a pinned version
+	 * @param changeables	The {@link Changeable}s
+	 * @return				True if all are {@link VersionedChangeable}s
+	 * 						that are versioned
+	 */
+	public static boolean isVersioned(Iterable<? extends Changeable> changeables) {
+		for (Changeable changeable : changeables) {
+			if (!(changeable instanceof VersionedChangeable) || !((VersionedChangeable) changeable).isVersioned()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Pin the latest stable version for the current thread, until
+	 * the {@link Pin} is released. Pins may be nested, the innermost
+	 * is used for reads.
+	 * @return	The {@link Pin}
+	 */
+	public static Pin pin() {
+		long version;
+		synchronized (pinLock) {
+			version = stable;
+			Integer count = pins.get(version);
+			pins.put(version, count == null ? 1 : count + 1);
+			pinCount++;
+		}
+		Pin pin = new Pin(version, threadPin.get());
+		threadPin.set(pin);
+		return pin;
+	}
+	
+	/**
+	 * @return	True if the current thread has a version pinned
+	 */
+	public static boolean isPinned() {
+		return pinCount > 0 && threadPin.get() != null;
+	}
+	
+	/**
+	 * @return	The version pinned by the current thread, or -1 if none is pinned
+	 */
+	public static long pinnedVersion() {
+		if (pinCount == 0) {
+			return -1;
+		}
+		Pin pin = threadPin.get();
+		return pin == null ? -1 : pin.version;
+	}
+	
+	/**
+	 * Find the oldest version that may still be read - history older
+	 * than the value visible at this version can be reclaimed
+	 * @return	The oldest visible version
+	 */
+	public static long oldestVisible() {
+		synchronized (pinLock) {
+			if (pins.isEmpty()) {
+				return stable;
+			}
+			return Math.min(pins.firstKey(), stable);
+		}
+	}
+	
+	/**
+	 * @return	The number of versions with at least one pin
+	 */
+	public static int getPinnedVersionCount() {
+		synchronized (pinLock) {
+			return pins.size();
+		}
+	}
+	
+	private static void unpin(long version) {
+		synchronized (pinLock) {
+			Integer count = pins.get(version);
+			if (count == null) {
+				return;
+			}
+			if (count == 1) {
+				pins.remove(version);
+			} else {
+				pins.put(version, count - 1);
+			}
+			pinCount--;
+		}
+	}
+	
+	/**
+	 * A pin on a version, held by one thread
+	 */
+	public final static class Pin {
+		private final long version;
+		private final Pin previous;
+		private boolean released = false;
+		
+		private Pin(long version, Pin previous) {
+			this.version = version;
+			this.previous = previous;
+		}
+
+		/**
+		 * @return	The pinned version
+		 */
+		public long getVersion() {
+			return version;
+		}
+		
+		/**
+		 * Release the pin, restoring any pin it was nested in. Must be
+		 * called on the thread that created the pin. Releasing
+		 * more than once has no effect.
+		 */
+		public void release() {
+			if (released) {
+				return;
+			}
+			released = true;
+			unpin(version);
+			if (threadPin.get() == this) {
+				if (previous == null) {
+					threadPin.remove();
+				} else {
+					threadPin.set(previous);
+				}
+			}
+		}
+	}
+}
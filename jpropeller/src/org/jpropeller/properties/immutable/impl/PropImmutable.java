@@ -37,9 +37,13 @@ import org.jpropeller.properties.change.Change;
 import org.jpropeller.properties.change.Changeable;
 import org.jpropeller.properties.change.ChangeableFeatures;
 import org.jpropeller.properties.change.Immutable;
+import org.jpropeller.properties.change.LazyChangeable;
+import org.jpropeller.properties.change.VersionedChangeable;
 import org.jpropeller.properties.change.impl.ChangeDefault;
 import org.jpropeller.properties.change.impl.ChangeableFeaturesDefault;
 import org.jpropeller.properties.change.impl.InternalChangeImplementation;
+import org.jpropeller.properties.change.impl.VersionedValue;
+import org.jpropeller.properties.change.impl.Versions;
 import org.jpropeller.properties.values.ValueProcessor;
 import org.jpropeller.properties.values.impl.AcceptProcessor;
 import org.jpropeller.properties.values.impl.ReadOnlyProcessor;
@@ -74,17 +78,38 @@ import org.jpropeller.util.GeneralUtils;
  * All these types must all be immutable (and preferably implement {@link Immutable}, although this
  * is impossible for the primitive wrapper types like {@link Double}), so this prop only implements
  * shallow change notification
+ * 
+ * Values are stored in a {@link VersionedValue}, so a thread that has pinned a version
+ * using {@link Versions#pin()} reads the value as at that version, without locking.
+ * 
+ * The {@link ChangeableFeatures} and {@link VersionedValue} are only created when they
+ * are first needed - until the prop is listened to, or set, it just holds its initial
+ * value. This makes props that are never observed much cheaper, see {@link LazyChangeable}.
  *
  * @param <T>
  * 		The type of the {@link Prop} value
  */
-public class PropImmutable<T> implements Prop<T> {
+public class PropImmutable<T> implements Prop<T>, LazyChangeable, VersionedChangeable {
 
 	private final static Logger logger = GeneralUtils.logger(PropImmutable.class);
 	
-	T value;
+	private final static InternalChangeImplementation NO_INTERNAL_CHANGE = new InternalChangeImplementation() {
+		@Override
+		public Change internalChange(Changeable changed, Change change,
+				List<Changeable> initial, Map<Changeable, Change> changes) {
+			//Nothing to do - we only ever contain a primitive value, and this cannot change, so
+			//we never expect to get an internalChange
+			logger.warning("UNPOSSIBLE: internalChange called on a PropPrimitive - this should never happen");
+			return null;
+		}
+	};
+	
+	//Initial value, until the first set creates the versioned value
+	volatile T initialValue;
+	volatile VersionedValue<T> value = null;
 	PropName<T> name;
-	ChangeableFeatures features;
+	volatile ChangeableFeatures features = null;
+	Changeable deferredListener = null;
 	ValueProcessor<T> processor;
 	
 	/**
@@ -96,36 +121,95 @@ public class PropImmutable<T> implements Prop<T> {
 	 * 		The initial value of the prop
 	 */
 	PropImmutable(PropName<T> name, T value, ValueProcessor<T> processor) {
-		this.value = value;
+		this.initialValue = value;
 		this.name = name;
 		this.processor = processor;
-		features = new ChangeableFeaturesDefault(new InternalChangeImplementation() {
-			@Override
-			public Change internalChange(Changeable changed, Change change,
-					List<Changeable> initial, Map<Changeable, Change> changes) {
-				//Nothing to do - we only ever contain a primitive value, and this cannot change, so
-				//we never expect to get an internalChange
-				logger.warning("UNPOSSIBLE: internalChange called on a PropPrimitive - this should never happen");
-				return null;
-			}
-		}, this); 
 	}
 
-
 	@Override
 	public ChangeableFeatures features() {
-		return features;
+		ChangeableFeatures current = features;
+		if (current != null) {
+			return current;
+		}
+		
+		//Create features under the listener lock, so we cannot 
+		//race with a deferred listener being added
+		Props.getPropSystem().getChangeSystem().prepareListenerChange(this);
+		try {
+			if (features == null) {
+				ChangeableFeatures newFeatures = new ChangeableFeaturesDefault(NO_INTERNAL_CHANGE, this);
+				if (deferredListener != null) {
+					newFeatures.addChangeableListener(deferredListener);
+					deferredListener = null;
+				}
+				features = newFeatures;
+			}
+			return features;
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeListenerChange(this);
+		}
+	}
+	
+	@Override
+	public void addDeferredChangeableListener(Changeable listener) {
+		Props.getPropSystem().getChangeSystem().prepareListenerChange(this);
+		try {
+			//We can only defer one listener - any others just
+			//create the features now
+			if (features == null && deferredListener == null) {
+				deferredListener = listener;
+			} else {
+				features().addChangeableListener(listener);
+			}
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeListenerChange(this);
+		}
+	}
+	
+	@Override
+	public boolean isMaterialised() {
+		return features != null;
+	}
+	
+	/**
+	 * @return	True, values are immutable and kept with their versions
+	 */
+	@Override
+	public boolean isVersioned() {
+		return true;
 	}
 	
 	@Override
 	public T get() {
+		//A thread with a pinned version can read without locking
+		if (Versions.isPinned()) {
+			return read(true);
+		}
+		
 		Props.getPropSystem().getChangeSystem().prepareRead(this);
 		try {
-			return value;
+			return read(false);
 		} finally {
 			Props.getPropSystem().getChangeSystem().concludeRead(this);
 		}
 	}
+	
+	private T read(boolean pinned) {
+		VersionedValue<T> current = value;
+		
+		//If we have never been set, the initial value is current at 
+		//every version. Check again after reading the initial value, 
+		//in case a set has just cleared it.
+		if (current == null) {
+			T initial = initialValue;
+			current = value;
+			if (current == null) {
+				return initial;
+			}
+		}
+		return pinned ? current.getPinned() : current.get();
+	}
 
 	@Override
 	public void set(T rawNewValue) {
@@ -136,7 +220,12 @@ public class PropImmutable<T> implements Prop<T> {
 		Props.getPropSystem().getChangeSystem().prepareChange(this);
 		
 		try {
-			this.value = value;
+			//Start versioning values on first set
+			if (this.value == null) {
+				this.value = new VersionedValue<T>(initialValue);
+				initialValue = null;
+			}
+			this.value.set(value);
 			
 			//OPTIMISE should we cache the propagator somehow?
 			//Propagate the change we just made
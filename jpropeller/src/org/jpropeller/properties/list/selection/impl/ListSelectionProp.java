@@ -127,6 +127,25 @@ public class ListSelectionProp implements Prop<Integer> {
 					} else {
 						index += delta.getChangeSize();
 					}				
+				} else if (delta.getType() == CollectionChangeType.ROLL) {
+					//Deleted head elements shift everything else back. Appending
+					//to the tail has no effect on selection.
+					//Note we don't alter a selection of -1 (none)
+					if (index >= delta.getHeadDeletionSize()) {
+						index -= delta.getHeadDeletionSize();
+						
+					//If the selected element was deleted from the head, select
+					//the new first element if desired
+					} else if (index >= 0) {
+						if (postSelectOnDeletion && delta.getNewSize() > 0) {
+							index = 0;
+						} else {
+							resetIndex();
+						}
+					}
+				} else if (delta.getType() == CollectionChangeType.PERMUTATION) {
+					//Follow the selected element to its new index
+					index = delta.getPermutedIndex(index);
 				}
 			}
 			
@@ -0,0 +1,393 @@
+/*
+ *  Copyright (c) 2008 shingoki
+ *
+ *  This file is part of jpropeller, see http://jpropeller.sourceforge.net
+ *
+ *    jpropeller is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    jpropeller is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with jpropeller; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+package org.jpropeller.properties.path.impl;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.jpropeller.bean.Bean;
+import org.jpropeller.path.BeanPath;
+import org.jpropeller.path.BeanPathIterator;
+import org.jpropeller.path.CompiledBeanPath;
+import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.change.Change;
+import org.jpropeller.properties.change.ChangeSystem;
+import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.properties.change.ChangeableFeatures;
+import org.jpropeller.properties.change.impl.ChangeDefault;
+import org.jpropeller.properties.change.impl.ChangeableFeaturesDefault;
+import org.jpropeller.properties.change.impl.InternalChangeImplementation;
+import org.jpropeller.system.Props;
+import org.jpropeller.transformer.Transformer;
+import org.jpropeller.util.WeakIdentityDictionary;
+
+/**
+ * A node in a shared trie of paths from a root {@link Bean}, used by
+ * {@link PathProp}. Each node resolves to the {@link Prop} reached by 
+ * following a path from the root, and mirrors that {@link Prop} - it 
+ * has a change whenever the {@link Prop} it resolves to may have
+ * become a different {@link Prop}, or that {@link Prop} itself changes.
+ * <p/>
+ * For {@link CompiledBeanPath}s, there is a node for each stage of 
+ * the path, shared by all paths from the same root that start with the same
+ * {@link Transformer}s. When a {@link Prop} along a path changes to a new 
+ * value, each node after it is resolved again only once, however many 
+ * {@link PathProp}s use it, and only changes the {@link Prop} it listens
+ * to if it resolves to a different {@link Prop}.
+ * <p/>
+ * Nodes hold their parents strongly, and their children weakly, so
+ * nodes are retained only while some {@link PathProp} uses them.
+ */
+abstract class PathNode implements Changeable {
+
+	//The root node for each root bean, if any
+	private final static WeakIdentityDictionary<Bean, WeakReference<RootNode>> roots = new WeakIdentityDictionary<Bean, WeakReference<RootNode>>();
+	
+	//Child nodes, by transformer, guarded by itself 
+	private final Map<Transformer<?, ?>, WeakReference<SegmentNode>> children = new HashMap<Transformer<?, ?>, WeakReference<SegmentNode>>();
+	
+	private final ChangeableFeatures features;
+	
+	PathNode() {
+		features = new ChangeableFeaturesDefault(new InternalChangeImplementation() {
+			@Override
+			public Change internalChange(Changeable changed, Change change,
+					List<Changeable> initial, Map<Changeable, Change> changes) {
+				return handleChange(changed, change);
+			}
+		}, this);
+	}
+	
+	/**
+	 * Get the node for a path from a root {@link Bean}
+	 * @param root		The root {@link Bean}
+	 * @param path		The path
+	 * @return			The node at the end of the path. This is
+	 * 					shared where possible.
+	 */
+	static PathNode forPath(Bean root, BeanPath<?, ?> path) {
+		
+		//We can only share paths where we know each stage
+		if (!(path instanceof CompiledBeanPath<?, ?>)) {
+			return new OpaqueNode(root, path);
+		}
+		CompiledBeanPath<?, ?> compiled = (CompiledBeanPath<?, ?>) path;
+		
+		PathNode node = root(root);
+		for (Transformer<?, ?> transform : compiled.getTransforms()) {
+			node = node.child(transform);
+		}
+		return node.child(compiled.getLastTransform());
+	}
+	
+	private static RootNode root(Bean bean) {
+		synchronized (roots) {
+			WeakReference<RootNode> ref = roots.get(bean);
+			RootNode root = ref == null ? null : ref.get();
+			if (root == null) {
+				root = new RootNode(bean);
+				roots.put(bean, new WeakReference<RootNode>(root));
+			}
+			return root;
+		}
+	}
+	
+	private SegmentNode child(Transformer<?, ?> transform) {
+		
+		//New children start listening to us, so we need the 
+		//listener lock before locking children
+		Props.getPropSystem().getChangeSystem().prepareListenerChange(this);
+		try {
+			synchronized (children) {
+				WeakReference<SegmentNode> ref = children.get(transform);
+				SegmentNode child = ref == null ? null : ref.get();
+				if (child == null) {
+					
+					//Clear out any collected children
+					Iterator<WeakReference<SegmentNode>> it = children.values().iterator();
+					while (it.hasNext()) {
+						if (it.next().get() == null) {
+							it.remove();
+						}
+					}
+					
+					child = new SegmentNode(this, transform);
+					children.put(transform, new WeakReference<SegmentNode>(child));
+				}
+				return child;
+			}
+		} finally {
+			Props.getPropSystem().getChangeSystem().concludeListenerChange(this);
+		}
+	}
+	
+	/**
+	 * Respond to a change to a {@link Changeable} we are listening to
+	 * @param changed	The {@link Changeable}
+	 * @param change	The new {@link Change}
+	 * @return			Our consequent {@link Change}, or null if none
+	 */
+	abstract Change handleChange(Changeable changed, Change change);
+
+	/**
+	 * Resolve the {@link Prop} at the end of our path. Uses
+	 * {@link ChangeSystem#prepareRead(Changeable)} - must be called
+	 * where reading is allowed.
+	 * @return	The {@link Prop}, or null if the path cannot be followed
+	 */
+	abstract Prop<?> prop();
+	
+	/**
+	 * Resolve the {@link Bean} at the end of our path - the value of
+	 * {@link #prop()}. Must be called where reading is allowed.
+	 * @return	The {@link Bean}, or null if the path cannot be followed
+	 */
+	Bean bean() {
+		Prop<?> prop = prop();
+		if (prop == null) {
+			return null;
+		}
+		Object value = prop.get();
+		return (value instanceof Bean) ? (Bean) value : null;
+	}
+	
+	@Override
+	public ChangeableFeatures features() {
+		return features;
+	}
+	
+	/**
+	 * The start of paths from a root {@link Bean} - this 
+	 * never changes 
+	 */
+	private final static class RootNode extends PathNode {
+		private final Bean root;
+		
+		private RootNode(Bean root) {
+			this.root = root;
+		}
+
+		@Override
+		Change handleChange(Changeable changed, Change change) {
+			return null;
+		}
+
+		@Override
+		Prop<?> prop() {
+			return null;
+		}
+		
+		@Override
+		Bean bean() {
+			return root;
+		}
+	}
+	
+	/**
+	 * One stage of a path, following a {@link Transformer} from
+	 * the {@link Bean} at the end of the parent path
+	 */
+	private final static class SegmentNode extends PathNode {
+		private final PathNode parent;
+		
+		//Paths are built to give the correct types at each stage
+		@SuppressWarnings("rawtypes")
+		private final Transformer transform;
+		
+		private boolean valid = false;
+		
+		//The prop we resolved to, and are listening to. Weak so that we 
+		//don't hold on to otherwise unused props while we are not read
+		private WeakReference<Prop<?>> propRef = null;
+		
+		private SegmentNode(PathNode parent, Transformer<?, ?> transform) {
+			this.parent = parent;
+			this.transform = transform;
+			parent.features().addChangeableListener(this);
+		}
+		
+		@Override
+		Change handleChange(Changeable changed, Change change) {
+			
+			//Parent has changed
+			if (changed == parent) {
+				
+				//Deep changes to the parent bean don't change the prop 
+				//we reach - if our prop itself changes we see this directly
+				if (change.sameInstances()) {
+					return null;
+				}
+				
+				//Parent may have a new bean, so we may reach a new prop
+				valid = false;
+				return ChangeDefault.instance(
+						false,	//Not initial 
+						false	//instances may have changed
+						);
+			}
+			
+			//Otherwise our prop has changed, and we mirror it
+			return ChangeDefault.instance(
+					false,	//Not initial 
+					change.sameInstances()	//instances have changed only if they have changed in our prop
+					);
+		}
+		
+		@Override
+		Prop<?> prop() {
+			Props.getPropSystem().getChangeSystem().prepareRead(this);
+			try {
+				Prop<?> prop = propRef == null ? null : propRef.get();
+				
+				//Resolve if invalid, or our prop has been GCed
+				if (!valid || (propRef != null && prop == null)) {
+					prop = resolve();
+				}
+				return prop;
+			} finally {
+				Props.getPropSystem().getChangeSystem().concludeRead(this);
+			}
+		}
+		
+		//Paths are built to give the correct types at each stage
+		@SuppressWarnings("unchecked")
+		private Prop<?> resolve() {
+			Bean bean = parent.bean();
+			Prop<?> newProp = (bean == null) ? null : (Prop<?>) transform.transform(bean);
+			
+			//Only change listening if we have a new prop
+			Prop<?> oldProp = propRef == null ? null : propRef.get();
+			if (newProp != oldProp) {
+				if (oldProp != null) {
+					oldProp.features().removeChangeableListener(this);
+				}
+				if (newProp != null) {
+					newProp.features().addChangeableListener(this);
+				}
+				propRef = (newProp == null) ? null : new WeakReference<Prop<?>>(newProp);
+			}
+			
+			valid = true;
+			return newProp;
+		}
+	}
+	
+	/**
+	 * A whole path that is not a {@link CompiledBeanPath}, so cannot 
+	 * be shared, and is followed using its {@link BeanPathIterator}
+	 */
+	private final static class OpaqueNode extends PathNode {
+		private final Bean root;
+		private final BeanPath<?, ?> path;
+		
+		private boolean valid = false;
+		
+		//Weak references so that we don't hold on to otherwise
+		//unused props while we are not read
+		private final List<WeakReference<Prop<?>>> pathPropRefs = new ArrayList<WeakReference<Prop<?>>>();
+		private WeakReference<Prop<?>> propRef = null;
+		
+		private OpaqueNode(Bean root, BeanPath<?, ?> path) {
+			this.root = root;
+			this.path = path;
+		}
+		
+		@Override
+		Change handleChange(Changeable changed, Change change) {
+			
+			//A new value in a prop along the path means the path may lead elsewhere
+			for (WeakReference<Prop<?>> pathPropRef : pathPropRefs) {
+				if (pathPropRef.get() == changed) {
+					if (change.sameInstances()) {
+						return null;
+					}
+					valid = false;
+					return ChangeDefault.instance(
+							false,	//Not initial 
+							false	//instances may have changed
+							);
+				}
+			}
+			
+			//Otherwise our prop has changed, and we mirror it
+			return ChangeDefault.instance(
+					false,	//Not initial 
+					change.sameInstances()	//instances have changed only if they have changed in our prop
+					);
+		}
+		
+		@Override
+		Prop<?> prop() {
+			Props.getPropSystem().getChangeSystem().prepareRead(this);
+			try {
+				Prop<?> prop = propRef == null ? null : propRef.get();
+				if (!valid || prop == null) {
+					prop = resolve();
+				}
+				return prop;
+			} finally {
+				Props.getPropSystem().getChangeSystem().concludeRead(this);
+			}
+		}
+		
+		//Paths are built to give the correct types at each stage
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private Prop<?> resolve() {
+			
+			//Stop listening to old props
+			for (WeakReference<Prop<?>> pathPropRef : pathPropRefs) {
+				Prop<?> pathProp = pathPropRef.get();
+				if (pathProp != null) {
+					pathProp.features().removeChangeableListener(this);
+				}
+			}
+			pathPropRefs.clear();
+			Prop<?> oldProp = propRef == null ? null : propRef.get();
+			if (oldProp != null) {
+				oldProp.features().removeChangeableListener(this);
+			}
+			propRef = null;
+			
+			//Follow path, listening to each prop
+			valid = true;
+			BeanPathIterator<?> iterator = ((BeanPath) path).iteratorFrom(root);
+			while (iterator.hasNext()) {
+				Prop<?> pathProp = iterator.next();
+				if (pathProp == null) {
+					return null;
+				}
+				pathPropRefs.add(new WeakReference<Prop<?>>(pathProp));
+				pathProp.features().addChangeableListener(this);
+			}
+			
+			Prop<?> prop = iterator.finalProp();
+			if (prop != null) {
+				propRef = new WeakReference<Prop<?>>(prop);
+				prop.features().addChangeableListener(this);
+			}
+			return prop;
+		}
+	}
+}
@@ -4,6 +4,7 @@ import org.jpropeller.bean.Bean;
 import org.jpropeller.bean.BeanFeaturesFactory;
 import org.jpropeller.bean.ExtendedBeanFeatures;
 import org.jpropeller.bean.MutableBeanFeatures;
+import org.jpropeller.concurrency.Scheduler;
 import org.jpropeller.properties.change.ChangeSystem;
 import org.jpropeller.properties.change.impl.InternalChangeImplementation;
 import org.jpropeller.view.update.UpdateManager;
@@ -30,6 +31,14 @@ public interface PropSystem {
 	 */
 	public ChangeSystem getChangeSystem();
 	
+	/**
+	 * Get the system-wide {@link Scheduler} instance, used to run
+	 * background work, this must not change after it is first called.
+	 * @return
+	 * 		The {@link Scheduler}
+	 */
+	public Scheduler getScheduler();
+	
 	/**
 	 * Get the current system-wide {@link BeanFeaturesFactory} instance
 	 * @return
@@ -8,6 +8,7 @@ import java.util.Map;
 import org.joda.time.DateTime;
 import org.jpropeller.bean.Bean;
 import org.jpropeller.calculation.Calculation;
+import org.jpropeller.calculation.PureFunction;
 import org.jpropeller.collection.CList;
 import org.jpropeller.collection.CMap;
 import org.jpropeller.collection.CSet;
@@ -20,9 +21,13 @@ import org.jpropeller.name.PropName;
 import org.jpropeller.path.BeanPath;
 import org.jpropeller.properties.Prop;
 import org.jpropeller.properties.calculated.background.impl.BackgroundCalculatedProp;
+import org.jpropeller.properties.calculated.background.impl.CancellableBackgroundCalculatedProp;
 import org.jpropeller.properties.calculated.impl.BuildCalculation;
 import org.jpropeller.properties.calculated.impl.BuildListCalculation;
 import org.jpropeller.properties.calculated.impl.CalculatedProp;
+import org.jpropeller.properties.calculated.impl.MemoCache;
+import org.jpropeller.properties.calculated.impl.MemoCalculation;
+import org.jpropeller.properties.calculated.impl.RecordingCalculatedProp;
 import org.jpropeller.properties.change.ChangeSystem;
 import org.jpropeller.properties.change.Changeable;
 import org.jpropeller.properties.change.Immutable;
@@ -44,6 +49,7 @@ import org.jpropeller.task.Task;
 import org.jpropeller.task.impl.BuildTask;
 import org.jpropeller.transformer.Transformer;
 import org.jpropeller.ui.impl.ImmutableIcon;
+import org.jpropeller.util.Equivalence;
 import org.jpropeller.util.NoInstanceAvailableException;
 import org.jpropeller.util.Source;
 
@@ -335,6 +341,55 @@ public class Props {
 		return new CalculatedProp<T>(PropName.create(contentsClass, name), calculation);
 	}
 	
+	/**
+	 * Make a {@link Prop} containing the result of a {@link PureFunction}
+	 * of the values of input {@link Prop}s, sharing results with all
+	 * other uses of the function in the shared {@link MemoCache} - see
+	 * {@link MemoCalculation}
+	 * @param <T>				The type of {@link Prop} contents
+	 * @param contentsClass		The class of {@link Prop} contents
+	 * @param name				The name of the {@link Prop}
+	 * @param function			The {@link PureFunction} giving {@link Prop} value
+	 * @param inputs			The inputs to the function, in order
+	 * @return					The {@link Prop}
+	 */
+	public static <T> Prop<T> calculatedMemo(Class<T> contentsClass, String name, PureFunction<T> function, Prop<?>... inputs) {
+		return new CalculatedProp<T>(PropName.create(contentsClass, name), MemoCalculation.create(function, inputs));
+	}
+	
+	/**
+	 * Make a {@link Prop} containing values from a {@link Source}, 
+	 * recalculated when any {@link Changeable} read by the {@link Source}
+	 * changes - see {@link RecordingCalculatedProp}
+	 * @param <T>				The type of {@link Prop} contents
+	 * @param contentsClass		The class of {@link Prop} contents
+	 * @param name				The name of the {@link Prop}
+	 * @param source			The {@link Source} giving {@link Prop} value
+	 * @return					The {@link Prop}
+	 */
+	public static <T> RecordingCalculatedProp<T> calculatedFromReads(Class<T> contentsClass, String name, Source<T> source) {
+		return RecordingCalculatedProp.create(PropName.create(contentsClass, name), source);
+	}
+	
+	/**
+	 * Make a {@link Prop} containing the result of a {@link Calculation},
+	 * using early cutoff - see {@link CalculatedProp}
+	 * @param <T>				The type of {@link Prop} contents
+	 * @param contentsClass		The class of {@link Prop} contents
+	 * @param name				The name of the {@link Prop}
+	 * @param calculation		The {@link Calculation} giving {@link Prop} value
+	 * @param equivalence		Recalculated values equivalent to the previous
+	 * 							value do not cause a change. If null, values are
+	 * 							compared using equals.
+	 * @return					The {@link Prop}
+	 */
+	public static <T> CalculatedProp<T> calculatedWithCutoff(Class<T> contentsClass, String name, Calculation<T> calculation, Equivalence<? super T> equivalence) {
+		if (equivalence == null) {
+			return CalculatedProp.withCutoff(PropName.create(contentsClass, name), calculation);
+		}
+		return CalculatedProp.withCutoff(PropName.create(contentsClass, name), calculation, equivalence);
+	}
+	
 	/**
 	 * Make a {@link Prop} containing the result of a {@link Calculation}
 	 * @param <T>				The type of {@link Prop} contents
@@ -348,6 +403,23 @@ public class Props {
 		return new BackgroundCalculatedProp<T>(PropName.create(contentsClass, name), calculation, initialValue);
 	}
 	
+	/**
+	 * Make a {@link Prop} containing the result of a {@link Calculation}
+	 * performed in the background, cancelling superseded calculations, and
+	 * optionally waiting for sources to be unchanged for a quiet period 
+	 * before calculating - see {@link CancellableBackgroundCalculatedProp}
+	 * @param <T>				The type of {@link Prop} contents
+	 * @param contentsClass		The class of {@link Prop} contents
+	 * @param name				The name of the {@link Prop}
+	 * @param calculation		The {@link Calculation} giving {@link Prop} value
+	 * @param initialValue		The initial value of the {@link Prop}
+	 * @param quietPeriod		The quiet period in milliseconds, or 0 for none
+	 * @return					The {@link Prop}
+	 */
+	public static <T> CancellableBackgroundCalculatedProp<T> calculatedBackground(Class<T> contentsClass, String name, Calculation<T> calculation, T initialValue, long quietPeriod) {
+		return new CancellableBackgroundCalculatedProp<T>(PropName.create(contentsClass, name), calculation, initialValue, quietPeriod);
+	}
+	
 	/**
 	 * Make a new {@link SuperClassProp} with a given
 	 * core prop and name, and add to this bean.
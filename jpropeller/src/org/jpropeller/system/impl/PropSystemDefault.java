@@ -5,6 +5,8 @@ import org.jpropeller.bean.BeanFeaturesFactory;
 import org.jpropeller.bean.ExtendedBeanFeatures;
 import org.jpropeller.bean.MutableBeanFeatures;
 import org.jpropeller.bean.impl.BeanFeaturesFactoryDefault;
+import org.jpropeller.concurrency.Scheduler;
+import org.jpropeller.concurrency.impl.SchedulerDefault;
 import org.jpropeller.properties.change.ChangeSystem;
 import org.jpropeller.properties.change.impl.ChangeDispatcherSwing;
 import org.jpropeller.properties.change.impl.ChangeSystemDefault;
@@ -25,6 +27,28 @@ public class PropSystemDefault implements PropSystem {
 	UpdateManager updateManager = new DirectUpdateManager();
 	BeanFeaturesFactory beanFeaturesFactory = new BeanFeaturesFactoryDefault();
 	ChangeSystem changePropagator = new ChangeSystemDefault(new ChangeDispatcherSwing());
+	private final Scheduler scheduler;
+	
+	/**
+	 * Create a {@link PropSystemDefault} with a {@link SchedulerDefault}
+	 * using the default number of threads
+	 */
+	public PropSystemDefault() {
+		this(new SchedulerDefault());
+	}
+	
+	/**
+	 * Create a {@link PropSystemDefault}
+	 * @param scheduler		The {@link Scheduler} used to run background work
+	 */
+	public PropSystemDefault(Scheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+	
+	@Override
+	public Scheduler getScheduler() {
+		return scheduler;
+	}
 	
 	@Override
 	public UpdateManager getUpdateManager() {
@@ -0,0 +1,31 @@
+package org.jpropeller.task;
+
+import java.util.Collection;
+
+import org.jpropeller.properties.change.ChangeSystem;
+
+/**
+ * A {@link Task} with an explicit order relative to other {@link Task}s,
+ * when several are waiting to be run synchronously by a {@link ChangeSystem}
+ * (see {@link ChangeSystem#addTask(Task)}).
+ * <p/>
+ * Waiting tasks are run in order of priority, highest first, except that
+ * a task is not run while any of its dependencies are also waiting. Tasks 
+ * of the same priority run in the order they were added. Plain {@link Task}s 
+ * have priority 0 and no dependencies.
+ */
+public interface OrderedTask extends Task {
+
+	/**
+	 * @return	The priority of the task - waiting tasks with higher 
+	 * 			priority run first. Must not change.
+	 */
+	public int getPriority();
+	
+	/**
+	 * @return	The tasks that must run before this one, when 
+	 * 			they are waiting at the same time. Must not change.
+	 */
+	public Collection<? extends Task> getDependencies();
+	
+}
@@ -1,12 +1,16 @@
 package org.jpropeller.task.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.jpropeller.collection.impl.IdentityHashSet;
 import org.jpropeller.concurrency.CancellableResponse;
 import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.task.OrderedTask;
 import org.jpropeller.task.Task;
 
 /**
@@ -19,10 +23,18 @@ import org.jpropeller.task.Task;
  * 
  * This sets up a {@link Task} based on the {@link CancellableResponse}
  * "add", which is executed using data in {@link Changeable}s a, b and c.
+ * 
+ * The order of the task relative to other tasks may also be given,
+ * see {@link OrderedTask}:
+ * <code>
+ * 		BuildTask.on(a, b, c).withPriority(1).after(other).withResponse(add);
+ * </code>
  */
 public class BuildTask {
 
 	private final Set<Changeable> srcSet;
+	private int priority = 0;
+	private final List<Task> dependencies = new ArrayList<Task>();
 	
 	/**
 	 * 					Creates a new calculation on a list of sources.
@@ -47,6 +59,29 @@ public class BuildTask {
 		return new BuildTask(sources);
 	}
 	
+	/**
+	 * Set the priority of the {@link Task}, see {@link OrderedTask#getPriority()}
+	 * @param priority		The priority
+	 * @return				This builder
+	 */
+	public BuildTask withPriority(int priority) {
+		this.priority = priority;
+		return this;
+	}
+	
+	/**
+	 * Add {@link Task}s that the {@link Task} will run after, 
+	 * see {@link OrderedTask#getDependencies()}
+	 * @param tasks			The tasks to run before this one
+	 * @return				This builder
+	 */
+	public BuildTask after(Task... tasks) {
+		for (Task task : tasks) {
+			dependencies.add(task);
+		}
+		return this;
+	}
+	
 	/**
 	 * Produce a {@link Task}, with the sources provided to
 	 * {@link #on(Changeable...)}, and the {@link CancellableResponse}
@@ -55,7 +90,9 @@ public class BuildTask {
 	 * @return				The {@link Task}
 	 */
 	public Task withResponse(final CancellableResponse response) {
-		return new Task() {
+		final int taskPriority = priority;
+		final List<Task> taskDependencies = Collections.unmodifiableList(new ArrayList<Task>(dependencies));
+		return new OrderedTask() {
 			@Override
 			public void respond(AtomicBoolean shouldCancel) {
 				response.respond(shouldCancel);
@@ -64,6 +101,14 @@ public class BuildTask {
 			public Set<? extends Changeable> getSources() {
 				return srcSet;
 			}
+			@Override
+			public int getPriority() {
+				return taskPriority;
+			}
+			@Override
+			public Collection<? extends Task> getDependencies() {
+				return taskDependencies;
+			}
 		};
 	}
 	
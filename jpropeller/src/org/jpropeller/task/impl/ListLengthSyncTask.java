@@ -66,7 +66,10 @@ public class ListLengthSyncTask<T> implements Task {
 		Props.acquire();
 		try {
 			int currentSize = size.get();
-			List<T> listTemp = new ArrayList<T>(list.get());
+			
+			//Snapshot is shared and immutable, so we only need to
+			//copy contents if we actually need to grow the list
+			List<T> listTemp = list.get().snapshot();
 			if (listTemp.size() != currentSize) {
 				//Trim
 				if (listTemp.size() > currentSize) {
@@ -74,6 +77,7 @@ public class ListLengthSyncTask<T> implements Task {
 					
 				//Grow
 				} else if (listTemp.size() < currentSize) {
+					listTemp = new ArrayList<T>(listTemp);
 					int toAdd = currentSize - listTemp.size();
 					for (int i = 0; i < toAdd; i++) {
 						listTemp.add(valueSource.get());
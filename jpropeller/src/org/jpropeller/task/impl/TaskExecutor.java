@@ -27,12 +27,12 @@ public class TaskExecutor implements ChangeListener {
 	private final Task task;
 
 	/**
-	 * Create a {@link TaskExecutor} using the default {@link ExecutorService}
-	 * with a small pool of threads
+	 * Create a {@link TaskExecutor} using the shared {@link ExecutorService}
+	 * for long running work, so that tasks do not delay background calculations
 	 * @param task		The task to execute
 	 */
 	public TaskExecutor(Task task) {
-		this(task, ExecutorUtils.getExecutorService());
+		this(task, ExecutorUtils.getBatchExecutorService());
 	}
 	
 	/**
@@ -30,4 +30,18 @@ public class BeanToPropTransformer<T> implements Transformer<Bean, Prop<T>>{
 		return s.features().get(name);
 	}
 
+	//Transformers with the same name always give the same result,
+	//so are equal - this allows paths using them to be shared
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (!(obj instanceof BeanToPropTransformer<?>)) return false;
+		return name.equals(((BeanToPropTransformer<?>) obj).name);
+	}
+	
+	@Override
+	public int hashCode() {
+		return name.hashCode();
+	}
+
 }
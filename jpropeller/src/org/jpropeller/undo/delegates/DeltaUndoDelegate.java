@@ -0,0 +1,43 @@
+package org.jpropeller.undo.delegates;
+
+import org.jpropeller.properties.change.Change;
+import org.jpropeller.properties.change.Changeable;
+
+/**
+ * An {@link UndoDelegate} that can also record each {@link Change} to 
+ * a {@link Changeable} as it happens, as an {@link UndoRecord} that
+ * reverses just that change. This avoids saving the entire state of 
+ * a large {@link Changeable} (for example a long list) for each 
+ * small change, so that memory and time used are in proportion to 
+ * the size of the change.
+ * @param <T>
+ * 		The type of {@link Changeable} this delegate will record
+ */
+public interface DeltaUndoDelegate<T extends Changeable> extends UndoDelegate<T> {
+
+	/**
+	 * Check whether changes to a {@link Changeable} can be recorded.
+	 * If not, the {@link UndoDelegate} methods must be used instead.
+	 * @param changeable
+	 * 		The {@link Changeable}
+	 * @return
+	 * 		True if {@link #record(Changeable, Change)} can be used 
+	 * for changes to the {@link Changeable}
+	 */
+	public boolean canRecord(T changeable);
+	
+	/**
+	 * Record a change to a {@link Changeable}. This is called when the 
+	 * change has been made, but before it is propagated, so the 
+	 * {@link Changeable} is in the state just after the change.
+	 * @param changeable
+	 * 		The changed {@link Changeable}
+	 * @param change
+	 * 		The initial {@link Change} to the {@link Changeable}
+	 * @return
+	 * 		An {@link UndoRecord} to reverse and reapply the change,
+	 * or null if the change cannot be recorded.
+	 */
+	public UndoRecord record(T changeable, Change change);
+	
+}
@@ -0,0 +1,30 @@
+package org.jpropeller.undo.delegates;
+
+import org.jpropeller.properties.change.Changeable;
+
+/**
+ * A record of a single change to a {@link Changeable}, which can
+ * reverse the change, and then apply it again. Produced by a
+ * {@link DeltaUndoDelegate}.
+ */
+public interface UndoRecord {
+
+	/**
+	 * Reverse the change. The {@link Changeable} must be
+	 * in the state it had just after the change.
+	 */
+	public void undo();
+
+	/**
+	 * Apply the change again. The {@link Changeable} must be
+	 * in the state it had just before the change.
+	 */
+	public void redo();
+	
+	/**
+	 * @return	An estimate of the memory used by this record, in bytes.
+	 * 			Elements shared with the {@link Changeable} need not be counted.
+	 */
+	public long estimateSize();
+	
+}
@@ -0,0 +1,60 @@
+package org.jpropeller.undo.delegates.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jpropeller.undo.delegates.UndoRecord;
+
+/**
+ * An {@link UndoRecord} made up of a sequence of {@link UndoRecord}s, 
+ * which are undone in reverse order, and redone in order.
+ */
+public class CompositeUndoRecord implements UndoRecord {
+
+	private final List<UndoRecord> records;
+
+	/**
+	 * Create a {@link CompositeUndoRecord}
+	 * @param records	The records, in the order their changes were made
+	 */
+	public CompositeUndoRecord(List<UndoRecord> records) {
+		this.records = new ArrayList<UndoRecord>(records);
+	}
+	
+	/**
+	 * Make an {@link UndoRecord} for a sequence of {@link UndoRecord}s
+	 * @param records	The records, in the order their changes were made
+	 * @return			The single record if there is only one, otherwise
+	 * 					a {@link CompositeUndoRecord}
+	 */
+	public static UndoRecord create(List<UndoRecord> records) {
+		if (records.size() == 1) {
+			return records.get(0);
+		}
+		return new CompositeUndoRecord(records);
+	}
+
+	@Override
+	public void undo() {
+		for (int i = records.size() - 1; i >= 0; i--) {
+			records.get(i).undo();
+		}
+	}
+
+	@Override
+	public void redo() {
+		for (UndoRecord record : records) {
+			record.redo();
+		}
+	}
+
+	@Override
+	public long estimateSize() {
+		long size = SizeEstimates.list(records.size());
+		for (UndoRecord record : records) {
+			size += record.estimateSize();
+		}
+		return size;
+	}
+
+}
@@ -1,9 +1,19 @@
 package org.jpropeller.undo.delegates.impl;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.LinkedList;
+import java.util.List;
 
 import org.jpropeller.collection.CList;
+import org.jpropeller.collection.ListDelta;
+import org.jpropeller.collection.impl.CListDefault;
+import org.jpropeller.collection.impl.ListPermutations;
+import org.jpropeller.properties.change.Change;
+import org.jpropeller.properties.change.ListChange;
+import org.jpropeller.undo.delegates.DeltaUndoDelegate;
 import org.jpropeller.undo.delegates.UndoDelegate;
+import org.jpropeller.undo.delegates.UndoRecord;
 
 /**
  * An {@link UndoDelegate} suitable for any {@link CList} that
@@ -12,8 +22,13 @@ import org.jpropeller.undo.delegates.UndoDelegate;
  * {@link #save(CList)}, and sets the {@link CList} back
  * to those contents using {@link CList#replace(Iterable)} when
  * asked to {@link #restore(CList, Object)}.
+ * <p/>
+ * For {@link CListDefault}, whose {@link ListDelta}s record the 
+ * elements they remove or replace, each change is instead recorded 
+ * from its {@link ListDelta}s, storing only the affected elements,
+ * and undone by applying the inverse operation.
  */
-public class ObservableListUndoDelegate implements UndoDelegate<CList<?>> {
+public class ObservableListUndoDelegate implements DeltaUndoDelegate<CList<?>> {
 
 	@Override
 	public Object save(CList<?> changeable) {
@@ -29,4 +44,225 @@ public class ObservableListUndoDelegate implements UndoDelegate<CList<?>> {
 		((CList<Object>)changeable).replace((Iterable<Object>)data);
 	}
 
+	@Override
+	public boolean canRecord(CList<?> changeable) {
+		//Only lists we know record old elements in every delta
+		return changeable instanceof CListDefault;
+	}
+
+	//We only ever put elements back into the list they came from
+	@SuppressWarnings("unchecked")
+	@Override
+	public UndoRecord record(CList<?> changeable, Change change) {
+		if (!(change instanceof ListChange)) {
+			return null;
+		}
+		CList<Object> list = (CList<Object>) changeable;
+		List<ListDelta> deltas = ((ListChange) change).getListDeltas();
+		
+		//The list is in the state after the last delta, so we can only 
+		//read new elements from it if there is just one delta 
+		boolean current = deltas.size() == 1;
+		
+		List<UndoRecord> records = new ArrayList<UndoRecord>(deltas.size());
+		for (ListDelta delta : deltas) {
+			UndoRecord record = record(list, delta, current);
+			if (record == null) {
+				return null;
+			}
+			records.add(record);
+		}
+		return CompositeUndoRecord.create(records);
+	}
+
+	@SuppressWarnings("unchecked")
+	private UndoRecord record(CList<Object> list, ListDelta delta, boolean current) {
+		List<Object> oldElements = (List<Object>) delta.getOldElements();
+		if (oldElements == null) {
+			return null;
+		}
+		
+		int first = delta.getFirstChangedIndex();
+
+		switch (delta.getType()) {
+		case INSERTION:
+			if (!current) return null;
+			return new Insertion(list, first, copy(list, first, first + delta.getChangeSize()));
+
+		case DELETION:
+			return new Deletion(list, first, oldElements);
+
+		case ALTERATION:
+			if (!current) return null;
+			return new Alteration(list, first, oldElements, copy(list, first, first + oldElements.size()));
+
+		case CLEAR:
+			return new Replacement(list, oldElements, null);
+			
+		case COMPLETE:
+			if (!current) return null;
+			return new Replacement(list, oldElements, copy(list, 0, list.size()));
+			
+		case PERMUTATION:
+			int[] permutation = new int[delta.getLastChangedIndex() - first + 1];
+			for (int i = 0; i < permutation.length; i++) {
+				permutation[i] = delta.getPermutedIndex(first + i);
+			}
+			return new Permutation(list, first, permutation);
+
+		default:
+			return null;
+		}
+	}
+	
+	private static List<Object> copy(CList<Object> list, int from, int to) {
+		List<Object> elements = new ArrayList<Object>(to - from);
+		for (int i = from; i < to; i++) {
+			elements.add(list.get(i));
+		}
+		return elements;
+	}
+	
+	private static BitSet range(int from, int count) {
+		BitSet indices = new BitSet();
+		indices.set(from, from + count);
+		return indices;
+	}
+	
+	private static class Insertion implements UndoRecord {
+		private final CList<Object> list;
+		private final int first;
+		private final List<Object> added;
+		private Insertion(CList<Object> list, int first, List<Object> added) {
+			this.list = list;
+			this.first = first;
+			this.added = added;
+		}
+		@Override
+		public void undo() {
+			list.removeIndices(range(first, added.size()));
+		}
+		@Override
+		public void redo() {
+			list.addAll(first, added);
+		}
+		@Override
+		public long estimateSize() {
+			return SizeEstimates.OBJECT + SizeEstimates.list(added.size());
+		}
+	}
+
+	private static class Deletion implements UndoRecord {
+		private final CList<Object> list;
+		private final int first;
+		private final List<Object> removed;
+		private Deletion(CList<Object> list, int first, List<Object> removed) {
+			this.list = list;
+			this.first = first;
+			this.removed = removed;
+		}
+		@Override
+		public void undo() {
+			list.addAll(first, removed);
+		}
+		@Override
+		public void redo() {
+			list.removeIndices(range(first, removed.size()));
+		}
+		@Override
+		public long estimateSize() {
+			return SizeEstimates.OBJECT + SizeEstimates.list(removed.size());
+		}
+	}
+
+	private static class Alteration implements UndoRecord {
+		private final CList<Object> list;
+		private final int first;
+		private final List<Object> oldElements;
+		private final List<Object> newElements;
+		private Alteration(CList<Object> list, int first, List<Object> oldElements, List<Object> newElements) {
+			this.list = list;
+			this.first = first;
+			this.oldElements = oldElements;
+			this.newElements = newElements;
+		}
+		@Override
+		public void undo() {
+			for (int i = 0; i < oldElements.size(); i++) {
+				list.set(first + i, oldElements.get(i));
+			}
+		}
+		@Override
+		public void redo() {
+			for (int i = 0; i < newElements.size(); i++) {
+				list.set(first + i, newElements.get(i));
+			}
+		}
+		@Override
+		public long estimateSize() {
+			return SizeEstimates.OBJECT + SizeEstimates.list(oldElements.size()) + SizeEstimates.list(newElements.size());
+		}
+	}
+
+	private static class Replacement implements UndoRecord {
+		private final CList<Object> list;
+		private final List<Object> oldElements;
+		//Null to clear the list
+		private final List<Object> newElements;
+		private Replacement(CList<Object> list, List<Object> oldElements, List<Object> newElements) {
+			this.list = list;
+			this.oldElements = oldElements;
+			this.newElements = newElements;
+		}
+		@Override
+		public void undo() {
+			list.replace(oldElements);
+		}
+		@Override
+		public void redo() {
+			if (newElements == null) {
+				list.clear();
+			} else {
+				list.replace(newElements);
+			}
+		}
+		@Override
+		public long estimateSize() {
+			return SizeEstimates.OBJECT + SizeEstimates.estimate(oldElements) + SizeEstimates.estimate(newElements);
+		}
+	}
+
+	private static class Permutation implements UndoRecord {
+		private final CList<Object> list;
+		private final int first;
+		//The permutation of the moved range only
+		private final int[] permutation;
+		private Permutation(CList<Object> list, int first, int[] permutation) {
+			this.list = list;
+			this.first = first;
+			this.permutation = permutation;
+		}
+		//Expand to a permutation of the whole list
+		private int[] expand() {
+			int[] full = new int[list.size()];
+			for (int i = 0; i < full.length; i++) {
+				full[i] = i;
+			}
+			System.arraycopy(permutation, 0, full, first, permutation.length);
+			return full;
+		}
+		@Override
+		public void undo() {
+			list.permute(ListPermutations.invert(expand()));
+		}
+		@Override
+		public void redo() {
+			list.permute(expand());
+		}
+		@Override
+		public long estimateSize() {
+			return 2 * SizeEstimates.OBJECT + 4L * permutation.length;
+		}
+	}
+	
 }
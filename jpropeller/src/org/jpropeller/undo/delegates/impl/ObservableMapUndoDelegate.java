@@ -1,10 +1,18 @@
 package org.jpropeller.undo.delegates.impl;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.jpropeller.collection.CMap;
+import org.jpropeller.collection.CollectionChangeType;
+import org.jpropeller.collection.MapDelta;
+import org.jpropeller.collection.impl.CMapDefault;
+import org.jpropeller.properties.change.Change;
+import org.jpropeller.properties.change.MapChange;
+import org.jpropeller.undo.delegates.DeltaUndoDelegate;
 import org.jpropeller.undo.delegates.UndoDelegate;
+import org.jpropeller.undo.delegates.UndoRecord;
 
 /**
  * An {@link UndoDelegate} suitable for any {@link CMap} that
@@ -13,8 +21,13 @@ import org.jpropeller.undo.delegates.UndoDelegate;
  * {@link #save(CMap)}, and sets the {@link CMap} back
  * to those contents using {@link CMap#replace(Map)} when
  * asked to {@link #restore(CMap, Object)}.
+ * <p/>
+ * For {@link CMapDefault}, whose {@link MapDelta}s record the 
+ * mappings they remove or replace, each change is instead recorded 
+ * from its {@link MapDelta}s, storing only the affected mappings,
+ * and undone by applying the inverse operation.
  */
-public class ObservableMapUndoDelegate implements UndoDelegate<CMap<?, ?>> {
+public class ObservableMapUndoDelegate implements DeltaUndoDelegate<CMap<?, ?>> {
 
 	@Override
 	public Object save(CMap<?, ?> changeable) {
@@ -33,4 +46,117 @@ public class ObservableMapUndoDelegate implements UndoDelegate<CMap<?, ?>> {
 		((CMap<Object, Object>)changeable).replace((Map<Object, Object>)data);
 	}
 
+	@Override
+	public boolean canRecord(CMap<?, ?> changeable) {
+		//Only maps we know record old mappings in every delta
+		return changeable instanceof CMapDefault;
+	}
+
+	//We only ever put mappings back into the map they came from
+	@SuppressWarnings("unchecked")
+	@Override
+	public UndoRecord record(CMap<?, ?> changeable, Change change) {
+		if (!(change instanceof MapChange)) {
+			return null;
+		}
+		CMap<Object, Object> map = (CMap<Object, Object>) changeable;
+		List<MapDelta> deltas = ((MapChange) change).getMapDeltas();
+
+		//The map is in the state after the last delta, so we can only 
+		//read new mappings from it if there is just one delta 
+		if (deltas.size() != 1) {
+			return null;
+		}
+		return record(map, deltas.get(0));
+	}
+	
+	@SuppressWarnings("unchecked")
+	private UndoRecord record(CMap<Object, Object> map, MapDelta delta) {
+		Map<Object, Object> oldMappings = (Map<Object, Object>) delta.getOldMappings();
+		if (oldMappings == null) {
+			return null;
+		}
+		
+		switch (delta.getType()) {
+		case INSERTION:
+		case DELETION:
+		case ALTERATION:
+			if (!delta.isKeyValid()) return null;
+			Object key = delta.getKey();
+			boolean hadKey = delta.getType() != CollectionChangeType.INSERTION;
+			boolean hasKey = delta.getType() != CollectionChangeType.DELETION;
+			return new SingleKey(map, key, 
+					hadKey, hadKey ? oldMappings.get(key) : null, 
+					hasKey, hasKey ? map.get(key) : null);
+			
+		case CLEAR:
+		case COMPLETE:
+			return new Replacement(map, oldMappings, new HashMap<Object, Object>(map));
+			
+		default:
+			return null;
+		}
+	}
+	
+	private static class SingleKey implements UndoRecord {
+		private final CMap<Object, Object> map;
+		private final Object key;
+		private final boolean hadKey;
+		private final Object oldValue;
+		private final boolean hasKey;
+		private final Object newValue;
+		private SingleKey(CMap<Object, Object> map, Object key, 
+				boolean hadKey, Object oldValue, 
+				boolean hasKey, Object newValue) {
+			this.map = map;
+			this.key = key;
+			this.hadKey = hadKey;
+			this.oldValue = oldValue;
+			this.hasKey = hasKey;
+			this.newValue = newValue;
+		}
+		private void apply(boolean present, Object value) {
+			if (present) {
+				map.put(key, value);
+			} else {
+				map.remove(key);
+			}
+		}
+		@Override
+		public void undo() {
+			apply(hadKey, oldValue);
+		}
+		@Override
+		public void redo() {
+			apply(hasKey, newValue);
+		}
+		@Override
+		public long estimateSize() {
+			return SizeEstimates.OBJECT + 3 * SizeEstimates.REFERENCE;
+		}
+	}
+
+	private static class Replacement implements UndoRecord {
+		private final CMap<Object, Object> map;
+		private final Map<Object, Object> oldMappings;
+		private final Map<Object, Object> newMappings;
+		private Replacement(CMap<Object, Object> map, Map<Object, Object> oldMappings, Map<Object, Object> newMappings) {
+			this.map = map;
+			this.oldMappings = oldMappings;
+			this.newMappings = newMappings;
+		}
+		@Override
+		public void undo() {
+			map.replace(oldMappings);
+		}
+		@Override
+		public void redo() {
+			map.replace(newMappings);
+		}
+		@Override
+		public long estimateSize() {
+			return SizeEstimates.OBJECT + SizeEstimates.estimate(oldMappings) + SizeEstimates.estimate(newMappings);
+		}
+	}
+	
 }
@@ -0,0 +1,59 @@
+package org.jpropeller.undo.delegates.impl;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Rough estimates of the memory used by undo data, used to keep
+ * undo history within a memory budget. Estimates are shallow - 
+ * elements and values are generally shared with the live state,
+ * so only the references to them are counted.
+ */
+public final class SizeEstimates {
+
+	private SizeEstimates() {}
+	
+	/**
+	 * Estimated bytes for an object header, plus a few fields
+	 */
+	public final static long OBJECT = 16;
+	
+	/**
+	 * Estimated bytes for a reference
+	 */
+	public final static long REFERENCE = 8;
+	
+	/**
+	 * Estimated bytes for each mapping in a map
+	 */
+	public final static long MAPPING = 40;
+	
+	/**
+	 * Estimate the bytes held by undo data
+	 * @param data		The data
+	 * @return			The estimated size
+	 */
+	public static long estimate(Object data) {
+		if (data == null) {
+			return 0;
+		} else if (data instanceof Collection<?>) {
+			return list(((Collection<?>) data).size());
+		} else if (data instanceof Map<?, ?>) {
+			return OBJECT + MAPPING * ((Map<?, ?>) data).size();
+		} else if (data instanceof CharSequence) {
+			return OBJECT + 2L * ((CharSequence) data).length();
+		} else {
+			return OBJECT;
+		}
+	}
+
+	/**
+	 * Estimate the bytes held by a list of references
+	 * @param size		The size of the list
+	 * @return			The estimated size
+	 */
+	public static long list(int size) {
+		return OBJECT + REFERENCE * size;
+	}
+	
+}
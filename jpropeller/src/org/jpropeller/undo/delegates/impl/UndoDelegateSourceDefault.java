@@ -1,6 +1,9 @@
 package org.jpropeller.undo.delegates.impl;
 
 import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.jpropeller.collection.impl.CListDefault;
 import org.jpropeller.collection.impl.CMapDefault;
@@ -24,11 +27,25 @@ import org.jpropeller.undo.delegates.UndoDelegateSourceException;
 
 /**
  * Default implementation of {@link UndoDelegateSource}, for all
- * JPropeller built-in {@link Changeable}s
+ * JPropeller built-in {@link Changeable}s, and any subclasses of them.
+ * <p/>
+ * Delegates are registered for classes or interfaces. The delegate for 
+ * a {@link Changeable} is the one registered for the nearest superclass 
+ * of its class (including the class itself), or if there is none, for 
+ * the nearest interface it implements, searching the interfaces of each
+ * class then their superinterfaces, breadth first. The result is cached 
+ * for each concrete class, so the hierarchy is only searched once.
  */
 public class UndoDelegateSourceDefault implements UndoDelegateSource {
 
-	HashMap<Class<?>, UndoDelegate<?>> delegates;
+	//Marks a class with no delegate in the cache
+	private final static Object NONE = new Object();
+	
+	private final HashMap<Class<?>, UndoDelegate<?>> delegates;
+	
+	//Delegate (or NONE) for each concrete class we have looked up. 
+	//Keys are weak so that we do not keep classes loaded.
+	private final Map<Class<?>, Object> resolved = new WeakHashMap<Class<?>, Object>();
 	
 	/**
 	 * Create an {@link UndoDelegateSourceDefault}
@@ -43,7 +60,6 @@ public class UndoDelegateSourceDefault implements UndoDelegateSource {
 		//Special delegates
 		put(CListDefault.class, new ObservableListUndoDelegate());
 		put(CMapDefault.class, new ObservableMapUndoDelegate());
-		put(CMapDefault.class, new ObservableMapUndoDelegate());
 		
 		//Default delegates for props that may have an editable value
 		put(ChangeablePropDefault.class, defaultDelegate);
@@ -66,25 +82,74 @@ public class UndoDelegateSourceDefault implements UndoDelegateSource {
 	}
 	
 	/**
-	 * Put a new delegate in the source
+	 * Put a new delegate in the source, replacing any existing
+	 * delegate for the same class or interface
 	 * @param clazz
-	 * 		The class on which the delegate will work
+	 * 		The class or interface on which the delegate will work
 	 * @param delegate
 	 * 		The delegate - MUST accept any {@link Changeable} of
-	 * the specified class
+	 * the specified class, including subclasses
 	 */
-	private void put(Class<?> clazz, UndoDelegate<?> delegate) {
+	public synchronized void put(Class<?> clazz, UndoDelegate<?> delegate) {
 		delegates.put(clazz, delegate);
+		
+		//Any cached lookup may now be out of date
+		resolved.clear();
 	}
 
 	@Override
-	public UndoDelegate<?> get(Changeable changeable) throws UndoDelegateSourceException {
-		UndoDelegate<?> delegate = delegates.get(changeable.getClass());
+	public synchronized UndoDelegate<?> get(Changeable changeable) throws UndoDelegateSourceException {
+		Class<?> clazz = changeable.getClass();
+		Object delegate = resolved.get(clazz);
 		if (delegate == null) {
-			throw new UndoDelegateSourceException("No delegate for " + changeable + ", class " + changeable.getClass());
+			delegate = resolve(clazz);
+			if (delegate == null) {
+				delegate = NONE;
+			}
+			resolved.put(clazz, delegate);
+		}
+		
+		if (delegate == NONE) {
+			throw new UndoDelegateSourceException("No delegate for " + changeable + ", class " + clazz);
 		} else {
-			return delegate;
+			return (UndoDelegate<?>) delegate;
+		}
+	}
+	
+	/**
+	 * Search the hierarchy of a class for a registered delegate
+	 * @param clazz		The class
+	 * @return			The delegate, or null if there is none
+	 */
+	private UndoDelegate<?> resolve(Class<?> clazz) {
+		
+		//Superclasses first, nearest first
+		for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+			UndoDelegate<?> delegate = delegates.get(c);
+			if (delegate != null) {
+				return delegate;
+			}
 		}
+		
+		//Then interfaces, breadth first
+		LinkedList<Class<?>> queue = new LinkedList<Class<?>>();
+		for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+			for (Class<?> i : c.getInterfaces()) {
+				queue.add(i);
+			}
+		}
+		while (!queue.isEmpty()) {
+			Class<?> i = queue.removeFirst();
+			UndoDelegate<?> delegate = delegates.get(i);
+			if (delegate != null) {
+				return delegate;
+			}
+			for (Class<?> superInterface : i.getInterfaces()) {
+				queue.add(superInterface);
+			}
+		}
+		
+		return null;
 	}
 
 }
@@ -1,5 +1,6 @@
 package org.jpropeller.undo.impl;
 
+import java.util.ArrayList;
 import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -15,21 +16,46 @@ import org.jpropeller.properties.change.Changeable;
 import org.jpropeller.system.Props;
 import org.jpropeller.undo.UndoSystem;
 import org.jpropeller.undo.UndoSystemListener;
+import org.jpropeller.undo.delegates.DeltaUndoDelegate;
 import org.jpropeller.undo.delegates.UndoDelegate;
 import org.jpropeller.undo.delegates.UndoDelegateSource;
 import org.jpropeller.undo.delegates.UndoDelegateSourceException;
+import org.jpropeller.undo.delegates.UndoRecord;
+import org.jpropeller.undo.delegates.impl.CompositeUndoRecord;
+import org.jpropeller.undo.delegates.impl.SizeEstimates;
 import org.jpropeller.util.GeneralUtils;
 import org.jpropeller.util.Listeners;
 
 /**
  * Default implementation of an undo system for {@link Changeable}s
+ * <p/>
+ * Where the {@link UndoDelegate} for a {@link Changeable} is a 
+ * {@link DeltaUndoDelegate} that can record its changes, each change
+ * is recorded as it is propagated, rather than saving the entire 
+ * state of the {@link Changeable} before and after the change.
+ * <p/>
+ * History may be limited to a number of steps, and to an estimated 
+ * number of bytes, see {@link #setLimits(int, long)}. When either limit 
+ * is exceeded, the oldest undo steps are dropped (then the furthest 
+ * redo steps, if there are no undo steps left). The most recent step 
+ * is always kept.
+ * <p/>
+ * Consecutive steps that change exactly the same {@link Changeable}s 
+ * within a time window (for example while typing into a text field, 
+ * or dragging a slider) may be merged into a single step, see 
+ * {@link #setMergeWindow(long)}. Where the changed {@link Changeable}s
+ * have complete saved states, a merged step keeps only the earliest saved
+ * state before the changes and the latest saved state after them, so its 
+ * size does not grow. Otherwise (for example with delta records for lists
+ * and maps) it keeps the record of every merged change, so a merged step
+ * stops accepting changes once it would exceed either limit.
  */
 public class UndoSystemDefault implements ChangeListener, ChangeSystemListener, UndoSystem {
 
 	private final static Logger logger = GeneralUtils.logger(UndoSystemDefault.class); 
 	
 	private UndoDelegateSource delegateSource;
-	private Map<Changeable, State> knownPreStates = new IdentityHashMap<Changeable, State>();
+	private Map<Changeable, Pending> knownPreStates = new IdentityHashMap<Changeable, Pending>();
 
 	private List<UndoRedoStates> past = new LinkedList<UndoRedoStates>();
 	private List<UndoRedoStates> future = new LinkedList<UndoRedoStates>();
@@ -38,7 +64,25 @@ public class UndoSystemDefault implements ChangeListener, ChangeSystemListener,
 	
 	private boolean acting = false;
 	
-	private boolean missingDelegate = false;
+	private boolean cannotUndo = false;
+	
+	private int maxSteps;
+	private long maxBytes;
+	
+	//Estimated bytes of past and future states, and the number of
+	//steps dropped to stay within limits
+	private long bytes = 0;
+	private long droppedCount = 0;
+	
+	//Steps within this many nanoseconds of the last step may be 
+	//merged into it, 0 to never merge
+	private long mergeWindow = 0;
+	
+	//The last step added to past, while it may still be merged into,
+	//or null if it has been undone, dropped, etc.
+	private UndoRedoStates mergeable = null;
+	private long mergeableTime = 0;
+	private long mergedCount = 0;
 	
 	/**
 	 * Create an undo system, handling all {@link Changeable}s referenced
@@ -51,20 +95,41 @@ public class UndoSystemDefault implements ChangeListener, ChangeSystemListener,
 	 * 		Source of {@link UndoDelegate}s 
 	 */
 	public UndoSystemDefault(Changeable root, UndoDelegateSource delegateSource) {
+		this(root, delegateSource, Integer.MAX_VALUE, Long.MAX_VALUE);
+	}
+	
+	/**
+	 * Create an undo system, handling all {@link Changeable}s referenced
+	 * from the given root {@link Changeable}, with limited history
+	 * @param root
+	 * 		The root {@link Changeable} - any changes in this {@link Changeable}
+	 * or {@link Changeable}s referenced from it will be tracked for undo/redo
+	 * functionality
+	 * @param delegateSource
+	 * 		Source of {@link UndoDelegate}s 
+	 * @param maxSteps
+	 * 		The maximum number of undo and redo steps to keep, at least 1
+	 * @param maxBytes
+	 * 		The maximum estimated bytes of undo and redo steps to keep
+	 */
+	public UndoSystemDefault(Changeable root, UndoDelegateSource delegateSource, int maxSteps, long maxBytes) {
 		super();
 		this.delegateSource = delegateSource;
+		checkLimits(maxSteps, maxBytes);
+		this.maxSteps = maxSteps;
+		this.maxBytes = maxBytes;
 		
 		Props.getPropSystem().getChangeSystem().addChangeSystemListener(this);
 		root.features().addListener(this);
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public void change(List<Changeable> initial, Map<Changeable, Change> changes) {
 		
-		//If we were missing a delegate for a change, we cannot undo, so clear history
-		if (missingDelegate) {
-			missingDelegate = false;
+		//If we were missing a delegate for a change, or could not record
+		//a change, we cannot undo, so clear history
+		if (cannotUndo) {
+			cannotUndo = false;
 			clear();
 			knownPreStates.clear();
 			fireChanged();
@@ -73,25 +138,28 @@ public class UndoSystemDefault implements ChangeListener, ChangeSystemListener,
 		
 		//To undo the change, we need to a list of pre-change-states of the "initial" changeables
 		//To redo the change, we need list of states after the change
-		List<State> undoStates = new LinkedList<State>();
-		List<State> redoStates = new LinkedList<State>();
+		List<Changeable> changeables = new LinkedList<Changeable>();
+		List<Restorable> undoStates = new LinkedList<Restorable>();
+		List<Restorable> redoStates = new LinkedList<Restorable>();
 		
 		//We store the states of all objects that have changed (except those that were not
 		//recorded since we triggered the changes by undoing/redoing). This change method
 		//is just used to make sure that we create an undo/redo state only when a change occurs
 		//in the root or changeables referenced from it. Hence the UndoSystem is acting on all
 		//Changeable state in the ChangeSystem
-		for (Changeable changed : knownPreStates.keySet()) {
+		for (Map.Entry<Changeable, Pending> entry : knownPreStates.entrySet()) {
+			Pending pending = entry.getValue();
+			
+			//Skip changeables that were prepared but never actually changed
+			if (pending.isEmpty()) continue;
+			
+			changeables.add(entry.getKey());
 			
 			//Add prestate to states needed to undo change
-			State preState = knownPreStates.get(changed);
-			undoStates.add(preState);
+			undoStates.add(pending.undoState());
 			
 			//Add post-state to states needed to redo the change
-			Object postStateData = preState.getDelegate().save(changed);
-			State postState = new State(changed, preState.getDelegate(), postStateData);
-			redoStates.add(postState);
-				
+			redoStates.add(pending.redoState());
 		}
 
 		//If we have no undo/redo states, this means that all the changes we have just seen
@@ -102,13 +170,40 @@ public class UndoSystemDefault implements ChangeListener, ChangeSystemListener,
 		if (undoStates.isEmpty()) return;
 		
 		//Make the total states
-		UndoRedoStates undoRedoStates = new UndoRedoStates(undoStates, redoStates);
+		UndoRedoStates undoRedoStates = new UndoRedoStates(changeables, undoStates, redoStates);
 		
 		//If we had any future states, we can't use them now
+		for (UndoRedoStates futureStates : future) {
+			bytes -= futureStates.size;
+		}
 		future.clear();
 		
-		//Add past state
-		past.add(undoRedoStates);
+		//Merge into the last step if possible, otherwise add past state
+		long now = System.nanoTime();
+		UndoRedoStates merged = null;
+		if (mergeable != null && now - mergeableTime <= mergeWindow && mergeable.sameChangeables(undoRedoStates)) {
+			merged = mergeable.merge(undoRedoStates);
+			
+			//A merged step must stay within our limits, so that it could be kept
+			//as the only step
+			if (merged.steps > maxSteps || merged.size > maxBytes) {
+				merged = null;
+			}
+		}
+		if (merged != null) {
+			past.set(past.size() - 1, merged);
+			bytes += merged.size - mergeable.size;
+			mergeable = merged;
+			mergedCount++;
+		} else {
+			past.add(undoRedoStates);
+			bytes += undoRedoStates.size;
+			mergeable = (mergeWindow > 0) ? undoRedoStates : null;
+		}
+		mergeableTime = now;
+		
+		//Drop old states if we are now over our limits
+		trim();
 		
 		//We've seen and dealt with the change now, so we don't need the pre-states
 		knownPreStates.clear();
@@ -138,8 +233,8 @@ public class UndoSystemDefault implements ChangeListener, ChangeSystemListener,
 	private void undoPending() {
 		//FIXME This is not the correct order - shouldn't matter for valid props, but
 		//might be nice to use correct order
-		for (State state : knownPreStates.values()) {
-			state.restore();
+		for (Pending pending : knownPreStates.values()) {
+			pending.undoState().restore();
 		}
 	}
 	
@@ -156,6 +251,9 @@ public class UndoSystemDefault implements ChangeListener, ChangeSystemListener,
 			//This now becomes a future state
 			future.add(0, undo);
 			
+			//A new change must not merge with a state that has been undone
+			mergeable = null;
+			
 			//Actually undo, making sure we don't track any changes
 			acting = true;
 			//First, undo any pending changes (these must be changes to the
@@ -187,6 +285,9 @@ public class UndoSystemDefault implements ChangeListener, ChangeSystemListener,
 			//This now becomes a past state
 			past.add(redo);
 			
+			//Don't merge new changes into a redone state
+			mergeable = null;
+			
 			//Actually redo, making sure we don't track any changes
 			acting = true;
 			//First, undo any pending changes (these must be changes to the
@@ -210,6 +311,8 @@ public class UndoSystemDefault implements ChangeListener, ChangeSystemListener,
 		try {
 			past.clear();
 			future.clear();
+			bytes = 0;
+			mergeable = null;
 			
 			fireChanged();
 		} finally {
@@ -217,11 +320,187 @@ public class UndoSystemDefault implements ChangeListener, ChangeSystemListener,
 		}
 	}
 	
+	/**
+	 * Set the limits on history. If history is over the new limits,
+	 * the oldest steps are dropped immediately.
+	 * @param maxSteps
+	 * 		The maximum number of undo and redo steps to keep, at least 1
+	 * @param maxBytes
+	 * 		The maximum estimated bytes of undo and redo steps to keep
+	 */
+	public void setLimits(int maxSteps, long maxBytes) {
+		checkLimits(maxSteps, maxBytes);
+		Props.getPropSystem().getChangeSystem().acquire();
+		try {
+			this.maxSteps = maxSteps;
+			this.maxBytes = maxBytes;
+			if (trim()) {
+				fireChanged();
+			}
+		} finally {
+			Props.getPropSystem().getChangeSystem().release();
+		}
+	}
+	
+	private static void checkLimits(int maxSteps, long maxBytes) {
+		if (maxSteps < 1) throw new IllegalArgumentException("maxSteps must be at least 1");
+		if (maxBytes < 0) throw new IllegalArgumentException("maxBytes must be non-negative");
+	}
+	
+	/**
+	 * Drop steps until we are within limits, oldest undo
+	 * steps first, then furthest redo steps.
+	 * @return	True if any steps were dropped
+	 */
+	private boolean trim() {
+		boolean dropped = false;
+		while (past.size() + future.size() > 1 && 
+				(past.size() + future.size() > maxSteps || bytes > maxBytes)) {
+			UndoRedoStates states;
+			if (past.isEmpty()) {
+				states = future.remove(future.size() - 1);
+			} else {
+				states = past.remove(0);
+			}
+			bytes -= states.size;
+			droppedCount++;
+			dropped = true;
+			if (states == mergeable) {
+				mergeable = null;
+			}
+		}
+		return dropped;
+	}
+	
+	/**
+	 * Set the time window for merging steps. When a change is made
+	 * to exactly the same {@link Changeable}s as the last undo step, 
+	 * within this time of the last change merged into that step, 
+	 * it is merged into that step rather than making a new step. 
+	 * Steps are never merged after an undo or redo, or when the
+	 * merged step would exceed the limits set by {@link #setLimits(int, long)}, 
+	 * counting each change merged into it as a step. 
+	 * @param millis
+	 * 		The window in milliseconds, or 0 to never merge steps
+	 */
+	public void setMergeWindow(long millis) {
+		if (millis < 0) throw new IllegalArgumentException("Merge window must be non-negative");
+		Props.getPropSystem().getChangeSystem().acquire();
+		try {
+			mergeWindow = millis * 1000000L;
+			if (mergeWindow == 0) {
+				mergeable = null;
+			}
+		} finally {
+			Props.getPropSystem().getChangeSystem().release();
+		}
+	}
+	
+	/**
+	 * @return	The time window for merging steps, in milliseconds, 
+	 * 			see {@link #setMergeWindow(long)}
+	 */
+	public long getMergeWindow() {
+		Props.getPropSystem().getChangeSystem().acquire();
+		try {
+			return mergeWindow / 1000000L;
+		} finally {
+			Props.getPropSystem().getChangeSystem().release();
+		}
+	}
+	
+	/**
+	 * @return	The total number of steps merged into a previous step
+	 */
+	public long getMergedCount() {
+		Props.getPropSystem().getChangeSystem().acquire();
+		try {
+			return mergedCount;
+		} finally {
+			Props.getPropSystem().getChangeSystem().release();
+		}
+	}
+	
+	/**
+	 * @return	The maximum number of undo and redo steps kept
+	 */
+	public int getMaxSteps() {
+		Props.getPropSystem().getChangeSystem().acquire();
+		try {
+			return maxSteps;
+		} finally {
+			Props.getPropSystem().getChangeSystem().release();
+		}
+	}
+	
+	/**
+	 * @return	The maximum estimated bytes of undo and redo steps kept
+	 */
+	public long getMaxBytes() {
+		Props.getPropSystem().getChangeSystem().acquire();
+		try {
+			return maxBytes;
+		} finally {
+			Props.getPropSystem().getChangeSystem().release();
+		}
+	}
+	
+	/**
+	 * @return	The number of undo and redo steps currently kept
+	 */
+	public int getHistorySize() {
+		Props.getPropSystem().getChangeSystem().acquire();
+		try {
+			return past.size() + future.size();
+		} finally {
+			Props.getPropSystem().getChangeSystem().release();
+		}
+	}
+	
+	/**
+	 * @return	The estimated bytes used by undo and redo steps currently kept.
+	 * 			This is a shallow estimate - elements and values that are
+	 * 			shared with the live state are not counted.
+	 */
+	public long getEstimatedBytes() {
+		Props.getPropSystem().getChangeSystem().acquire();
+		try {
+			return bytes;
+		} finally {
+			Props.getPropSystem().getChangeSystem().release();
+		}
+	}
+	
+	/**
+	 * @return	The total number of steps dropped to stay within limits
+	 */
+	public long getDroppedCount() {
+		Props.getPropSystem().getChangeSystem().acquire();
+		try {
+			return droppedCount;
+		} finally {
+			Props.getPropSystem().getChangeSystem().release();
+		}
+	}
+
 	@Override
 	public void concludeChange(ChangeSystem system, Changeable changed) {
 		//Ignore conclusion of changes
 	}
 
+	@Override
+	public void propagateChange(ChangeSystem system, Changeable changed, Change change) {
+		
+		//Ignore changes we caused ourself
+		if (acting) return;
+		
+		//Record the change if we are recording changes to changed
+		Pending pending = knownPreStates.get(changed);
+		if (pending != null) {
+			pending.record(change);
+		}
+	}
+
 	//We can only get raw UndoDelegates from the source - we just need to trust
 	//that the source will get this right
 	@SuppressWarnings({ "unchecked", "rawtypes" })
@@ -248,18 +527,26 @@ public class UndoSystemDefault implements ChangeListener, ChangeSystemListener,
 		UndoDelegate delegate;
 		try {
 			delegate = delegateSource.get(changed);
+			
+			//If the delegate can record changes, we will record each
+			//change as it is propagated
+			if (delegate instanceof DeltaUndoDelegate && ((DeltaUndoDelegate) delegate).canRecord(changed)) {
+				knownPreStates.put(changed, new DeltaPending(changed, (DeltaUndoDelegate) delegate));
+				return;
+			}
+			
 			Object state = delegate.save(changed);
 			
 			//Don't create a state if there is no data - this indicates there
 			//is nothing to undo
 			if (state != null) {
-				knownPreStates.put(changed, new State(changed, delegate, state));
+				knownPreStates.put(changed, new SnapshotPending(new State(changed, delegate, state)));
 				//System.out.println("Added " + changed + ", class " + changed.getClass() + " to " + state);
 			}
 		} catch (UndoDelegateSourceException e) {
 			//If we fail to save the state, then we need to make sure we don't
 			//allow undoing of the next change, since we may get it wrong
-			missingDelegate = true;
+			cannotUndo = true;
 			logger.severe("Could not find an UndoDelegate for " + changed + ", will clear undo history, and will not undo this stage");
 		}		
 	}
@@ -269,20 +556,98 @@ public class UndoSystemDefault implements ChangeListener, ChangeSystemListener,
 	 * and another list to be restored to redo a change.
 	 */
 	private class UndoRedoStates {
-		List<State> undoStates;
-		List<State> redoStates;
+		List<Changeable> changeables;
+		List<Restorable> undoStates;
+		List<Restorable> redoStates;
+		long size;
+		
+		//The number of changes merged into this step
+		int steps = 1;
 		
 		/**
 		 * Create an {@link UndoRedoStates}
+		 * @param changeables
+		 * 		The changed {@link Changeable}s, in the same order as the states
 		 * @param undoStates
 		 * 		The states to be restored, in order, to undo the change
 		 * @param redoStates
 		 * 		The states to be restored, in order, to redo the change
 		 */
-		public UndoRedoStates(List<State> undoStates, List<State> redoStates) {
+		public UndoRedoStates(List<Changeable> changeables, List<Restorable> undoStates, List<Restorable> redoStates) {
 			super();
+			this.changeables = changeables;
 			this.undoStates = undoStates;
 			this.redoStates = redoStates;
+			
+			size = SizeEstimates.OBJECT + 
+				SizeEstimates.list(undoStates.size()) + 
+				SizeEstimates.list(redoStates.size());
+			for (Restorable state : undoStates) {
+				size += state.estimateSize();
+			}
+			for (Restorable state : redoStates) {
+				size += state.estimateSize();
+			}
+		}
+		
+		/**
+		 * Check whether another step changed exactly the same {@link Changeable}s
+		 * @param other	The other step
+		 * @return		True if the same {@link Changeable}s were changed
+		 */
+		public boolean sameChangeables(UndoRedoStates other) {
+			if (changeables.size() != other.changeables.size()) return false;
+			Map<Changeable, Boolean> mine = new IdentityHashMap<Changeable, Boolean>();
+			for (Changeable changeable : changeables) {
+				mine.put(changeable, Boolean.TRUE);
+			}
+			for (Changeable changeable : other.changeables) {
+				if (!mine.containsKey(changeable)) return false;
+			}
+			return true;
+		}
+		
+		/**
+		 * Merge a following step into this one
+		 * @param next	The next step, which must have changed the same
+		 * 				{@link Changeable}s, see {@link #sameChangeables(UndoRedoStates)}
+		 * @return		A single step undoing or redoing both steps
+		 */
+		public UndoRedoStates merge(UndoRedoStates next) {
+			List<Changeable> mergedChangeables = new LinkedList<Changeable>();
+			List<Restorable> mergedUndo = new LinkedList<Restorable>();
+			List<Restorable> mergedRedo = new LinkedList<Restorable>();
+			
+			Map<Changeable, Integer> nextIndices = new IdentityHashMap<Changeable, Integer>();
+			for (int i = 0; i < next.changeables.size(); i++) {
+				nextIndices.put(next.changeables.get(i), i);
+			}
+			
+			for (int i = 0; i < changeables.size(); i++) {
+				Changeable changeable = changeables.get(i);
+				int j = nextIndices.get(changeable);
+				Restorable firstUndo = undoStates.get(i);
+				Restorable firstRedo = redoStates.get(i);
+				Restorable nextUndo = next.undoStates.get(j);
+				Restorable nextRedo = next.redoStates.get(j);
+				
+				mergedChangeables.add(changeable);
+				
+				//Saved states can just be restored, so we only need the 
+				//earliest one before the changes, and latest one after
+				if (firstUndo.isSaved() && nextUndo.isSaved()) {
+					mergedUndo.add(firstUndo);
+					mergedRedo.add(nextRedo);
+					
+				//Otherwise we need to undo and redo each step in turn
+				} else {
+					mergedUndo.add(RestorableSequence.of(nextUndo, firstUndo));
+					mergedRedo.add(RestorableSequence.of(firstRedo, nextRedo));
+				}
+			}
+			UndoRedoStates merged = new UndoRedoStates(mergedChangeables, mergedUndo, mergedRedo);
+			merged.steps = steps + next.steps;
+			return merged;
 		}
 		
 		/**
@@ -291,7 +656,7 @@ public class UndoSystemDefault implements ChangeListener, ChangeSystemListener,
 		public void undo() {
 			//FIXME This might not be the correct order - shouldn't matter for valid props, but
 			//might be nice to use correct order
-			for (State state : undoStates) {
+			for (Restorable state : undoStates) {
 				state.restore();
 			}
 		}
@@ -302,7 +667,7 @@ public class UndoSystemDefault implements ChangeListener, ChangeSystemListener,
 		public void redo() {
 			//FIXME This might not be the correct order - shouldn't matter for valid props, but
 			//might be nice to use correct order
-			for (State state : redoStates) {
+			for (Restorable state : redoStates) {
 				state.restore();
 			}
 		}
@@ -310,10 +675,208 @@ public class UndoSystemDefault implements ChangeListener, ChangeSystemListener,
 	
 	//All suppressed warnings are since we can't reliably determine matching types - 
 	//this is all due to relying on the undo delegate source to provide the right types
+	/**
+	 * Something that can be restored
+	 */
+	private interface Restorable {
+		/**
+		 * Restore
+		 */
+		public void restore();
+		
+		/**
+		 * @return	Estimated bytes used by this state
+		 */
+		public long estimateSize();
+		
+		/**
+		 * @return	True if this is a complete saved state, which
+		 * 			can be restored from any other state, false if it 
+		 * 			can only be restored from one particular state
+		 */
+		public boolean isSaved();
+	}
+	
+	/**
+	 * {@link Restorable}s, restored in order. Sequences are kept flat,
+	 * so that repeatedly merging steps does not nest them.
+	 */
+	private static class RestorableSequence implements Restorable {
+		List<Restorable> restorables;
+		private RestorableSequence(List<Restorable> restorables) {
+			this.restorables = restorables;
+		}
+		/**
+		 * Make a sequence restoring one {@link Restorable} then another
+		 * @param first		Restored first
+		 * @param second	Restored second
+		 * @return			The sequence
+		 */
+		public static RestorableSequence of(Restorable first, Restorable second) {
+			List<Restorable> restorables = new ArrayList<Restorable>();
+			addFlat(restorables, first);
+			addFlat(restorables, second);
+			return new RestorableSequence(restorables);
+		}
+		private static void addFlat(List<Restorable> restorables, Restorable restorable) {
+			if (restorable instanceof RestorableSequence) {
+				restorables.addAll(((RestorableSequence) restorable).restorables);
+			} else {
+				restorables.add(restorable);
+			}
+		}
+		@Override
+		public void restore() {
+			for (Restorable restorable : restorables) {
+				restorable.restore();
+			}
+		}
+		@Override
+		public long estimateSize() {
+			long size = SizeEstimates.OBJECT + SizeEstimates.list(restorables.size());
+			for (Restorable restorable : restorables) {
+				size += restorable.estimateSize();
+			}
+			return size;
+		}
+		@Override
+		public boolean isSaved() {
+			return false;
+		}
+	}
+	
+	/**
+	 * The changes to a {@link Changeable} since the last undo
+	 * step, from which to make the states to restore
+	 */
+	private abstract class Pending {
+		/**
+		 * Record a change as it is propagated
+		 * @param change	The change
+		 */
+		public abstract void record(Change change);
+		
+		/**
+		 * @return	True if there is nothing to undo
+		 */
+		public abstract boolean isEmpty();
+		
+		/**
+		 * @return	The state to restore to undo the changes
+		 */
+		public abstract Restorable undoState();
+		
+		/**
+		 * @return	The state to restore to redo the changes - must
+		 * 			be called just after the changes are complete
+		 */
+		public abstract Restorable redoState();
+	}
+	
+	/**
+	 * Pending changes to a {@link Changeable}, as a saved state
+	 * from before the changes
+	 */
+	private class SnapshotPending extends Pending {
+		State preState;
+		public SnapshotPending(State preState) {
+			this.preState = preState;
+		}
+		@Override
+		public void record(Change change) {
+			//Nothing to record, we save the entire state
+		}
+		@Override
+		public boolean isEmpty() {
+			return false;
+		}
+		@Override
+		public Restorable undoState() {
+			return preState;
+		}
+		@SuppressWarnings("unchecked")
+		@Override
+		public Restorable redoState() {
+			Object postStateData = preState.getDelegate().save(preState.changeable);
+			return new State(preState.changeable, preState.getDelegate(), postStateData);
+		}
+	}
+	
+	/**
+	 * Pending changes to a {@link Changeable}, as a list
+	 * of {@link UndoRecord}s, one for each change
+	 */
+	private class DeltaPending extends Pending {
+		Changeable changeable;
+		@SuppressWarnings("rawtypes")
+		DeltaUndoDelegate delegate;
+		List<UndoRecord> records = new LinkedList<UndoRecord>();
+		@SuppressWarnings("rawtypes")
+		public DeltaPending(Changeable changeable, DeltaUndoDelegate delegate) {
+			this.changeable = changeable;
+			this.delegate = delegate;
+		}
+		@SuppressWarnings("unchecked")
+		@Override
+		public void record(Change change) {
+			UndoRecord record = delegate.record(changeable, change);
+			
+			//If we can't record the change, we can't undo it, or
+			//any earlier changes
+			if (record == null) {
+				cannotUndo = true;
+				logger.severe("Could not record change " + change + " to " + changeable + ", will clear undo history, and will not undo this stage");
+			} else {
+				records.add(record);
+			}
+		}
+		@Override
+		public boolean isEmpty() {
+			return records.isEmpty();
+		}
+		@Override
+		public Restorable undoState() {
+			final UndoRecord record = new CompositeUndoRecord(records);
+			return new Restorable() {
+				@Override
+				public void restore() {
+					record.undo();
+				}
+				@Override
+				public long estimateSize() {
+					return SizeEstimates.OBJECT + record.estimateSize();
+				}
+				@Override
+				public boolean isSaved() {
+					return false;
+				}
+			};
+		}
+		@Override
+		public Restorable redoState() {
+			final UndoRecord record = new CompositeUndoRecord(records);
+			return new Restorable() {
+				@Override
+				public void restore() {
+					record.redo();
+				}
+				@Override
+				public long estimateSize() {
+					//Records are shared with the undo state
+					return 2 * SizeEstimates.OBJECT;
+				}
+				@Override
+				public boolean isSaved() {
+					return false;
+				}
+			};
+		}
+	}
+	
 	/**
 	 * A state that can be restored
 	 */
-	private class State {
+	private class State implements Restorable {
 		Changeable changeable;
 		@SuppressWarnings("rawtypes")
 		UndoDelegate delegate;
@@ -337,6 +900,16 @@ public class UndoSystemDefault implements ChangeListener, ChangeSystemListener,
 		public UndoDelegate getDelegate() {
 			return delegate;
 		}
+		
+		@Override
+		public long estimateSize() {
+			return SizeEstimates.OBJECT + SizeEstimates.estimate(state);
+		}
+		
+		@Override
+		public boolean isSaved() {
+			return true;
+		}
 	}
 
 	@Override
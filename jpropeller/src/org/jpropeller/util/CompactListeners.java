@@ -0,0 +1,371 @@
+package org.jpropeller.util;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+
+/**
+ * Compact storage for a set of listeners, with a count of the number
+ * of times each listener has been added, so that it will not be
+ * removed from the set until it has been removed an equal number of times.
+ * Listeners are compared by identity.
+ * <p/>
+ * Most instances have very few listeners, so up to two listeners are
+ * stored inline, with no further allocation. Beyond this, listeners are
+ * stored in an open addressing identity table, with counts as primitive ints.
+ * Lookups never allocate.
+ * <p/>
+ * Iteration uses an immutable {@link ListenerSnapshot}, which is only
+ * rebuilt after the set of listeners changes, or a collected listener
+ * is found.
+ * <p/>
+ * Listeners may optionally be held by weak references, so that they may
+ * still be garbage collected - see {@link WeakListeners} for why this is
+ * normally desirable. Collected listeners are skipped when iterating, and
+ * cleared out as the table is rebuilt.
+ * <p/>
+ * NOT thread safe.
+ *
+ * @param <L> 	The type of listener
+ */
+public class CompactListeners<L> implements Iterable<L> {
+
+	//Marks a removed entry in the table
+	private final static Object REMOVED = new Object();
+
+	private final boolean weak;
+
+	//Inline listeners (or references to them), used while table is null
+	private Object first = null;
+	private Object second = null;
+	private int firstCount = 0;
+	private int secondCount = 0;
+
+	//Table of listeners (or references to them), with the identity hash
+	//and count for each. Length is always a power of two.
+	private Object[] table = null;
+	private int[] hashes = null;
+	private int[] counts = null;
+
+	//Number of entries in table, and number including removed entries
+	private int size = 0;
+	private int used = 0;
+	
+	//Snapshot of current listeners, or null if it needs to be rebuilt
+	private volatile ListenerSnapshot<L> snapshot = null;
+
+	/**
+	 * Create a {@link CompactListeners}
+	 * @param weak		True to hold listeners by weak reference,
+	 * 					false to hold them strongly
+	 */
+	public CompactListeners(boolean weak) {
+		this.weak = weak;
+	}
+
+	/**
+	 * Add to the count for a listener
+	 * @param listener	The listener
+	 * @return			The new count for the listener - 1 if
+	 * 					it has just been added for the first time.
+	 */
+	public int add(L listener) {
+		if (table == null) {
+			if (first != null && deref(first) == listener) {
+				return ++firstCount;
+			}
+			if (second != null && deref(second) == listener) {
+				return ++secondCount;
+			}
+
+			//Reuse a free or collected inline slot
+			snapshot = null;
+			if (first == null || deref(first) == null) {
+				first = wrap(listener);
+				firstCount = 1;
+				return 1;
+			}
+			if (second == null || deref(second) == null) {
+				second = wrap(listener);
+				secondCount = 1;
+				return 1;
+			}
+
+			//No room inline, move to table
+			inflate();
+		}
+
+		int hash = System.identityHashCode(listener);
+		int index = find(listener, hash);
+		if (index >= 0) {
+			return ++counts[index];
+		}
+
+		//Make room if needed, keeping the table at most 3/4 used
+		if ((used + 1) * 4 > table.length * 3) {
+			rehash();
+		}
+
+		snapshot = null;
+		index = insertionIndex(hash);
+		if (table[index] == null) {
+			used++;
+		}
+		table[index] = wrap(listener);
+		hashes[index] = hash;
+		counts[index] = 1;
+		size++;
+		return 1;
+	}
+
+	/**
+	 * Decrement the count for a listener
+	 * @param listener	The listener
+	 * @return			The new count for the listener: 0 if it has
+	 * 					just been removed completely. -1 if it did not
+	 * 					have a count (that is, if it is being removed
+	 * 					but was not present)
+	 */
+	public int remove(L listener) {
+		if (table == null) {
+			if (first != null && deref(first) == listener) {
+				firstCount--;
+				if (firstCount == 0) {
+					first = null;
+					snapshot = null;
+				}
+				return firstCount;
+			}
+			if (second != null && deref(second) == listener) {
+				secondCount--;
+				if (secondCount == 0) {
+					second = null;
+					snapshot = null;
+				}
+				return secondCount;
+			}
+			return -1;
+		}
+
+		int index = find(listener, System.identityHashCode(listener));
+		if (index < 0) {
+			return -1;
+		}
+		int count = --counts[index];
+		if (count == 0) {
+			table[index] = REMOVED;
+			size--;
+			snapshot = null;
+		}
+		return count;
+	}
+
+	/**
+	 * Clear all listeners
+	 */
+	public void clear() {
+		first = null;
+		second = null;
+		firstCount = 0;
+		secondCount = 0;
+		table = null;
+		hashes = null;
+		counts = null;
+		size = 0;
+		used = 0;
+		snapshot = null;
+	}
+
+	/**
+	 * @return	True if there are no listeners. Note that
+	 * 			weak listeners that have been collected may still
+	 * 			be counted until they are cleared out, so this
+	 * 			may return false when there are no listeners left.
+	 */
+	public boolean isEmpty() {
+		if (table == null) {
+			return first == null && second == null;
+		}
+		return size == 0;
+	}
+
+	@Override
+	public Iterator<L> iterator() {
+		return snapshot().iterator();
+	}
+	
+	/**
+	 * Get an immutable snapshot of the current listeners. The same 
+	 * snapshot is returned until the set of listeners changes.
+	 * @return	The snapshot
+	 */
+	public ListenerSnapshot<L> snapshot() {
+		ListenerSnapshot<L> current = snapshot;
+		if (current != null && !current.isStale()) {
+			return current;
+		}
+		
+		//Clear out any collected listeners
+		if (current != null) {
+			purge();
+		}
+		
+		Object[] entries;
+		if (table == null) {
+			int count = (first == null ? 0 : 1) + (second == null ? 0 : 1);
+			entries = new Object[count];
+			int i = 0;
+			if (first != null) entries[i++] = first;
+			if (second != null) entries[i++] = second;
+		} else {
+			entries = new Object[size];
+			int i = 0;
+			for (Object entry : table) {
+				if (entry != null && entry != REMOVED) {
+					entries[i++] = entry;
+				}
+			}
+		}
+		current = new ListenerSnapshot<L>(entries, weak);
+		snapshot = current;
+		return current;
+	}
+	
+	private void purge() {
+		if (table == null) {
+			if (first != null && deref(first) == null) {
+				first = null;
+				firstCount = 0;
+			}
+			if (second != null && deref(second) == null) {
+				second = null;
+				secondCount = 0;
+			}
+		} else {
+			rehash();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private L deref(Object entry) {
+		if (weak) {
+			return ((WeakReference<L>) entry).get();
+		}
+		return (L) entry;
+	}
+
+	private Object wrap(L listener) {
+		if (weak) {
+			return new WeakReference<L>(listener);
+		}
+		return listener;
+	}
+
+	private boolean isLive(Object entry) {
+		return entry != null && entry != REMOVED && deref(entry) != null;
+	}
+
+	/**
+	 * Find the table index of a listener
+	 * @param listener	The listener
+	 * @param hash		Its identity hash
+	 * @return			The index, or -1 if not present
+	 */
+	private int find(L listener, int hash) {
+		int mask = table.length - 1;
+		int index = spread(hash) & mask;
+		while (true) {
+			Object entry = table[index];
+			if (entry == null) {
+				return -1;
+			}
+			if (entry != REMOVED && hashes[index] == hash && deref(entry) == listener) {
+				return index;
+			}
+			index = (index + 1) & mask;
+		}
+	}
+
+	/**
+	 * Find the index at which to insert a new entry
+	 * @param hash		The identity hash of the new entry
+	 * @return			The index of the first null or removed entry
+	 */
+	private int insertionIndex(int hash) {
+		int mask = table.length - 1;
+		int index = spread(hash) & mask;
+		while (table[index] != null && table[index] != REMOVED) {
+			index = (index + 1) & mask;
+		}
+		return index;
+	}
+
+	private static int spread(int hash) {
+		//Identity hashes may be poorly distributed in low bits
+		return hash ^ (hash >>> 16);
+	}
+
+	private void inflate() {
+		table = new Object[8];
+		hashes = new int[8];
+		counts = new int[8];
+		size = 0;
+		used = 0;
+		moveInline(first, firstCount);
+		moveInline(second, secondCount);
+		first = null;
+		second = null;
+		firstCount = 0;
+		secondCount = 0;
+	}
+
+	private void moveInline(Object entry, int count) {
+		if (!isLive(entry)) {
+			return;
+		}
+		int hash = System.identityHashCode(deref(entry));
+		int index = insertionIndex(hash);
+		table[index] = entry;
+		hashes[index] = hash;
+		counts[index] = count;
+		size++;
+		used++;
+	}
+
+	/**
+	 * Rebuild the table, dropping removed and collected entries,
+	 * and growing it if it is more than half full of live entries
+	 */
+	private void rehash() {
+		Object[] oldTable = table;
+		int[] oldHashes = hashes;
+		int[] oldCounts = counts;
+
+		int live = 0;
+		for (Object entry : oldTable) {
+			if (isLive(entry)) {
+				live++;
+			}
+		}
+
+		int capacity = oldTable.length;
+		while ((live + 1) * 2 > capacity) {
+			capacity *= 2;
+		}
+
+		table = new Object[capacity];
+		hashes = new int[capacity];
+		counts = new int[capacity];
+		size = 0;
+		used = 0;
+		for (int i = 0; i < oldTable.length; i++) {
+			if (isLive(oldTable[i])) {
+				int index = insertionIndex(oldHashes[i]);
+				table[index] = oldTable[i];
+				hashes[index] = oldHashes[i];
+				counts[index] = oldCounts[i];
+				size++;
+				used++;
+			}
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package org.jpropeller.util;
+
+/**
+ * An equivalence relation on instances of a type, for example
+ * equality after rounding. Must be reflexive, symmetric and
+ * transitive.
+ *
+ * @param <T>
+ * 		The type of instance compared
+ */
+public interface Equivalence<T> {
+
+	/**
+	 * Check whether two instances are equivalent
+	 * @param a		The first instance, may be null
+	 * @param b		The second instance, may be null
+	 * @return		True if the instances are equivalent
+	 */
+	public boolean equivalent(T a, T b);
+	
+}
@@ -0,0 +1,114 @@
+package org.jpropeller.util;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable snapshot of the listeners in a {@link CompactListeners},
+ * as a plain array. This can be iterated without locking, allocation or 
+ * hashing, and is unaffected if the listeners are changed during iteration.
+ * <p/>
+ * Where listeners are held weakly, the snapshot holds the weak
+ * references rather than the listeners, so it does not prevent them being
+ * garbage collected. {@link #get(int)} returns null for collected listeners,
+ * and the snapshot is then marked as stale, so that the {@link CompactListeners}
+ * will clear out collected listeners and make a new snapshot next time one is
+ * requested.
+ * 
+ * @param <L>	The type of listener
+ */
+public final class ListenerSnapshot<L> implements Iterable<L> {
+
+	private final static ListenerSnapshot<Object> EMPTY = new ListenerSnapshot<Object>(new Object[0], false);
+	
+	private final Object[] entries;
+	private final boolean weak;
+	private volatile boolean stale = false;
+	
+	ListenerSnapshot(Object[] entries, boolean weak) {
+		this.entries = entries;
+		this.weak = weak;
+	}
+
+	/**
+	 * Get an empty {@link ListenerSnapshot}
+	 * @param <L>	The type of listener
+	 * @return		Empty snapshot
+	 */
+	@SuppressWarnings("unchecked")
+	public static <L> ListenerSnapshot<L> empty() {
+		return (ListenerSnapshot<L>) EMPTY;
+	}
+	
+	/**
+	 * @return	The number of listeners in the snapshot, including any
+	 * 			that have been garbage collected
+	 */
+	public int size() {
+		return entries.length;
+	}
+	
+	/**
+	 * Get a listener 
+	 * @param index		The index of the listener, from 0 to {@link #size()} - 1
+	 * @return			The listener, or null if it has been garbage collected
+	 */
+	@SuppressWarnings("unchecked")
+	public L get(int index) {
+		if (!weak) {
+			return (L) entries[index];
+		}
+		L listener = ((WeakReference<L>) entries[index]).get();
+		if (listener == null) {
+			stale = true;
+		}
+		return listener;
+	}
+	
+	/**
+	 * @return	True if a collected listener has been found
+	 */
+	boolean isStale() {
+		return stale;
+	}
+	
+	@Override
+	public Iterator<L> iterator() {
+		return new Iterator<L>() {
+			private int index = 0;
+			private L next = seek();
+			
+			private L seek() {
+				while (index < entries.length) {
+					L listener = get(index++);
+					if (listener != null) {
+						return listener;
+					}
+				}
+				return null;
+			}
+			
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public L next() {
+				if (next == null) {
+					throw new NoSuchElementException();
+				}
+				L toReturn = next;
+				next = seek();
+				return toReturn;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("Cannot remove from ListenerSnapshot's iterator");
+			}
+		};
+	}
+	
+}
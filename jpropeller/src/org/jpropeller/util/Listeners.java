@@ -2,8 +2,6 @@ package org.jpropeller.util;
 
 import java.util.Iterator;
 
-import org.jpropeller.collection.impl.ReferenceCounter;
-
 /**
  * Class for handling a set of listeners.
  * This tracks the number of times a listener is added,
@@ -17,14 +15,14 @@ import org.jpropeller.collection.impl.ReferenceCounter;
  */
 public class Listeners<L> implements Iterable<L> {
 
-	private ReferenceCounter<L> listeners;
+	private CompactListeners<L> listeners;
 	
 	/**
 	 * Add a listener
 	 * @param listener
 	 */
 	public void add(L listener) {
-		listeners().addReference(listener);
+		listeners().add(listener);
 	}
 
 	/**
@@ -36,7 +34,8 @@ public class Listeners<L> implements Iterable<L> {
 	 * 				than added.
 	 */
 	public boolean remove(L listener) {
-		return listeners().removeReferenceUnchecked(listener);
+		//Listener was present if new count is 0 or more.
+		return listeners().remove(listener) >= 0;
 	}
 
 	@Override
@@ -44,8 +43,8 @@ public class Listeners<L> implements Iterable<L> {
 		return listeners().iterator();
 	}
 	
-	private ReferenceCounter<L> listeners() {
-		if (listeners == null) listeners = new ReferenceCounter<L>();
+	private CompactListeners<L> listeners() {
+		if (listeners == null) listeners = new CompactListeners<L>(false);
 		return listeners;
 	}
 
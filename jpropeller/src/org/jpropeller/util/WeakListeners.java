@@ -44,7 +44,7 @@ public class WeakListeners<L> implements Iterable<L> {
 //		to T. This ensures that as long as A or B are reachable, T will also be reachable and so will not be GCed. This
 //		allows T to exist for exactly as long as it is needed to keep A and B updated.
 	
-	private WeakReferenceCounter<L> listeners;
+	private CompactListeners<L> listeners;
 	
 	/**
 	 * Add a listener
@@ -72,8 +72,8 @@ public class WeakListeners<L> implements Iterable<L> {
 		return listeners().iterator();
 	}
 	
-	private WeakReferenceCounter<L> listeners() {
-		if (listeners == null) listeners = new WeakReferenceCounter<L>();
+	private CompactListeners<L> listeners() {
+		if (listeners == null) listeners = new CompactListeners<L>(true);
 		return listeners;
 	}
 
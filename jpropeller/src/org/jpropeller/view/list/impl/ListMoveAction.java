@@ -206,25 +206,14 @@ public class ListMoveAction<T> extends AbstractAction implements ChangeListener,
 			//Can't move outside list
 			if (target < 0 || target >= list.size()) return;
 			
-			//Remove the element
-			T element = list.remove(index);
+			//Move the element as a single change
+			list.move(index, target);
 			
-			//If the movement is positive, we need to allow for the fact that
-			//we just removed an element
-			//if (movement > 0) target--;
-			
-			//Reinsert the element
-			list.add(target, element);
-			
-			//TODO if possible, batch the changes by informing the change system before we start
-			
-			//TODO we can remove the need to manually adjust the selection
-			//for increments and decrements (movement size 1). For example, for a movement
-			//of 1, we can remove the element AFTER the selected element, then insert it
-			//BEFORE the selected element, this will move the selected element without
-			//deselecting it
-			//Reselect the element (recalculate the target index since we may have adjusted it)
-			reference.selection().set(index + movement);
+			//Selection will normally follow the element, but
+			//make sure it is selected in case it does not
+			if (reference.selection().get() != target) {
+				reference.selection().set(target);
+			}
 			
 		} finally {
 			Props.getPropSystem().getChangeSystem().release();			
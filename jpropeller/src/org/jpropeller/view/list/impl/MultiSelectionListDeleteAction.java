@@ -2,11 +2,10 @@ package org.jpropeller.view.list.impl;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
-import java.util.Comparator;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.SortedSet;
-import java.util.TreeSet;
 
 import javax.swing.AbstractAction;
 import javax.swing.Icon;
@@ -173,43 +172,48 @@ public class MultiSelectionListDeleteAction<T> extends AbstractAction implements
 			//If there is no selection, do nothing
 			if (selection.get().isEmpty()) return;
 			
-			//Make reverse sorted set of selected indices, then
-			//iterate it and remove in that order, otherwise
-			//the deletion affects the indices yet to be removed.
-			SortedSet<Integer> reverseIndices = new TreeSet<Integer>(new Comparator<Integer>() {
-				@Override
-				public int compare(Integer o1, Integer o2) {
-					return -o1.compareTo(o2);
+			//Make set of selected indices, ignoring any that are not in the list
+			int size = list.get().size();
+			BitSet indices = new BitSet(size);
+			for (int i : selection.get()) {
+				if (i >= 0 && i < size) {
+					indices.set(i);
 				}
-			});
-			reverseIndices.addAll(selection.get());
+			}
+			
+			//If no valid indices are selected, do nothing
+			if (indices.isEmpty()) return;
 			
 			//Find the index after the highest deleted index
-			int highest = reverseIndices.first();
+			int highest = indices.length() - 1;
 			//Work out where the index AFTER this will be,
 			//after we perform the deletions
-			int newSelection = highest - reverseIndices.size() + 1;
-
-			//Clear the selection
-			selection.get().clear();
+			int newSelection = highest - indices.cardinality() + 1;
 
-			//Remove the elements
-			for (int i : reverseIndices) {
-				T removed = list.get().remove(i);
-				
-				if (target != null) {
-					target.put(removed);
+			//Remove the elements in one change
+			List<T> removed = list.get().removeIndices(indices);
+			
+			//Pass removed elements to target, in reverse order
+			//of their indices
+			if (target != null) {
+				for (int i = removed.size() - 1; i >= 0; i--) {
+					target.put(removed.get(i));
 				}
 			}
+			
 			//If the new selection is after the end of the list, this
 			//indicates we deleted the last element, so select the last
 			//element
 			if (newSelection == list.get().size()) {
 				newSelection = list.get().size() - 1;
 			}
-			//If the new selection is valid, make it
+			
+			//Replace the selection in one change, with the new 
+			//selection if it is valid
 			if (newSelection >= 0 && newSelection < list.get().size()) {
-				selection.get().add(newSelection);
+				selection.get().replace(Collections.singletonList(newSelection));
+			} else {
+				selection.get().clear();
 			}
 			
 		} finally {
@@ -2,6 +2,8 @@ package org.jpropeller.view.list.impl;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -23,8 +25,11 @@ import org.jpropeller.view.update.UpdatableView;
 import org.jpropeller.view.update.UpdateManager;
 
 /**
- * An action allowing for a single selected element of a {@link CList} 
- * to be moved by a set number of indices.
+ * An action allowing for the selected elements of a {@link CList} 
+ * to be moved by a set number of indices. The selected elements
+ * are moved as a single block starting at the first selected index
+ * plus the movement, so if they are not contiguous they are
+ * gathered together.
  * 
  * @param <T>		The type of element in the {@link CList} 
  */
@@ -158,41 +163,21 @@ public class MultiSelectionListMoveAction<T> extends AbstractAction implements C
 				return;
 			}
 
-			//If there are multiple or no indices selected, cannot move
-			int index = -1;
-			if (selection.get().size() == 1) {
-				index = selection.get().iterator().next();
-			}
-
-			int size = list.get().size();
-			
-			//Check current index is valid
-			if (index < 0 || index >= size) return;
-			
-			int target = index + movement;
-			
-			//Can't move outside list
-			if (target < 0 || target >= size) return;
-			
-			//Remove the element
-			T element = list.get().remove(index);
+			int[] indices = selectedIndices();
+			int target = target(indices);
 			
-			//If the movement is positive, we need to allow for the fact that
-			//we just removed an element
-			//if (movement > 0) target--;
+			//Check move is possible
+			if (target < 0) return;
 			
-			//Reinsert the element
-			list.get().add(target, element);
+			//Move the elements as a single change
+			list.get().moveAll(indices, target);
 			
-			//TODO we can remove the need to manually adjust the selection
-			//for increments and decrements (movement size 1). For example, for a movement
-			//of 1, we can remove the element AFTER the selected element, then insert it
-			//BEFORE the selected element, this will move the selected element without
-			//deselecting it
-			
-			//Reselect the element (recalculate the target index since we may have adjusted it)
-			selection.get().clear();
-			selection.get().add(index + movement);
+			//Reselect the elements in their new positions
+			List<Integer> newSelection = new ArrayList<Integer>(indices.length);
+			for (int i = 0; i < indices.length; i++) {
+				newSelection.add(target + i);
+			}
+			selection.get().replace(newSelection);
 			
 		} finally {
 			Props.release();			
@@ -200,6 +185,43 @@ public class MultiSelectionListMoveAction<T> extends AbstractAction implements C
 
 	}
 
+	/**
+	 * Get the selected indices, sorted
+	 * @return	Sorted selected indices
+	 */
+	private int[] selectedIndices() {
+		CCollection<Integer> selected = selection.get();
+		int[] indices = new int[selected.size()];
+		int i = 0;
+		for (Integer index : selected) {
+			indices[i++] = index;
+		}
+		Arrays.sort(indices);
+		return indices;
+	}
+	
+	/**
+	 * Find the index the first selected element will move to
+	 * @param indices	The sorted selected indices 
+	 * @return			The target index, or -1 if 
+	 * 					no move is possible
+	 */
+	private int target(int[] indices) {
+		
+		//Can't move nothing
+		if (indices.length == 0) return -1;
+
+		//Check selected indices are valid
+		int size = list.get().size();
+		if (indices[0] < 0 || indices[indices.length - 1] >= size) return -1;
+		
+		//Can't move outside list
+		int target = indices[0] + movement;
+		if (target < 0 || target + indices.length > size) return -1;
+		
+		return target;
+	}
+	
 	@Override
 	public void update() {
 		if (list.get() == null) {
@@ -207,16 +229,8 @@ public class MultiSelectionListMoveAction<T> extends AbstractAction implements C
 			return;
 		}
 
-		//If there are multiple or no indices selected, cannot move
-		int index = -1;
-		if (selection.get().size() == 1) {
-			index = selection.get().iterator().next();
-		}
-		
-		int target = index + movement;
-		
 		//Enabled when movement is possible
-		setEnabled(index >= 0 && index < list.get().size() && target >= 0 && target < list.get().size());
+		setEnabled(target(selectedIndices()) >= 0);
 	}
 	
 	@Override
@@ -2,12 +2,14 @@ package org.jpropeller.view.table.impl;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.jpropeller.bean.Bean;
+import org.jpropeller.bean.BeanSchema;
 import org.jpropeller.info.PropEditability;
 import org.jpropeller.name.PropName;
 import org.jpropeller.properties.Prop;
@@ -28,6 +30,10 @@ public class BeanRowView<R extends Bean> implements TableRowView<R> {
 	private final static Logger logger = GeneralUtils.logger(BeanRowView.class);
 	
 	private List<Prop<?>> props;
+	
+	//Slots for each schema seen - rows may be of several bean
+	//subclasses, each with its own schema. Guarded by itself.
+	private final Map<BeanSchema, SlotCache> slotCaches = new IdentityHashMap<BeanSchema, SlotCache>();
 	private R bean;
 	private final boolean editable;
 	private final Map<Class<?>, BeanRowValueProcessor<R, ?>> filters = new HashMap<Class<?>, BeanRowValueProcessor<R, ?>>();
@@ -216,6 +222,26 @@ public class BeanRowView<R extends Bean> implements TableRowView<R> {
 	 */
 	private Prop<?> findBeanProp(R row, int column) {
 		if (row == null) return null;
+		
+		//Find the slot for each column in the row's schema - this
+		//is shared by all beans of the same class, so we normally
+		//only do this once per class, when the first row is displayed.
+		//A schema only grows, so it is stale if its size has changed.
+		BeanSchema schema = row.features().getSchema();
+		SlotCache cache;
+		synchronized (slotCaches) {
+			cache = slotCaches.get(schema);
+			if (cache == null || cache.size != schema.size()) {
+				cache = new SlotCache(schema);
+				slotCaches.put(schema, cache);
+			}
+		}
+		
+		int slot = cache.slots[column];
+		if (slot >= 0) {
+			return row.features().getSlot(slot);
+		}
+		
 		//Get name from the prop for the column, then use this
 		//to look up the value of the corresponding prop in the bean
 		PropName<?> name = props.get(column).getName();
@@ -223,6 +249,22 @@ public class BeanRowView<R extends Bean> implements TableRowView<R> {
 		return beanProp;
 	}
 	
+	//Slots of the props for each column, in a particular schema
+	private class SlotCache {
+		private final int size;
+		private final int[] slots;
+		private SlotCache(BeanSchema schema) {
+			this.size = schema.size();
+			slots = new int[props.size()];
+			for (int i = 0; i < slots.length; i++) {
+				PropName<?> name = props.get(i).getName();
+				//Generic names are looked up by name, so that
+				//we get the same exception as for a direct lookup
+				slots[i] = name.isTGeneric() ? -1 : schema.slot(name);
+			}
+		}
+	}
+	
 	@Override
 	public Object getColumn(R row, int column) {
 		Prop<?> beanProp = findBeanProp(row, column);
@@ -9,10 +9,14 @@ import javax.swing.table.AbstractTableModel;
 import javax.swing.table.TableModel;
 
 import org.jpropeller.collection.CList;
+import org.jpropeller.collection.CollectionChangeType;
+import org.jpropeller.collection.ListDelta;
+import org.jpropeller.collection.impl.ListDeltaDefault;
 import org.jpropeller.properties.Prop;
 import org.jpropeller.properties.change.Change;
 import org.jpropeller.properties.change.ChangeListener;
 import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.properties.change.ListChange;
 import org.jpropeller.reference.Reference;
 import org.jpropeller.system.Props;
 import org.jpropeller.view.JView;
@@ -46,6 +50,14 @@ public class ListTableModel<T> 	extends AbstractTableModel
 	private boolean completeChange = false;
 	private boolean columnChange = false;
 	
+	//Range of rows that may have altered since last firing,
+	//-1 if none
+	private int alteredFirst = -1;
+	private int alteredLast = -1;
+	
+	//Any ROLL change since last firing, merged into one delta
+	private ListDelta pendingRoll = null;
+	
 	private UpdateManager updateManager;
 	private AtomicBoolean isFiring = new AtomicBoolean(false);
 	
@@ -239,6 +251,18 @@ public class ListTableModel<T> 	extends AbstractTableModel
 			Change change = changes.get(list());
 			if (change == null || change.sameInstances()) {
 				handleChange(false, false);
+			//If the list itself has been edited by rolling, we can fire 
+			//just the deleted and inserted rows
+			} else if (isAll(change, CollectionChangeType.ROLL)) {
+				handleRoll(((ListChange)change).getListDeltas());
+				
+			//If the list itself has only been reordered, then we have the 
+			//same rows, and can just fire changes to the reordered ones
+			} else if (isAll(change, CollectionChangeType.PERMUTATION)) {
+				for (ListDelta delta : ((ListChange)change).getListDeltas()) {
+					handleAlteredRows(delta.getFirstChangedIndex(), delta.getLastChangedIndex());
+				}
+				
 			//If the list itself has been edited, fire a change to number of rows
 			} else {
 				handleChange(true, false);
@@ -246,10 +270,69 @@ public class ListTableModel<T> 	extends AbstractTableModel
 		}
 	}
 	
+	private static boolean isAll(Change change, CollectionChangeType type) {
+		if (!(change instanceof ListChange)) {
+			return false;
+		}
+		for (ListDelta delta : ((ListChange)change).getListDeltas()) {
+			if (delta.getType() != type) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private synchronized void handleAlteredRows(int first, int last) {
+		//If a roll is pending, rows have moved since it started, so
+		//we can't track a range - just alter all rows
+		if (pendingRoll != null) {
+			first = 0;
+			last = Integer.MAX_VALUE;
+		}
+		
+		//Expand the altered range
+		if (alteredFirst < 0) {
+			alteredFirst = first;
+			alteredLast = last;
+		} else {
+			alteredFirst = Math.min(alteredFirst, first);
+			alteredLast = Math.max(alteredLast, last);
+		}
+
+		//Ask for an update
+		updateManager.updateRequiredBy(this);
+	}
+
+	private synchronized void handleRoll(List<ListDelta> deltas) {
+		//A roll moves all rows, so any altered range must cover all rows
+		if (alteredFirst >= 0) {
+			alteredFirst = 0;
+			alteredLast = Integer.MAX_VALUE;
+		}
+		
+		//Merge the deltas with any existing roll since last firing - if we
+		//can't follow the sequence of changes, treat as complete 
+		for (ListDelta delta : deltas) {
+			if (pendingRoll == null) {
+				pendingRoll = delta;
+			} else if (pendingRoll.getNewSize() == delta.getOldSize()) {
+				pendingRoll = ListDeltaDefault.mergeRollChanges(pendingRoll, delta);
+			} else {
+				completeChange = true;
+			}
+		}
+
+		//Ask for an update
+		updateManager.updateRequiredBy(this);
+	}
+	
 	private synchronized void handleChange(boolean newChangeIsComplete, boolean newChangeOnColumns) {
 		//Track whether we have had a complete change since last firing
 		if (newChangeIsComplete) {
 			completeChange = true;
+		} else {
+			alteredFirst = 0;
+			alteredLast = Integer.MAX_VALUE;
 		}
 		if (newChangeOnColumns) {
 			columnChange = true;
@@ -271,7 +354,27 @@ public class ListTableModel<T> 	extends AbstractTableModel
 		} else if (completeChange) {
 			fireTableDataChanged();			
 		} else {
-			fireTableRowsUpdated(0, getRowCount()-1);
+			//Fire the rows deleted from the start and appended to the end 
+			//by rolling, if any
+			if (pendingRoll != null) {
+				int deleted = pendingRoll.getHeadDeletionSize();
+				int appended = pendingRoll.getTailInsertionSize();
+				if (deleted > 0) {
+					fireTableRowsDeleted(0, deleted - 1);
+				}
+				if (appended > 0) {
+					int firstAppended = pendingRoll.getOldSize() - deleted;
+					fireTableRowsInserted(firstAppended, firstAppended + appended - 1);
+				}
+			}
+			
+			//Fire altered rows, or all rows if we have
+			//no more specific information
+			if (alteredFirst >= 0) {
+				fireTableRowsUpdated(alteredFirst, Math.min(alteredLast, getRowCount()-1));
+			} else if (pendingRoll == null) {
+				fireTableRowsUpdated(0, getRowCount()-1);
+			}
 		}
 		
 		isFiring.set(false);
@@ -279,6 +382,9 @@ public class ListTableModel<T> 	extends AbstractTableModel
 		//We now haven't had a complete change since the last firing
 		completeChange = false;
 		columnChange = false;
+		alteredFirst = -1;
+		alteredLast = -1;
+		pendingRoll = null;
 	}
 
 	@Override
@@ -0,0 +1,128 @@
+package test.bean;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.SwingUtilities;
+
+import org.jpropeller.bean.impl.BeanDefault;
+import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.change.Change;
+import org.jpropeller.properties.change.ChangeListener;
+import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.properties.change.LazyChangeable;
+import org.jpropeller.properties.change.impl.ChangeSystemDefault;
+import org.jpropeller.system.Props;
+import org.jpropeller.util.Source;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test lazy materialisation of props in {@link BeanDefault}
+ */
+public class TestLazyProps {
+
+	private static class LazyBean extends BeanDefault {
+		LazyBean() {
+			super(true);
+		}
+		Prop<String> name = editable("name", "a");
+		Prop<Integer> number = editable("number", 1);
+		Prop<Integer> twice = calculated(Integer.class, "twice", number).returning(new Source<Integer>() {
+			@Override
+			public Integer get() {
+				return number.get() * 2;
+			}
+		});
+	}
+	
+	private static class EagerBean extends BeanDefault {
+		Prop<String> name = editable("name", "a");
+	}
+	
+	private static class CountingListener implements ChangeListener {
+		private int count = 0;
+		@Override
+		public void change(List<Changeable> initial, Map<Changeable, Change> changes) {
+			count++;
+		}
+	}
+	
+	private static void sync() throws Exception {
+		((ChangeSystemDefault) Props.getPropSystem().getChangeSystem()).flush();
+		SwingUtilities.invokeAndWait(new Runnable() {
+			@Override
+			public void run() {}
+		});
+	}
+	
+	private static boolean materialised(Prop<?> prop) {
+		return ((LazyChangeable) prop).isMaterialised();
+	}
+	
+	/**
+	 * Test that reads do not materialise props, and that setting
+	 * a prop materialises it and notifies the bean
+	 * @throws Exception
+	 */
+	@Test
+	public void testSet() throws Exception {
+		LazyBean bean = new LazyBean();
+		Assert.assertFalse(materialised(bean.name));
+		Assert.assertEquals("a", bean.name.get());
+		Assert.assertFalse(materialised(bean.name));
+		
+		CountingListener listener = new CountingListener();
+		bean.features().addListener(listener);
+		bean.name.set("b");
+		sync();
+		Assert.assertTrue(materialised(bean.name));
+		Assert.assertEquals("b", bean.name.get());
+		Assert.assertEquals(1, listener.count);
+		
+		bean.name.set("c");
+		sync();
+		Assert.assertEquals(2, listener.count);
+	}
+
+	/**
+	 * Test that props observed by calculations or listeners are 
+	 * materialised, and that their changes propagate
+	 * @throws Exception
+	 */
+	@Test
+	public void testObserved() throws Exception {
+		LazyBean bean = new LazyBean();
+		
+		//Calculated prop listens to number
+		Assert.assertTrue(materialised(bean.number));
+		Assert.assertEquals(2, (int) bean.twice.get());
+		
+		CountingListener listener = new CountingListener();
+		bean.features().addListener(listener);
+		bean.number.set(5);
+		sync();
+		Assert.assertEquals(10, (int) bean.twice.get());
+		Assert.assertEquals(1, listener.count);
+		
+		//Listening to a prop directly materialises it
+		Assert.assertFalse(materialised(bean.name));
+		CountingListener nameListener = new CountingListener();
+		bean.name.features().addListener(nameListener);
+		Assert.assertTrue(materialised(bean.name));
+		bean.name.set("b");
+		sync();
+		Assert.assertEquals(1, nameListener.count);
+		Assert.assertEquals(2, listener.count);
+	}
+	
+	/**
+	 * Test that props of beans that do not opt in are not lazy
+	 * @throws Exception
+	 */
+	@Test
+	public void testNotLazy() throws Exception {
+		EagerBean bean = new EagerBean();
+		Assert.assertTrue(materialised(bean.name));
+	}
+}
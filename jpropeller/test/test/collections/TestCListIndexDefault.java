@@ -0,0 +1,199 @@
+package test.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.jpropeller.bean.impl.BeanDefault;
+import org.jpropeller.collection.CList;
+import org.jpropeller.collection.impl.CListDefault;
+import org.jpropeller.collection.impl.CListIndexDefault;
+import org.jpropeller.collection.impl.CListRingBuffer;
+import org.jpropeller.name.PropName;
+import org.jpropeller.properties.Prop;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the {@link CListIndexDefault} implementation
+ */
+public class TestCListIndexDefault {
+
+	private final static List<String> KEYS = Arrays.asList("a", "b", "c", "d", "e", "z");
+	
+	/**
+	 * Bean with an indexed id
+	 */
+	public static class Item extends BeanDefault {
+		/**
+		 * Name of the id prop
+		 */
+		public final static PropName<String> ID = PropName.create(String.class, "id");
+		final Prop<String> id = editable("id", "");
+		
+		/**
+		 * Create an {@link Item}
+		 * @param id	The id
+		 */
+		public Item(String id) {
+			this.id.set(id);
+		}
+		
+		@Override
+		public String toString() {
+			return id.get();
+		}
+	}
+	
+	/**
+	 * Check that lookups give the same results as scanning the list
+	 * @param index		The index
+	 * @param list		The list
+	 */
+	private static void assertConsistent(CListIndexDefault<String, Item> index, CList<Item> list) {
+		for (String key : KEYS) {
+			List<Item> expected = new ArrayList<Item>();
+			for (Item item : list) {
+				if (key.equals(item.id.get()) && !containsInstance(expected, item)) {
+					expected.add(item);
+				}
+			}
+			List<Item> found = index.lookup(key);
+			Assert.assertEquals(expected.size(), found.size());
+			for (Item item : found) {
+				Assert.assertTrue(containsInstance(expected, item));
+			}
+			Assert.assertTrue(expected.isEmpty() ? index.lookupFirst(key) == null : containsInstance(expected, index.lookupFirst(key)));
+		}
+		for (Item item : list) {
+			Assert.assertTrue(index.containsInstance(item));
+		}
+	}
+	
+	private static boolean containsInstance(List<Item> items, Item item) {
+		for (Item i : items) {
+			if (i == item) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Test insertion, deletion, alteration, clear and complete changes
+	 * @throws Exception
+	 */
+	@Test
+	public void testStructuralChanges() throws Exception {
+		Item a = new Item("a"), b = new Item("b"), c = new Item("c"), d = new Item("d");
+		CListDefault<Item> list = new CListDefault<Item>();
+		list.add(a);
+		CListIndexDefault<String, Item> index = CListIndexDefault.create(list, Item.ID);
+		assertConsistent(index, list);
+		
+		//Insertions, including a duplicate
+		list.add(b);
+		list.add(0, c);
+		list.addAll(Arrays.asList(d, a));
+		assertConsistent(index, list);
+		
+		//Deleting one copy of a duplicate keeps it indexed
+		list.remove(1);
+		assertConsistent(index, list);
+		Assert.assertTrue(index.containsInstance(a));
+		
+		//Several deletion deltas in one change
+		list.addAll(Arrays.asList(b, c, d));
+		list.removeIndices(new int[]{0, 2, 3, 5});
+		assertConsistent(index, list);
+		
+		//Alteration
+		list.set(0, a);
+		assertConsistent(index, list);
+		
+		//Complete replacement, then clear
+		list.replace(Arrays.asList(d, d, c));
+		assertConsistent(index, list);
+		Assert.assertFalse(index.containsInstance(a));
+		list.clear();
+		assertConsistent(index, list);
+		Assert.assertFalse(index.containsInstance(d));
+	}
+	
+	/**
+	 * Test that permutations reorder the index's view of the list,
+	 * so that later deletions by index remove the right elements
+	 * @throws Exception
+	 */
+	@Test
+	public void testPermutation() throws Exception {
+		Item a = new Item("a"), b = new Item("b"), c = new Item("c"), d = new Item("d");
+		CListDefault<Item> list = CListDefault.editable(Arrays.asList(d, a, c, b));
+		CListIndexDefault<String, Item> index = CListIndexDefault.create(list, Item.ID);
+		assertConsistent(index, list);
+		
+		list.move(0, 3);
+		list.remove(0);
+		assertConsistent(index, list);
+		Assert.assertFalse(index.containsInstance(a));
+		
+		list.sort(new Comparator<Item>() {
+			@Override
+			public int compare(Item x, Item y) {
+				return x.id.get().compareTo(y.id.get());
+			}
+		});
+		list.remove(2);
+		assertConsistent(index, list);
+		Assert.assertFalse(index.containsInstance(d));
+		
+		list.moveAll(new int[]{1}, 0);
+		list.remove(0);
+		assertConsistent(index, list);
+		Assert.assertFalse(index.containsInstance(c));
+	}
+	
+	/**
+	 * Test that elements rolling off the start of a ring buffer
+	 * are removed from the index
+	 * @throws Exception
+	 */
+	@Test
+	public void testRoll() throws Exception {
+		Item a = new Item("a"), b = new Item("b"), c = new Item("c"), d = new Item("d"), e = new Item("e");
+		CList<Item> list = CListRingBuffer.<Item>create(3);
+		CListIndexDefault<String, Item> index = CListIndexDefault.create(list, Item.ID);
+		list.addAll(Arrays.asList(a, b));
+		assertConsistent(index, list);
+		
+		list.addAll(Arrays.asList(c, d, e));
+		assertConsistent(index, list);
+		Assert.assertFalse(index.containsInstance(a));
+		Assert.assertFalse(index.containsInstance(b));
+		Assert.assertTrue(index.lookupFirst("e") == e);
+	}
+	
+	/**
+	 * Test that changing the indexed prop of an element reindexes it,
+	 * and that removed elements are no longer tracked
+	 * @throws Exception
+	 */
+	@Test
+	public void testKeyChanges() throws Exception {
+		Item a = new Item("a"), b = new Item("b");
+		CListDefault<Item> list = CListDefault.editable(Arrays.asList(a, b));
+		CListIndexDefault<String, Item> index = CListIndexDefault.create(list, Item.ID);
+		assertConsistent(index, list);
+		
+		b.id.set("z");
+		assertConsistent(index, list);
+		Assert.assertTrue(index.lookupFirst("z") == b);
+		Assert.assertNull(index.lookupFirst("b"));
+		
+		list.remove(b);
+		b.id.set("a");
+		assertConsistent(index, list);
+		Assert.assertEquals(1, index.lookup("a").size());
+	}
+}
@@ -0,0 +1,175 @@
+package test.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+
+import org.jpropeller.bean.impl.BeanDefault;
+import org.jpropeller.collection.CollectionChangeType;
+import org.jpropeller.collection.ListDelta;
+import org.jpropeller.collection.impl.CListRingBuffer;
+import org.jpropeller.collection.impl.ListDeltaDefault;
+import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.change.impl.ChangeSystemDefault;
+import org.jpropeller.properties.list.selection.impl.ListSelectionProp;
+import org.jpropeller.system.Props;
+import org.jpropeller.view.table.impl.BeanRowView;
+import org.jpropeller.view.table.impl.ListTableModel;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the {@link CListRingBuffer} implementation, and
+ * handling of its ROLL deltas
+ */
+public class TestCListRingBuffer {
+
+	/**
+	 * Bean to display in a table
+	 */
+	public static class Item extends BeanDefault {
+		final Prop<Integer> value = editable("value", 0);
+		
+		/**
+		 * Create an {@link Item}
+		 * @param value		The value
+		 */
+		public Item(int value) {
+			this.value.set(value);
+		}
+	}
+	
+	/**
+	 * Wait for changes to be dispatched to listeners
+	 * @throws Exception
+	 */
+	private static void sync() throws Exception {
+		((ChangeSystemDefault) Props.getPropSystem().getChangeSystem()).flush();
+		SwingUtilities.invokeAndWait(new Runnable() {
+			@Override
+			public void run() {}
+		});
+	}
+	
+	/**
+	 * Test that appending drops the oldest elements
+	 * @throws Exception
+	 */
+	@Test
+	public void testAppend() throws Exception {
+		CListRingBuffer<Integer> ring = CListRingBuffer.create(4);
+		ring.addAll(Arrays.asList(0, 1, 2));
+		Assert.assertEquals(Arrays.asList(0, 1, 2), ring);
+		ring.add(3);
+		ring.add(4);
+		Assert.assertEquals(Arrays.asList(1, 2, 3, 4), ring);
+		ring.addAll(Arrays.asList(5, 6, 7, 8, 9, 10));
+		Assert.assertEquals(Arrays.asList(7, 8, 9, 10), ring);
+		ring.remove(0);
+		Assert.assertEquals(Arrays.asList(8, 9, 10), ring);
+		ring.add(11);
+		ring.add(12);
+		Assert.assertEquals(Arrays.asList(9, 10, 11, 12), ring);
+	}
+	
+	/**
+	 * Test merging consecutive ROLL deltas
+	 * @throws Exception
+	 */
+	@Test
+	public void testMergeRoll() throws Exception {
+		//Size 2 to 4, appending 2, then 4 to 4, deleting and appending 3
+		List<Integer> four = Arrays.asList(0, 0, 0, 0);
+		ListDelta first = ListDeltaDefault.newRollChange(four, 0, 2);
+		ListDelta second = ListDeltaDefault.newRollChange(four, 3, 3);
+		ListDelta merged = ListDeltaDefault.mergeRollChanges(first, second);
+		Assert.assertEquals(CollectionChangeType.ROLL, merged.getType());
+		Assert.assertEquals(2, merged.getOldSize());
+		Assert.assertEquals(4, merged.getNewSize());
+		Assert.assertEquals(2, merged.getHeadDeletionSize());
+		Assert.assertEquals(4, merged.getTailInsertionSize());
+		
+		//Deleting more than the original elements also deletes
+		//some appended elements, which are then not counted as appended
+		ListDelta all = ListDeltaDefault.mergeRollChanges(merged, ListDeltaDefault.newRollChange(four, 4, 4));
+		Assert.assertEquals(2, all.getOldSize());
+		Assert.assertEquals(2, all.getHeadDeletionSize());
+		Assert.assertEquals(4, all.getTailInsertionSize());
+		
+		try {
+			ListDeltaDefault.mergeRollChanges(first, ListDeltaDefault.newClearChange(4));
+			Assert.fail("Merged a non-ROLL delta");
+		} catch (IllegalArgumentException e) {
+			//Expected
+		}
+	}
+	
+	/**
+	 * Test that a selection follows its element as the buffer rolls
+	 * @throws Exception
+	 */
+	@Test
+	public void testSelection() throws Exception {
+		CListRingBuffer<Integer> ring = CListRingBuffer.create(4);
+		ListSelectionProp selection = new ListSelectionProp(ring);
+		ring.addAll(Arrays.asList(0, 1, 2));
+		selection.set(2);
+		
+		ring.add(3);
+		ring.add(4);
+		Assert.assertEquals(1, (int) selection.get());
+		Assert.assertEquals(2, (int) ring.get(selection.get()));
+		
+		//Element rolls off, selection stays at the start
+		ring.addAll(Arrays.asList(5, 6, 7, 8, 9, 10));
+		Assert.assertEquals(0, (int) selection.get());
+	}
+	
+	/**
+	 * Test that a {@link ListTableModel} fires rows deleted and inserted
+	 * for rolls, including several rolls in one change
+	 * @throws Exception
+	 */
+	@Test
+	public void testTableModel() throws Exception {
+		CListRingBuffer<Item> ring = CListRingBuffer.create(4);
+		ring.addAll(Arrays.asList(new Item(0), new Item(1)));
+		ListTableModel<Item> model = new ListTableModel<Item>(Props.createList(Item.class, "items", ring), BeanRowView.create(new Item(0)));
+		sync();
+		
+		final List<TableModelEvent> events = new ArrayList<TableModelEvent>();
+		model.addTableModelListener(new TableModelListener() {
+			@Override
+			public void tableChanged(TableModelEvent e) {
+				events.add(e);
+			}
+		});
+		
+		//Several appends in one change give one merged roll
+		Props.acquire();
+		try {
+			for (int i = 2; i < 7; i++) {
+				ring.add(new Item(i));
+			}
+		} finally {
+			Props.release();
+		}
+		sync();
+		
+		Assert.assertEquals(2, events.size());
+		assertEvent(events.get(0), TableModelEvent.DELETE, 0, 1);
+		assertEvent(events.get(1), TableModelEvent.INSERT, 0, 3);
+		Assert.assertEquals(4, model.getRowCount());
+		Assert.assertEquals(3, model.getValueAt(0, 0));
+	}
+	
+	private static void assertEvent(TableModelEvent e, int type, int firstRow, int lastRow) {
+		Assert.assertEquals(type, e.getType());
+		Assert.assertEquals(firstRow, e.getFirstRow());
+		Assert.assertEquals(lastRow, e.getLastRow());
+	}
+}
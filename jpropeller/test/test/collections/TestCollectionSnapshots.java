@@ -0,0 +1,137 @@
+package test.collections;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jpropeller.collection.CCollection;
+import org.jpropeller.collection.CList;
+import org.jpropeller.collection.CMap;
+import org.jpropeller.collection.CSet;
+import org.jpropeller.collection.impl.CListCalculated;
+import org.jpropeller.collection.impl.CListDefault;
+import org.jpropeller.collection.impl.CMapDefault;
+import org.jpropeller.collection.impl.CSetDefault;
+import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.calculated.impl.BuildCalculation;
+import org.jpropeller.properties.immutable.impl.PropImmutable;
+import org.jpropeller.util.Source;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the {@link CCollection#snapshot()} and {@link CMap#snapshot()}
+ * implementations
+ */
+public class TestCollectionSnapshots {
+
+	/**
+	 * Test that a {@link CList} snapshot is shared until the list 
+	 * changes, and is unaffected by later changes
+	 * @throws Exception
+	 */
+	@Test
+	public void testListSnapshot() throws Exception {
+		CList<String> list = CListDefault.editable(Arrays.asList("a", "b"));
+		List<String> snapshot = list.snapshot();
+		Assert.assertEquals(Arrays.asList("a", "b"), snapshot);
+		Assert.assertTrue(snapshot == list.snapshot());
+		
+		list.add("c");
+		Assert.assertEquals(Arrays.asList("a", "b"), snapshot);
+		List<String> next = list.snapshot();
+		Assert.assertFalse(snapshot == next);
+		Assert.assertEquals(Arrays.asList("a", "b", "c"), next);
+		
+		//Altering an element also invalidates the snapshot
+		list.set(0, "z");
+		Assert.assertEquals(Arrays.asList("a", "b", "c"), next);
+		Assert.assertEquals(Arrays.asList("z", "b", "c"), list.snapshot());
+		
+		assertUnmodifiable(list.snapshot());
+	}
+	
+	/**
+	 * Test that a {@link CSet} snapshot is shared until the set changes,
+	 * and is unaffected by later changes
+	 * @throws Exception
+	 */
+	@Test
+	public void testSetSnapshot() throws Exception {
+		CSet<String> set = new CSetDefault<String>();
+		set.add("a");
+		Set<String> snapshot = set.snapshot();
+		Assert.assertTrue(snapshot == set.snapshot());
+		
+		set.add("b");
+		Assert.assertEquals(Collections.singleton("a"), snapshot);
+		Assert.assertEquals(new HashSet<String>(Arrays.asList("a", "b")), set.snapshot());
+		
+		//Failed removal is not a change, so snapshot is still shared
+		Set<String> next = set.snapshot();
+		set.remove("missing");
+		Assert.assertTrue(next == set.snapshot());
+		
+		assertUnmodifiable(set.snapshot());
+	}
+	
+	/**
+	 * Test that a {@link CMap} snapshot is shared until the map changes,
+	 * and is unaffected by later changes
+	 * @throws Exception
+	 */
+	@Test
+	public void testMapSnapshot() throws Exception {
+		CMap<String, Integer> map = new CMapDefault<String, Integer>();
+		map.put("a", 1);
+		Map<String, Integer> snapshot = map.snapshot();
+		Assert.assertTrue(snapshot == map.snapshot());
+		
+		map.put("a", 2);
+		Assert.assertEquals(Collections.singletonMap("a", 1), snapshot);
+		Assert.assertEquals(Collections.singletonMap("a", 2), map.snapshot());
+		
+		try {
+			map.snapshot().put("b", 3);
+			Assert.fail("Modified a snapshot");
+		} catch (UnsupportedOperationException e) {
+			//Expected
+		}
+	}
+	
+	/**
+	 * Test that a {@link CListCalculated} snapshot is the current
+	 * calculation result, and is replaced when sources change
+	 * @throws Exception
+	 */
+	@Test
+	public void testCalculatedSnapshot() throws Exception {
+		final Prop<Integer> count = PropImmutable.editable(Integer.class, "count", 2);
+		CListCalculated<Integer> list = new CListCalculated<Integer>(BuildCalculation.<List<Integer>>on(count).returning(new Source<List<Integer>>() {
+			@Override
+			public List<Integer> get() {
+				return Collections.nCopies(count.get(), 1);
+			}
+		}));
+		List<Integer> snapshot = list.snapshot();
+		Assert.assertEquals(2, snapshot.size());
+		Assert.assertTrue(snapshot == list.snapshot());
+		
+		count.set(3);
+		Assert.assertEquals(2, snapshot.size());
+		Assert.assertEquals(3, list.snapshot().size());
+	}
+	
+	private static void assertUnmodifiable(Collection<String> snapshot) {
+		try {
+			snapshot.add("x");
+			Assert.fail("Modified a snapshot");
+		} catch (UnsupportedOperationException e) {
+			//Expected
+		}
+	}
+}
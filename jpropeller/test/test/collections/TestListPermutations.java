@@ -0,0 +1,190 @@
+package test.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+
+import org.jpropeller.bean.impl.BeanDefault;
+import org.jpropeller.collection.CList;
+import org.jpropeller.collection.CollectionChangeType;
+import org.jpropeller.collection.ListDelta;
+import org.jpropeller.collection.impl.CListDefault;
+import org.jpropeller.collection.impl.CListRingBuffer;
+import org.jpropeller.collection.impl.ListDeltaDefault;
+import org.jpropeller.collection.impl.ListPermutations;
+import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.change.impl.ChangeSystemDefault;
+import org.jpropeller.properties.list.selection.impl.ListSelectionProp;
+import org.jpropeller.system.Props;
+import org.jpropeller.view.table.impl.BeanRowView;
+import org.jpropeller.view.table.impl.ListTableModel;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the {@link ListPermutations} arithmetic, and reordering 
+ * of {@link CList}s with PERMUTATION deltas
+ */
+public class TestListPermutations {
+
+	/**
+	 * Bean to display in a table
+	 */
+	public static class Item extends BeanDefault {
+		final Prop<Integer> value = editable("value", 0);
+		
+		/**
+		 * Create an {@link Item}
+		 * @param value		The value
+		 */
+		public Item(int value) {
+			this.value.set(value);
+		}
+	}
+	
+	/**
+	 * Wait for changes to be dispatched to listeners
+	 * @throws Exception
+	 */
+	private static void sync() throws Exception {
+		((ChangeSystemDefault) Props.getPropSystem().getChangeSystem()).flush();
+		SwingUtilities.invokeAndWait(new Runnable() {
+			@Override
+			public void run() {}
+		});
+	}
+	
+	/**
+	 * Test permutation arithmetic
+	 * @throws Exception
+	 */
+	@Test
+	public void testPermutations() throws Exception {
+		//Move elements 0 and 3 to form a block starting at 1
+		int[] p = ListPermutations.moveAll(5, new int[]{3, 0}, 1);
+		Assert.assertTrue(Arrays.equals(new int[]{1, 0, 3, 2, 4}, p));
+		ListPermutations.check(p, 5);
+		Assert.assertEquals(0, ListPermutations.firstMoved(p));
+		Assert.assertEquals(3, ListPermutations.lastMoved(p));
+		
+		int[] inverse = ListPermutations.invert(p);
+		for (int i = 0; i < p.length; i++) {
+			Assert.assertEquals(i, inverse[p[i]]);
+		}
+		
+		//Sort is stable
+		List<String> list = Arrays.asList("b2", "a", "b1", "c");
+		int[] sort = ListPermutations.sort(list, new Comparator<String>() {
+			@Override
+			public int compare(String a, String b) {
+				return a.charAt(0) - b.charAt(0);
+			}
+		});
+		Assert.assertTrue(Arrays.equals(new int[]{1, 0, 2, 3}, sort));
+		Assert.assertEquals(-1, ListPermutations.firstMoved(new int[]{0, 1, 2}));
+		
+		try {
+			ListPermutations.check(new int[]{0, 0, 1}, 3);
+			Assert.fail("Accepted an invalid permutation");
+		} catch (IllegalArgumentException e) {
+			//Expected
+		}
+		try {
+			ListPermutations.moveAll(3, new int[]{0, 1}, 2);
+			Assert.fail("Moved a block past the end of the list");
+		} catch (IndexOutOfBoundsException e) {
+			//Expected
+		}
+	}
+	
+	/**
+	 * Test that a move delta gives the new index of each element in
+	 * the changed range
+	 * @throws Exception
+	 */
+	@Test
+	public void testMoveDelta() throws Exception {
+		List<Integer> list = Arrays.asList(0, 1, 2, 3, 4, 5);
+		ListDelta delta = ListDeltaDefault.newMoveChange(list, 4, 1);
+		Assert.assertEquals(CollectionChangeType.PERMUTATION, delta.getType());
+		Assert.assertEquals(1, delta.getFirstChangedIndex());
+		Assert.assertEquals(4, delta.getLastChangedIndex());
+		Assert.assertEquals(1, delta.getPermutedIndex(4));
+		Assert.assertEquals(2, delta.getPermutedIndex(1));
+		Assert.assertEquals(4, delta.getPermutedIndex(3));
+	}
+	
+	/**
+	 * Test move, moveAll and sort on each kind of {@link CList}, 
+	 * with a selection following the selected element
+	 * @throws Exception
+	 */
+	@Test
+	public void testReorder() throws Exception {
+		checkReorder(new CListDefault<Integer>());
+		checkReorder(CListRingBuffer.<Integer>create(6));
+	}
+	
+	private static void checkReorder(CList<Integer> list) {
+		list.addAll(Arrays.asList(0, 1, 2, 3, 4, 5));
+		ListSelectionProp selection = new ListSelectionProp(list);
+		selection.set(1);
+		
+		list.move(1, 4);
+		Assert.assertEquals(Arrays.asList(0, 2, 3, 4, 1, 5), list);
+		Assert.assertEquals(4, (int) selection.get());
+		
+		list.move(5, 0);
+		Assert.assertEquals(Arrays.asList(5, 0, 2, 3, 4, 1), list);
+		Assert.assertEquals(5, (int) selection.get());
+		
+		list.moveAll(new int[]{5, 0, 3}, 1);
+		Assert.assertEquals(Arrays.asList(0, 5, 3, 1, 2, 4), list);
+		Assert.assertEquals(3, (int) selection.get());
+		
+		list.sort(null);
+		Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), list);
+		Assert.assertEquals(1, (int) selection.get());
+		
+		list.sort(Collections.reverseOrder());
+		Assert.assertEquals(Arrays.asList(5, 4, 3, 2, 1, 0), list);
+		Assert.assertEquals(4, (int) selection.get());
+	}
+	
+	/**
+	 * Test that a {@link ListTableModel} fires rows updated for 
+	 * just the reordered range
+	 * @throws Exception
+	 */
+	@Test
+	public void testTableModel() throws Exception {
+		CList<Item> list = new CListDefault<Item>();
+		for (int i = 0; i < 6; i++) {
+			list.add(new Item(i));
+		}
+		ListTableModel<Item> model = new ListTableModel<Item>(Props.createList(Item.class, "items", list), BeanRowView.create(new Item(0)));
+		sync();
+		
+		final List<TableModelEvent> events = new ArrayList<TableModelEvent>();
+		model.addTableModelListener(new TableModelListener() {
+			@Override
+			public void tableChanged(TableModelEvent e) {
+				events.add(e);
+			}
+		});
+		
+		list.move(2, 4);
+		sync();
+		Assert.assertEquals(1, events.size());
+		Assert.assertEquals(TableModelEvent.UPDATE, events.get(0).getType());
+		Assert.assertEquals(2, events.get(0).getFirstRow());
+		Assert.assertEquals(4, events.get(0).getLastRow());
+		Assert.assertEquals(2, model.getValueAt(4, 0));
+	}
+}
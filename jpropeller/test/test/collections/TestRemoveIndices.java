@@ -0,0 +1,148 @@
+package test.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.jpropeller.collection.CList;
+import org.jpropeller.collection.CollectionChangeType;
+import org.jpropeller.collection.ListDelta;
+import org.jpropeller.collection.impl.CListDefault;
+import org.jpropeller.collection.impl.CListRingBuffer;
+import org.jpropeller.collection.impl.ListDeltaDefault;
+import org.jpropeller.properties.change.Change;
+import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.properties.change.ChangeableFeatures;
+import org.jpropeller.properties.change.ListChange;
+import org.jpropeller.properties.change.impl.ChangeableFeaturesDefault;
+import org.jpropeller.properties.change.impl.InternalChangeImplementation;
+import org.jpropeller.properties.list.selection.impl.ListSelectionProp;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test {@link CList#removeIndices(int[])}, and the deltas made by
+ * {@link ListDeltaDefault#newRemoveChanges(BitSet, int, List)}
+ */
+public class TestRemoveIndices {
+
+	/**
+	 * {@link Changeable} recording the last change to a {@link CList}
+	 */
+	private static class ChangeRecorder implements Changeable {
+		private Change last = null;
+		private final ChangeableFeaturesDefault features = new ChangeableFeaturesDefault(new InternalChangeImplementation() {
+			@Override
+			public Change internalChange(Changeable changed, Change change, List<Changeable> initial, Map<Changeable, Change> changes) {
+				last = change;
+				return null;
+			}
+		}, this);
+		
+		@Override
+		public ChangeableFeatures features() {
+			return features;
+		}
+	}
+	
+	/**
+	 * Apply deletion deltas in order to a copy of a list
+	 * @param list		The list
+	 * @param deltas	The deltas
+	 * @return			The list after the deltas
+	 */
+	private static List<String> apply(List<String> list, List<ListDelta> deltas) {
+		List<String> result = new ArrayList<String>(list);
+		for (ListDelta delta : deltas) {
+			Assert.assertEquals(CollectionChangeType.DELETION, delta.getType());
+			Assert.assertEquals(result.size(), delta.getOldSize());
+			int first = delta.getFirstChangedIndex();
+			List<String> removed = result.subList(first, first - delta.getChangeSize());
+			if (delta.getOldElements() != null) {
+				Assert.assertEquals(removed, delta.getOldElements());
+			}
+			removed.clear();
+			Assert.assertEquals(result.size(), delta.getNewSize());
+			Assert.assertEquals(result.size() - 1, delta.getLastChangedIndex());
+		}
+		return result;
+	}
+	
+	/**
+	 * Test the deltas for several runs of indices
+	 * @throws Exception
+	 */
+	@Test
+	public void testDeltas() throws Exception {
+		List<String> list = Arrays.asList("0", "1", "2", "3", "4", "5", "6", "7", "8", "9");
+		BitSet indices = new BitSet();
+		indices.set(1, 3);
+		indices.set(5);
+		indices.set(8, 10);
+		List<ListDelta> deltas = ListDeltaDefault.newRemoveChanges(indices, 10, Arrays.asList("1", "2", "5", "8", "9"));
+		
+		//One delta per run, last run first
+		Assert.assertEquals(3, deltas.size());
+		Assert.assertEquals(8, deltas.get(0).getFirstChangedIndex());
+		Assert.assertEquals(5, deltas.get(1).getFirstChangedIndex());
+		Assert.assertEquals(1, deltas.get(2).getFirstChangedIndex());
+		Assert.assertEquals(Arrays.asList("0", "3", "4", "6", "7"), apply(list, deltas));
+		
+		//Without removed elements
+		deltas = ListDeltaDefault.newRemoveChanges(indices, 10);
+		Assert.assertNull(deltas.get(0).getOldElements());
+		Assert.assertEquals(Arrays.asList("0", "3", "4", "6", "7"), apply(list, deltas));
+		
+		Assert.assertTrue(ListDeltaDefault.newRemoveChanges(new BitSet(), 10).isEmpty());
+	}
+	
+	/**
+	 * Test removal from each kind of {@link CList}, checking the 
+	 * change propagated and a selection after the removed indices
+	 * @throws Exception
+	 */
+	@Test
+	public void testRemove() throws Exception {
+		checkRemove(CListDefault.editable(Arrays.asList("a", "b", "c", "d", "e", "f")));
+		checkRemove(new CListDefault<String>(new LinkedList<String>(Arrays.asList("a", "b", "c", "d", "e", "f"))));
+		CList<String> ring = CListRingBuffer.create(6);
+		ring.addAll(Arrays.asList("x", "y", "a", "b", "c", "d"));
+		ring.addAll(Arrays.asList("e", "f"));
+		checkRemove(ring);
+	}
+	
+	private static void checkRemove(CList<String> list) {
+		List<String> before = new ArrayList<String>(list);
+		ChangeRecorder recorder = new ChangeRecorder();
+		list.features().addChangeableListener(recorder);
+		ListSelectionProp selection = new ListSelectionProp(list);
+		selection.set(4);
+		
+		//Unordered, with a duplicate
+		List<String> removed = list.removeIndices(new int[]{5, 0, 2, 3, 0});
+		Assert.assertEquals(Arrays.asList("a", "c", "d", "f"), removed);
+		Assert.assertEquals(Arrays.asList("b", "e"), list);
+		Assert.assertEquals(1, (int) selection.get());
+		
+		List<ListDelta> deltas = ((ListChange) recorder.last).getListDeltas();
+		Assert.assertEquals(3, deltas.size());
+		Assert.assertEquals(new ArrayList<String>(list), apply(before, deltas));
+		
+		//Removing the selected last index selects the new last index
+		BitSet indices = new BitSet();
+		indices.set(1);
+		Assert.assertEquals(Arrays.asList("e"), list.removeIndices(indices));
+		Assert.assertEquals(0, (int) selection.get());
+		
+		try {
+			list.removeIndices(new int[]{1});
+			Assert.fail("Removed an index past the end of the list");
+		} catch (IndexOutOfBoundsException e) {
+			//Expected
+		}
+		Assert.assertEquals(Arrays.asList("b"), list);
+	}
+}
@@ -0,0 +1,142 @@
+package test.concurrency;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.jpropeller.concurrency.Lane;
+import org.jpropeller.concurrency.LaneStats;
+import org.jpropeller.concurrency.impl.ExecutorUtils;
+import org.jpropeller.concurrency.impl.SchedulerDefault;
+import org.jpropeller.system.Props;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the {@link SchedulerDefault} implementation
+ */
+public class TestSchedulerDefault {
+
+	/**
+	 * Test that a full {@link Lane#BATCH} lane does not hold up
+	 * {@link Lane#INTERACTIVE} work, and that stats are recorded
+	 * @throws Exception
+	 */
+	@Test
+	public void testLanesIsolated() throws Exception {
+		SchedulerDefault scheduler = new SchedulerDefault(2, 1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch started = new CountDownLatch(1);
+		
+		//Fill the batch lane, and queue more work behind it
+		List<Future<?>> batch = new ArrayList<Future<?>>();
+		batch.add(scheduler.getExecutorService(Lane.BATCH).submit(new Runnable() {
+			@Override
+			public void run() {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}));
+		for (int i = 0; i < 3; i++) {
+			batch.add(scheduler.getExecutorService(Lane.BATCH).submit(new Runnable() {
+				@Override
+				public void run() {}
+			}));
+		}
+		started.await();
+		
+		Future<String> interactive = scheduler.getExecutorService(Lane.INTERACTIVE).submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return "done";
+			}
+		});
+		Assert.assertEquals("done", interactive.get(10, TimeUnit.SECONDS));
+		
+		LaneStats stats = scheduler.getStats(Lane.BATCH);
+		Assert.assertEquals(1, stats.getThreads());
+		Assert.assertEquals(1, stats.getActive());
+		Assert.assertEquals(3, stats.getQueued());
+		Assert.assertEquals(0, stats.getCompleted());
+		
+		release.countDown();
+		for (Future<?> future : batch) {
+			future.get(10, TimeUnit.SECONDS);
+		}
+		
+		//Stats are recorded after each task runs, so shut down to wait for them 
+		scheduler.getExecutorService(Lane.BATCH).shutdown();
+		Assert.assertTrue(scheduler.getExecutorService(Lane.BATCH).awaitTermination(10, TimeUnit.SECONDS));
+		stats = scheduler.getStats(Lane.BATCH);
+		Assert.assertEquals(4, stats.getCompleted());
+		Assert.assertEquals(0, stats.getQueued());
+		Assert.assertTrue(stats.getMaxWaitNanos() > 0);
+		Assert.assertTrue(stats.getMaxWaitNanos() >= stats.getMeanWaitNanos());
+		
+		scheduler.getExecutorService(Lane.INTERACTIVE).shutdown();
+		Assert.assertTrue(scheduler.getExecutorService(Lane.INTERACTIVE).awaitTermination(10, TimeUnit.SECONDS));
+		Assert.assertEquals(1, scheduler.getStats(Lane.INTERACTIVE).getCompleted());
+		Assert.assertEquals(2, scheduler.getStats(Lane.INTERACTIVE).getThreads());
+	}
+
+	/**
+	 * Test that each lane uses its own threads
+	 * @throws Exception
+	 */
+	@Test
+	public void testThreads() throws Exception {
+		SchedulerDefault scheduler = new SchedulerDefault(1, 1);
+		Thread interactive = thread(scheduler, Lane.INTERACTIVE);
+		Thread batch = thread(scheduler, Lane.BATCH);
+		Assert.assertTrue(interactive.isDaemon());
+		Assert.assertTrue(batch.isDaemon());
+		Assert.assertTrue(interactive.getName().startsWith("jpropeller-interactive-"));
+		Assert.assertTrue(batch.getName().startsWith("jpropeller-batch-"));
+		Assert.assertEquals(Thread.MIN_PRIORITY, batch.getPriority());
+		Assert.assertTrue(interactive.getPriority() > batch.getPriority());
+		
+		//Given factories are used
+		ThreadFactory factory = new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "custom");
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+		scheduler = new SchedulerDefault(1, factory, 1, factory);
+		Assert.assertEquals("custom", thread(scheduler, Lane.INTERACTIVE).getName());
+		Assert.assertEquals("custom", thread(scheduler, Lane.BATCH).getName());
+	}
+
+	/**
+	 * Test that the shared executors use the lanes of the
+	 * scheduler of the prop system
+	 * @throws Exception
+	 */
+	@Test
+	public void testShared() throws Exception {
+		Assert.assertTrue(ExecutorUtils.getExecutorService() == 
+			Props.getPropSystem().getScheduler().getExecutorService(Lane.INTERACTIVE));
+		Assert.assertTrue(ExecutorUtils.getBatchExecutorService() == 
+			Props.getPropSystem().getScheduler().getExecutorService(Lane.BATCH));
+		Assert.assertTrue(ExecutorUtils.getExecutorService() != ExecutorUtils.getBatchExecutorService());
+	}
+	
+	private static Thread thread(SchedulerDefault scheduler, Lane lane) throws Exception {
+		return scheduler.getExecutorService(lane).submit(new Callable<Thread>() {
+			@Override
+			public Thread call() throws Exception {
+				return Thread.currentThread();
+			}
+		}).get(10, TimeUnit.SECONDS);
+	}
+}
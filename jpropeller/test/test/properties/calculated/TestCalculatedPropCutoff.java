@@ -0,0 +1,143 @@
+package test.properties.calculated;
+
+import java.util.List;
+import java.util.Map;
+
+import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.calculated.impl.BuildCalculation;
+import org.jpropeller.properties.calculated.impl.CalculatedProp;
+import org.jpropeller.properties.change.Change;
+import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.properties.change.ChangeableFeatures;
+import org.jpropeller.properties.change.impl.ChangeableFeaturesDefault;
+import org.jpropeller.properties.change.impl.InternalChangeImplementation;
+import org.jpropeller.properties.immutable.impl.PropImmutable;
+import org.jpropeller.system.Props;
+import org.jpropeller.util.Equivalence;
+import org.jpropeller.util.Source;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test early cutoff in the {@link CalculatedProp} implementation
+ */
+public class TestCalculatedPropCutoff {
+
+	/**
+	 * {@link Changeable} counting the changes it sees
+	 */
+	private static class ChangeCounter implements Changeable {
+		private int count = 0;
+		private final ChangeableFeaturesDefault features = new ChangeableFeaturesDefault(new InternalChangeImplementation() {
+			@Override
+			public Change internalChange(Changeable changed, Change change, List<Changeable> initial, Map<Changeable, Change> changes) {
+				count++;
+				return null;
+			}
+		}, this);
+		
+		@Override
+		public ChangeableFeatures features() {
+			return features;
+		}
+	}
+	
+	/**
+	 * Test that changes are cut off when the recalculated value is
+	 * equal, and that the recalculation sees all sources up to date
+	 * even when one source is itself calculated from another
+	 * @throws Exception
+	 */
+	@Test
+	public void testCutoff() throws Exception {
+		final Prop<Integer> x = PropImmutable.editable(Integer.class, "x", 0);
+		final Prop<Integer> triple = Props.calculated(Integer.class, "triple", x).returning(new Source<Integer>() {
+			@Override
+			public Integer get() {
+				return x.get() * 3;
+			}
+		});
+		
+		//Zero unless triple is out of date with x, then tens of x 
+		final CalculatedProp<Integer> tens = Props.calculatedWithCutoff(Integer.class, "tens", 
+				BuildCalculation.<Integer>on(x, triple).returning(new Source<Integer>() {
+					@Override
+					public Integer get() {
+						return (triple.get() - 3 * x.get()) + x.get() / 10;
+					}
+				}), null);
+		ChangeCounter counter = new ChangeCounter();
+		tens.features().addChangeableListener(counter);
+		Assert.assertEquals(0, (int) tens.get());
+		
+		x.set(5);
+		Assert.assertEquals(0, counter.count);
+		Assert.assertEquals(1, tens.getCheckCount());
+		Assert.assertEquals(1, tens.getCutoffCount());
+		
+		x.set(25);
+		Assert.assertEquals(1, counter.count);
+		Assert.assertEquals(2, (int) tens.get());
+		
+		x.set(27);
+		x.set(29);
+		Assert.assertEquals(1, counter.count);
+		Assert.assertEquals(4, tens.getCheckCount());
+		Assert.assertEquals(3, tens.getCutoffCount());
+	}
+	
+	/**
+	 * Test that an {@link Equivalence} decides which values are
+	 * cut off
+	 * @throws Exception
+	 */
+	@Test
+	public void testEquivalence() throws Exception {
+		final Prop<String> text = PropImmutable.editable(String.class, "text", "a");
+		Equivalence<String> ignoreCase = new Equivalence<String>() {
+			@Override
+			public boolean equivalent(String a, String b) {
+				return a.equalsIgnoreCase(b);
+			}
+		};
+		CalculatedProp<String> copy = Props.calculatedWithCutoff(String.class, "copy", 
+				BuildCalculation.<String>on(text).returning(new Source<String>() {
+					@Override
+					public String get() {
+						return text.get();
+					}
+				}), ignoreCase);
+		ChangeCounter counter = new ChangeCounter();
+		copy.features().addChangeableListener(counter);
+		Assert.assertEquals("a", copy.get());
+		
+		//Equivalent value is cut off, and the previous value kept
+		text.set("A");
+		Assert.assertEquals(0, counter.count);
+		Assert.assertEquals("a", copy.get());
+		
+		text.set("b");
+		Assert.assertEquals(1, counter.count);
+		Assert.assertEquals("b", copy.get());
+	}
+	
+	/**
+	 * Test that a prop without cutoff propagates every change
+	 * @throws Exception
+	 */
+	@Test
+	public void testNoCutoff() throws Exception {
+		final Prop<Integer> x = PropImmutable.editable(Integer.class, "x", 1);
+		Prop<Boolean> positive = Props.calculated(Boolean.class, "positive", x).returning(new Source<Boolean>() {
+			@Override
+			public Boolean get() {
+				return x.get() > 0;
+			}
+		});
+		ChangeCounter counter = new ChangeCounter();
+		positive.features().addChangeableListener(counter);
+		Assert.assertTrue(positive.get());
+		x.set(2);
+		Assert.assertEquals(1, counter.count);
+	}
+}
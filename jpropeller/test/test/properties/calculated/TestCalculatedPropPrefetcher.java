@@ -0,0 +1,121 @@
+package test.properties.calculated;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.calculated.impl.CalculatedPropPrefetcher;
+import org.jpropeller.properties.change.Change;
+import org.jpropeller.properties.change.ChangeListener;
+import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.properties.immutable.impl.PropImmutable;
+import org.jpropeller.system.Props;
+import org.jpropeller.util.Source;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link CalculatedPropPrefetcher}
+ */
+public class TestCalculatedPropPrefetcher {
+
+	private ExecutorService executor;
+	
+	/**
+	 * Set up for tests
+	 * @throws Exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	/**
+	 * Tear down after tests
+	 * @throws Exception
+	 */
+	@After
+	public void tearDown() throws Exception {
+		executor.shutdown();
+	}
+	
+	/**
+	 * Test that invalid props with listeners, and the invalid props they
+	 * are calculated from, are each calculated once, in level order, and
+	 * that props without listeners are left invalid
+	 * @throws Exception
+	 */
+	@Test
+	public void testPrefetch() throws Exception {
+		final Prop<Integer> x = PropImmutable.editable(Integer.class, "x", 1);
+		final AtomicInteger calculations = new AtomicInteger(0);
+		
+		//Several props on x, and one on all of them
+		final List<Prop<Integer>> lower = new ArrayList<Prop<Integer>>();
+		for (int i = 0; i < 4; i++) {
+			final int offset = i;
+			lower.add(Props.calculated(Integer.class, "lower" + i, x).returning(new Source<Integer>() {
+				@Override
+				public Integer get() {
+					calculations.incrementAndGet();
+					return x.get() + offset;
+				}
+			}));
+		}
+		Changeable[] lowerArray = lower.toArray(new Changeable[lower.size()]);
+		Prop<Integer> upper = Props.calculated(Integer.class, "upper", lowerArray).returning(new Source<Integer>() {
+			@Override
+			public Integer get() {
+				calculations.incrementAndGet();
+				int sum = 0;
+				for (Prop<Integer> prop : lower) {
+					sum += prop.get();
+				}
+				return sum;
+			}
+		});
+		final AtomicInteger unlistenedCalculations = new AtomicInteger(0);
+		Prop<Integer> unlistened = Props.calculated(Integer.class, "unlistened", x).returning(new Source<Integer>() {
+			@Override
+			public Integer get() {
+				unlistenedCalculations.incrementAndGet();
+				return x.get();
+			}
+		});
+		
+		ChangeListener listener = new ChangeListener() {
+			@Override
+			public void change(List<Changeable> initial, Map<Changeable, Change> changes) {}
+		};
+		upper.features().addListener(listener);
+		Assert.assertEquals(10, (int) upper.get());
+		Assert.assertEquals(1, (int) unlistened.get());
+		
+		x.set(5);
+		calculations.set(0);
+		unlistenedCalculations.set(0);
+		List<Changeable> changed = new ArrayList<Changeable>(lower);
+		changed.add(upper);
+		changed.add(unlistened);
+		Props.acquire();
+		try {
+			CalculatedPropPrefetcher.prefetch(changed, executor);
+		} finally {
+			Props.release();
+		}
+		Assert.assertEquals(5, calculations.get());
+		Assert.assertEquals(0, unlistenedCalculations.get());
+		
+		//Reads now use the prefetched values
+		Assert.assertEquals(26, (int) upper.get());
+		Assert.assertEquals(5, calculations.get());
+		Assert.assertEquals(5, (int) unlistened.get());
+		Assert.assertEquals(1, unlistenedCalculations.get());
+	}
+}
@@ -0,0 +1,83 @@
+package test.properties.calculated;
+
+import org.jpropeller.bean.impl.BeanDefault;
+import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.calculated.impl.CalculationProfiler;
+import org.jpropeller.system.Props;
+import org.jpropeller.util.Source;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the {@link CalculationProfiler}
+ */
+public class TestCalculationProfiler {
+
+	/**
+	 * Bean with a calculated prop
+	 */
+	public static class Square extends BeanDefault {
+		final Prop<Integer> x = editable("x", 1);
+		final Prop<Integer> square = addProp(Props.calculated(Integer.class, "square", x).returning(new Source<Integer>() {
+			@Override
+			public Integer get() {
+				return x.get() * x.get();
+			}
+		}));
+	}
+	
+	/**
+	 * Disable and reset profiling after tests
+	 * @throws Exception
+	 */
+	@After
+	public void tearDown() throws Exception {
+		CalculationProfiler.setEnabled(false);
+		CalculationProfiler.setSamplingInterval(1);
+		CalculationProfiler.reset();
+	}
+	
+	/**
+	 * Test that calculations and invalidations are recorded, grouped by 
+	 * bean class and prop name, with the cause described the same way
+	 * @throws Exception
+	 */
+	@Test
+	public void testStats() throws Exception {
+		CalculationProfiler.reset();
+		CalculationProfiler.setEnabled(true);
+		Square bean = new Square();
+		for (int i = 0; i < 10; i++) {
+			bean.x.set(i);
+			bean.square.get();
+		}
+		
+		CalculationProfiler.Stats stats = CalculationProfiler.top(1).get(0);
+		Assert.assertEquals("Square.square", stats.getName());
+		Assert.assertEquals(10, stats.getCalculationCount());
+		Assert.assertEquals(9, stats.getInvalidationCount());
+		Assert.assertEquals("Square.x", stats.getMainCause());
+		Assert.assertTrue(stats.getMaxCalculationNanos() > 0);
+		Assert.assertTrue(stats.getMaxCalculationNanos() <= stats.getCalculationNanos());
+	}
+	
+	/**
+	 * Test that only one in each sampling interval calculations is recorded
+	 * @throws Exception
+	 */
+	@Test
+	public void testSampling() throws Exception {
+		CalculationProfiler.reset();
+		CalculationProfiler.setEnabled(true);
+		CalculationProfiler.setSamplingInterval(4);
+		Square bean = new Square();
+		bean.square.get();
+		CalculationProfiler.reset();
+		for (int i = 0; i < 40; i++) {
+			bean.x.set(100 + i);
+			bean.square.get();
+		}
+		Assert.assertEquals(10, CalculationProfiler.top(1).get(0).getCalculationCount());
+	}
+}
@@ -0,0 +1,181 @@
+package test.properties.calculated;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jpropeller.calculation.IncrementalCalculation;
+import org.jpropeller.collection.CList;
+import org.jpropeller.collection.CollectionChangeType;
+import org.jpropeller.collection.ListDelta;
+import org.jpropeller.collection.impl.CListCalculated;
+import org.jpropeller.collection.impl.CListDefault;
+import org.jpropeller.name.PropName;
+import org.jpropeller.properties.calculated.impl.CalculatedProp;
+import org.jpropeller.properties.calculated.impl.IncrementalCalculator;
+import org.jpropeller.properties.change.Change;
+import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.properties.change.ListChange;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test use of {@link IncrementalCalculation}s by {@link CalculatedProp}
+ * and {@link CListCalculated}
+ */
+public class TestIncrementalCalculation {
+
+	/**
+	 * Base for calculations that can only follow appends to a list
+	 * @param <T>	The type of result
+	 */
+	private abstract static class AppendCalculation<T> implements IncrementalCalculation<T> {
+		protected final CList<Integer> list;
+		protected int full = 0;
+		protected int updates = 0;
+		
+		private AppendCalculation(CList<Integer> list) {
+			this.list = list;
+		}
+		
+		@Override
+		public Set<? extends Changeable> getSources() {
+			return Collections.singleton(list);
+		}
+		
+		/**
+		 * @param changes	The changes
+		 * @return			The indices appended to the list, or null 
+		 * 					if there were other changes
+		 */
+		protected List<Integer> appended(Map<Changeable, Change> changes) {
+			List<Integer> appended = new ArrayList<Integer>();
+			for (ListDelta delta : ((ListChange) changes.get(list)).getListDeltas()) {
+				if (delta.getType() != CollectionChangeType.INSERTION || delta.getFirstChangedIndex() != delta.getOldSize()) {
+					return null;
+				}
+				for (int i = delta.getOldSize(); i < delta.getNewSize(); i++) {
+					appended.add(i);
+				}
+			}
+			updates++;
+			return appended;
+		}
+	}
+	
+	/**
+	 * Test that a {@link CalculatedProp} updates its value from coalesced
+	 * deltas, recalculates when the update is not possible, and 
+	 * recalculates when too many changes are pending
+	 * @throws Exception
+	 */
+	@Test
+	public void testCalculatedProp() throws Exception {
+		CListDefault<Integer> list = new CListDefault<Integer>();
+		list.add(1);
+		list.add(2);
+		AppendCalculation<Integer> sum = new AppendCalculation<Integer>(list) {
+			@Override
+			public Integer calculate() {
+				full++;
+				int s = 0;
+				for (Integer i : list) {
+					s += i;
+				}
+				return s;
+			}
+			
+			@Override
+			public Integer update(Integer previous, Map<Changeable, Change> changes) {
+				List<Integer> appended = appended(changes);
+				if (appended == null) {
+					return null;
+				}
+				int s = previous;
+				for (int i : appended) {
+					s += list.get(i);
+				}
+				return s;
+			}
+		};
+		CalculatedProp<Integer> prop = new CalculatedProp<Integer>(PropName.create(Integer.class, "sum"), sum);
+		Assert.assertEquals(3, (int) prop.get());
+		Assert.assertEquals(1, sum.full);
+		
+		//Two appends before reading are coalesced into one update
+		list.add(10);
+		list.add(100);
+		Assert.assertEquals(113, (int) prop.get());
+		Assert.assertEquals(1, sum.full);
+		Assert.assertEquals(1, sum.updates);
+		
+		//Removal cannot be followed
+		list.remove(0);
+		Assert.assertEquals(112, (int) prop.get());
+		Assert.assertEquals(2, sum.full);
+		
+		list.add(5);
+		Assert.assertEquals(117, (int) prop.get());
+		Assert.assertEquals(2, sum.updates);
+		
+		//Too many pending changes are dropped
+		for (int i = 0; i <= IncrementalCalculator.MAX_PENDING_CHANGES; i++) {
+			list.add(1);
+		}
+		Assert.assertEquals(117 + IncrementalCalculator.MAX_PENDING_CHANGES + 1, (int) prop.get());
+		Assert.assertEquals(3, sum.full);
+		Assert.assertEquals(2, sum.updates);
+	}
+	
+	/**
+	 * Test that a {@link CListCalculated} updates its contents from deltas
+	 * @throws Exception
+	 */
+	@Test
+	public void testCalculatedList() throws Exception {
+		CListDefault<Integer> list = new CListDefault<Integer>();
+		list.add(1);
+		AppendCalculation<List<Integer>> doubled = new AppendCalculation<List<Integer>>(list) {
+			@Override
+			public List<Integer> calculate() {
+				full++;
+				List<Integer> result = new ArrayList<Integer>();
+				for (Integer i : list) {
+					result.add(i * 2);
+				}
+				return result;
+			}
+			
+			@Override
+			public List<Integer> update(List<Integer> previous, Map<Changeable, Change> changes) {
+				List<Integer> appended = appended(changes);
+				if (appended == null) {
+					return null;
+				}
+				List<Integer> result = new ArrayList<Integer>(previous);
+				for (int i : appended) {
+					result.add(list.get(i) * 2);
+				}
+				return result;
+			}
+		};
+		CListCalculated<Integer> calculated = new CListCalculated<Integer>(doubled);
+		Assert.assertEquals(Collections.singletonList(2), calculated);
+		
+		List<Integer> before = calculated.snapshot();
+		list.add(3);
+		Assert.assertEquals(2, calculated.size());
+		Assert.assertEquals(6, (int) calculated.get(1));
+		Assert.assertEquals(1, doubled.full);
+		Assert.assertEquals(1, doubled.updates);
+		
+		//Previous result is not modified
+		Assert.assertEquals(Collections.singletonList(2), before);
+		
+		list.set(0, 5);
+		Assert.assertEquals(10, (int) calculated.get(0));
+		Assert.assertEquals(2, doubled.full);
+	}
+}
@@ -0,0 +1,126 @@
+package test.properties.calculated;
+
+import org.jpropeller.bean.impl.BeanDefault;
+import org.jpropeller.calculation.PureFunction;
+import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.calculated.impl.MemoCache;
+import org.jpropeller.system.Props;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the {@link MemoCache} implementation
+ */
+public class TestMemoCache {
+
+	private static class Counting implements PureFunction<String> {
+		int calls = 0;
+		@Override
+		public String apply(Object[] values) {
+			calls++;
+			return values[1] + ":" + values[0];
+		}
+	}
+	
+	private static class LabelBean extends BeanDefault {
+		Prop<Integer> x = editable("x", 1);
+		Prop<String> s = editable("s", "a");
+	}
+	
+	/**
+	 * Test that least recently used results are evicted first
+	 * @throws Exception
+	 */
+	@Test
+	public void testEviction() throws Exception {
+		Counting function = new Counting();
+		MemoCache cache = new MemoCache(2);
+		
+		Assert.assertEquals("a:1", cache.get(function, new Object[]{1, "a"}));
+		Assert.assertEquals("a:2", cache.get(function, new Object[]{2, "a"}));
+		
+		//Hit on 1, so 2 is now least recently used
+		Assert.assertEquals("a:1", cache.get(function, new Object[]{1, "a"}));
+		Assert.assertEquals(2, function.calls);
+		Assert.assertEquals(1, cache.getHitCount());
+		
+		Assert.assertEquals("a:3", cache.get(function, new Object[]{3, "a"}));
+		Assert.assertEquals(2, cache.getSize());
+		Assert.assertEquals(1, cache.getEvictionCount());
+		
+		//1 was kept, 2 was evicted
+		cache.get(function, new Object[]{1, "a"});
+		Assert.assertEquals(3, function.calls);
+		cache.get(function, new Object[]{2, "a"});
+		Assert.assertEquals(4, function.calls);
+		Assert.assertEquals(2, cache.getEvictionCount());
+		Assert.assertEquals(2, cache.getHitCount());
+		Assert.assertEquals(4, cache.getMissCount());
+		
+		cache.clear();
+		Assert.assertEquals(0, cache.getSize());
+		Assert.assertEquals(0, cache.getWeight());
+	}
+
+	/**
+	 * Test eviction by weight, including a result heavier than the
+	 * whole cache, which is kept alone
+	 * @throws Exception
+	 */
+	@Test
+	public void testWeight() throws Exception {
+		Counting function = new Counting();
+		MemoCache cache = new MemoCache(10, new MemoCache.Weigher() {
+			@Override
+			public long weigh(Object result) {
+				return ((String) result).length();
+			}
+		});
+		
+		cache.get(function, new Object[]{1, "abc"});
+		cache.get(function, new Object[]{2, "abc"});
+		Assert.assertEquals(10, cache.getWeight());
+		Assert.assertEquals(2, cache.getSize());
+		
+		cache.get(function, new Object[]{3, "a"});
+		Assert.assertEquals(1, cache.getEvictionCount());
+		Assert.assertEquals(8, cache.getWeight());
+		
+		cache.get(function, new Object[]{4, "abcdefghijk"});
+		Assert.assertEquals(1, cache.getSize());
+		Assert.assertEquals(13, cache.getWeight());
+		Assert.assertEquals(3, cache.getEvictionCount());
+	}
+	
+	/**
+	 * Test that memo props on different beans with equal input values
+	 * share a result
+	 * @throws Exception
+	 */
+	@Test
+	public void testSharedAcrossBeans() throws Exception {
+		Counting function = new Counting();
+		MemoCache shared = MemoCache.getShared();
+		long hits = shared.getHitCount();
+		long misses = shared.getMissCount();
+		
+		LabelBean[] beans = new LabelBean[10];
+		Prop<?>[] labels = new Prop<?>[10];
+		for (int i = 0; i < beans.length; i++) {
+			beans[i] = new LabelBean();
+			labels[i] = Props.calculatedMemo(String.class, "label", function, beans[i].x, beans[i].s);
+		}
+		for (Prop<?> label : labels) {
+			Assert.assertEquals("a:1", label.get());
+		}
+		Assert.assertEquals(1, function.calls);
+		
+		beans[3].x.set(5);
+		Assert.assertEquals("a:5", labels[3].get());
+		Assert.assertEquals("a:1", labels[4].get());
+		Assert.assertEquals(2, function.calls);
+		
+		Assert.assertEquals(9, shared.getHitCount() - hits);
+		Assert.assertEquals(2, shared.getMissCount() - misses);
+	}
+}
@@ -0,0 +1,119 @@
+package test.properties.calculated;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jpropeller.calculation.Calculation;
+import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.calculated.impl.BuildCalculation;
+import org.jpropeller.properties.calculated.impl.CalculatedProp;
+import org.jpropeller.properties.calculated.impl.RecordingCalculatedProp;
+import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.properties.immutable.impl.PropImmutable;
+import org.jpropeller.system.Props;
+import org.jpropeller.util.Source;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the {@link RecordingCalculatedProp} implementation
+ */
+public class TestRecordingCalculatedProp {
+
+	/**
+	 * Test that reading a {@link CalculatedProp} records only that prop,
+	 * and not its sources, so that early cutoff in the {@link CalculatedProp}
+	 * stops changes reaching the {@link RecordingCalculatedProp}
+	 * @throws Exception
+	 */
+	@Test
+	public void testNestedCalculationIsolated() throws Exception {
+		final Prop<Integer> x = PropImmutable.editable(Integer.class, "x", 1);
+		Calculation<Boolean> positive = BuildCalculation.<Boolean>on(x).returning(new Source<Boolean>() {
+			@Override
+			public Boolean get() {
+				return x.get() > 0;
+			}
+		});
+		final CalculatedProp<Boolean> c = Props.calculatedWithCutoff(Boolean.class, "positive", positive, null);
+		
+		final AtomicInteger calculations = new AtomicInteger(0);
+		RecordingCalculatedProp<String> r = Props.calculatedFromReads(String.class, "r", new Source<String>() {
+			@Override
+			public String get() {
+				calculations.incrementAndGet();
+				return c.get() ? "positive" : "not positive";
+			}
+		});
+		
+		//C is not yet calculated, so calculates while R is recording
+		Assert.assertEquals("positive", r.get());
+		Assert.assertEquals(Collections.singleton(c), r.getSources());
+		Assert.assertEquals(1, calculations.get());
+		
+		//C cuts off the change, so R is not recalculated
+		x.set(2);
+		Assert.assertEquals("positive", r.get());
+		Assert.assertEquals(1, calculations.get());
+		
+		//C changes, so R is recalculated
+		x.set(-1);
+		Assert.assertEquals("not positive", r.get());
+		Assert.assertEquals(2, calculations.get());
+		Assert.assertEquals(Collections.singleton(c), r.getSources());
+	}
+	
+	/**
+	 * Test that sources follow the props actually read by the last
+	 * calculation, so that changes to props no longer read do not
+	 * cause recalculation
+	 * @throws Exception
+	 */
+	@Test
+	public void testDynamicSources() throws Exception {
+		final Prop<Boolean> flag = PropImmutable.editable(Boolean.class, "flag", false);
+		final Prop<Integer> a = PropImmutable.editable(Integer.class, "a", 1);
+		final Prop<Integer> b = PropImmutable.editable(Integer.class, "b", 2);
+		final AtomicInteger calculations = new AtomicInteger(0);
+		final RecordingCalculatedProp<Integer> r = Props.calculatedFromReads(Integer.class, "r", new Source<Integer>() {
+			@Override
+			public Integer get() {
+				calculations.incrementAndGet();
+				return flag.get() ? b.get() : a.get();
+			}
+		});
+		RecordingCalculatedProp<Integer> outer = Props.calculatedFromReads(Integer.class, "outer", new Source<Integer>() {
+			@Override
+			public Integer get() {
+				return r.get() * 10;
+			}
+		});
+		
+		Assert.assertEquals(10, (int) outer.get());
+		Assert.assertEquals(new HashSet<Changeable>(Arrays.asList(flag, a)), r.getSources());
+		Assert.assertEquals(Collections.singleton(r), outer.getSources());
+		
+		//B is not read, so is not a source
+		b.set(5);
+		Assert.assertEquals(10, (int) outer.get());
+		Assert.assertEquals(1, calculations.get());
+		
+		a.set(3);
+		Assert.assertEquals(30, (int) outer.get());
+		Assert.assertEquals(2, calculations.get());
+		
+		//Now B is read instead of A
+		flag.set(true);
+		Assert.assertEquals(50, (int) outer.get());
+		Assert.assertEquals(new HashSet<Changeable>(Arrays.asList(flag, b)), r.getSources());
+		a.set(7);
+		Assert.assertEquals(50, (int) outer.get());
+		Assert.assertEquals(3, calculations.get());
+		b.set(9);
+		Assert.assertEquals(90, (int) outer.get());
+		Assert.assertEquals(4, calculations.get());
+	}
+	
+}
@@ -0,0 +1,165 @@
+package test.properties.calculated.background;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.jpropeller.calculation.Calculation;
+import org.jpropeller.collection.impl.CListCalculated;
+import org.jpropeller.name.PropName;
+import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.calculated.background.BackgroundCalculated;
+import org.jpropeller.properties.calculated.background.impl.BackgroundCalculatedProp;
+import org.jpropeller.properties.calculated.background.impl.BackgroundCalculations;
+import org.jpropeller.properties.calculated.background.impl.CancellableBackgroundCalculatedProp;
+import org.jpropeller.properties.calculated.impl.BuildCalculation;
+import org.jpropeller.properties.immutable.impl.PropImmutable;
+import org.jpropeller.system.Props;
+import org.jpropeller.util.Source;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the {@link BackgroundCalculations} scheduling of 
+ * {@link BackgroundCalculated}s that depend on each other
+ */
+public class TestBackgroundCalculations {
+
+	/**
+	 * Test that a background calculation waits for a slow upstream 
+	 * background calculation, reached via a calculated prop, rather 
+	 * than calculating from its out of date value
+	 * @throws Exception
+	 */
+	@Test
+	public void testWaitsViaCalculatedProp() throws Exception {
+		final Prop<Integer> x = PropImmutable.editable(Integer.class, "x", 1);
+		final BackgroundCalculatedProp<Integer> a = slowTimesTen(x);
+		final Prop<Integer> mid = Props.calculated(Integer.class, "mid", a).returning(new Source<Integer>() {
+			@Override
+			public Integer get() {
+				return a.get() + 1;
+			}
+		});
+		
+		final List<Integer> seen = new CopyOnWriteArrayList<Integer>();
+		CancellableBackgroundCalculatedProp<Integer> d = Props.calculatedBackground(Integer.class, "d", 
+				BuildCalculation.<Integer>on(mid).returning(new Source<Integer>() {
+					@Override
+					public Integer get() {
+						seen.add(mid.get());
+						return mid.get();
+					}
+				}), 0, 0);
+		
+		waitUntilDone(d);
+		Assert.assertEquals(11, (int) d.get());
+		Assert.assertEquals(Collections.singleton(11), new HashSet<Integer>(seen));
+		
+		//D only becomes pending when A completes and changes
+		seen.clear();
+		x.set(2);
+		waitUntilDone(a);
+		waitUntilDone(d);
+		Assert.assertEquals(21, (int) d.get());
+		Assert.assertEquals(Collections.singleton(21), new HashSet<Integer>(seen));
+	}
+	
+	/**
+	 * Test that a background calculation waits for a slow upstream 
+	 * background calculation, reached via a {@link CListCalculated}
+	 * @throws Exception
+	 */
+	@Test
+	public void testWaitsViaCalculatedList() throws Exception {
+		final Prop<Integer> x = PropImmutable.editable(Integer.class, "x", 1);
+		final Prop<Integer> a = slowTimesTen(x);
+		Calculation<List<Integer>> listCalculation = BuildCalculation.<List<Integer>>on(a).returning(new Source<List<Integer>>() {
+			@Override
+			public List<Integer> get() {
+				return Collections.singletonList(a.get());
+			}
+		});
+		final CListCalculated<Integer> list = new CListCalculated<Integer>(listCalculation);
+		
+		final List<Integer> seen = new CopyOnWriteArrayList<Integer>();
+		CancellableBackgroundCalculatedProp<Integer> d = Props.calculatedBackground(Integer.class, "d", 
+				BuildCalculation.<Integer>on(list).returning(new Source<Integer>() {
+					@Override
+					public Integer get() {
+						seen.add(list.get(0));
+						return list.get(0);
+					}
+				}), 0, 0);
+		
+		waitUntilDone(d);
+		Assert.assertEquals(10, (int) d.get());
+		Assert.assertEquals(Collections.singleton(10), new HashSet<Integer>(seen));
+	}
+	
+	/**
+	 * Test that a failed upstream calculation still lets a downstream
+	 * calculation go ahead, rather than leaving it waiting forever
+	 * @throws Exception
+	 */
+	@Test
+	public void testUpstreamFailure() throws Exception {
+		final Prop<Integer> x = PropImmutable.editable(Integer.class, "x", 1);
+		final Prop<Integer> a = Props.calculatedBackground(Integer.class, "a", 0, x).returning(new Source<Integer>() {
+			@Override
+			public Integer get() {
+				if (x.get() == 2) {
+					throw new RuntimeException("Expected failure");
+				}
+				return x.get() * 10;
+			}
+		});
+		final CancellableBackgroundCalculatedProp<Integer> d = Props.calculatedBackground(Integer.class, "d", 
+				BuildCalculation.<Integer>on(a, x).returning(new Source<Integer>() {
+					@Override
+					public Integer get() {
+						return a.get() + x.get();
+					}
+				}), 0, 0);
+		
+		waitUntilDone(d);
+		Assert.assertEquals(11, (int) d.get());
+		
+		//A keeps its old value, D still calculates
+		x.set(2);
+		waitUntilDone(d);
+		Assert.assertEquals(12, (int) d.get());
+	}
+	
+	private static BackgroundCalculatedProp<Integer> slowTimesTen(final Prop<Integer> x) {
+		return new BackgroundCalculatedProp<Integer>(PropName.create(Integer.class, "a"), BuildCalculation.<Integer>on(x).returning(new Source<Integer>() {
+			@Override
+			public Integer get() {
+				int value = x.get();
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return value * 10;
+			}
+		}), 0);
+	}
+	
+	private static void waitUntilDone(BackgroundCalculated background) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (System.currentTimeMillis() < deadline) {
+			Props.acquire();
+			try {
+				if (!background.isPending()) {
+					return;
+				}
+			} finally {
+				Props.release();
+			}
+			Thread.sleep(10);
+		}
+		Assert.fail("Background calculation did not complete");
+	}
+}
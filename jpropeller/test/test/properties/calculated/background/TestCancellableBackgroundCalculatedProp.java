@@ -0,0 +1,139 @@
+package test.properties.calculated.background;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jpropeller.calculation.CancellableCalculation;
+import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.calculated.background.BackgroundCalculated;
+import org.jpropeller.properties.calculated.background.impl.CancellableBackgroundCalculatedProp;
+import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.properties.immutable.impl.PropImmutable;
+import org.jpropeller.system.Props;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the {@link CancellableBackgroundCalculatedProp} implementation
+ */
+public class TestCancellableBackgroundCalculatedProp {
+
+	/**
+	 * Doubles a prop, optionally running until released or cancelled
+	 */
+	private static class Doubler implements CancellableCalculation<Integer> {
+		private final Prop<Integer> x;
+		private final AtomicInteger starts = new AtomicInteger(0);
+		private final Semaphore started = new Semaphore(0);
+		private volatile boolean hold = false;
+		
+		private Doubler(Prop<Integer> x) {
+			this.x = x;
+		}
+		
+		@Override
+		public Integer calculate(AtomicBoolean shouldCancel) {
+			int value = x.get();
+			starts.incrementAndGet();
+			started.release();
+			while (hold && !shouldCancel.get()) {
+				Thread.yield();
+			}
+			return value * 2;
+		}
+		
+		@Override
+		public Integer calculate() {
+			return calculate(new AtomicBoolean(false));
+		}
+
+		@Override
+		public Set<? extends Changeable> getSources() {
+			return Collections.singleton(x);
+		}
+		
+		private void awaitStart() throws InterruptedException {
+			Assert.assertTrue(started.tryAcquire(10, TimeUnit.SECONDS));
+		}
+	}
+	
+	/**
+	 * Test that a running calculation is cancelled when its sources 
+	 * change, that its result is discarded, and that status props and
+	 * statistics reflect this
+	 * @throws Exception
+	 */
+	@Test
+	public void testCancel() throws Exception {
+		Prop<Integer> x = PropImmutable.editable(Integer.class, "x", 1);
+		Doubler doubler = new Doubler(x);
+		doubler.hold = true;
+		CancellableBackgroundCalculatedProp<Integer> p = Props.calculatedBackground(Integer.class, "p", doubler, 0, 0);
+		
+		doubler.awaitStart();
+		Assert.assertEquals(0, (int) p.get());
+		Assert.assertTrue(p.stale().get());
+		Assert.assertTrue(p.computing().get());
+		
+		//Cancels the running calculation, and starts another
+		x.set(2);
+		doubler.awaitStart();
+		Assert.assertTrue(p.stale().get());
+		doubler.hold = false;
+		waitUntilDone(p);
+		
+		Assert.assertEquals(4, (int) p.get());
+		Assert.assertFalse(p.stale().get());
+		Assert.assertFalse(p.computing().get());
+		Assert.assertEquals(2, doubler.starts.get());
+		Assert.assertEquals(1, p.getCancelledCount());
+		Assert.assertEquals(1, p.getCalculationCount());
+		Assert.assertEquals(p.getLastCalculationNanos(), p.getTotalCalculationNanos());
+		Assert.assertEquals(p.getLastCalculationNanos(), p.getMaxCalculationNanos());
+	}
+
+	/**
+	 * Test that changes within the quiet period lead to a single calculation
+	 * @throws Exception
+	 */
+	@Test
+	public void testQuietPeriod() throws Exception {
+		Prop<Integer> x = PropImmutable.editable(Integer.class, "x", 1);
+		Doubler doubler = new Doubler(x);
+		CancellableBackgroundCalculatedProp<Integer> p = Props.calculatedBackground(Integer.class, "p", doubler, 0, 500);
+		waitUntilDone(p);
+		Assert.assertEquals(2, (int) p.get());
+		Assert.assertEquals(1, doubler.starts.get());
+		
+		for (int i = 2; i < 10; i++) {
+			x.set(i);
+		}
+		Assert.assertTrue(p.stale().get());
+		waitUntilDone(p);
+		Assert.assertEquals(18, (int) p.get());
+		Assert.assertFalse(p.stale().get());
+		Assert.assertEquals(2, doubler.starts.get());
+		Assert.assertEquals(0, p.getCancelledCount());
+		Assert.assertEquals(2, p.getCalculationCount());
+	}
+	
+	private static void waitUntilDone(BackgroundCalculated background) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (System.currentTimeMillis() < deadline) {
+			Props.acquire();
+			try {
+				if (!background.isPending()) {
+					return;
+				}
+			} finally {
+				Props.release();
+			}
+			Thread.sleep(10);
+		}
+		Assert.fail("Background calculation did not complete");
+	}
+}
@@ -1,11 +1,16 @@
 package test.properties.change;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.jpropeller.properties.change.Change;
 import org.jpropeller.properties.change.ChangeListener;
 import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.properties.change.impl.ChangeDispatcherSwing;
 import org.jpropeller.properties.change.impl.ChangeSystemDefault;
 import org.junit.After;
 import org.junit.Assert;
@@ -64,4 +69,40 @@ public class TestChangeSystemDefault {
 		address.houseNumber().set(3);
 	}
 	
+	/**
+	 * Test that a task run by
+	 * {@link ChangeSystemDefault#runParallelReads(List, ExecutorService)}
+	 * fails rather than waiting forever if it tries to acquire the lock
+	 * @throws Exception
+	 */
+	@Test
+	public void testNoAcquireDuringParallelReads() throws Exception {
+		final ChangeSystemDefault changeSystem = new ChangeSystemDefault(new ChangeDispatcherSwing());
+		final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+		
+		Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					changeSystem.acquire();
+					changeSystem.release();
+				} catch (Exception e) {
+					failure.set(e);
+				}
+			}
+		};
+		
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		changeSystem.acquire();
+		try {
+			changeSystem.runParallelReads(Arrays.asList(task), executor);
+		} finally {
+			changeSystem.release();
+			executor.shutdown();
+		}
+		
+		Assert.assertNotNull(failure.get());
+		Assert.assertEquals(IllegalStateException.class, failure.get().getClass());
+	}
+	
 }
@@ -0,0 +1,179 @@
+package test.properties.change;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.properties.change.impl.ChangeDispatcherSwing;
+import org.jpropeller.properties.change.impl.ChangeSystemDefault;
+import org.jpropeller.properties.change.impl.TaskQueue;
+import org.jpropeller.task.OrderedTask;
+import org.jpropeller.task.Task;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the ordering of synchronous {@link Task}s by the {@link TaskQueue}
+ * of a {@link ChangeSystemDefault}
+ */
+public class TestTaskQueue {
+
+	private ChangeSystemDefault changeSystem;
+	private List<String> order;
+
+	/**
+	 * Set up for tests
+	 * @throws Exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		changeSystem = new ChangeSystemDefault(new ChangeDispatcherSwing());
+		order = new ArrayList<String>();
+	}
+
+	/**
+	 * Add tasks while holding the lock, so that they all run
+	 * when it is released
+	 * @param tasks		The tasks
+	 */
+	private void addAll(Task... tasks) {
+		changeSystem.acquire();
+		try {
+			for (Task task : tasks) {
+				changeSystem.addTask(task);
+			}
+		} finally {
+			changeSystem.release();
+		}
+	}
+	
+	/**
+	 * Test that tasks run in order of priority, then in the order added,
+	 * and that each task is only queued once
+	 * @throws Exception
+	 */
+	@Test
+	public void testPriorityOrder() throws Exception {
+		NamedTask low = new NamedTask("low", -1);
+		NamedTask first = new NamedTask("first", 0);
+		NamedTask second = new NamedTask("second", 0);
+		NamedTask high = new NamedTask("high", 5);
+		
+		addAll(low, first, second, first, high);
+		
+		Assert.assertEquals(Arrays.asList("high", "first", "second", "low"), order);
+	}
+	
+	/**
+	 * Test that a task waits for its queued dependencies, even
+	 * if it has higher priority
+	 * @throws Exception
+	 */
+	@Test
+	public void testDependencyOrder() throws Exception {
+		NamedTask low = new NamedTask("low", -1);
+		NamedTask high = new NamedTask("high", 5, low);
+		NamedTask plain = new NamedTask("plain", 0);
+		
+		addAll(high, plain, low);
+		
+		Assert.assertEquals(Arrays.asList("plain", "low", "high"), order);
+		
+		//Dependencies that are not queued don't block
+		order.clear();
+		addAll(high, plain);
+		Assert.assertEquals(Arrays.asList("high", "plain"), order);
+	}
+	
+	/**
+	 * Test that tasks with cyclic dependencies still all run,
+	 * starting with a task in the cycle
+	 * @throws Exception
+	 */
+	@Test
+	public void testCycle() throws Exception {
+		NamedTask x = new NamedTask("x", 0);
+		NamedTask y = new NamedTask("y", 0, x);
+		x.dependencies.add(y);
+		NamedTask z = new NamedTask("z", 1, x);
+		
+		addAll(z, x, y);
+		
+		Assert.assertEquals(Arrays.asList("x", "z", "y"), order);
+		Assert.assertEquals(0, changeSystem.getTaskQueue().size());
+	}
+	
+	/**
+	 * Test that a task that keeps adding itself stops at the iteration 
+	 * limit, and is left queued for the next release
+	 * @throws Exception
+	 */
+	@Test
+	public void testIterationLimit() throws Exception {
+		final TaskQueue queue = changeSystem.getTaskQueue();
+		queue.setIterationLimit(50);
+		
+		NamedTask requeue = new NamedTask("requeue", 0) {
+			@Override
+			public void respond(AtomicBoolean shouldCancel) {
+				super.respond(shouldCancel);
+				changeSystem.addTask(this);
+			}
+		};
+		changeSystem.addTask(requeue);
+		
+		Assert.assertEquals(50, order.size());
+		Assert.assertEquals(1, queue.size());
+		Assert.assertEquals(50, queue.getTiming(requeue).getCount());
+		
+		//Next release of the lock runs it again, up to the limit
+		order.clear();
+		changeSystem.addTask(requeue);
+		Assert.assertEquals(50, order.size());
+		Assert.assertEquals(1, queue.size());
+	}
+
+	//Task recording its name when run
+	private class NamedTask implements OrderedTask {
+		private final String name;
+		private final int priority;
+		private final List<Task> dependencies;
+		
+		private NamedTask(String name, int priority, Task... dependencies) {
+			this.name = name;
+			this.priority = priority;
+			this.dependencies = new ArrayList<Task>(Arrays.asList(dependencies));
+		}
+		
+		@Override
+		public void respond(AtomicBoolean shouldCancel) {
+			order.add(name);
+		}
+		
+		@Override
+		public Set<? extends Changeable> getSources() {
+			return Collections.emptySet();
+		}
+		
+		@Override
+		public int getPriority() {
+			return priority;
+		}
+		
+		@Override
+		public Collection<? extends Task> getDependencies() {
+			return dependencies;
+		}
+		
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package test.properties.change;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import org.jpropeller.collection.CList;
+import org.jpropeller.collection.impl.CListDefault;
+import org.jpropeller.name.PropName;
+import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.calculated.impl.BuildCalculation;
+import org.jpropeller.properties.calculated.impl.CalculatedProp;
+import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.properties.change.impl.VersionedValue;
+import org.jpropeller.properties.change.impl.Versions;
+import org.jpropeller.properties.immutable.impl.PropImmutable;
+import org.jpropeller.system.Props;
+import org.jpropeller.util.Source;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test {@link Versions} and {@link VersionedValue}
+ */
+public class TestVersions {
+
+	/**
+	 * Finish writing a version, as the change system does
+	 * when propagating a change and releasing the lock
+	 */
+	private static void publish() {
+		Versions.advance();
+		Versions.publish();
+	}
+	
+	/**
+	 * Test that history is kept while a version is pinned, 
+	 * and pruned once it is released
+	 * @throws Exception
+	 */
+	@Test
+	public void testPruningUnderPin() throws Exception {
+		VersionedValue<String> value = new VersionedValue<String>("a");
+		value.set("b");
+		publish();
+		
+		Versions.Pin pin = Versions.pin();
+		try {
+			value.set("c");
+			publish();
+			value.set("d");
+			publish();
+			
+			//The pinned value is kept, along with everything newer
+			Assert.assertEquals(3, value.getHistorySize());
+			Assert.assertEquals("b", value.getPinned());
+			Assert.assertEquals("b", value.get(pin.getVersion()));
+			Assert.assertEquals("d", value.get());
+		} finally {
+			pin.release();
+		}
+		
+		//Without the pin, only the value at the stable version is kept
+		Assert.assertEquals("d", value.getPinned());
+		value.set("e");
+		publish();
+		Assert.assertEquals(2, value.getHistorySize());
+	}
+	
+	/**
+	 * Test that a thread reading under a pin sees props, and props
+	 * calculated from them, as they were when pinned, while changes
+	 * are made and read on another thread
+	 * @throws Exception
+	 */
+	@Test
+	public void testPinnedReads() throws Exception {
+		final Prop<Integer> x = PropImmutable.editable(Integer.class, "x", 1);
+		final Prop<Integer> y = PropImmutable.editable(Integer.class, "y", 2);
+		final Prop<Integer> sum = Props.calculated(Integer.class, "sum", x, y).returning(new Source<Integer>() {
+			@Override
+			public Integer get() {
+				return x.get() + y.get();
+			}
+		});
+		Assert.assertEquals(3, (int) sum.get());
+		
+		final int[] seen = new int[3];
+		final CountDownLatch pinned = new CountDownLatch(1);
+		final CountDownLatch written = new CountDownLatch(1);
+		Thread reader = new Thread() {
+			@Override
+			public void run() {
+				Versions.Pin pin = Versions.pin();
+				try {
+					pinned.countDown();
+					written.await();
+					seen[0] = x.get();
+					seen[1] = y.get();
+					seen[2] = sum.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					pin.release();
+				}
+			}
+		};
+		reader.start();
+		pinned.await();
+		
+		Props.acquire();
+		try {
+			x.set(10);
+			y.set(20);
+		} finally {
+			Props.release();
+		}
+		x.set(11);
+		Assert.assertEquals(31, (int) sum.get());
+		written.countDown();
+		reader.join();
+		
+		Assert.assertEquals(1, seen[0]);
+		Assert.assertEquals(2, seen[1]);
+		Assert.assertEquals(3, seen[2]);
+		Assert.assertEquals(0, Versions.getPinnedVersionCount());
+		
+		//A new pin sees the latest values
+		Versions.Pin pin = Versions.pin();
+		try {
+			Assert.assertEquals(11, (int) x.get());
+			Assert.assertEquals(31, (int) sum.get());
+		} finally {
+			pin.release();
+		}
+	}
+	
+	/**
+	 * Test which {@link Changeable}s can be read at a pinned version
+	 * @throws Exception
+	 */
+	@Test
+	public void testIsVersioned() throws Exception {
+		final Prop<Integer> x = PropImmutable.editable(Integer.class, "x", 1);
+		final CList<Integer> list = new CListDefault<Integer>();
+		
+		CalculatedProp<Integer> fromX = new CalculatedProp<Integer>(PropName.create(Integer.class, "fromX"), BuildCalculation.<Integer>on(x).returning(new Source<Integer>() {
+			@Override
+			public Integer get() {
+				return x.get() + 1;
+			}
+		}));
+		CalculatedProp<Integer> fromList = new CalculatedProp<Integer>(PropName.create(Integer.class, "fromList"), BuildCalculation.<Integer>on(x, list).returning(new Source<Integer>() {
+			@Override
+			public Integer get() {
+				return x.get() + list.size();
+			}
+		}));
+		
+		Assert.assertTrue(Versions.isVersioned(Arrays.<Changeable>asList(x, fromX)));
+		Assert.assertFalse(fromList.isVersioned());
+		Assert.assertFalse(Versions.isVersioned(Arrays.<Changeable>asList(fromX, list)));
+		Assert.assertFalse(Props.calculatedFromReads(Integer.class, "recorded", new Source<Integer>() {
+			@Override
+			public Integer get() {
+				return x.get();
+			}
+		}).isVersioned());
+	}
+}
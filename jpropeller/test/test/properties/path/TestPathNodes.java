@@ -0,0 +1,169 @@
+package test.properties.path;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.SwingUtilities;
+
+import org.jpropeller.bean.impl.BeanDefault;
+import org.jpropeller.name.PropName;
+import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.change.Change;
+import org.jpropeller.properties.change.ChangeListener;
+import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.properties.change.impl.ChangeSystemDefault;
+import org.jpropeller.properties.path.impl.PathProp;
+import org.jpropeller.properties.path.impl.PathPropBuilder;
+import org.jpropeller.properties.values.impl.AcceptProcessor;
+import org.jpropeller.system.Props;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test sharing of path nodes between {@link PathProp}s
+ */
+public class TestPathNodes {
+
+	private static class Street extends BeanDefault {
+		Prop<String> name = editable("name", "s");
+	}
+	
+	private static class Address extends BeanDefault {
+		Prop<Street> street = editable(Street.class, "street", new Street());
+	}
+	
+	private static class Person extends BeanDefault {
+		Prop<Address> address = editable(Address.class, "address", new Address());
+	}
+	
+	private static PathProp<Person, String> streetName(Person person, int index) {
+		return PathPropBuilder.from(PropName.create(String.class, "name" + index), person, AcceptProcessor.<String>get())
+			.via(person.address.getName())
+			.via(new Address().street.getName())
+			.to(new Street().name.getName());
+	}
+	
+	private static void sync() throws Exception {
+		((ChangeSystemDefault) Props.getPropSystem().getChangeSystem()).flush();
+		SwingUtilities.invokeAndWait(new Runnable() {
+			@Override
+			public void run() {}
+		});
+	}
+	
+	private static int changeableListeners(Changeable changeable) {
+		int count = 0;
+		for (Changeable listener : changeable.features().changeableListenerList()) {
+			if (listener != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Test that {@link PathProp}s with the same root and path share nodes, 
+	 * so that only one node listens to each prop along the path, and that
+	 * all the {@link PathProp}s still follow the path
+	 * @throws Exception
+	 */
+	@Test
+	public void testShared() throws Exception {
+		Person person = new Person();
+		final int[] fired = new int[1];
+		List<PathProp<Person, String>> names = new ArrayList<PathProp<Person, String>>();
+		for (int i = 0; i < 20; i++) {
+			PathProp<Person, String> name = streetName(person, i);
+			name.features().addListener(new ChangeListener() {
+				@Override
+				public void change(List<Changeable> initial, Map<Changeable, Change> changes) {
+					fired[0]++;
+				}
+			});
+			names.add(name);
+		}
+		for (PathProp<Person, String> name : names) {
+			Assert.assertEquals("s", name.get());
+		}
+		
+		//The street name prop has its bean, and a single node, as listeners
+		Street street = person.address.get().street.get();
+		Assert.assertEquals(2, changeableListeners(street.name));
+
+		//Change the start of the path
+		Address address = new Address();
+		address.street.get().name.set("t");
+		person.address.set(address);
+		sync();
+		for (PathProp<Person, String> name : names) {
+			Assert.assertEquals("t", name.get());
+		}
+		Assert.assertEquals(20, fired[0]);
+		Assert.assertEquals(1, changeableListeners(street.name));
+		Assert.assertEquals(2, changeableListeners(address.street.get().name));
+		
+		//Change the end of the path
+		address.street.get().name.set("u");
+		sync();
+		for (PathProp<Person, String> name : names) {
+			Assert.assertEquals("u", name.get());
+		}
+		Assert.assertEquals(40, fired[0]);
+		
+		//Set through a path
+		names.get(3).set("v");
+		Assert.assertEquals("v", address.street.get().name.get());
+		Assert.assertEquals("v", names.get(7).get());
+	}
+	
+	/**
+	 * Test that a new value along the path that leads to the same
+	 * props does not change the props that nodes listen to
+	 * @throws Exception
+	 */
+	@Test
+	public void testSameSegment() throws Exception {
+		Person person = new Person();
+		PathProp<Person, String> name = streetName(person, 0);
+		Assert.assertEquals("s", name.get());
+		
+		Street street = person.address.get().street.get();
+		Address address = new Address();
+		address.street.set(street);
+		person.address.set(address);
+		sync();
+		Assert.assertEquals("s", name.get());
+		Assert.assertEquals(2, changeableListeners(street.name));
+		
+		street.name.set("t");
+		Assert.assertEquals("t", name.get());
+	}
+	
+	/**
+	 * Test that {@link PathProp}s with different roots do not share nodes
+	 * @throws Exception
+	 */
+	@Test
+	public void testDifferentRoots() throws Exception {
+		Person first = new Person();
+		Person second = new Person();
+		Street street = new Street();
+		first.address.get().street.set(street);
+		second.address.get().street.set(street);
+		PathProp<Person, String> firstName = streetName(first, 0);
+		PathProp<Person, String> secondName = streetName(second, 0);
+		Assert.assertEquals("s", firstName.get());
+		Assert.assertEquals("s", secondName.get());
+		
+		//Bean, plus a node for each root
+		Assert.assertEquals(3, changeableListeners(street.name));
+		
+		second.address.set(new Address());
+		sync();
+		Assert.assertEquals("s", firstName.get());
+		street.name.set("t");
+		Assert.assertEquals("t", firstName.get());
+		Assert.assertEquals("s", secondName.get());
+	}
+}
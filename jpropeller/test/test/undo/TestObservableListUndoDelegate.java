@@ -0,0 +1,175 @@
+package test.undo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+
+import org.jpropeller.collection.CList;
+import org.jpropeller.collection.impl.CListDefault;
+import org.jpropeller.properties.change.Change;
+import org.jpropeller.properties.change.impl.ChangeSystemDefault;
+import org.jpropeller.system.Props;
+import org.jpropeller.undo.delegates.UndoRecord;
+import org.jpropeller.undo.delegates.impl.ObservableListUndoDelegate;
+import org.jpropeller.undo.delegates.impl.UndoDelegateSourceDefault;
+import org.jpropeller.undo.impl.UndoSystemDefault;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link ObservableListUndoDelegate} implementation
+ */
+public class TestObservableListUndoDelegate {
+
+	/**
+	 * Delegate counting the changes recorded from deltas
+	 */
+	private static class CountingDelegate extends ObservableListUndoDelegate {
+		private int recorded = 0;
+		@Override
+		public UndoRecord record(CList<?> changeable, Change change) {
+			UndoRecord record = super.record(changeable, change);
+			if (record != null) {
+				recorded++;
+			}
+			return record;
+		}
+	}
+	
+	private CList<String> list;
+	private CountingDelegate delegate;
+	private UndoSystemDefault undo;
+	private List<List<String>> states;
+	
+	/**
+	 * Wait for changes to be dispatched to the undo system, 
+	 * so that each change makes its own undo step
+	 * @throws Exception
+	 */
+	private static void sync() throws Exception {
+		((ChangeSystemDefault) Props.getPropSystem().getChangeSystem()).flush();
+		SwingUtilities.invokeAndWait(new Runnable() {
+			@Override
+			public void run() {}
+		});
+	}
+	
+	/**
+	 * Set up for tests
+	 * @throws Exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		list = new CListDefault<String>();
+		delegate = new CountingDelegate();
+		UndoDelegateSourceDefault source = new UndoDelegateSourceDefault();
+		source.put(CListDefault.class, delegate);
+		undo = new UndoSystemDefault(list, source);
+		states = new ArrayList<List<String>>();
+		states.add(new ArrayList<String>(list));
+	}
+
+	/**
+	 * Note the end of a change, so it can be checked on undo and redo
+	 * @throws Exception
+	 */
+	private void step() throws Exception {
+		sync();
+		states.add(new ArrayList<String>(list));
+	}
+	
+	/**
+	 * Undo every step back to the initial state, then redo every step,
+	 * checking the list at each step, and that each step was 
+	 * recorded from deltas
+	 */
+	private void roundTrip() {
+		Assert.assertEquals(states.size() - 1, delegate.recorded);
+		for (int i = states.size() - 2; i >= 0; i--) {
+			undo.undo();
+			Assert.assertEquals(states.get(i), list);
+		}
+		Assert.assertFalse(undo.canUndo());
+		for (int i = 1; i < states.size(); i++) {
+			undo.redo();
+			Assert.assertEquals(states.get(i), list);
+		}
+		Assert.assertFalse(undo.canRedo());
+	}
+	
+	/**
+	 * Test insertion, deletion and alteration
+	 * @throws Exception
+	 */
+	@Test
+	public void testInsertDeleteAlter() throws Exception {
+		list.addAll(Arrays.asList("a", "b", "c", "d"));
+		step();
+		list.add(1, "x");
+		step();
+		list.remove(0);
+		step();
+		list.set(1, "y");
+		step();
+		list.remove("d");
+		step();
+		roundTrip();
+	}
+	
+	/**
+	 * Test removing non-adjacent indices, which makes a change 
+	 * with several deletion deltas
+	 * @throws Exception
+	 */
+	@Test
+	public void testRemoveIndices() throws Exception {
+		list.addAll(Arrays.asList("a", "b", "c", "d", "e", "f", "g"));
+		step();
+		list.removeIndices(new int[]{0, 2, 3, 6});
+		step();
+		Assert.assertEquals(Arrays.asList("b", "e", "f"), list);
+		list.removeIndices(new int[]{1});
+		step();
+		roundTrip();
+	}
+	
+	/**
+	 * Test moves and sorting, which make permutation deltas
+	 * @throws Exception
+	 */
+	@Test
+	public void testPermutation() throws Exception {
+		list.addAll(Arrays.asList("d", "a", "c", "e", "b"));
+		step();
+		list.move(0, 3);
+		step();
+		list.moveAll(new int[]{0, 4}, 2);
+		step();
+		list.sort(Collections.reverseOrder());
+		step();
+		roundTrip();
+	}
+	
+	/**
+	 * Test clearing and replacing the whole list
+	 * @throws Exception
+	 */
+	@Test
+	public void testClearAndReplace() throws Exception {
+		list.addAll(Arrays.asList("a", "b", "c"));
+		step();
+		list.clear();
+		step();
+		list.add("x");
+		step();
+		list.replace(Arrays.asList("p", "q", "r", "s"));
+		step();
+		list.clear();
+		step();
+		roundTrip();
+	}
+}
@@ -0,0 +1,141 @@
+package test.undo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.SwingUtilities;
+
+import org.jpropeller.collection.CMap;
+import org.jpropeller.collection.impl.CMapDefault;
+import org.jpropeller.properties.change.Change;
+import org.jpropeller.properties.change.impl.ChangeSystemDefault;
+import org.jpropeller.system.Props;
+import org.jpropeller.undo.delegates.UndoRecord;
+import org.jpropeller.undo.delegates.impl.ObservableMapUndoDelegate;
+import org.jpropeller.undo.delegates.impl.UndoDelegateSourceDefault;
+import org.jpropeller.undo.impl.UndoSystemDefault;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link ObservableMapUndoDelegate} implementation
+ */
+public class TestObservableMapUndoDelegate {
+
+	/**
+	 * Delegate counting the changes recorded from deltas
+	 */
+	private static class CountingDelegate extends ObservableMapUndoDelegate {
+		private int recorded = 0;
+		@Override
+		public UndoRecord record(CMap<?, ?> changeable, Change change) {
+			UndoRecord record = super.record(changeable, change);
+			if (record != null) {
+				recorded++;
+			}
+			return record;
+		}
+	}
+	
+	private CMap<String, Integer> map;
+	private CountingDelegate delegate;
+	private UndoSystemDefault undo;
+	private List<Map<String, Integer>> states;
+	
+	/**
+	 * Wait for changes to be dispatched to the undo system, 
+	 * so that each change makes its own undo step
+	 * @throws Exception
+	 */
+	private static void sync() throws Exception {
+		((ChangeSystemDefault) Props.getPropSystem().getChangeSystem()).flush();
+		SwingUtilities.invokeAndWait(new Runnable() {
+			@Override
+			public void run() {}
+		});
+	}
+	
+	/**
+	 * Set up for tests
+	 * @throws Exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		map = new CMapDefault<String, Integer>();
+		delegate = new CountingDelegate();
+		UndoDelegateSourceDefault source = new UndoDelegateSourceDefault();
+		source.put(CMapDefault.class, delegate);
+		undo = new UndoSystemDefault(map, source);
+		states = new ArrayList<Map<String, Integer>>();
+		states.add(new HashMap<String, Integer>(map));
+	}
+
+	/**
+	 * Note the end of a change, so it can be checked on undo and redo
+	 * @throws Exception
+	 */
+	private void step() throws Exception {
+		sync();
+		states.add(new HashMap<String, Integer>(map));
+	}
+	
+	/**
+	 * Undo every step back to the initial state, then redo every step,
+	 * checking the map at each step, and that each step was 
+	 * recorded from deltas
+	 */
+	private void roundTrip() {
+		Assert.assertEquals(states.size() - 1, delegate.recorded);
+		for (int i = states.size() - 2; i >= 0; i--) {
+			undo.undo();
+			Assert.assertEquals(states.get(i), map);
+		}
+		Assert.assertFalse(undo.canUndo());
+		for (int i = 1; i < states.size(); i++) {
+			undo.redo();
+			Assert.assertEquals(states.get(i), map);
+		}
+		Assert.assertFalse(undo.canRedo());
+	}
+	
+	/**
+	 * Test adding, altering and removing mappings
+	 * @throws Exception
+	 */
+	@Test
+	public void testPutAndRemove() throws Exception {
+		map.put("a", 1);
+		step();
+		map.put("b", 2);
+		step();
+		map.put("a", 10);
+		step();
+		map.remove("b");
+		step();
+		roundTrip();
+	}
+	
+	/**
+	 * Test clearing and replacing the whole map
+	 * @throws Exception
+	 */
+	@Test
+	public void testClearAndReplace() throws Exception {
+		Map<String, Integer> contents = new HashMap<String, Integer>();
+		contents.put("a", 1);
+		contents.put("b", 2);
+		map.putAll(contents);
+		step();
+		map.clear();
+		step();
+		contents.put("c", 3);
+		map.replace(contents);
+		step();
+		map.clear();
+		step();
+		roundTrip();
+	}
+}
@@ -0,0 +1,46 @@
+package test.undo;
+
+import org.jpropeller.collection.CList;
+import org.jpropeller.collection.impl.CListDefault;
+import org.jpropeller.collection.impl.CListRingBuffer;
+import org.jpropeller.undo.delegates.UndoDelegateSourceException;
+import org.jpropeller.undo.delegates.impl.ObservableListUndoDelegate;
+import org.jpropeller.undo.delegates.impl.UndoDelegateSourceDefault;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the {@link UndoDelegateSourceDefault} implementation
+ */
+public class TestUndoDelegateSourceDefault {
+
+	private static class SubList<E> extends CListDefault<E> {}
+	
+	/**
+	 * Test that delegates are found for subclasses and interfaces
+	 * of registered classes, and that registering a delegate
+	 * replaces cached lookups, including misses
+	 * @throws Exception
+	 */
+	@Test
+	public void testHierarchy() throws Exception {
+		UndoDelegateSourceDefault source = new UndoDelegateSourceDefault();
+		
+		//Found via superclass
+		Assert.assertTrue(source.get(new SubList<String>()) instanceof ObservableListUndoDelegate);
+		
+		//No delegate for ring buffers by default
+		CList<String> ring = CListRingBuffer.<String>create(3);
+		try {
+			source.get(ring);
+			Assert.fail("Found a delegate for a ring buffer");
+		} catch (UndoDelegateSourceException e) {
+			//Expected
+		}
+		
+		//Found via interface, once registered
+		source.put(CList.class, new ObservableListUndoDelegate());
+		Assert.assertTrue(source.get(ring) instanceof ObservableListUndoDelegate);
+	}
+	
+}
@@ -0,0 +1,131 @@
+package test.undo;
+
+import java.util.Arrays;
+
+import javax.swing.SwingUtilities;
+
+import org.jpropeller.collection.CList;
+import org.jpropeller.collection.impl.CListDefault;
+import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.change.impl.ChangeSystemDefault;
+import org.jpropeller.properties.immutable.impl.PropImmutable;
+import org.jpropeller.system.Props;
+import org.jpropeller.undo.delegates.impl.UndoDelegateSourceDefault;
+import org.jpropeller.undo.impl.UndoSystemDefault;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the {@link UndoSystemDefault} implementation
+ */
+public class TestUndoSystemDefault {
+
+	/**
+	 * Wait for changes to be dispatched to the undo system, 
+	 * so that each change makes its own undo step
+	 * @throws Exception
+	 */
+	private static void sync() throws Exception {
+		((ChangeSystemDefault) Props.getPropSystem().getChangeSystem()).flush();
+		SwingUtilities.invokeAndWait(new Runnable() {
+			@Override
+			public void run() {}
+		});
+	}
+
+	/**
+	 * Test that history is trimmed to the step and byte limits,
+	 * keeping the most recent steps
+	 * @throws Exception
+	 */
+	@Test
+	public void testLimits() throws Exception {
+		CList<String> list = new CListDefault<String>();
+		UndoSystemDefault undo = new UndoSystemDefault(list, new UndoDelegateSourceDefault(), 3, Long.MAX_VALUE);
+		
+		for (int i = 0; i < 10; i++) {
+			list.add("s" + i);
+			sync();
+		}
+		Assert.assertEquals(3, undo.getHistorySize());
+		Assert.assertEquals(7, undo.getDroppedCount());
+		
+		//Only the kept steps can be undone
+		long bytes = undo.getEstimatedBytes();
+		for (int i = 0; i < 4; i++) {
+			undo.undo();
+		}
+		Assert.assertEquals(7, list.size());
+		
+		//Undone steps are still counted, as redo steps
+		Assert.assertEquals(bytes, undo.getEstimatedBytes());
+		
+		//The most recent step is always kept
+		undo.setLimits(10, 1);
+		Assert.assertEquals(1, undo.getHistorySize());
+		
+		undo.clear();
+		Assert.assertEquals(0, undo.getEstimatedBytes());
+	}
+	
+	/**
+	 * Test that rapid changes to the same {@link Prop} are merged into
+	 * one step, but not after a redo
+	 * @throws Exception
+	 */
+	@Test
+	public void testMergeSaved() throws Exception {
+		Prop<String> text = PropImmutable.editable(String.class, "text", "");
+		UndoSystemDefault undo = new UndoSystemDefault(text, new UndoDelegateSourceDefault());
+		undo.setMergeWindow(5000);
+		
+		for (String s : new String[]{"h", "he", "hel", "hell", "hello"}) {
+			text.set(s);
+			sync();
+		}
+		Assert.assertEquals(1, undo.getHistorySize());
+		Assert.assertEquals(4, undo.getMergedCount());
+		
+		undo.undo();
+		Assert.assertEquals("", text.get());
+		undo.redo();
+		Assert.assertEquals("hello", text.get());
+		
+		text.set("x");
+		sync();
+		Assert.assertEquals(2, undo.getHistorySize());
+	}
+	
+	/**
+	 * Test that merged delta steps undo every change, and stop
+	 * merging at the step limit
+	 * @throws Exception
+	 */
+	@Test
+	public void testMergeDeltas() throws Exception {
+		CList<String> list = new CListDefault<String>();
+		UndoSystemDefault undo = new UndoSystemDefault(list, new UndoDelegateSourceDefault(), 3, Long.MAX_VALUE);
+		undo.setMergeWindow(5000);
+		
+		list.add("a");
+		sync();
+		list.add("b");
+		sync();
+		list.set(0, "z");
+		sync();
+		Assert.assertEquals(1, undo.getHistorySize());
+		
+		//Merged step is full, so a new step is started
+		list.add("c");
+		sync();
+		Assert.assertEquals(2, undo.getHistorySize());
+		
+		undo.undo();
+		Assert.assertEquals(Arrays.asList("z", "b"), list);
+		undo.undo();
+		Assert.assertTrue(list.isEmpty());
+		undo.redo();
+		Assert.assertEquals(Arrays.asList("z", "b"), list);
+	}
+	
+}
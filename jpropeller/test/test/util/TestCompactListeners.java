@@ -0,0 +1,171 @@
+package test.util;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.jpropeller.util.CompactListeners;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the {@link CompactListeners} implementation
+ */
+public class TestCompactListeners {
+
+	/**
+	 * Test counts and contents against a reference map, for strong
+	 * and weak listeners, across inline storage, inflation to a table
+	 * and rehashing with removed entries
+	 * @throws Exception
+	 */
+	@Test
+	public void testAgainstReference() throws Exception {
+		for (boolean weak : new boolean[]{false, true}) {
+			Random random = new Random(1);
+			for (int round = 0; round < 100; round++) {
+				CompactListeners<Object> listeners = new CompactListeners<Object>(weak);
+				IdentityHashMap<Object, Integer> reference = new IdentityHashMap<Object, Integer>();
+				
+				int n = 1 + random.nextInt(40);
+				Object[] pool = new Object[n];
+				for (int i = 0; i < n; i++) {
+					pool[i] = new Object();
+				}
+				
+				for (int op = 0; op < 300; op++) {
+					Object listener = pool[random.nextInt(n)];
+					Integer count = reference.get(listener);
+					if (random.nextBoolean()) {
+						int expected = (count == null) ? 1 : count + 1;
+						reference.put(listener, expected);
+						Assert.assertEquals(expected, listeners.add(listener));
+					} else {
+						int expected = (count == null) ? -1 : count - 1;
+						if (expected == 0) {
+							reference.remove(listener);
+						} else if (expected > 0) {
+							reference.put(listener, expected);
+						}
+						Assert.assertEquals(expected, listeners.remove(listener));
+					}
+					assertContents(reference, listeners);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Test that collected weak listeners are dropped from the table, 
+	 * without affecting the counts of live listeners
+	 * @throws Exception
+	 */
+	@Test
+	public void testCollectedInTable() throws Exception {
+		CompactListeners<Object> listeners = new CompactListeners<Object>(true);
+		Object kept = new Object();
+		listeners.add(kept);
+		
+		//Enough listeners to inflate and rehash the table
+		List<WeakReference<Object>> refs = addTemporary(listeners, 20);
+		collect(refs);
+		
+		//First snapshot still has the collected entries, but does not
+		//iterate them, and is then purged
+		Assert.assertEquals(21, listeners.snapshot().size());
+		assertOnly(kept, listeners);
+		Assert.assertEquals(1, listeners.snapshot().size());
+		
+		//Rehash on adding drops collected entries again, keeping counts
+		refs = addTemporary(listeners, 20);
+		collect(refs);
+		addTemporary(listeners, 20);
+		Assert.assertEquals(2, listeners.add(kept));
+		Assert.assertEquals(1, listeners.remove(kept));
+		Assert.assertEquals(0, listeners.remove(kept));
+		Assert.assertEquals(-1, listeners.remove(kept));
+	}
+
+	/**
+	 * Test that collected weak listeners in inline slots are reused,
+	 * and are not moved into the table when it is inflated
+	 * @throws Exception
+	 */
+	@Test
+	public void testCollectedInline() throws Exception {
+		CompactListeners<Object> listeners = new CompactListeners<Object>(true);
+		Object kept = new Object();
+		listeners.add(kept);
+		collect(addTemporary(listeners, 1));
+		
+		//Reuses the collected slot
+		Object second = new Object();
+		Assert.assertEquals(1, listeners.add(second));
+		Assert.assertEquals(2, listeners.add(kept));
+		Assert.assertEquals(2, listeners.snapshot().size());
+		
+		//Inflate with one inline listener collected
+		listeners.remove(second);
+		collect(addTemporary(listeners, 1));
+		Object third = new Object();
+		Assert.assertEquals(1, listeners.add(third));
+		Object fourth = new Object();
+		Assert.assertEquals(1, listeners.add(fourth));
+		Assert.assertEquals(3, listeners.add(kept));
+		Assert.assertEquals(2, listeners.add(third));
+		
+		int count = 0;
+		for (Object listener : listeners) {
+			Assert.assertTrue(listener == kept || listener == third || listener == fourth);
+			count++;
+		}
+		Assert.assertEquals(3, count);
+	}
+	
+	private static List<WeakReference<Object>> addTemporary(CompactListeners<Object> listeners, int count) {
+		List<WeakReference<Object>> refs = new ArrayList<WeakReference<Object>>();
+		for (int i = 0; i < count; i++) {
+			Object listener = new Object();
+			listeners.add(listener);
+			refs.add(new WeakReference<Object>(listener));
+		}
+		return refs;
+	}
+	
+	private static void collect(List<WeakReference<Object>> refs) {
+		for (int attempt = 0; attempt < 100; attempt++) {
+			System.gc();
+			boolean collected = true;
+			for (WeakReference<Object> ref : refs) {
+				if (ref.get() != null) {
+					collected = false;
+				}
+			}
+			if (collected) {
+				return;
+			}
+		}
+		Assert.fail("Listeners were not collected");
+	}
+	
+	private static void assertOnly(Object listener, CompactListeners<Object> listeners) {
+		int count = 0;
+		for (Object l : listeners) {
+			Assert.assertTrue(l == listener);
+			count++;
+		}
+		Assert.assertEquals(1, count);
+	}
+	
+	private static void assertContents(IdentityHashMap<Object, Integer> reference, CompactListeners<Object> listeners) {
+		IdentityHashMap<Object, Boolean> seen = new IdentityHashMap<Object, Boolean>();
+		for (Object listener : listeners) {
+			Assert.assertNull(seen.put(listener, true));
+			Assert.assertTrue(reference.containsKey(listener));
+		}
+		Assert.assertEquals(reference.size(), seen.size());
+		Assert.assertEquals(reference.isEmpty(), listeners.isEmpty());
+	}
+}
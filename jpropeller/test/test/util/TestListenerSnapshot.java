@@ -0,0 +1,156 @@
+package test.util;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.jpropeller.properties.Prop;
+import org.jpropeller.properties.change.Change;
+import org.jpropeller.properties.change.Changeable;
+import org.jpropeller.properties.change.ChangeableFeatures;
+import org.jpropeller.properties.change.impl.ChangeableFeaturesDefault;
+import org.jpropeller.properties.change.impl.InternalChangeImplementation;
+import org.jpropeller.properties.immutable.impl.PropImmutable;
+import org.jpropeller.util.CompactListeners;
+import org.jpropeller.util.ListenerSnapshot;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the {@link ListenerSnapshot} implementation
+ */
+public class TestListenerSnapshot {
+
+	/**
+	 * {@link Changeable} counting the changes it sees. The first
+	 * of a group of recorders to see a change removes the others
+	 * from the changed {@link Changeable}.
+	 */
+	private static class Recorder implements Changeable {
+		private int count = 0;
+		private final List<Recorder> group;
+		private final ChangeableFeaturesDefault features = new ChangeableFeaturesDefault(new InternalChangeImplementation() {
+			@Override
+			public Change internalChange(Changeable changed, Change change, List<Changeable> initial, Map<Changeable, Change> changes) {
+				count++;
+				if (!group.isEmpty()) {
+					for (Recorder other : group) {
+						if (other != Recorder.this) {
+							changed.features().removeChangeableListener(other);
+						}
+					}
+					group.clear();
+				}
+				return null;
+			}
+		}, this);
+		
+		private Recorder(List<Recorder> group) {
+			this.group = group;
+			group.add(this);
+		}
+		
+		@Override
+		public ChangeableFeatures features() {
+			return features;
+		}
+	}
+	
+	/**
+	 * Test that the same snapshot is returned until listeners change,
+	 * and that earlier snapshots are unaffected by changes
+	 * @throws Exception
+	 */
+	@Test
+	public void testCopyOnWrite() throws Exception {
+		CompactListeners<Object> listeners = new CompactListeners<Object>(false);
+		Object a = new Object();
+		Object b = new Object();
+		listeners.add(a);
+		ListenerSnapshot<Object> first = listeners.snapshot();
+		Assert.assertTrue(first == listeners.snapshot());
+		
+		//Count changes do not change the set of listeners
+		listeners.add(a);
+		Assert.assertTrue(first == listeners.snapshot());
+		
+		listeners.add(b);
+		ListenerSnapshot<Object> second = listeners.snapshot();
+		Assert.assertTrue(first != second);
+		Assert.assertEquals(1, first.size());
+		Assert.assertTrue(first.get(0) == a);
+		Assert.assertEquals(2, second.size());
+		
+		listeners.remove(a);
+		listeners.remove(a);
+		Assert.assertEquals(2, second.size());
+		Assert.assertEquals(1, listeners.snapshot().size());
+		Assert.assertTrue(listeners.snapshot().get(0) == b);
+		
+		Assert.assertEquals(0, ListenerSnapshot.empty().size());
+		Assert.assertFalse(ListenerSnapshot.empty().iterator().hasNext());
+	}
+
+	/**
+	 * Test that a weak snapshot does not keep listeners alive, and
+	 * is replaced once a collected listener is found
+	 * @throws Exception
+	 */
+	@Test
+	public void testWeak() throws Exception {
+		CompactListeners<Object> listeners = new CompactListeners<Object>(true);
+		Object kept = new Object();
+		listeners.add(kept);
+		Object temporary = new Object();
+		listeners.add(temporary);
+		WeakReference<Object> ref = new WeakReference<Object>(temporary);
+		
+		ListenerSnapshot<Object> snapshot = listeners.snapshot();
+		Assert.assertEquals(2, snapshot.size());
+		temporary = null;
+		for (int attempt = 0; attempt < 100 && ref.get() != null; attempt++) {
+			System.gc();
+		}
+		Assert.assertNull(ref.get());
+		
+		//Still the same snapshot until the collected listener is found
+		Assert.assertTrue(snapshot == listeners.snapshot());
+		List<Object> found = new ArrayList<Object>();
+		for (Object listener : snapshot) {
+			found.add(listener);
+		}
+		Assert.assertEquals(1, found.size());
+		Assert.assertTrue(found.get(0) == kept);
+		
+		ListenerSnapshot<Object> purged = listeners.snapshot();
+		Assert.assertTrue(snapshot != purged);
+		Assert.assertEquals(1, purged.size());
+	}
+	
+	/**
+	 * Test that removing listeners during propagation does not
+	 * stop them seeing the change being propagated, only later ones
+	 * @throws Exception
+	 */
+	@Test
+	public void testRemoveDuringPropagation() throws Exception {
+		Prop<Integer> x = PropImmutable.editable(Integer.class, "x", 0);
+		List<Recorder> group = new ArrayList<Recorder>();
+		Recorder first = new Recorder(group);
+		Recorder second = new Recorder(group);
+		Recorder third = new Recorder(group);
+		x.features().addChangeableListener(first);
+		x.features().addChangeableListener(second);
+		x.features().addChangeableListener(third);
+		
+		x.set(1);
+		Assert.assertEquals(1, first.count);
+		Assert.assertEquals(1, second.count);
+		Assert.assertEquals(1, third.count);
+		
+		//Only the recorder that removed the others is left
+		x.set(2);
+		Assert.assertEquals(4, first.count + second.count + third.count);
+	}
+}
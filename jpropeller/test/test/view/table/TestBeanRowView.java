@@ -0,0 +1,62 @@
+package test.view.table;
+
+import org.jpropeller.bean.impl.BeanDefault;
+import org.jpropeller.properties.Prop;
+import org.jpropeller.view.table.impl.BeanRowView;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the {@link BeanRowView} implementation
+ */
+public class TestBeanRowView {
+
+	/**
+	 * Bean with name then number
+	 */
+	public static class NameFirst extends BeanDefault {
+		final Prop<String> name = editable("name", "first");
+		final Prop<Integer> number = editable("number", 1);
+	}
+	
+	/**
+	 * Bean with the same props as {@link NameFirst}, in
+	 * the other order, so in different slots
+	 */
+	public static class NumberFirst extends BeanDefault {
+		final Prop<Integer> number = editable("number", 2);
+		final Prop<String> name = editable("name", "second");
+	}
+	
+	/**
+	 * Bean with only a name
+	 */
+	public static class NameOnly extends BeanDefault {
+		final Prop<String> name = editable("name", "only");
+	}
+	
+	/**
+	 * Test that rows of different bean classes, displayed alternately, 
+	 * each find the props for their own class
+	 * @throws Exception
+	 */
+	@Test
+	public void testMixedClasses() throws Exception {
+		NameFirst nameFirst = new NameFirst();
+		NumberFirst numberFirst = new NumberFirst();
+		NameOnly nameOnly = new NameOnly();
+		BeanRowView<BeanDefault> view = BeanRowView.create((BeanDefault) nameFirst);
+		
+		for (int i = 0; i < 3; i++) {
+			Assert.assertEquals("first", view.getColumn(nameFirst, 0));
+			Assert.assertEquals(1, view.getColumn(nameFirst, 1));
+			Assert.assertEquals("second", view.getColumn(numberFirst, 0));
+			Assert.assertEquals(2, view.getColumn(numberFirst, 1));
+			Assert.assertEquals("only", view.getColumn(nameOnly, 0));
+			Assert.assertNull(view.getColumn(nameOnly, 1));
+		}
+		
+		//New instances share their class's schema
+		Assert.assertEquals("second", view.getColumn(new NumberFirst(), 0));
+	}
+}